@@ -0,0 +1,345 @@
+/*
+ AWSIotMessageBatcher.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.awsiot.cores.core;
+
+import org.deviceconnect.android.deviceplugin.awsiot.cores.util.AWSIotFrameCodec;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同じトピック宛てのMQTTメッセージをまとめて発行するクラス.
+ * <p>
+ * 直前の発行からまとめる時間が経過しているメッセージは、待たずにすぐに発行する。
+ * まとめる時間内に続けて発行されたメッセージは、{@link AWSIotFrameCodec}で1つのフレームにまとめて、
+ * まとめる時間が経過した時に1回の発行で送信する。
+ * フレームが最大の大きさを超える場合は、複数のフレームに分けて送信する。
+ * </p>
+ * <p>
+ * メッセージの発行は1つのスレッドで行うので、同じトピック宛てのメッセージの順番は保たれる。
+ * </p>
+ */
+public class AWSIotMessageBatcher {
+
+    /** デフォルトのメッセージをまとめる時間(ms). */
+    public static final long DEFAULT_WINDOW = 20;
+
+    /** デフォルトのフレームの最大バイト数(UTF-8). AWS IoTのメッセージの上限(128KB)より小さくする. */
+    public static final int DEFAULT_MAX_FRAME_SIZE = 100 * 1024;
+
+    /** フレームの1メッセージあたりのヘッダのバイト数の見積もり. */
+    private static final int HEADER_SIZE = 8;
+
+    /** メッセージの発行先. */
+    private final Publisher mPublisher;
+
+    /** メッセージをまとめる時間(ms). */
+    private final long mWindow;
+
+    /** フレームの最大バイト数. */
+    private final int mMaxFrameSize;
+
+    /** 圧縮するフレームの文字数. */
+    private final int mCompressThreshold;
+
+    /** トピックごとのまとめ中のメッセージ. */
+    private final Map<String, Pending> mPending = new HashMap<>();
+
+    /** メッセージを発行するスレッド. */
+    private final ScheduledThreadPoolExecutor mTimer;
+
+    /**
+     * デフォルト設定でメッセージをまとめるクラスを作成する.
+     * @param publisher メッセージの発行先
+     */
+    public AWSIotMessageBatcher(final Publisher publisher) {
+        this(new Builder(publisher));
+    }
+
+    /**
+     * ビルダーの設定でメッセージをまとめるクラスを作成する.
+     * @param builder ビルダー
+     */
+    private AWSIotMessageBatcher(final Builder builder) {
+        mPublisher = builder.mPublisher;
+        mWindow = builder.mWindow;
+        mMaxFrameSize = builder.mMaxFrameSize;
+        mCompressThreshold = builder.mCompressThreshold;
+        mTimer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                Thread thread = new Thread(r, "AWSIotMessageBatcher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * メッセージを追加する.
+     * <p>
+     * まとめ中のメッセージが無い場合はすぐに発行される。
+     * それ以外の場合は、まとめる時間が経過した後、またはフレームの最大バイト数に達した時に発行される。
+     * 発行に失敗してもこのメソッドの戻り値には反映されないので、
+     * レスポンスを待つ場合はタイムアウトで失敗を検知すること。
+     * </p>
+     * @param topic トピック
+     * @param message メッセージ
+     * @return 追加した場合はtrue、破棄済みの場合はfalse
+     */
+    public boolean offer(final String topic, final String message) {
+        synchronized (mPending) {
+            if (mTimer.isShutdown()) {
+                return false;
+            }
+
+            int size = utf8Length(message) + HEADER_SIZE;
+            Pending pending = mPending.get(topic);
+            if (pending == null) {
+                // 負荷が低い場合は待たせずに発行して、まとめる時間の間だけ後続のメッセージをまとめる
+                Pending single = new Pending(topic);
+                single.mMessages.add(message);
+                submit(single);
+                openWindow(topic);
+                return true;
+            }
+            if (!pending.mMessages.isEmpty() && pending.mSize + size > mMaxFrameSize) {
+                mPending.remove(topic);
+                submit(pending);
+                pending = openWindow(topic);
+            }
+            pending.mMessages.add(message);
+            pending.mSize += size;
+        }
+        return true;
+    }
+
+    /**
+     * まとめ中の全てのメッセージを発行する.
+     */
+    public void flush() {
+        synchronized (mPending) {
+            if (mTimer.isShutdown()) {
+                return;
+            }
+            for (Pending pending : mPending.values()) {
+                if (!pending.mMessages.isEmpty()) {
+                    submit(pending);
+                }
+            }
+            mPending.clear();
+        }
+    }
+
+    /**
+     * まとめ中のメッセージを発行して、スレッドを停止する.
+     */
+    public void destroy() {
+        synchronized (mPending) {
+            flush();
+            mTimer.shutdown();
+        }
+    }
+
+    /**
+     * トピック宛てのメッセージをまとめ始める.
+     * <p>
+     * mPendingのロックを取得した状態で呼び出すこと。
+     * </p>
+     * @param topic トピック
+     * @return まとめ中のメッセージ
+     */
+    private Pending openWindow(final String topic) {
+        Pending pending = new Pending(topic);
+        mPending.put(topic, pending);
+        scheduleFlush(pending);
+        return pending;
+    }
+
+    /**
+     * まとめる時間が経過した時にメッセージを発行するように予約する.
+     * <p>
+     * まとめたメッセージがあった場合は、続けてメッセージが発行される可能性が高いので、次のまとめる時間を開始する。
+     * メッセージが無かった場合は、次のメッセージはすぐに発行する。
+     * </p>
+     * @param pending まとめ中のメッセージ
+     */
+    private void scheduleFlush(final Pending pending) {
+        mTimer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (mPending) {
+                    // 最大バイト数に達して発行済みの場合は、新しくまとめ始めたメッセージを発行しない
+                    if (mPending.get(pending.mTopic) != pending) {
+                        return;
+                    }
+                    mPending.remove(pending.mTopic);
+                    if (pending.mMessages.isEmpty()) {
+                        return;
+                    }
+                    if (!mTimer.isShutdown()) {
+                        openWindow(pending.mTopic);
+                    }
+                }
+                publish(pending);
+            }
+        }, mWindow, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * まとめたメッセージをすぐに発行するように予約する.
+     * @param pending まとめたメッセージ
+     */
+    private void submit(final Pending pending) {
+        mTimer.execute(new Runnable() {
+            @Override
+            public void run() {
+                publish(pending);
+            }
+        });
+    }
+
+    /**
+     * まとめたメッセージを発行する.
+     * @param pending まとめたメッセージ
+     */
+    private void publish(final Pending pending) {
+        String frame = AWSIotFrameCodec.encode(pending.mMessages, mCompressThreshold);
+        mPublisher.publish(pending.mTopic, frame);
+    }
+
+    /**
+     * 文字列をUTF-8で符号化した時のバイト数を取得する.
+     * @param text 文字列
+     * @return バイト数
+     */
+    static int utf8Length(final String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * メッセージの発行先.
+     */
+    public interface Publisher {
+        /**
+         * メッセージを発行する.
+         * @param topic トピック
+         * @param message メッセージ
+         * @return 発行した場合はtrue、それ以外はfalse
+         */
+        boolean publish(String topic, String message);
+    }
+
+    /**
+     * 1つのトピック宛てにまとめ中のメッセージ.
+     */
+    private static class Pending {
+        /** トピック. */
+        final String mTopic;
+        /** メッセージ. */
+        final List<String> mMessages = new ArrayList<>();
+        /** フレームのバイト数の見積もり. */
+        int mSize;
+
+        /**
+         * コンストラクタ.
+         * @param topic トピック
+         */
+        Pending(final String topic) {
+            mTopic = topic;
+        }
+    }
+
+    /**
+     * {@link AWSIotMessageBatcher}のビルダー.
+     */
+    public static final class Builder {
+        /** メッセージの発行先. */
+        private final Publisher mPublisher;
+        /** メッセージをまとめる時間(ms). */
+        private long mWindow = DEFAULT_WINDOW;
+        /** フレームの最大バイト数. */
+        private int mMaxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+        /** 圧縮するフレームの文字数. */
+        private int mCompressThreshold = AWSIotFrameCodec.DEFAULT_COMPRESS_THRESHOLD;
+
+        /**
+         * コンストラクタ.
+         * @param publisher メッセージの発行先
+         */
+        public Builder(final Publisher publisher) {
+            if (publisher == null) {
+                throw new IllegalArgumentException("publisher is null.");
+            }
+            mPublisher = publisher;
+        }
+
+        /**
+         * メッセージをまとめる時間を設定する.
+         * @param window メッセージをまとめる時間(ms)
+         * @return ビルダー
+         */
+        public Builder window(final long window) {
+            if (window <= 0) {
+                throw new IllegalArgumentException("window is invalid: " + window);
+            }
+            mWindow = window;
+            return this;
+        }
+
+        /**
+         * フレームの最大バイト数を設定する.
+         * @param maxFrameSize フレームの最大バイト数(UTF-8)
+         * @return ビルダー
+         */
+        public Builder maxFrameSize(final int maxFrameSize) {
+            if (maxFrameSize <= 0) {
+                throw new IllegalArgumentException("maxFrameSize is invalid: " + maxFrameSize);
+            }
+            mMaxFrameSize = maxFrameSize;
+            return this;
+        }
+
+        /**
+         * 圧縮するフレームの文字数を設定する.
+         * @param compressThreshold 圧縮するフレームの文字数. 0以下の場合は圧縮しない
+         * @return ビルダー
+         */
+        public Builder compressThreshold(final int compressThreshold) {
+            mCompressThreshold = compressThreshold;
+            return this;
+        }
+
+        /**
+         * {@link AWSIotMessageBatcher}を作成する.
+         * @return AWSIotMessageBatcher
+         */
+        public AWSIotMessageBatcher build() {
+            return new AWSIotMessageBatcher(this);
+        }
+    }
+}
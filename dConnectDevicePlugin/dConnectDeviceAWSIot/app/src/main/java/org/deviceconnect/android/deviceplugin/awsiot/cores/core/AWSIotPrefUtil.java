@@ -24,6 +24,7 @@ public class AWSIotPrefUtil extends PreferenceUtil {
     private static final String KEY_MANAGER_REGISTER = "awsManagerRegister";
     private static final String KEY_SYNC_TIME = "awsSyncTime";
     private static final String KEY_SYNC_TIME_SET = "awsSyncTimeSet";
+    private static final String KEY_RELAY_FRAMING = "awsRelayFraming";
     private static final long DEFAULT_SYNC_TIME = 10;
 
     private static final String KEY_AUTH_ACCESS_TOKEN = "awsAuthAccessToken";
@@ -100,6 +101,21 @@ public class AWSIotPrefUtil extends PreferenceUtil {
         putValue(KEY_SYNC_TIME_SET, true);
     }
 
+    /**
+     * MQTTのメッセージをまとめて送信するか確認する.
+     * <p>
+     * 有効にする場合は、接続先のマネージャもまとめたメッセージを受信できるバージョンである必要がある。
+     * </p>
+     * @return まとめて送信する場合はtrue、それ以外はfalse
+     */
+    public boolean isRelayFraming() {
+        return getBoolean(KEY_RELAY_FRAMING);
+    }
+
+    public void setRelayFraming(final boolean framing) {
+        putValue(KEY_RELAY_FRAMING, framing);
+    }
+
     public boolean isAWSLoginFlag() {
         return getBoolean(KEY_AWS_LOGIN_FLAG);
     }
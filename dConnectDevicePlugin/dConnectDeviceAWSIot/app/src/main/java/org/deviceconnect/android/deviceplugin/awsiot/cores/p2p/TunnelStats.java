@@ -0,0 +1,109 @@
+/*
+ TunnelStats.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.awsiot.cores.p2p;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * P2Pの中継1本あたりの転送量を計測するクラス.
+ * <p>
+ * 送信量はローカルのソケットからP2Pへ中継したバイト数、受信量はP2Pからローカルのソケットへ中継したバイト数とする。
+ * </p>
+ */
+public class TunnelStats {
+
+    /** コネクションID. */
+    private final int mConnectionId;
+
+    /** 中継を開始した時刻(ms). */
+    private final long mStartTime = System.currentTimeMillis();
+
+    /** 中継を終了した時刻(ms). 終了していない場合は0. */
+    private volatile long mEndTime;
+
+    /** 送信したバイト数. */
+    private final AtomicLong mSentBytes = new AtomicLong();
+
+    /** 受信したバイト数. */
+    private final AtomicLong mReceivedBytes = new AtomicLong();
+
+    /**
+     * コンストラクタ.
+     * @param connectionId コネクションID
+     */
+    public TunnelStats(final int connectionId) {
+        mConnectionId = connectionId;
+    }
+
+    /**
+     * コネクションIDを取得する.
+     * @return コネクションID
+     */
+    public int getConnectionId() {
+        return mConnectionId;
+    }
+
+    /**
+     * 送信したバイト数を取得する.
+     * @return 送信したバイト数
+     */
+    public long getSentBytes() {
+        return mSentBytes.get();
+    }
+
+    /**
+     * 受信したバイト数を取得する.
+     * @return 受信したバイト数
+     */
+    public long getReceivedBytes() {
+        return mReceivedBytes.get();
+    }
+
+    /**
+     * 中継している時間を取得する.
+     * @return 中継を開始してから終了するまで、または現在までの時間(ms)
+     */
+    public long getElapsedTime() {
+        long end = mEndTime;
+        return (end != 0 ? end : System.currentTimeMillis()) - mStartTime;
+    }
+
+    /**
+     * 送信と受信を合わせた1秒あたりのバイト数を取得する.
+     * @return 1秒あたりのバイト数
+     */
+    public long getThroughput() {
+        long elapsed = getElapsedTime();
+        if (elapsed <= 0) {
+            return 0;
+        }
+        return (getSentBytes() + getReceivedBytes()) * 1000 / elapsed;
+    }
+
+    void addSentBytes(final long bytes) {
+        mSentBytes.addAndGet(bytes);
+    }
+
+    void addReceivedBytes(final long bytes) {
+        mReceivedBytes.addAndGet(bytes);
+    }
+
+    void finish() {
+        if (mEndTime == 0) {
+            mEndTime = System.currentTimeMillis();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TunnelStats{connectionId=" + mConnectionId
+                + ", sent=" + getSentBytes()
+                + ", received=" + getReceivedBytes()
+                + ", elapsed=" + getElapsedTime()
+                + "ms, throughput=" + getThroughput() + "B/s}";
+    }
+}
@@ -31,6 +31,7 @@ import java.util.Date;
 import java.util.Locale;
 import java.util.StringTokenizer;
 import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public class WebClient extends AWSIotP2PManager {
@@ -40,12 +41,21 @@ public class WebClient extends AWSIotP2PManager {
 
     private static final int BUF_SIZE = 1024 * 8;
 
+    /**
+     * P2Pの接続とソケットの読み込みを行うスレッド.
+     * <p>
+     * 接続ごとにスレッドを作成せずに、全てのWebClientで使い回す。
+     * </p>
+     */
+    private static final ExecutorService RELAY_EXECUTOR = Executors.newCachedThreadPool();
+
     public static final String PATH_CONTENT_PROVIDER = "/contentProvider";
 
     private P2PConnection mP2PConnection;
     private ISocketAdapter mSocket;
     private Context mContext;
     private ByteArrayOutputStream mHttpHeaderData = new ByteArrayOutputStream();
+    private volatile TunnelStats mStats;
 
     public WebClient(final Context context) {
         mContext = context;
@@ -54,11 +64,20 @@ public class WebClient extends AWSIotP2PManager {
     public void onDisconnected(final WebClient webClient) {
     }
 
+    /**
+     * 中継の転送量を取得する.
+     * @return 転送量. P2Pのシグナリングを受信する前はnull
+     */
+    public TunnelStats getTunnelStats() {
+        return mStats;
+    }
+
     @Override
     public void onReceivedSignaling(final String signaling) {
+        mStats = new TunnelStats(getConnectionId(signaling));
         mP2PConnection = createP2PConnection(signaling, mOnP2PConnectionListener);
         if (mP2PConnection == null) {
-            Executors.newSingleThreadExecutor().submit(new Runnable() {
+            RELAY_EXECUTOR.execute(new Runnable() {
                 @Override
                 public void run() {
                     mP2PConnection = new P2PConnection();
@@ -77,6 +96,11 @@ public class WebClient extends AWSIotP2PManager {
     }
 
     public void close() {
+        if (mStats != null) {
+            mStats.finish();
+            Log.i(TAG, "WebClient#close: " + mStats);
+        }
+
         if (mSocket != null) {
             try {
                 mSocket.close();
@@ -117,7 +141,7 @@ public class WebClient extends AWSIotP2PManager {
         }
 
         final ISocketAdapter socket = openSocketFromHttpHeader(data, data.length);
-        Executors.newSingleThreadExecutor().submit(new Runnable() {
+        RELAY_EXECUTOR.execute(new Runnable() {
             @Override
             public void run() {
                 socket.r();
@@ -262,6 +286,7 @@ public class WebClient extends AWSIotP2PManager {
                 byte[] buf = new byte[BUF_SIZE];
                 while ((len = is.read(buf)) > 0) {
                     mP2PConnection.sendData(buf, 0, len);
+                    mStats.addSentBytes(len);
                 }
             } catch (IOException e) {
                 if (DEBUG) {
@@ -280,6 +305,7 @@ public class WebClient extends AWSIotP2PManager {
         public void w(final byte[] data) throws IOException {
             mOutputStream.write(data);
             mOutputStream.flush();
+            mStats.addReceivedBytes(data.length);
         }
 
         @Override
@@ -388,6 +414,7 @@ public class WebClient extends AWSIotP2PManager {
                 byte[] buf = new byte[BUF_SIZE];
                 while ((len = mInputStream.read(buf)) > 0) {
                     mP2PConnection.sendData(buf, 0, len);
+                    mStats.addSentBytes(len);
                 }
             } catch (Exception e) {
                 if (DEBUG) {
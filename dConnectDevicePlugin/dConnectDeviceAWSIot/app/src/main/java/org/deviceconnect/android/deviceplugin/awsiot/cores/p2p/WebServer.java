@@ -17,29 +17,61 @@ import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
+/**
+ * ローカルのHTTPクライアントからの接続をP2Pで接続先に中継するサーバ.
+ * <p>
+ * ローカルのソケットは1つのスレッドで{@link Selector}を使って監視し、接続ごとにスレッドを割り当てない。
+ * P2Pへの送信はブロックするので、送信中はそのソケットからの読み込みを止めて、送信用のスレッドで行う。
+ * P2Pから受信したデータはキューに溜めて、ソケットに書き込めるようになった時に書き込む。
+ * キューに溜まったデータが多い場合は、P2Pの受信スレッドを待たせて受信を抑制する。
+ * </p>
+ */
 public class WebServer extends AWSIotP2PManager {
 
     private static final boolean DEBUG = BuildConfig.DEBUG;
     private static final String TAG = "AWS";
 
-    private static final int MAX_CLIENT_SIZE = 8;
+    /** 1回に読み込むバイト数. */
+    private static final int BUF_SIZE = 1024 * 8;
+
+    /** P2Pの受信を待たせるキューのバイト数. */
+    private static final int HIGH_WATER_MARK = 256 * 1024;
+
+    /** P2Pの受信を再開するキューのバイト数. */
+    private static final int LOW_WATER_MARK = 64 * 1024;
+
     private String mPath = "/" + UUID.randomUUID().toString();
-    private boolean mStopFlag;
-    private ServerSocket mServerSocket;
-    private Map<Integer, ServerRunnable> mServerRunnableMap = new ConcurrentHashMap<>();
+    private volatile boolean mStopFlag;
+    private ServerSocketChannel mServerChannel;
+    private Selector mSelector;
+    private Map<Integer, Tunnel> mTunnelMap = new ConcurrentHashMap<>();
+
+    /** セレクタのスレッドで実行する処理. */
+    private final Queue<Runnable> mSelectorTasks = new ConcurrentLinkedQueue<>();
 
-    private final ExecutorService mExecutor = Executors.newFixedThreadPool(MAX_CLIENT_SIZE);
+    /** P2Pの接続と送信を行うスレッド. 処理中の間だけスレッドを使用する. */
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
 
     private String mDestAddress;
     private Context mContext;
@@ -54,34 +86,52 @@ public class WebServer extends AWSIotP2PManager {
     }
 
     public String getUrl() {
-        if (mServerSocket == null || mPath == null) {
+        if (mServerChannel == null || mPath == null) {
             return null;
         }
-        return "http://localhost:" + mServerSocket.getLocalPort() + mPath;
+        return "http://localhost:" + mServerChannel.socket().getLocalPort() + mPath;
+    }
+
+    /**
+     * 中継中の接続の転送量を取得する.
+     * @return 転送量のリスト
+     */
+    public List<TunnelStats> getTunnelStats() {
+        List<TunnelStats> stats = new ArrayList<>();
+        for (Tunnel tunnel : mTunnelMap.values()) {
+            stats.add(tunnel.mStats);
+        }
+        return stats;
     }
 
     public synchronized String start() {
-        if (mServerSocket != null) {
+        if (mServerChannel != null) {
             throw new RuntimeException("WebServer is already running.");
         }
 
         try {
-            mServerSocket = openServerSocket();
+            mSelector = Selector.open();
+            mServerChannel = openServerSocket();
+            mServerChannel.configureBlocking(false);
+            mServerChannel.register(mSelector, SelectionKey.OP_ACCEPT);
         } catch (IOException e) {
             // Failed to open server socket
+            closeServer();
             mStopFlag = true;
             return null;
         }
 
-        Executors.newSingleThreadExecutor().submit(new Runnable() {
+        mStopFlag = false;
+        Thread thread = new Thread(new Runnable() {
             @Override
             public void run() {
-                mStopFlag = false;
                 try {
                     while (!mStopFlag) {
-                        mExecutor.execute(new ServerRunnable(mServerSocket.accept()));
+                        mSelector.select();
+                        runSelectorTasks();
+                        handleSelectedKeys();
                     }
-                } catch (IOException e) {
+                } catch (Exception e) {
                     if (DEBUG) {
                         Log.w(TAG, "WebServer#start: " + e.getMessage());
                     }
@@ -89,7 +139,9 @@ public class WebServer extends AWSIotP2PManager {
                     stop();
                 }
             }
-        });
+        }, "WebServer-Relay");
+        thread.setDaemon(true);
+        thread.start();
         return getUrl();
     }
 
@@ -99,17 +151,11 @@ public class WebServer extends AWSIotP2PManager {
         }
         mStopFlag = true;
 
-        mExecutor.shutdown();
-        if (mServerSocket != null) {
-            try {
-                mServerSocket.close();
-                mServerSocket = null;
-            } catch (IOException e) {
-                if (DEBUG) {
-                    Log.w(TAG, "", e);
-                }
-            }
+        for (Tunnel tunnel : mTunnelMap.values()) {
+            tunnel.close();
         }
+        mExecutor.shutdown();
+        closeServer();
         mPath = null;
     }
 
@@ -119,14 +165,14 @@ public class WebServer extends AWSIotP2PManager {
             Log.i(TAG, "WebServer#onReceivedSignaling:" + signaling);
         }
 
-        ServerRunnable run = mServerRunnableMap.get(getConnectionId(signaling));
-        if (run != null) {
-            run.onReceivedSignaling(signaling);
+        Tunnel tunnel = mTunnelMap.get(getConnectionId(signaling));
+        if (tunnel != null) {
+            tunnel.onReceivedSignaling(signaling);
         }
     }
 
     public boolean hasConnectionId(final String signaling) {
-        return mServerRunnableMap.get(getConnectionId(signaling))  != null;
+        return mTunnelMap.get(getConnectionId(signaling))  != null;
     }
 
     protected void onConnected() {
@@ -135,11 +181,131 @@ public class WebServer extends AWSIotP2PManager {
     protected void onDisconnected() {
     }
 
-    private ServerSocket openServerSocket() throws IOException {
+    private void closeServer() {
+        if (mServerChannel != null) {
+            try {
+                mServerChannel.close();
+            } catch (IOException e) {
+                if (DEBUG) {
+                    Log.w(TAG, "", e);
+                }
+            }
+            mServerChannel = null;
+        }
+        if (mSelector != null) {
+            mSelector.wakeup();
+            try {
+                mSelector.close();
+            } catch (IOException e) {
+                if (DEBUG) {
+                    Log.w(TAG, "", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * セレクタのスレッドで処理を実行する.
+     * @param task 処理
+     */
+    private void runOnSelector(final Runnable task) {
+        mSelectorTasks.add(task);
+        Selector selector = mSelector;
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    private void runSelectorTasks() {
+        Runnable task;
+        while ((task = mSelectorTasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (CancelledKeyException e) {
+                // 別のスレッドで閉じられた接続は無視する
+            }
+        }
+    }
+
+    private void handleSelectedKeys() {
+        Iterator<SelectionKey> it = mSelector.selectedKeys().iterator();
+        while (it.hasNext()) {
+            SelectionKey key = it.next();
+            it.remove();
+
+            if (!key.isValid()) {
+                continue;
+            }
+
+            if (key.isAcceptable()) {
+                accept();
+                continue;
+            }
+
+            Tunnel tunnel = (Tunnel) key.attachment();
+            try {
+                if (key.isReadable()) {
+                    tunnel.onReadable();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    tunnel.onWritable();
+                }
+            } catch (IOException | CancelledKeyException e) {
+                if (DEBUG) {
+                    Log.w(TAG, "WebServer#handleSelectedKeys", e);
+                }
+                tunnel.close();
+            }
+        }
+    }
+
+    private void accept() {
+        SocketChannel channel = null;
+        try {
+            channel = mServerChannel.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+
+            final Tunnel tunnel = new Tunnel(channel);
+            tunnel.mKey = channel.register(mSelector, 0, tunnel);
+            mTunnelMap.put(tunnel.mConnectionId, tunnel);
+
+            if (DEBUG) {
+                Log.i(TAG, "Tunnel Start. Socket=" + channel.socket());
+            }
+
+            onConnected();
+
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    tunnel.connectP2P();
+                }
+            });
+        } catch (IOException e) {
+            if (DEBUG) {
+                Log.w(TAG, "WebServer#accept", e);
+            }
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e1) {
+                    // ignore.
+                }
+            }
+        }
+    }
+
+    private ServerSocketChannel openServerSocket() throws IOException {
         for (int i = 9000; i < 10000; i++) {
+            ServerSocketChannel channel = ServerSocketChannel.open();
             try {
-                return new ServerSocket(i);
+                channel.socket().bind(new InetSocketAddress(i));
+                return channel;
             } catch (IOException e) {
+                channel.close();
                 if (DEBUG) {
                     Log.w(TAG, "already use port=" + i);
                 }
@@ -167,33 +333,73 @@ public class WebServer extends AWSIotP2PManager {
         return out.toByteArray();
     }
 
-    private class ServerRunnable implements Runnable {
-        private static final int BUF_SIZE = 1024 * 8;
-        private Socket mSocket;
-        private boolean mStopFlag;
-        private P2PConnection mP2PConnection;
-        private int mConnectionId;
 
-        public ServerRunnable(final Socket socket) {
+    /**
+     * ローカルのソケットとP2Pの接続を中継する.
+     * <p>
+     * ソケットの読み書きはセレクタのスレッドで行う。
+     * </p>
+     */
+    private class Tunnel {
+        private final SocketChannel mChannel;
+        private final int mConnectionId;
+        private final TunnelStats mStats;
+        private SelectionKey mKey;
+        private volatile P2PConnection mP2PConnection;
+
+        /** ソケットから読み込んだデータ. P2Pへの送信が終わるまで再利用しない. */
+        private final ByteBuffer mReadBuffer = ByteBuffer.allocate(BUF_SIZE);
+
+        /** ソケットに書き込むデータ. */
+        private final ArrayDeque<ByteBuffer> mWriteQueue = new ArrayDeque<>();
+
+        /** ソケットに書き込むデータのバイト数. */
+        private int mQueuedBytes;
+
+        /** P2Pに接続済みの場合はtrue. */
+        private boolean mP2PConnected;
+
+        /** HTTPヘッダを送信済みの場合はtrue. */
+        private boolean mHeaderSent;
+
+        /** P2Pへ送信中の場合はtrue. */
+        private boolean mSending;
+
+        /** ソケットの読み込みが終わった場合はtrue. */
+        private boolean mInputShutdown;
+
+        /** キューのデータを書き込んだら閉じる場合はtrue. */
+        private boolean mCloseAfterFlush;
+
+        /** エラーのレスポンスを送信済みの場合はtrue. */
+        private boolean mErrorSent;
+
+        /** 閉じた場合はtrue. */
+        private boolean mClosed;
+
+        Tunnel(final SocketChannel channel) {
             mConnectionId = P2PConnection.generateConnectionId();
-            mSocket = socket;
+            mChannel = channel;
+            mStats = new TunnelStats(mConnectionId);
         }
 
         private void connectP2P() {
             try {
-                mP2PConnection = new P2PConnection(mConnectionId);
-                mP2PConnection.setOnP2PConnectionListener(mOnP2PConnectionListener);
-                mP2PConnection.open();
+                P2PConnection connection = new P2PConnection(mConnectionId);
+                connection.setOnP2PConnectionListener(mOnP2PConnectionListener);
+                mP2PConnection = connection;
+                connection.open();
             } catch (IOException e) {
                 if (DEBUG) {
-                    Log.w(TAG, "ServerRunnable#connectP2P");
+                    Log.w(TAG, "Tunnel#connectP2P");
                 }
+                sendFailedToConnect();
             }
         }
 
         private void onReceivedSignaling(final String signaling) {
             if (DEBUG) {
-                Log.i(TAG, "ServerRunnable#onReceivedSignaling");
+                Log.i(TAG, "Tunnel#onReceivedSignaling");
             }
 
             if (mP2PConnection != null) {
@@ -201,7 +407,7 @@ public class WebServer extends AWSIotP2PManager {
                     mP2PConnection.close();
                 } catch (IOException e) {
                     if (DEBUG) {
-                        Log.w(TAG, "ServerRunnable#onReceivedSignaling", e);
+                        Log.w(TAG, "Tunnel#onReceivedSignaling", e);
                     }
                 }
             }
@@ -209,106 +415,242 @@ public class WebServer extends AWSIotP2PManager {
             mP2PConnection = createP2PConnection(signaling, mOnP2PConnectionListener);
             if (mP2PConnection == null) {
                 sendFailedToConnect();
-                mStopFlag = true;
             }
         }
 
-        private void relayHttpRequest() {
-            final byte[] buf = new byte[BUF_SIZE];
-            int headerSize = 0;
-            int readLength = 0;
-            int read;
+        /**
+         * ソケットからデータを読み込んでP2Pへ送信する.
+         * <p>
+         * 最初のHTTPヘッダはHostを書き換えてから送信する。
+         * </p>
+         */
+        private void onReadable() throws IOException {
+            int read = mChannel.read(mReadBuffer);
+            if (read < 0) {
+                mInputShutdown = true;
+                updateInterestOps();
+                return;
+            }
 
-            if (DEBUG) {
-                Log.e(TAG, "WebServer#relayHttpRequest");
+            if (!mHeaderSent) {
+                byte[] buf = mReadBuffer.array();
+                int readLength = mReadBuffer.position();
+                int headerSize = findHeaderEnd(buf, readLength);
+                if (headerSize == 0) {
+                    if (!mReadBuffer.hasRemaining()) {
+                        // HTTPヘッダが大きすぎる
+                        // 閉じる処理がセレクタで実行されるまでに、再び読み込まないようにする
+                        mCloseAfterFlush = true;
+                        updateInterestOps();
+                        sendFailedToConnect();
+                    }
+                    return;
+                }
+                mHeaderSent = true;
+
+                byte[] header = decodeHeader(buf, headerSize);
+                byte[] data = new byte[header.length + readLength - headerSize];
+                System.arraycopy(header, 0, data, 0, header.length);
+                System.arraycopy(buf, headerSize, data, header.length, readLength - headerSize);
+                sendToP2P(data, data.length);
+            } else if (mReadBuffer.position() > 0) {
+                sendToP2P(mReadBuffer.array(), mReadBuffer.position());
             }
+        }
 
-            try {
-                InputStream in = mSocket.getInputStream();
-                read = in.read(buf, 0, BUF_SIZE);
-                if (read == -1) {
-                    // error
+        /**
+         * P2Pへ送信する.
+         * <p>
+         * 送信が終わるまでソケットからの読み込みを止める。
+         * </p>
+         */
+        private void sendToP2P(final byte[] data, final int length) {
+            mSending = true;
+            updateInterestOps();
+
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        mP2PConnection.sendData(data, 0, length);
+                        mStats.addSentBytes(length);
+                    } catch (Exception e) {
+                        if (DEBUG) {
+                            Log.w(TAG, "Tunnel#sendToP2P", e);
+                        }
+                        close();
+                        return;
+                    }
+
+                    runOnSelector(new Runnable() {
+                        @Override
+                        public void run() {
+                            mReadBuffer.clear();
+                            mSending = false;
+                            updateInterestOps();
+                        }
+                    });
+                }
+            });
+        }
+
+        /**
+         * P2Pから受信したデータをソケットに書き込むキューに追加する.
+         * <p>
+         * キューのバイト数が多い場合は、書き込みが進むまで呼び出したスレッドを待たせる。
+         * </p>
+         */
+        private void enqueue(final byte[] data) {
+            synchronized (mWriteQueue) {
+                if (mClosed) {
                     return;
                 }
+                mWriteQueue.add(ByteBuffer.wrap(data));
+                mQueuedBytes += data.length;
+            }
+            runOnSelector(new Runnable() {
+                @Override
+                public void run() {
+                    updateInterestOps();
+                }
+            });
+
+            synchronized (mWriteQueue) {
+                while (!mClosed && mQueuedBytes > HIGH_WATER_MARK) {
+                    try {
+                        mWriteQueue.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
 
-                while (read > 0) {
-                    readLength += read;
-                    headerSize = findHeaderEnd(buf, readLength);
-                    if (headerSize > 0) {
+        /**
+         * キューのデータをソケットに書き込む.
+         */
+        private void onWritable() throws IOException {
+            boolean empty;
+            synchronized (mWriteQueue) {
+                ByteBuffer buf;
+                while ((buf = mWriteQueue.peek()) != null) {
+                    int written = mChannel.write(buf);
+                    mQueuedBytes -= written;
+                    mStats.addReceivedBytes(written);
+                    if (buf.hasRemaining()) {
                         break;
                     }
-                    read = in.read(buf, readLength, BUF_SIZE - readLength);
+                    mWriteQueue.poll();
+                }
+                if (mQueuedBytes <= LOW_WATER_MARK) {
+                    mWriteQueue.notifyAll();
                 }
+                empty = mWriteQueue.isEmpty();
+            }
 
-                mP2PConnection.sendData(decodeHeader(buf, headerSize));
-                mP2PConnection.sendData(buf, headerSize, readLength - headerSize);
+            if (empty && mCloseAfterFlush) {
+                close();
+            } else {
+                updateInterestOps();
+            }
+        }
 
-                while (!mStopFlag && (read = in.read(buf)) != -1) {
-                    mP2PConnection.sendData(buf, 0, read);
+        /**
+         * キューのデータを書き込んでから閉じる.
+         */
+        private void closeAfterFlush() {
+            runOnSelector(new Runnable() {
+                @Override
+                public void run() {
+                    mCloseAfterFlush = true;
+                    boolean empty;
+                    synchronized (mWriteQueue) {
+                        empty = mWriteQueue.isEmpty();
+                    }
+                    if (empty) {
+                        close();
+                    } else {
+                        updateInterestOps();
+                    }
                 }
-            } catch (Exception e) {
-                if (DEBUG) {
-                    Log.w(TAG, "ServerRunnable#relayHttpRequest", e);
+            });
+        }
+
+        /**
+         * 状態に合わせて監視するイベントを変更する. セレクタのスレッドから呼び出すこと.
+         */
+        private void updateInterestOps() {
+            if (mKey == null || !mKey.isValid()) {
+                return;
+            }
+            int ops = 0;
+            if (mP2PConnected && !mSending && !mInputShutdown && !mCloseAfterFlush) {
+                ops |= SelectionKey.OP_READ;
+            }
+            synchronized (mWriteQueue) {
+                if (!mWriteQueue.isEmpty()) {
+                    ops |= SelectionKey.OP_WRITE;
                 }
             }
+            mKey.interestOps(ops);
         }
 
+        /**
+         * エラーのレスポンスを送信して閉じる.
+         * <p>
+         * P2Pの接続の失敗とタイムアウトなどが重なっても、レスポンスは1回だけ送信する。
+         * </p>
+         */
         private void sendFailedToConnect() {
-            try {
-                mSocket.getOutputStream().write(generateInternalServerError().getBytes());
-                mSocket.getOutputStream().flush();
-            } catch (IOException e) {
-                if (DEBUG) {
-                    Log.w(TAG, "", e);
+            synchronized (mWriteQueue) {
+                if (mErrorSent || mClosed) {
+                    return;
                 }
+                mErrorSent = true;
             }
+            enqueue(generateInternalServerError().getBytes());
+            closeAfterFlush();
         }
 
-        @Override
-        public void run() {
-            if (DEBUG) {
-                Log.i(TAG, "ServerRunnable Start. Socket=" + mSocket);
+        private void close() {
+            synchronized (mWriteQueue) {
+                if (mClosed) {
+                    return;
+                }
+                mClosed = true;
+                mWriteQueue.clear();
+                mQueuedBytes = 0;
+                mWriteQueue.notifyAll();
             }
-            mServerRunnableMap.put(mConnectionId, this);
-
-            onConnected();
 
-            try {
-                connectP2P();
-
-                while (!mStopFlag && !mSocket.isClosed()) {
-                    Thread.sleep(1000);
-                }
-            } catch (Exception e) {
-                if (DEBUG) {
-                    Log.w(TAG, "ServerRunnable#run", e);
-                }
-                sendFailedToConnect();
-            } finally {
-                if (DEBUG) {
-                    Log.i(TAG, "ServerRunnable End. Socket=" + mSocket);
-                }
+            mStats.finish();
+            Log.i(TAG, "Tunnel End. " + mStats);
 
-                mServerRunnableMap.remove(mConnectionId);
+            mTunnelMap.remove(mConnectionId);
 
-                if (mP2PConnection != null) {
-                    try {
-                        mP2PConnection.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
+            if (mP2PConnection != null) {
+                try {
+                    mP2PConnection.close();
+                } catch (IOException e) {
+                    if (DEBUG) {
+                        Log.w(TAG, "Tunnel#close", e);
                     }
                 }
+            }
 
-                if (mSocket != null) {
-                    try {
-                        mSocket.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
+            if (mKey != null) {
+                mKey.cancel();
+            }
+            try {
+                mChannel.close();
+            } catch (IOException e) {
+                if (DEBUG) {
+                    Log.w(TAG, "Tunnel#close", e);
                 }
-
-                onDisconnected();
             }
+
+            onDisconnected();
         }
 
         private P2PConnection.OnP2PConnectionListener mOnP2PConnectionListener = new P2PConnection.OnP2PConnectionListener() {
@@ -318,7 +660,7 @@ public class WebServer extends AWSIotP2PManager {
                     Log.d(TAG, "WebServer#onRetrievedAddress=" + address + ":" + port);
                 }
 
-                onNotifySignaling(createSignaling(mContext, mP2PConnection.getConnectionId(), address, port));
+                onNotifySignaling(createSignaling(mContext, mConnectionId, address, port));
             }
 
             @Override
@@ -327,10 +669,11 @@ public class WebServer extends AWSIotP2PManager {
                     Log.i(TAG, "WebServer#onConnected: " + address + ":" +  port);
                 }
 
-                Executors.newSingleThreadExecutor().submit(new Runnable() {
+                runOnSelector(new Runnable() {
                     @Override
                     public void run() {
-                        relayHttpRequest();
+                        mP2PConnected = true;
+                        updateInterestOps();
                     }
                 });
             }
@@ -341,13 +684,7 @@ public class WebServer extends AWSIotP2PManager {
                     Log.i(TAG, "WebServer#onReceivedData: " + address + ":" + port + " " + data.length);
                 }
 
-                try {
-                    mSocket.getOutputStream().write(data);
-                } catch (IOException e) {
-                    if (DEBUG) {
-                        Log.e(TAG, "WebServer#onReceivedData:", e);
-                    }
-                }
+                enqueue(data);
             }
 
             @Override
@@ -356,14 +693,7 @@ public class WebServer extends AWSIotP2PManager {
                     Log.i(TAG, "WebServer#onDisconnected: " + address + ":" +  port);
                 }
 
-                try {
-                    mSocket.close();
-                } catch (IOException e) {
-                    if (DEBUG) {
-                        Log.e(TAG, "WebServer#onDisconnected:", e);
-                    }
-                }
-                mStopFlag = true;
+                closeAfterFlush();
             }
 
             @Override
@@ -373,15 +703,6 @@ public class WebServer extends AWSIotP2PManager {
                 }
 
                 sendFailedToConnect();
-
-                try {
-                    mSocket.close();
-                } catch (IOException e) {
-                    if (DEBUG) {
-                        Log.e(TAG, "WebServer#onTimeout:", e);
-                    }
-                }
-                mStopFlag = true;
             }
         };
     }
@@ -0,0 +1,101 @@
+/*
+ AWSIotBase64.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.awsiot.cores.util;
+
+/**
+ * フレームの符号化に使用するBase64のユーティリティクラス.
+ * <p>
+ * android.util.Base64はJVMの単体テストで使用できないので、改行を含まない標準のBase64のみを実装する。
+ * </p>
+ */
+public final class AWSIotBase64 {
+
+    /** Base64の文字. */
+    private static final char[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    /** Base64の文字から値への変換表. Base64の文字でない場合は-1. */
+    private static final int[] VALUES = new int[128];
+
+    static {
+        for (int i = 0; i < VALUES.length; i++) {
+            VALUES[i] = -1;
+        }
+        for (int i = 0; i < ALPHABET.length; i++) {
+            VALUES[ALPHABET[i]] = i;
+        }
+    }
+
+    private AWSIotBase64() {
+    }
+
+    /**
+     * データをBase64で符号化する.
+     * @param data データ
+     * @return 符号化した文字列
+     */
+    public static String encode(final byte[] data) {
+        StringBuilder builder = new StringBuilder((data.length + 2) / 3 * 4);
+        for (int i = 0; i < data.length; i += 3) {
+            int b0 = data[i] & 0xFF;
+            int b1 = i + 1 < data.length ? data[i + 1] & 0xFF : 0;
+            int b2 = i + 2 < data.length ? data[i + 2] & 0xFF : 0;
+            builder.append(ALPHABET[b0 >> 2]);
+            builder.append(ALPHABET[((b0 & 0x03) << 4) | (b1 >> 4)]);
+            builder.append(i + 1 < data.length ? ALPHABET[((b1 & 0x0F) << 2) | (b2 >> 6)] : '=');
+            builder.append(i + 2 < data.length ? ALPHABET[b2 & 0x3F] : '=');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Base64の文字列を復号する.
+     * @param text 符号化した文字列
+     * @return データ
+     * @throws IllegalArgumentException Base64の文字列として不正な場合
+     */
+    public static byte[] decode(final String text) {
+        int length = text.length();
+        if (length % 4 != 0) {
+            throw new IllegalArgumentException("Invalid base64 length: " + length);
+        }
+        int padding = 0;
+        if (length > 0 && text.charAt(length - 1) == '=') {
+            padding++;
+            if (text.charAt(length - 2) == '=') {
+                padding++;
+            }
+        }
+
+        byte[] data = new byte[length / 4 * 3 - padding];
+        int pos = 0;
+        for (int i = 0; i < length; i += 4) {
+            int c0 = valueOf(text, i);
+            int c1 = valueOf(text, i + 1);
+            int c2 = i + 2 < length - padding ? valueOf(text, i + 2) : 0;
+            int c3 = i + 3 < length - padding ? valueOf(text, i + 3) : 0;
+            int bits = (c0 << 18) | (c1 << 12) | (c2 << 6) | c3;
+            data[pos++] = (byte) (bits >> 16);
+            if (pos < data.length) {
+                data[pos++] = (byte) (bits >> 8);
+            }
+            if (pos < data.length) {
+                data[pos++] = (byte) bits;
+            }
+        }
+        return data;
+    }
+
+    private static int valueOf(final String text, final int index) {
+        char c = text.charAt(index);
+        int value = c < VALUES.length ? VALUES[c] : -1;
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid base64 character at " + index);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ AWSIotFrameCodec.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.awsiot.cores.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 複数のMQTTメッセージを1つのフレームにまとめる、またはフレームから取り出すクラス.
+ * <p>
+ * フレームは以下のいずれかの形式の文字列となる。
+ * <ul>
+ * <li>JSONのメッセージ1つ. 従来のメッセージと同じ。</li>
+ * <li>{@code "~f"}の後に、{@code "文字数:メッセージ"}を並べたもの.</li>
+ * <li>{@code "~z"}の後に、上記のどちらかをDeflateで圧縮してBase64で符号化したもの.</li>
+ * </ul>
+ * JSONのメッセージは必ず{@code '{'}で始まるので、従来のメッセージとは先頭の文字で区別できる。
+ * </p>
+ */
+public final class AWSIotFrameCodec {
+
+    /** デフォルトの圧縮するフレームの文字数. */
+    public static final int DEFAULT_COMPRESS_THRESHOLD = 1024;
+
+    /** 複数のメッセージをまとめたフレームの先頭. */
+    private static final String BATCH_PREFIX = "~f";
+
+    /** 圧縮したフレームの先頭. */
+    private static final String DEFLATE_PREFIX = "~z";
+
+    /** 展開するフレームの最大バイト数. */
+    private static final int MAX_INFLATED_SIZE = 8 * 1024 * 1024;
+
+    /** 文字コード. */
+    private static final String CHARSET = "UTF-8";
+
+    private AWSIotFrameCodec() {
+    }
+
+    /**
+     * メッセージを1つのフレームにまとめる.
+     * <p>
+     * フレームの文字数が compressThreshold 以上で、圧縮すると小さくなる場合は圧縮する。
+     * </p>
+     * @param messages メッセージ
+     * @param compressThreshold 圧縮するフレームの文字数. 0以下の場合は圧縮しない
+     * @return フレーム
+     */
+    public static String encode(final List<String> messages, final int compressThreshold) {
+        if (messages == null || messages.isEmpty()) {
+            throw new IllegalArgumentException("messages is empty.");
+        }
+
+        String frame;
+        if (messages.size() == 1) {
+            frame = messages.get(0);
+        } else {
+            StringBuilder builder = new StringBuilder(BATCH_PREFIX);
+            for (String message : messages) {
+                builder.append(message.length()).append(':').append(message);
+            }
+            frame = builder.toString();
+        }
+
+        if (compressThreshold > 0 && frame.length() >= compressThreshold) {
+            String compressed = DEFLATE_PREFIX + AWSIotBase64.encode(deflate(frame));
+            if (compressed.length() < frame.length()) {
+                return compressed;
+            }
+        }
+        return frame;
+    }
+
+    /**
+     * フレームからメッセージを取り出す.
+     * @param frame フレーム
+     * @return メッセージ
+     * @throws IllegalArgumentException フレームの形式が不正な場合
+     */
+    public static List<String> decode(final String frame) {
+        if (frame == null || frame.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (frame.startsWith(DEFLATE_PREFIX)) {
+            String inflated = inflate(AWSIotBase64.decode(frame.substring(DEFLATE_PREFIX.length())));
+            if (inflated.startsWith(DEFLATE_PREFIX)) {
+                throw new IllegalArgumentException("Nested compressed frame.");
+            }
+            return decodeUncompressed(inflated);
+        }
+        return decodeUncompressed(frame);
+    }
+
+    /**
+     * 圧縮されていないフレームからメッセージを取り出す.
+     * @param frame フレーム
+     * @return メッセージ
+     */
+    private static List<String> decodeUncompressed(final String frame) {
+        if (!frame.startsWith(BATCH_PREFIX)) {
+            return Collections.singletonList(frame);
+        }
+
+        List<String> messages = new ArrayList<>();
+        int pos = BATCH_PREFIX.length();
+        while (pos < frame.length()) {
+            int colon = frame.indexOf(':', pos);
+            if (colon < 0) {
+                throw new IllegalArgumentException("Invalid frame: no length at " + pos);
+            }
+            int length;
+            try {
+                length = Integer.parseInt(frame.substring(pos, colon));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid frame: bad length at " + pos);
+            }
+            int start = colon + 1;
+            if (length < 0 || start + length > frame.length()) {
+                throw new IllegalArgumentException("Invalid frame: length out of range at " + pos);
+            }
+            messages.add(frame.substring(start, start + length));
+            pos = start + length;
+        }
+        return messages;
+    }
+
+    /**
+     * 文字列をDeflateで圧縮する.
+     * @param text 文字列
+     * @return 圧縮したデータ
+     */
+    private static byte[] deflate(final String text) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(text.getBytes(CHARSET));
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(text.length() / 2 + 16);
+            byte[] buf = new byte[4096];
+            while (!deflater.finished()) {
+                int len = deflater.deflate(buf);
+                out.write(buf, 0, len);
+            }
+            return out.toByteArray();
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Deflateで圧縮されたデータを展開する.
+     * @param data 圧縮したデータ
+     * @return 文字列
+     */
+    private static String inflate(final byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buf = new byte[4096];
+            while (!inflater.finished()) {
+                int len = inflater.inflate(buf);
+                if (len == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated compressed frame.");
+                }
+                out.write(buf, 0, len);
+                if (out.size() > MAX_INFLATED_SIZE) {
+                    throw new IllegalArgumentException("Compressed frame is too large.");
+                }
+            }
+            return out.toString(CHARSET);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Invalid compressed frame.", e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
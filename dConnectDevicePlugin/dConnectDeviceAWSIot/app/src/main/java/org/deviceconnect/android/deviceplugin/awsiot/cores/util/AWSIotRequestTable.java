@@ -0,0 +1,186 @@
+/*
+ AWSIotRequestTable.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.awsiot.cores.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * レスポンス待ちのリクエストをリクエストコードで管理するテーブル.
+ * <p>
+ * リクエストコードの下位ビットにテーブルのインデックスを埋め込むので、
+ * レスポンスからリクエストを探す時にハッシュ計算を行わずに配列を参照するだけでよい。
+ * 上位ビットには世代番号を格納し、タイムアウトした後に届いた古いレスポンスを別のリクエストと取り違えないようにする。
+ * </p>
+ * <p>
+ * タイムアウトはリクエストごとにタイマーを用意せず、{@link #removeExpired()}を定期的に呼び出して確認する。
+ * </p>
+ * @param <T> リクエストの型
+ */
+public class AWSIotRequestTable<T> {
+
+    /** デフォルトのテーブルの大きさ. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /** インデックスのビット数. */
+    private static final int INDEX_BITS = 10;
+
+    /** インデックスを取り出すマスク. */
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+
+    /** 世代番号を取り出すマスク. リクエストコードが正の数になるように20ビットとする. */
+    private static final int GENERATION_MASK = (1 << 20) - 1;
+
+    /** リクエスト. */
+    private final Object[] mValues = new Object[DEFAULT_CAPACITY];
+
+    /** リクエストコード. */
+    private final int[] mCodes = new int[DEFAULT_CAPACITY];
+
+    /** タイムアウトする時刻(ms). */
+    private final long[] mDeadlines = new long[DEFAULT_CAPACITY];
+
+    /** 次に探し始めるインデックス. */
+    private int mNext;
+
+    /** 次に使用する世代番号. */
+    private int mGeneration = 1;
+
+    /** 登録されているリクエストの数. */
+    private int mSize;
+
+    /**
+     * リクエストを登録する.
+     * @param value リクエスト
+     * @param timeout タイムアウト(ms)
+     * @return リクエストコード. テーブルに空きが無い場合は-1
+     */
+    public synchronized int put(final T value, final long timeout) {
+        if (value == null) {
+            throw new IllegalArgumentException("value is null.");
+        }
+        if (mSize >= DEFAULT_CAPACITY) {
+            return -1;
+        }
+
+        int index = mNext;
+        while (mValues[index] != null) {
+            index = (index + 1) & INDEX_MASK;
+        }
+        mNext = (index + 1) & INDEX_MASK;
+
+        int code = (mGeneration << INDEX_BITS) | index;
+        mGeneration = (mGeneration + 1) & GENERATION_MASK;
+        if (mGeneration == 0) {
+            mGeneration = 1;
+        }
+
+        mValues[index] = value;
+        mCodes[index] = code;
+        mDeadlines[index] = System.currentTimeMillis() + timeout;
+        mSize++;
+        return code;
+    }
+
+    /**
+     * リクエストを取得する.
+     * @param code リクエストコード
+     * @return リクエスト. 登録されていない場合はnull
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized T get(final int code) {
+        int index = indexOf(code);
+        return index < 0 ? null : (T) mValues[index];
+    }
+
+    /**
+     * リクエストを削除する.
+     * @param code リクエストコード
+     * @return 削除したリクエスト. 登録されていない場合はnull
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized T remove(final int code) {
+        int index = indexOf(code);
+        if (index < 0) {
+            return null;
+        }
+        T value = (T) mValues[index];
+        clear(index);
+        return value;
+    }
+
+    /**
+     * タイムアウトしたリクエストを削除する.
+     * @return 削除したリクエスト
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized List<T> removeExpired() {
+        List<T> expired = new ArrayList<>();
+        if (mSize == 0) {
+            return expired;
+        }
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < DEFAULT_CAPACITY; i++) {
+            if (mValues[i] != null && mDeadlines[i] <= now) {
+                expired.add((T) mValues[i]);
+                clear(i);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * 全てのリクエストを削除する.
+     * @return 削除したリクエスト
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized List<T> clear() {
+        List<T> values = new ArrayList<>();
+        for (int i = 0; i < DEFAULT_CAPACITY; i++) {
+            if (mValues[i] != null) {
+                values.add((T) mValues[i]);
+                clear(i);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 登録されているリクエストの数を取得する.
+     * @return リクエストの数
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * リクエストコードからインデックスを取得する.
+     * @param code リクエストコード
+     * @return インデックス. 登録されていない場合は-1
+     */
+    private int indexOf(final int code) {
+        if (code < 0) {
+            return -1;
+        }
+        int index = code & INDEX_MASK;
+        if (mValues[index] == null || mCodes[index] != code) {
+            return -1;
+        }
+        return index;
+    }
+
+    /**
+     * 指定したインデックスのリクエストを削除する.
+     * @param index インデックス
+     */
+    private void clear(final int index) {
+        mValues[index] = null;
+        mCodes[index] = 0;
+        mDeadlines[index] = 0;
+        mSize--;
+    }
+}
@@ -116,6 +116,15 @@ public final class AWSIotUtil {
         return "{\"" + KEY_RESPONSE + "\":" + response + ",\"" + KEY_REQUEST_CODE + "\":" + requestCode + "}";
     }
 
+    /**
+     * {@link #createResponse(long, String)}で作成したメッセージか確認する.
+     * @param message MQTTのメッセージ
+     * @return レスポンスの場合はtrue、それ以外はfalse
+     */
+    public static boolean isResponse(final String message) {
+        return message != null && message.startsWith("{\"" + KEY_RESPONSE + "\":");
+    }
+
     public static String createRemoteP2P(final String p2p) {
         return createRemoteP2P(generateRequestCode(), p2p);
     }
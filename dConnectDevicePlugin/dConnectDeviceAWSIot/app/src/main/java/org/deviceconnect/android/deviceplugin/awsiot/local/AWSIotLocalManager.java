@@ -12,13 +12,18 @@ import android.os.Handler;
 import android.util.Log;
 
 import org.deviceconnect.android.deviceplugin.awsiot.cores.core.AWSIotController;
+import org.deviceconnect.android.deviceplugin.awsiot.cores.core.AWSIotMessageBatcher;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.core.AWSIotPrefUtil;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.core.RemoteDeviceConnectManager;
+import org.deviceconnect.android.deviceplugin.awsiot.cores.p2p.TunnelStats;
+import org.deviceconnect.android.deviceplugin.awsiot.cores.util.AWSIotFrameCodec;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.util.AWSIotUtil;
 import org.deviceconnect.android.deviceplugin.awsiot.remote.BuildConfig;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -37,6 +42,7 @@ public class AWSIotLocalManager {
     private String mSessionKey = UUID.randomUUID().toString();
 
     private AWSIotController mIot;
+    private AWSIotMessageBatcher mMessageBatcher;
 
     private AWSIotPrefUtil mPrefUtil;
     private long mSyncTime = 0;
@@ -57,6 +63,23 @@ public class AWSIotLocalManager {
         return mIot;
     }
 
+    /**
+     * 中継中の接続の転送量を取得する.
+     * @return 転送量のリスト
+     */
+    public List<TunnelStats> getTunnelStats() {
+        List<TunnelStats> stats = new ArrayList<>();
+        AWSIotWebLocalServerManager serverManager = mAWSIotWebServerManager;
+        if (serverManager != null) {
+            stats.addAll(serverManager.getTunnelStats());
+        }
+        AWSIotWebLocalClientManager clientManager = mAWSIotWebClientManager;
+        if (clientManager != null) {
+            stats.addAll(clientManager.getTunnelStats());
+        }
+        return stats;
+    }
+
     public void connectAWSIoT() {
         if (DEBUG) {
             Log.i(TAG, "AWSIotLocalManager#connectAWSIoT");
@@ -65,6 +88,15 @@ public class AWSIotLocalManager {
         mAWSIotWebClientManager = new AWSIotWebLocalClientManager(mContext, this);
         mAWSIotWebServerManager = new AWSIotWebLocalServerManager(mContext, this);
 
+        if (mMessageBatcher == null && mPrefUtil.isRelayFraming()) {
+            mMessageBatcher = new AWSIotMessageBatcher(new AWSIotMessageBatcher.Publisher() {
+                @Override
+                public boolean publish(final String topic, final String message) {
+                    return mIot.publish(topic, message);
+                }
+            });
+        }
+
         DConnectHelper.INSTANCE.openWebSocket(mOnMessageEventListener);
 
         subscribeTopic();
@@ -89,31 +121,36 @@ public class AWSIotLocalManager {
             mAWSIotWebServerManager = null;
         }
 
+        if (mMessageBatcher != null) {
+            mMessageBatcher.destroy();
+            mMessageBatcher = null;
+        }
+
         unsubscribeTopic();
     }
 
     public void publish(final String message) {
         if (mIot != null) {
-            mIot.publish(mRemoteManager.getResponseTopic(), message);
+            publish(mRemoteManager.getResponseTopic(), message);
         }
     }
 
     public void publishEvent(final String message) {
         mSyncTime = (mPrefUtil.getSyncTime()) * 1000;
         if (mSyncTime <= 0) {
-            mIot.publish(mRemoteManager.getEventTopic(), message);
+            publish(mRemoteManager.getEventTopic(), message);
         } else {
             mSendData = message;
             mIsSendWait = true;
             if (!mIsTimerEnable) {
                 mIsTimerEnable = true;
-                mIot.publish(mRemoteManager.getEventTopic(), mSendData);
+                publish(mRemoteManager.getEventTopic(), mSendData);
                 mIsSendWait = false;
                 mTimerHandler.postDelayed(new Runnable() {
                     @Override
                     public void run() {
                         if (mIsSendWait) {
-                            mIot.publish(mRemoteManager.getEventTopic(), mSendData);
+                            publish(mRemoteManager.getEventTopic(), mSendData);
                             mIsSendWait = false;
                             mTimerHandler.postDelayed(this, mSyncTime);
                         } else {
@@ -125,6 +162,15 @@ public class AWSIotLocalManager {
         }
     }
 
+    private void publish(final String topic, final String message) {
+        AWSIotMessageBatcher batcher = mMessageBatcher;
+        if (batcher != null) {
+            batcher.offer(topic, message);
+        } else {
+            mIot.publish(topic, message);
+        }
+    }
+
     private void subscribeTopic() {
         if (mIot != null) {
             mIot.subscribe(mRemoteManager.getRequestTopic(), mMessageCallback);
@@ -223,7 +269,19 @@ public class AWSIotLocalManager {
             mExecutorService.submit(new Runnable() {
                 @Override
                 public void run() {
-                    parseMQTT(message);
+                    List<String> messages;
+                    try {
+                        messages = AWSIotFrameCodec.decode(message);
+                    } catch (IllegalArgumentException e) {
+                        if (DEBUG) {
+                            Log.w(TAG, "Invalid frame.", e);
+                        }
+                        return;
+                    }
+
+                    for (String m : messages) {
+                        parseMQTT(m);
+                    }
                 }
             });
         }
@@ -9,6 +9,7 @@ package org.deviceconnect.android.deviceplugin.awsiot.local;
 import android.content.Context;
 import android.util.Log;
 
+import org.deviceconnect.android.deviceplugin.awsiot.cores.p2p.TunnelStats;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.p2p.WebClient;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.util.AWSIotUtil;
 import org.deviceconnect.android.deviceplugin.awsiot.remote.BuildConfig;
@@ -41,6 +42,23 @@ public class AWSIotWebLocalClientManager {
         mWebClientList.clear();
     }
 
+    /**
+     * 中継中の接続の転送量を取得する.
+     * @return 転送量のリスト
+     */
+    public List<TunnelStats> getTunnelStats() {
+        List<TunnelStats> stats = new ArrayList<>();
+        synchronized (mWebClientList) {
+            for (WebClient client : mWebClientList) {
+                TunnelStats s = client.getTunnelStats();
+                if (s != null) {
+                    stats.add(s);
+                }
+            }
+        }
+        return stats;
+    }
+
     public void onReceivedSignaling(final String message) {
         if (DEBUG) {
             Log.i(TAG, "AWSIotWebLocalClientManager#onReceivedSignaling:");
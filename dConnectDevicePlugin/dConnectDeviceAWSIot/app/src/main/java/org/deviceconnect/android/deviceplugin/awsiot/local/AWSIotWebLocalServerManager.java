@@ -9,6 +9,7 @@ package org.deviceconnect.android.deviceplugin.awsiot.local;
 import android.content.Context;
 import android.util.Log;
 
+import org.deviceconnect.android.deviceplugin.awsiot.cores.p2p.TunnelStats;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.p2p.WebServer;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.util.AWSIotUtil;
 import org.deviceconnect.android.deviceplugin.awsiot.remote.BuildConfig;
@@ -40,6 +41,20 @@ public class AWSIotWebLocalServerManager {
         mWebServerList.clear();
     }
 
+    /**
+     * 中継中の接続の転送量を取得する.
+     * @return 転送量のリスト
+     */
+    public List<TunnelStats> getTunnelStats() {
+        List<TunnelStats> stats = new ArrayList<>();
+        synchronized (mWebServerList) {
+            for (WebServer server : mWebServerList) {
+                stats.addAll(server.getTunnelStats());
+            }
+        }
+        return stats;
+    }
+
     public String createWebServer(final String address, final String path) {
         if (DEBUG) {
             Log.i(TAG, "createWebServer: address=" + address + " path=" + path);
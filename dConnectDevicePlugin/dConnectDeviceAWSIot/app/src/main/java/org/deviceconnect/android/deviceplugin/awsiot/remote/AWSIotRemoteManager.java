@@ -10,14 +10,22 @@ import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Parcelable;
+import android.util.JsonReader;
+import android.util.JsonToken;
 import android.util.Log;
 
 import org.deviceconnect.android.deviceplugin.awsiot.AWSIotDeviceManager;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.core.AWSIotController;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.core.AWSIotDeviceApplication;
+import org.deviceconnect.android.deviceplugin.awsiot.cores.core.AWSIotMessageBatcher;
+import org.deviceconnect.android.deviceplugin.awsiot.cores.core.AWSIotPrefUtil;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.core.RDCMListManager;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.core.RemoteDeviceConnectManager;
+import org.deviceconnect.android.deviceplugin.awsiot.cores.p2p.TunnelStats;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.p2p.WebClient;
+import org.deviceconnect.android.deviceplugin.awsiot.cores.util.AWSIotFrameCodec;
+import org.deviceconnect.android.deviceplugin.awsiot.cores.util.AWSIotRequestTable;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.util.AWSIotUtil;
 import org.deviceconnect.android.event.Event;
 import org.deviceconnect.android.event.EventManager;
@@ -27,18 +35,15 @@ import org.deviceconnect.android.profile.DConnectProfile;
 import org.deviceconnect.android.profile.ServiceDiscoveryProfile;
 import org.deviceconnect.message.DConnectMessage;
 import org.deviceconnect.message.intent.message.IntentDConnectMessage;
-import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 public class AWSIotRemoteManager {
@@ -52,6 +57,7 @@ public class AWSIotRemoteManager {
     private AWSIotWebClientManager mAWSIotWebClientManager;
     private AWSIotDeviceManager mAWSIotDeviceManager;
     private AWSIotRequestManager mRequestManager;
+    private AWSIotMessageBatcher mMessageBatcher;
 
     private ExecutorService mExecutorService = Executors.newSingleThreadExecutor();
 
@@ -72,6 +78,23 @@ public class AWSIotRemoteManager {
         return mIot;
     }
 
+    /**
+     * 中継中の接続の転送量を取得する.
+     * @return 転送量のリスト
+     */
+    public List<TunnelStats> getTunnelStats() {
+        List<TunnelStats> stats = new ArrayList<>();
+        AWSIotWebServerManager serverManager = mAWSIotWebServerManager;
+        if (serverManager != null) {
+            stats.addAll(serverManager.getTunnelStats());
+        }
+        AWSIotWebClientManager clientManager = mAWSIotWebClientManager;
+        if (clientManager != null) {
+            stats.addAll(clientManager.getTunnelStats());
+        }
+        return stats;
+    }
+
     public void connect() {
         if (DEBUG) {
             Log.i(TAG, "AWSIotRemoteManager#connect");
@@ -88,6 +111,15 @@ public class AWSIotRemoteManager {
         if (mRequestManager == null) {
             mRequestManager = new AWSIotRequestManager();
         }
+
+        if (mMessageBatcher == null && new AWSIotPrefUtil(mContext).isRelayFraming()) {
+            mMessageBatcher = new AWSIotMessageBatcher(new AWSIotMessageBatcher.Publisher() {
+                @Override
+                public boolean publish(final String topic, final String message) {
+                    return mIot.publish(topic, message);
+                }
+            });
+        }
     }
 
     public void disconnect() {
@@ -105,6 +137,11 @@ public class AWSIotRemoteManager {
             mAWSIotWebClientManager = null;
         }
 
+        if (mMessageBatcher != null) {
+            mMessageBatcher.destroy();
+            mMessageBatcher = null;
+        }
+
         if (mRequestManager != null) {
             mRequestManager.destroy();
             mRequestManager = null;
@@ -151,15 +188,9 @@ public class AWSIotRemoteManager {
             }
         });
 
-        int requestCode = AWSIotUtil.generateRequestCode();
-        if (!publish(remote, AWSIotUtil.createRequest(requestCode, message))) {
-            MessageUtils.setIllegalDeviceStateError(response, "Not publish to the mqtt.");
-            return true;
-        }
-
         AWSIotRequest aws = new AWSIotRequest() {
             @Override
-            public void onReceivedMessage(final RemoteDeviceConnectManager remote, final JSONObject responseObj) throws JSONException {
+            public void onReceivedMessage(final RemoteDeviceConnectManager remote, final Bundle responseObj) {
                 if (!mRequestManager.pop(mRequestCode)) {
                     return;
                 }
@@ -167,8 +198,7 @@ public class AWSIotRemoteManager {
                 if (responseObj == null) {
                     MessageUtils.setUnknownError(mResponse);
                 } else {
-                    Bundle b = new Bundle();
-                    AWSIotRemoteUtil.jsonToIntent(responseObj, b, new AWSIotRemoteUtil.ConversionJsonCallback() {
+                    AWSIotRemoteUtil.convertBundle(responseObj, new AWSIotRemoteUtil.ConversionJsonCallback() {
                         @Override
                         public String convertServiceId(final String id) {
                             return id;
@@ -185,16 +215,27 @@ public class AWSIotRemoteManager {
                             return createWebServer(remote, u.getAuthority(), u.getPath() + "?" + u.getEncodedQuery());
                         }
                     });
-                    mResponse.putExtras(b);
+                    mResponse.putExtras(responseObj);
                 }
                 sendResponse(mResponse);
             }
         };
         aws.mRequest = request;
         aws.mResponse = response;
-        aws.mRequestCode = requestCode;
         aws.mRequestCount = 1;
-        mRequestManager.put(requestCode, aws);
+
+        // レスポンスが先に届いても見つけられるように、発行する前に登録しておく
+        int requestCode = mRequestManager.put(aws);
+        if (requestCode < 0) {
+            MessageUtils.setIllegalDeviceStateError(response, "Too many requests.");
+            return true;
+        }
+
+        if (!publish(remote, AWSIotUtil.createRequest(requestCode, message))) {
+            mRequestManager.remove(requestCode);
+            MessageUtils.setIllegalDeviceStateError(response, "Not publish to the mqtt.");
+            return true;
+        }
 
         return false;
     }
@@ -220,32 +261,29 @@ public class AWSIotRemoteManager {
             return true;
         }
 
-        String message = AWSIotRemoteUtil.intentToJson(request, null);
-
-        int count = 0;
-        int requestCode = AWSIotUtil.generateRequestCode();
+        List<RemoteDeviceConnectManager> onlineManagers = new ArrayList<>();
         for (RemoteDeviceConnectManager remote : managers) {
             if (isOnlineManager(remote)) {
-                if (publish(remote, AWSIotUtil.createRequest(requestCode, message))) {
-                    count++;
-                }
+                onlineManagers.add(remote);
             }
         }
 
-        if (count == 0) {
+        if (onlineManagers.isEmpty()) {
             MessageUtils.setUnknownError(response, "There is no managers.");
             return true;
         }
 
+        String message = AWSIotRemoteUtil.intentToJson(request, null);
+
         AWSIotRequest aws = new AWSIotRequest() {
             @Override
-            public void onReceivedMessage(final RemoteDeviceConnectManager remote, final JSONObject responseObj) throws JSONException {
-                if (responseObj != null && responseObj.has(ServiceDiscoveryProfile.PARAM_SERVICES)) {
-                    JSONArray array = responseObj.getJSONArray("services");
-                    for (int i = 0; i < array.length(); i++) {
-                        Bundle service = new Bundle();
-                        JSONObject obj = array.getJSONObject(i);
-                        AWSIotRemoteUtil.jsonToIntent(obj, service, new AWSIotRemoteUtil.ConversionJsonCallback() {
+            public void onReceivedMessage(final RemoteDeviceConnectManager remote, final Bundle responseObj) {
+                Parcelable[] array = responseObj != null
+                        ? responseObj.getParcelableArray(ServiceDiscoveryProfile.PARAM_SERVICES) : null;
+                if (array != null) {
+                    for (Parcelable p : array) {
+                        Bundle service = (Bundle) p;
+                        AWSIotRemoteUtil.convertBundle(service, new AWSIotRemoteUtil.ConversionJsonCallback() {
                             @Override
                             public String convertServiceId(final String id) {
                                 return mAWSIotDeviceManager.generateServiceId(remote, id);
@@ -286,14 +324,40 @@ public class AWSIotRemoteManager {
         };
         aws.mRequest = request;
         aws.mResponse = response;
-        aws.mRequestCode = requestCode;
-        aws.mRequestCount = count;
-        mRequestManager.put(requestCode, aws, 6);
+        aws.mRequestCount = onlineManagers.size();
+
+        int requestCode = mRequestManager.put(aws, 6);
+        if (requestCode < 0) {
+            MessageUtils.setIllegalDeviceStateError(response, "Too many requests.");
+            return true;
+        }
+
+        String mqttMessage = AWSIotUtil.createRequest(requestCode, message);
+        int count = 0;
+        for (RemoteDeviceConnectManager remote : onlineManagers) {
+            if (publish(remote, mqttMessage)) {
+                count++;
+            }
+        }
+
+        if (count == 0) {
+            mRequestManager.remove(requestCode);
+            MessageUtils.setUnknownError(response, "There is no managers.");
+            return true;
+        }
+
+        // 発行に失敗したマネージャは、サービスが無いというレスポンスを受信したものとして扱う
+        for (int i = count; i < onlineManagers.size(); i++) {
+            aws.onReceivedMessage(null, null);
+        }
 
         return false;
     }
 
     public boolean publish(final RemoteDeviceConnectManager remote, final String message) {
+        if (mMessageBatcher != null) {
+            return mMessageBatcher.offer(remote.getRequestTopic(), message);
+        }
         return mIot.publish(remote.getRequestTopic(), message);
     }
 
@@ -336,12 +400,14 @@ public class AWSIotRemoteManager {
     }
 
     private void parseMQTT(final RemoteDeviceConnectManager remote, final String message) {
+        if (AWSIotUtil.isResponse(message)) {
+            // サービス検索などの大きなレスポンスはJSONObjectを作成せずに読み込む
+            onReceivedDeviceConnectResponse(remote, message);
+            return;
+        }
+
         try {
             JSONObject json = new JSONObject(message);
-            JSONObject response = json.optJSONObject(AWSIotUtil.KEY_RESPONSE);
-            if (response != null) {
-                onReceivedDeviceConnectResponse(remote, message);
-            }
             JSONObject p2p = json.optJSONObject(AWSIotUtil.KEY_P2P_REMOTE);
             if (p2p != null) {
                 mAWSIotWebServerManager.onReceivedSignaling(remote, p2p.toString());
@@ -358,17 +424,43 @@ public class AWSIotRemoteManager {
     }
 
     private void onReceivedDeviceConnectResponse(final RemoteDeviceConnectManager remote, final String message) {
+        JsonReader reader = new JsonReader(new StringReader(message));
         try {
-            JSONObject jsonObject = new JSONObject(message);
-            AWSIotRequest request = mRequestManager.get(jsonObject.getInt("requestCode"));
+            // レスポンスはリクエストコードより前に格納されているので、先にBundleに変換しておく
+            Bundle response = null;
+            Integer requestCode = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (AWSIotUtil.KEY_RESPONSE.equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    response = new Bundle();
+                    JsonBundleReader.readObject(reader, response, null);
+                } else if (AWSIotUtil.KEY_REQUEST_CODE.equals(name) && reader.peek() == JsonToken.NUMBER) {
+                    requestCode = reader.nextInt();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (requestCode == null) {
+                return;
+            }
+            AWSIotRequest request = mRequestManager.get(requestCode);
             if (request == null) {
                 return;
             }
-            request.onReceivedMessage(remote, jsonObject.optJSONObject("response"));
-        } catch (JSONException e) {
+            request.onReceivedMessage(remote, response);
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
             if (DEBUG) {
                 Log.e(TAG, "onReceivedDeviceConnectResponse", e);
             }
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // ignore.
+            }
         }
     }
 
@@ -378,49 +470,60 @@ public class AWSIotRemoteManager {
             Log.d(TAG, "message=" + message);
         }
 
+        // イベントは購読者の数に関わらず1回だけBundleに変換して、全ての購読者で共有する
+        Bundle payload = new Bundle();
+        JsonReader reader = new JsonReader(new StringReader(message));
         try {
-            JSONObject jsonObject = new JSONObject(message);
-
-            String profile = jsonObject.optString("profile");
-            String inter = jsonObject.optString("interface");
-            String attribute = jsonObject.optString("attribute");
-            String serviceId = mAWSIotDeviceManager.generateServiceId(remote, jsonObject.optString("serviceId"));
+            JsonBundleReader.readObject(reader, payload, new AWSIotRemoteUtil.ConversionJsonCallback() {
+                @Override
+                public String convertServiceId(final String id) {
+                    return mAWSIotDeviceManager.generateServiceId(remote, id);
+                }
 
-            List<Event> events = EventManager.INSTANCE.getEventList(serviceId, profile, inter, attribute);
-            for (Event event : events) {
-                Intent intent = EventManager.createEventMessage(event);
+                @Override
+                public String convertName(final String name) {
+                    return remote.getName() + " " + name;
+                }
 
-                String accessToken = intent.getStringExtra("accessToken");
+                @Override
+                public String convertUri(final String uri) {
+                    return uri;
+                }
+            });
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            if (DEBUG) {
+                Log.e(TAG, "onReceivedDeviceConnectEvent", e);
+            }
+            return;
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // ignore.
+            }
+        }
 
-                // TODO json->intent 変換をちゃんと検討すること。
-                Bundle b = new Bundle();
-                AWSIotRemoteUtil.jsonToIntent(jsonObject, b, new AWSIotRemoteUtil.ConversionJsonCallback() {
-                    @Override
-                    public String convertServiceId(final String id) {
-                        return mAWSIotDeviceManager.generateServiceId(remote, id);
-                    }
+        String profile = payload.getString("profile", "");
+        String inter = payload.getString("interface", "");
+        String attribute = payload.getString("attribute", "");
+        String serviceId = payload.getString("serviceId");
+        if (serviceId == null) {
+            serviceId = mAWSIotDeviceManager.generateServiceId(remote, "");
+        }
 
-                    @Override
-                    public String convertName(final String name) {
-                        return remote.getName() + " " + name;
-                    }
+        List<Event> events = EventManager.INSTANCE.getEventList(serviceId, profile, inter, attribute);
+        for (Event event : events) {
+            Intent intent = EventManager.createEventMessage(event);
 
-                    @Override
-                    public String convertUri(final String uri) {
-                        return uri;
-                    }
-                });
-                intent.putExtras(b);
-                if (accessToken != null) {
-                    intent.putExtra("accessToken", accessToken);
-                }
+            String accessToken = intent.getStringExtra("accessToken");
 
-                sendEvent(intent, event.getAccessToken());
-            }
-        } catch (JSONException e) {
-            if (DEBUG) {
-                Log.e(TAG, "onReceivedDeviceConnectEvent", e);
+            // putExtrasは値をコピーするので、payloadは変更されない
+            intent.putExtras(payload);
+            if (accessToken != null) {
+                intent.putExtra("accessToken", accessToken);
             }
+
+            sendEvent(intent, event.getAccessToken());
         }
     }
 
@@ -465,13 +568,25 @@ public class AWSIotRemoteManager {
             mExecutorService.submit(new Runnable() {
                 @Override
                 public void run() {
-                    if (topic.endsWith(RemoteDeviceConnectManager.EVENT)) {
-                        onReceivedDeviceConnectEvent(remote, message);
-                    } else if (topic.endsWith(RemoteDeviceConnectManager.RESPONSE)) {
-                        parseMQTT(remote, message);
-                    } else {
+                    List<String> messages;
+                    try {
+                        messages = AWSIotFrameCodec.decode(message);
+                    } catch (IllegalArgumentException e) {
                         if (DEBUG) {
-                            Log.w(TAG, "Unknown topic. topic=" + topic);
+                            Log.w(TAG, "Invalid frame. topic=" + topic, e);
+                        }
+                        return;
+                    }
+
+                    for (String m : messages) {
+                        if (topic.endsWith(RemoteDeviceConnectManager.EVENT)) {
+                            onReceivedDeviceConnectEvent(remote, m);
+                        } else if (topic.endsWith(RemoteDeviceConnectManager.RESPONSE)) {
+                            parseMQTT(remote, m);
+                        } else {
+                            if (DEBUG) {
+                                Log.w(TAG, "Unknown topic. topic=" + topic);
+                            }
                         }
                     }
                 }
@@ -479,48 +594,73 @@ public class AWSIotRemoteManager {
         }
     };
 
+    /**
+     * レスポンス待ちのリクエストを管理するクラス.
+     * <p>
+     * タイムアウトはリクエストごとにタイマーを用意せず、1つのスレッドで定期的に確認する。
+     * </p>
+     */
     private class AWSIotRequestManager {
-        private final Map<Integer, AWSIotRequest> mMap = new HashMap<>();
-        private ScheduledExecutorService mExecutorService = Executors.newScheduledThreadPool(8);
+        /** タイムアウトを確認する間隔(ms). */
+        private static final long SWEEP_INTERVAL = 1000;
+        /** デフォルトのタイムアウト(秒). */
+        private static final int DEFAULT_TIMEOUT = 30;
+
+        private final AWSIotRequestTable<AWSIotRequest> mTable = new AWSIotRequestTable<>();
+        private final ScheduledExecutorService mSweeper = Executors.newSingleThreadScheduledExecutor();
+
+        AWSIotRequestManager() {
+            mSweeper.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    for (AWSIotRequest request : mTable.removeExpired()) {
+                        request.run();
+                    }
+                }
+            }, SWEEP_INTERVAL, SWEEP_INTERVAL, TimeUnit.MILLISECONDS);
+        }
 
         public void destroy() {
-            mExecutorService.shutdown();
+            mSweeper.shutdown();
+            mTable.clear();
         }
 
-        public void put(final int requestCode, final AWSIotRequest request, final int timeout, final TimeUnit timeUnit) {
-            mMap.put(requestCode, request);
-            request.mFuture = mExecutorService.schedule(request, timeout, timeUnit);
+        public int put(final AWSIotRequest request, final int timeout, final TimeUnit timeUnit) {
+            int requestCode = mTable.put(request, timeUnit.toMillis(timeout));
+            request.mRequestCode = requestCode;
+            return requestCode;
         }
 
-        public void put(final int requestCode, final AWSIotRequest request, final int timeout) {
-           put(requestCode, request, timeout, TimeUnit.SECONDS);
+        public int put(final AWSIotRequest request, final int timeout) {
+            return put(request, timeout, TimeUnit.SECONDS);
         }
 
-        public void put(final int requestCode, final AWSIotRequest request) {
-            put(requestCode, request, 30, TimeUnit.SECONDS);
+        public int put(final AWSIotRequest request) {
+            return put(request, DEFAULT_TIMEOUT, TimeUnit.SECONDS);
         }
 
         public AWSIotRequest get(int key) {
-            return mMap.get(key);
+            return mTable.get(key);
         }
 
         public void remove(int key) {
-            mMap.remove(key);
+            mTable.remove(key);
         }
 
         public boolean pop(int key) {
-            AWSIotRequest request = mMap.get(key);
+            AWSIotRequest request = mTable.get(key);
             if (request == null) {
                 return false;
             }
 
-            request.mRequestCount--;
-            if (request.mRequestCount > 0) {
-                return false;
+            synchronized (request) {
+                request.mRequestCount--;
+                if (request.mRequestCount > 0) {
+                    return false;
+                }
             }
-            mMap.remove(key);
-            request.cancel();
-            return true;
+            // タイムアウトで削除済みの場合は、タイムアウト側でレスポンスを返している
+            return mTable.remove(key) == request;
         }
     }
 
@@ -529,7 +669,6 @@ public class AWSIotRemoteManager {
         protected int mRequestCount;
         protected Intent mRequest;
         protected Intent mResponse;
-        protected ScheduledFuture mFuture;
         protected List<Bundle> mServices = new ArrayList<>();
 
         @Override
@@ -537,15 +676,10 @@ public class AWSIotRemoteManager {
             if (DEBUG) {
                 Log.w(TAG, "timeout " + mRequestCode + " " + DConnectProfile.getProfile(mRequest));
             }
-            mRequestManager.remove(mRequestCode);
             onTimeout();
         }
 
-        public void cancel() {
-            mFuture.cancel(true);
-        }
-
-        public void onReceivedMessage(RemoteDeviceConnectManager remote, JSONObject jsonObject) throws JSONException {
+        public void onReceivedMessage(RemoteDeviceConnectManager remote, Bundle response) {
             // do nothing.
         }
 
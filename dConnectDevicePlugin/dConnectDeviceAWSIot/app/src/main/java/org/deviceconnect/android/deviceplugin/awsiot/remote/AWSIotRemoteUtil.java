@@ -78,17 +78,7 @@ public final class AWSIotRemoteUtil {
 
             Object obj = jsonObject.get(key);
             if (obj instanceof String) {
-                if (key.equals("id")) {
-                    response.putString(key, callback.convertServiceId((String) obj));
-                } else if (key.equals("serviceId")) {
-                    response.putString(key, callback.convertServiceId((String) obj));
-                } else if (key.equals("name")) {
-                    response.putString(key, callback.convertName((String) obj));
-                } else if (key.equals("uri")) {
-                    response.putString(key, callback.convertUri((String) obj));
-                } else {
-                    response.putString(key, (String) obj);
-                }
+                response.putString(key, convertString(key, (String) obj, callback));
             } else if (obj instanceof Double) {
                 response.putDouble(key, (Double) obj);
             } else if (obj instanceof Integer) {
@@ -124,6 +114,54 @@ public final class AWSIotRemoteUtil {
         }
     }
 
+    /**
+     * JSONから読み込んだBundleの値を変換する.
+     * <p>
+     * {@link JsonBundleReader}で変換せずに読み込んだBundleに対して、
+     * {@link #jsonToIntent(JSONObject, Bundle, ConversionJsonCallback)}と同じ規則で値を変換する。
+     * 子のBundleとBundleの配列も変換する。
+     * </p>
+     * @param bundle 変換するBundle
+     * @param callback 値の変換を行うコールバック
+     */
+    public static void convertBundle(final Bundle bundle, final ConversionJsonCallback callback) {
+        for (String key : new ArrayList<>(bundle.keySet())) {
+            Object obj = bundle.get(key);
+            if (obj instanceof String) {
+                bundle.putString(key, convertString(key, (String) obj, callback));
+            } else if (obj instanceof Bundle) {
+                convertBundle((Bundle) obj, callback);
+            } else if (obj instanceof Parcelable[]) {
+                for (Parcelable p : (Parcelable[]) obj) {
+                    if (p instanceof Bundle) {
+                        convertBundle((Bundle) p, callback);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * キーに応じて文字列の値を変換する.
+     * @param key キー
+     * @param value 値
+     * @param callback 値の変換を行うコールバック. 変換しない場合はnull
+     * @return 変換後の値
+     */
+    static String convertString(final String key, final String value, final ConversionJsonCallback callback) {
+        if (callback == null) {
+            return value;
+        }
+        if (key.equals("id") || key.equals("serviceId")) {
+            return callback.convertServiceId(value);
+        } else if (key.equals("name")) {
+            return callback.convertName(value);
+        } else if (key.equals("uri")) {
+            return callback.convertUri(value);
+        }
+        return value;
+    }
+
     public interface ConversionIntentCallback {
         String convertServiceId(String id);
         String convertUri(String uri);
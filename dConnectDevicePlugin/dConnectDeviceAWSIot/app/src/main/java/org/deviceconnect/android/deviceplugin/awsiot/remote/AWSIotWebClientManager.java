@@ -10,6 +10,7 @@ import android.content.Context;
 import android.util.Log;
 
 import org.deviceconnect.android.deviceplugin.awsiot.cores.core.RemoteDeviceConnectManager;
+import org.deviceconnect.android.deviceplugin.awsiot.cores.p2p.TunnelStats;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.p2p.WebClient;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.util.AWSIotUtil;
 
@@ -40,6 +41,23 @@ public class AWSIotWebClientManager {
         mWebClientList.clear();
     }
 
+    /**
+     * 中継中の接続の転送量を取得する.
+     * @return 転送量のリスト
+     */
+    public List<TunnelStats> getTunnelStats() {
+        List<TunnelStats> stats = new ArrayList<>();
+        synchronized (mWebClientList) {
+            for (WebClient client : mWebClientList) {
+                TunnelStats s = client.getTunnelStats();
+                if (s != null) {
+                    stats.add(s);
+                }
+            }
+        }
+        return stats;
+    }
+
     public void onReceivedSignaling(final RemoteDeviceConnectManager remote, final String message) {
         if (DEBUG) {
             Log.i(TAG, "AWSIotWebLocalClientManager#onReceivedSignaling: " + remote);
@@ -10,9 +10,12 @@ import android.content.Context;
 import android.util.Log;
 
 import org.deviceconnect.android.deviceplugin.awsiot.cores.core.RemoteDeviceConnectManager;
+import org.deviceconnect.android.deviceplugin.awsiot.cores.p2p.TunnelStats;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.p2p.WebServer;
 import org.deviceconnect.android.deviceplugin.awsiot.cores.util.AWSIotUtil;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -39,6 +42,18 @@ public class AWSIotWebServerManager {
         mWebServerList.clear();
     }
 
+    /**
+     * 中継中の接続の転送量を取得する.
+     * @return 転送量のリスト
+     */
+    public List<TunnelStats> getTunnelStats() {
+        List<TunnelStats> stats = new ArrayList<>();
+        for (WebServer server : mWebServerList.values()) {
+            stats.addAll(server.getTunnelStats());
+        }
+        return stats;
+    }
+
     public String createWebServer(final RemoteDeviceConnectManager remote, final String address, final String path) {
         if (DEBUG) {
             Log.i(TAG, "createWebServer: " + remote);
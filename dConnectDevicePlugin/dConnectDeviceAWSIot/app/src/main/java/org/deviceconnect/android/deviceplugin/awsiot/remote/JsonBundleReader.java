@@ -0,0 +1,130 @@
+/*
+ JsonBundleReader.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.awsiot.remote;
+
+import android.os.Bundle;
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JSONをJSONObjectのツリーを作成せずにBundleに変換するクラス.
+ * <p>
+ * サービス検索のレスポンスのような大きなJSONを、{@link JsonReader}で読み込みながらBundleに格納する。
+ * 変換規則は{@link AWSIotRemoteUtil#jsonToIntent}と同じ。
+ * </p>
+ */
+public final class JsonBundleReader {
+
+    private JsonBundleReader() {
+    }
+
+    /**
+     * JSONオブジェクトを読み込んでBundleに格納する.
+     *
+     * @param reader JSONの読み込み位置がオブジェクトの先頭にあるリーダー
+     * @param out 格納先のBundle
+     * @param callback 値の変換を行うコールバック. 変換しない場合はnull
+     * @throws IOException JSONの読み込みに失敗した場合
+     */
+    public static void readObject(final JsonReader reader, final Bundle out,
+                                  final AWSIotRemoteUtil.ConversionJsonCallback callback) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if (key.equals("product") || key.equals("version")) {
+                reader.skipValue();
+                continue;
+            }
+
+            switch (reader.peek()) {
+                case STRING:
+                    out.putString(key, AWSIotRemoteUtil.convertString(key, reader.nextString(), callback));
+                    break;
+                case NUMBER:
+                    putNumber(out, key, reader.nextString());
+                    break;
+                case BOOLEAN:
+                    out.putBoolean(key, reader.nextBoolean());
+                    break;
+                case BEGIN_OBJECT:
+                    Bundle b = new Bundle();
+                    readObject(reader, b, callback);
+                    out.putBundle(key, b);
+                    break;
+                case BEGIN_ARRAY:
+                    readArray(reader, out, key, callback);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * JSON配列を読み込んでBundleに格納する.
+     * <p>
+     * オブジェクトの配列はBundleの配列、文字列の配列はStringの配列として格納し、それ以外は無視する。
+     * </p>
+     */
+    private static void readArray(final JsonReader reader, final Bundle out, final String key,
+                                  final AWSIotRemoteUtil.ConversionJsonCallback callback) throws IOException {
+        List<Bundle> bundles = null;
+        List<String> strings = null;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            JsonToken token = reader.peek();
+            if (token == JsonToken.BEGIN_OBJECT && strings == null) {
+                if (bundles == null) {
+                    bundles = new ArrayList<>();
+                }
+                Bundle b = new Bundle();
+                readObject(reader, b, callback);
+                bundles.add(b);
+            } else if (token == JsonToken.STRING && bundles == null) {
+                if (strings == null) {
+                    strings = new ArrayList<>();
+                }
+                strings.add(reader.nextString());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endArray();
+
+        if (bundles != null) {
+            out.putParcelableArray(key, bundles.toArray(new Bundle[bundles.size()]));
+        } else if (strings != null) {
+            out.putStringArray(key, strings.toArray(new String[strings.size()]));
+        }
+    }
+
+    /**
+     * JSONの数値を{@link org.json.JSONObject}と同じ型でBundleに格納する.
+     */
+    private static void putNumber(final Bundle out, final String key, final String number) {
+        if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+            try {
+                long value = Long.parseLong(number);
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                    out.putInt(key, (int) value);
+                } else {
+                    out.putLong(key, value);
+                }
+                return;
+            } catch (NumberFormatException e) {
+                // longに収まらない場合はdoubleとして扱う
+            }
+        }
+        out.putDouble(key, Double.parseDouble(number));
+    }
+}
@@ -95,6 +95,15 @@ public class AWSIotInformationFragment extends Fragment {
             }
         });
 
+        Switch framingSwitch = (Switch) rootView.findViewById(R.id.relay_framing_switch);
+        framingSwitch.setChecked(mPrefUtil.isRelayFraming());
+        framingSwitch.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                mPrefUtil.setRelayFraming(isChecked);
+            }
+        });
+
         TextView tv = (TextView) rootView.findViewById(R.id.display_awsiot_mqtt_endpoint);
         tv.setText(AWSIotController.getAWSIotEndPoint());
 
@@ -0,0 +1,269 @@
+/*
+ AWSIotRelayTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.awsiot.cores.core;
+
+import org.deviceconnect.android.deviceplugin.awsiot.cores.util.AWSIotFrameCodec;
+import org.deviceconnect.android.deviceplugin.awsiot.cores.util.AWSIotRequestTable;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * MQTTの中継でメッセージをまとめて送受信する処理のテスト.
+ * <p>
+ * AWS IoTの代わりに、同じプロセス内でトピックの購読者にメッセージを配送するブローカーを使用する。
+ * </p>
+ */
+public class AWSIotRelayTest {
+
+    private static final String TOPIC = "deviceconnect/test/request";
+
+    @Test
+    public void testFrameCodecSingleMessage() {
+        String message = "{\"request\":{},\"requestCode\":1}";
+        String frame = AWSIotFrameCodec.encode(Collections.singletonList(message), AWSIotFrameCodec.DEFAULT_COMPRESS_THRESHOLD);
+        assertEquals(message, frame);
+        assertEquals(Collections.singletonList(message), AWSIotFrameCodec.decode(frame));
+    }
+
+    @Test
+    public void testFrameCodecBatch() {
+        List<String> messages = Arrays.asList("{\"a\":1}", "{\"b\":\"x:y\"}", "{\"c\":\"日本語\"}");
+        String frame = AWSIotFrameCodec.encode(messages, 0);
+        assertTrue(frame.startsWith("~f"));
+        assertEquals(messages, AWSIotFrameCodec.decode(frame));
+    }
+
+    @Test
+    public void testFrameCodecCompress() {
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            messages.add("{\"profile\":\"deviceorientation\",\"attribute\":\"ondeviceorientation\",\"index\":" + i + "}");
+        }
+        String frame = AWSIotFrameCodec.encode(messages, AWSIotFrameCodec.DEFAULT_COMPRESS_THRESHOLD);
+        assertTrue(frame.startsWith("~z"));
+        assertTrue(frame.length() < AWSIotFrameCodec.encode(messages, 0).length());
+        assertEquals(messages, AWSIotFrameCodec.decode(frame));
+    }
+
+    @Test
+    public void testFrameCodecInvalid() {
+        String[] frames = {"~f10:{}", "~fx:{}", "~f3", "~zAAAA"};
+        for (String frame : frames) {
+            try {
+                AWSIotFrameCodec.decode(frame);
+                fail("Invalid frame is decoded: " + frame);
+            } catch (IllegalArgumentException e) {
+                // ok
+            }
+        }
+    }
+
+    @Test
+    public void testRequestTable() {
+        AWSIotRequestTable<String> table = new AWSIotRequestTable<>();
+        int code1 = table.put("a", 60000);
+        int code2 = table.put("b", 60000);
+        assertTrue(code1 > 0);
+        assertTrue(code2 > 0);
+        assertSame("a", table.get(code1));
+        assertSame("b", table.get(code2));
+
+        assertSame("a", table.remove(code1));
+        assertNull(table.get(code1));
+
+        // 同じインデックスを再利用しても、古いリクエストコードでは見つからない
+        for (int i = 0; i < AWSIotRequestTable.DEFAULT_CAPACITY; i++) {
+            int code = table.put("c", 60000);
+            if (code < 0) {
+                break;
+            }
+            assertNull(table.get(code1));
+            assertTrue(code != code1);
+        }
+        assertEquals(AWSIotRequestTable.DEFAULT_CAPACITY, table.size());
+        assertEquals(-1, table.put("d", 60000));
+    }
+
+    @Test
+    public void testRequestTableExpired() {
+        AWSIotRequestTable<String> table = new AWSIotRequestTable<>();
+        int code1 = table.put("a", -1);
+        int code2 = table.put("b", 60000);
+        assertEquals(Collections.singletonList("a"), table.removeExpired());
+        assertNull(table.get(code1));
+        assertSame("b", table.get(code2));
+    }
+
+    @Test
+    public void testBatcherPipelining() throws Exception {
+        final int count = 100;
+        Broker broker = new Broker();
+        final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch latch = new CountDownLatch(count);
+        broker.subscribe(TOPIC, new Subscriber() {
+            @Override
+            public void onMessage(final String frame) {
+                for (String m : AWSIotFrameCodec.decode(frame)) {
+                    received.add(m);
+                    latch.countDown();
+                }
+            }
+        });
+
+        AWSIotMessageBatcher batcher = new AWSIotMessageBatcher.Builder(broker)
+                .window(50)
+                .build();
+        List<String> sent = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String message = "{\"request\":{\"profile\":\"battery\"},\"requestCode\":" + i + "}";
+            sent.add(message);
+            assertTrue(batcher.offer(TOPIC, message));
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(sent, received);
+        assertTrue("publish count: " + broker.getPublishCount(), broker.getPublishCount() < count);
+        batcher.destroy();
+    }
+
+    @Test
+    public void testBatcherMaxFrameSize() throws Exception {
+        final int count = 20;
+        Broker broker = new Broker();
+        final List<String> frames = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch latch = new CountDownLatch(count);
+        broker.subscribe(TOPIC, new Subscriber() {
+            @Override
+            public void onMessage(final String frame) {
+                frames.add(frame);
+                for (int i = 0; i < AWSIotFrameCodec.decode(frame).size(); i++) {
+                    latch.countDown();
+                }
+            }
+        });
+
+        AWSIotMessageBatcher batcher = new AWSIotMessageBatcher.Builder(broker)
+                .window(1000)
+                .maxFrameSize(256)
+                .compressThreshold(0)
+                .build();
+        for (int i = 0; i < count; i++) {
+            batcher.offer(TOPIC, "{\"value\":\"0123456789あいうえおかきくけこ\",\"i\":" + i + "}");
+        }
+
+        // まとめる時間を待たずに、最大バイト数に達したフレームから発行される
+        Thread.sleep(300);
+        assertTrue(frames.size() > 1);
+        batcher.flush();
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        for (String frame : frames) {
+            int size = frame.getBytes("UTF-8").length;
+            assertTrue("frame size: " + size, size <= 256);
+        }
+        batcher.destroy();
+    }
+
+    @Test
+    public void testBatcherPublishImmediately() throws Exception {
+        Broker broker = new Broker();
+        final CountDownLatch latch = new CountDownLatch(1);
+        broker.subscribe(TOPIC, new Subscriber() {
+            @Override
+            public void onMessage(final String frame) {
+                latch.countDown();
+            }
+        });
+
+        // まとめ中のメッセージが無い場合は、まとめる時間を待たずに発行される
+        AWSIotMessageBatcher batcher = new AWSIotMessageBatcher.Builder(broker)
+                .window(60000)
+                .build();
+        assertTrue(batcher.offer(TOPIC, "{}"));
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertEquals(1, broker.getPublishCount());
+        batcher.destroy();
+    }
+
+    @Test
+    public void testBatcherDestroy() throws Exception {
+        Broker broker = new Broker();
+        final CountDownLatch latch = new CountDownLatch(1);
+        broker.subscribe(TOPIC, new Subscriber() {
+            @Override
+            public void onMessage(final String frame) {
+                latch.countDown();
+            }
+        });
+
+        AWSIotMessageBatcher batcher = new AWSIotMessageBatcher.Builder(broker)
+                .window(60000)
+                .build();
+        assertTrue(batcher.offer(TOPIC, "{}"));
+        batcher.destroy();
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(!batcher.offer(TOPIC, "{}"));
+    }
+
+    /**
+     * 購読者.
+     */
+    private interface Subscriber {
+        void onMessage(String frame);
+    }
+
+    /**
+     * AWS IoTの代わりにメッセージを配送するブローカー.
+     */
+    private static class Broker implements AWSIotMessageBatcher.Publisher {
+        private final Map<String, List<Subscriber>> mSubscribers = new HashMap<>();
+        private int mPublishCount;
+
+        synchronized void subscribe(final String topic, final Subscriber subscriber) {
+            List<Subscriber> list = mSubscribers.get(topic);
+            if (list == null) {
+                list = new ArrayList<>();
+                mSubscribers.put(topic, list);
+            }
+            list.add(subscriber);
+        }
+
+        synchronized int getPublishCount() {
+            return mPublishCount;
+        }
+
+        @Override
+        public boolean publish(final String topic, final String message) {
+            List<Subscriber> list;
+            synchronized (this) {
+                mPublishCount++;
+                list = mSubscribers.get(topic);
+                if (list == null) {
+                    return false;
+                }
+                list = new ArrayList<>(list);
+            }
+            for (Subscriber subscriber : list) {
+                subscriber.onMessage(message);
+            }
+            return true;
+        }
+    }
+}
@@ -56,6 +56,10 @@ public final class HitoeConstants {
     public static final int POSTURE_STATE_UPDATE_CYCLE_TIME = 1000;
     /** Discovery Cycle time. */
     public static final int DISCOVERY_CYCLE_TIME = 30000;
+    /** Number of ECG samples kept for each device. */
+    public static final int ECG_SAMPLE_BUFFER_SIZE = 8192;
+    /** Number of acceleration samples kept for each device. */
+    public static final int ACC_SAMPLE_BUFFER_SIZE = 2048;
 
     /** Ex posture unit number. */
     public static final int EX_POSTURE_UNIT_NUM = 25;
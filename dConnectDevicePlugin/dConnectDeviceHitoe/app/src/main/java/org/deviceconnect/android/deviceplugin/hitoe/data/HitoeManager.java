@@ -112,6 +112,10 @@ public class HitoeManager {
     private final Map<HitoeDevice, AccelerationData> mAccelData;
     /** ECG Datas. */
     private final Map<HitoeDevice, HeartRateData> mECGData;
+    /** ECG samples. */
+    private final Map<HitoeDevice, SampleRingBuffer> mECGSamples;
+    /** Acceleration samples. */
+    private final Map<HitoeDevice, SampleRingBuffer> mAccelSamples;
     /** Pose Estimation datas. */
     private final Map<HitoeDevice, PoseEstimationData> mPoseEstimationData;
     /** Stress Estimation datas. */
@@ -212,12 +216,16 @@ public class HitoeManager {
                 extractHealth(HeartData.HeartRateType.ECG, rawData, receiveDevice);
             } else if (dataKey.equals("raw.acc")) {
                 analyzeAccelerationData(rawData, receiveDevice);
-                AccelerationData currentAccel = mAccelData.get(receiveDevice);
-                if (currentAccel == null) {
-                    currentAccel = new AccelerationData();
+                SampleRingBuffer samples = getSampleBuffer(mAccelSamples, receiveDevice,
+                        HitoeConstants.ACC_SAMPLE_BUFFER_SIZE, 3);
+                if (samples.append(rawData) > 0) {
+                    AccelerationData currentAccel = mAccelData.get(receiveDevice);
+                    if (currentAccel == null) {
+                        currentAccel = new AccelerationData();
+                    }
+                    currentAccel = RawDataParseUtils.parseAccelerationData(currentAccel, samples);
+                    mAccelData.put(receiveDevice, currentAccel);
                 }
-                currentAccel = RawDataParseUtils.parseAccelerationData(currentAccel, rawData);
-                mAccelData.put(receiveDevice, currentAccel);
             } else if (dataKey.equals("raw.rri")) {
                 extractHealth(HeartData.HeartRateType.RRI, rawData, receiveDevice);
             } else if (dataKey.equals("raw.bat")) {
@@ -296,6 +304,8 @@ public class HitoeManager {
                 new ArrayList<HitoeDevice>());
         mHRData = new ConcurrentHashMap<>();
         mECGData = new ConcurrentHashMap<>();
+        mECGSamples = new ConcurrentHashMap<>();
+        mAccelSamples = new ConcurrentHashMap<>();
         mPoseEstimationData = new ConcurrentHashMap<>();
         mStressEstimationData = new ConcurrentHashMap<>();
         mWalkStateData = new ConcurrentHashMap<>();
@@ -446,6 +456,46 @@ public class HitoeManager {
         }
         return mECGData.get(mRegisterDevices.get(pos));
     }
+    /**
+     * Get ECG samples within a time window that ends at the latest sample.
+     * @param serviceId index id
+     * @param duration length of the window (ms)
+     * @return ECG samples, or null if the device is not found
+     */
+    public SampleRingBuffer.Window getECGSamples(final String serviceId, final long duration) {
+        return getSamples(mECGSamples, serviceId, duration);
+    }
+    /**
+     * Get Acceleration samples within a time window that ends at the latest sample.
+     * <p>
+     * Values of each sample are stored in the order of x, y and z.
+     * </p>
+     * @param serviceId index id
+     * @param duration length of the window (ms)
+     * @return Acceleration samples, or null if the device is not found
+     */
+    public SampleRingBuffer.Window getAccelerationSamples(final String serviceId, final long duration) {
+        return getSamples(mAccelSamples, serviceId, duration);
+    }
+    /**
+     * Get samples of the device.
+     * @param buffers ring buffers for each device
+     * @param serviceId index id
+     * @param duration length of the window (ms)
+     * @return samples, or null if the device is not found
+     */
+    private SampleRingBuffer.Window getSamples(final Map<HitoeDevice, SampleRingBuffer> buffers,
+                                               final String serviceId, final long duration) {
+        int pos = getPosForServiceId(serviceId);
+        if (pos == -1) {
+            return null;
+        }
+        SampleRingBuffer samples = buffers.get(mRegisterDevices.get(pos));
+        if (samples == null) {
+            return null;
+        }
+        return samples.getWindow(duration);
+    }
     /**
      * Get Stress Estimation Data.
      * @param serviceId index id
@@ -611,6 +661,8 @@ public class HitoeManager {
         for (int i = 0; i < mRegisterDevices.size(); i++) {
             if (mRegisterDevices.get(i).getId().equals(device.getId())) {
                 HitoeDevice d = mRegisterDevices.remove(i);
+                mECGSamples.remove(d);
+                mAccelSamples.remove(d);
                 for (OnHitoeConnectionListener l: mConnectionListeners) {
                     if (l != null) {
                         l.onDeleted(d);
@@ -1344,13 +1396,37 @@ public class HitoeManager {
             currentHeartRate.setEnergyExpended(energy);
             mHRData.put(receiveDevice, currentHeartRate);
         } else if (type == HeartData.HeartRateType.ECG) {
-            HeartData ecg = RawDataParseUtils.parseECG(rawData);
+            SampleRingBuffer samples = getSampleBuffer(mECGSamples, receiveDevice,
+                    HitoeConstants.ECG_SAMPLE_BUFFER_SIZE, 1);
+            if (samples.append(rawData) == 0) {
+                return;
+            }
+            HeartData ecg = RawDataParseUtils.parseECG(samples);
             currentHeartRate.setECG(ecg);
             mECGData.put(receiveDevice, currentHeartRate);
 
         }
     }
 
+    /**
+     * Get the sample ring buffer of the device.
+     * @param buffers ring buffers for each device
+     * @param device Hitoe device
+     * @param capacity maximum number of samples
+     * @param axes number of values per sample
+     * @return ring buffer
+     */
+    private static SampleRingBuffer getSampleBuffer(final Map<HitoeDevice, SampleRingBuffer> buffers,
+                                                    final HitoeDevice device,
+                                                    final int capacity, final int axes) {
+        SampleRingBuffer samples = buffers.get(device);
+        if (samples == null) {
+            samples = new SampleRingBuffer(capacity, axes);
+            buffers.put(device, samples);
+        }
+        return samples;
+    }
+
     /**
      * Extract Battery data.
      * @param rawData raw data
@@ -0,0 +1,268 @@
+/*
+ SampleRingBuffer
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.hitoe.data;
+
+import org.deviceconnect.android.deviceplugin.hitoe.util.RawDataCursor;
+
+/**
+ * Ring buffer that keeps the latest samples of a Hitoe device in primitive arrays.
+ * <p>
+ * Each sample has a timestamp and a fixed number of values (axes),
+ * for example one value for ECG and three values for acceleration.
+ * Appending raw data does not allocate objects, and the oldest samples are overwritten
+ * when the buffer is full.
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class SampleRingBuffer {
+
+    /** Number of values per sample. */
+    private final int mAxes;
+
+    /** Maximum number of samples. */
+    private final int mCapacity;
+
+    /** Timestamps of samples. */
+    private final long[] mTimestamps;
+
+    /** Values of samples. */
+    private final float[] mValues;
+
+    /** Cursor to parse raw data. */
+    private final RawDataCursor mCursor = new RawDataCursor();
+
+    /** Values of a sample being parsed. */
+    private final float[] mParsing;
+
+    /** Index of the next sample to write. */
+    private int mHead;
+
+    /** Number of samples. */
+    private int mSize;
+
+    /**
+     * Constructor.
+     * @param capacity maximum number of samples
+     * @param axes number of values per sample
+     */
+    public SampleRingBuffer(final int capacity, final int axes) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity is invalid: " + capacity);
+        }
+        if (axes <= 0) {
+            throw new IllegalArgumentException("axes is invalid: " + axes);
+        }
+        mCapacity = capacity;
+        mAxes = axes;
+        mTimestamps = new long[capacity];
+        mValues = new float[capacity * axes];
+        mParsing = new float[axes];
+    }
+
+    /**
+     * Get number of values per sample.
+     * @return number of values per sample
+     */
+    public int getAxes() {
+        return mAxes;
+    }
+
+    /**
+     * Get maximum number of samples.
+     * @return maximum number of samples
+     */
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * Get number of samples.
+     * @return number of samples
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * Append samples in the raw data.
+     * <p>
+     * Each line of the raw data must be {@code "timestamp,value0:value1:..."}.
+     * Lines that cannot be parsed are skipped.
+     * </p>
+     * @param raw raw data
+     * @return number of appended samples
+     */
+    public synchronized int append(final String raw) {
+        RawDataCursor cursor = mCursor.reset(raw);
+        int count = 0;
+        while (cursor.nextLine()) {
+            long timestamp;
+            try {
+                timestamp = cursor.readLong();
+                for (int i = 0; i < mAxes; i++) {
+                    mParsing[i] = cursor.readFloat();
+                }
+            } catch (NumberFormatException e) {
+                // Skip a broken line without overwriting the oldest sample
+                continue;
+            }
+            mTimestamps[mHead] = timestamp;
+            System.arraycopy(mParsing, 0, mValues, mHead * mAxes, mAxes);
+            mHead = (mHead + 1) % mCapacity;
+            if (mSize < mCapacity) {
+                mSize++;
+            }
+            count++;
+        }
+        mCursor.reset(null);
+        return count;
+    }
+
+    /**
+     * Get timestamp of the latest sample.
+     * @return timestamp, or -1 if there is no sample
+     */
+    public synchronized long getLatestTimestamp() {
+        if (mSize == 0) {
+            return -1;
+        }
+        return mTimestamps[latestIndex()];
+    }
+
+    /**
+     * Get a value of the latest sample.
+     * @param axis index of the value
+     * @return value, or 0 if there is no sample
+     */
+    public synchronized float getLatestValue(final int axis) {
+        if (axis < 0 || axis >= mAxes) {
+            throw new IndexOutOfBoundsException("axis: " + axis);
+        }
+        if (mSize == 0) {
+            return 0;
+        }
+        return mValues[latestIndex() * mAxes + axis];
+    }
+
+    /**
+     * Get samples within a time window that ends at the latest sample.
+     * @param duration length of the window in the unit of timestamp
+     * @return samples in chronological order
+     */
+    public synchronized Window getWindow(final long duration) {
+        if (mSize == 0) {
+            return new Window(new long[0], new float[0], mAxes);
+        }
+        long from = mTimestamps[latestIndex()] - duration;
+
+        // Search backwards so that only the samples in the window are visited
+        int count = 0;
+        int index = latestIndex();
+        while (count < mSize && mTimestamps[index] >= from) {
+            count++;
+            index = (index - 1 + mCapacity) % mCapacity;
+        }
+
+        long[] timestamps = new long[count];
+        float[] values = new float[count * mAxes];
+        int start = (mHead - count + mCapacity) % mCapacity;
+        int first = Math.min(count, mCapacity - start);
+        System.arraycopy(mTimestamps, start, timestamps, 0, first);
+        System.arraycopy(mValues, start * mAxes, values, 0, first * mAxes);
+        if (first < count) {
+            System.arraycopy(mTimestamps, 0, timestamps, first, count - first);
+            System.arraycopy(mValues, 0, values, first * mAxes, (count - first) * mAxes);
+        }
+        return new Window(timestamps, values, mAxes);
+    }
+
+    /**
+     * Remove all samples.
+     */
+    public synchronized void clear() {
+        mHead = 0;
+        mSize = 0;
+    }
+
+    /**
+     * Get index of the latest sample.
+     * @return index
+     */
+    private int latestIndex() {
+        return (mHead - 1 + mCapacity) % mCapacity;
+    }
+
+    /**
+     * Samples copied from {@link SampleRingBuffer}.
+     */
+    public static class Window {
+        /** Timestamps of samples. */
+        private final long[] mTimestamps;
+        /** Values of samples. */
+        private final float[] mValues;
+        /** Number of values per sample. */
+        private final int mAxes;
+
+        /**
+         * Constructor.
+         * @param timestamps timestamps of samples
+         * @param values values of samples
+         * @param axes number of values per sample
+         */
+        Window(final long[] timestamps, final float[] values, final int axes) {
+            mTimestamps = timestamps;
+            mValues = values;
+            mAxes = axes;
+        }
+
+        /**
+         * Get number of samples.
+         * @return number of samples
+         */
+        public int size() {
+            return mTimestamps.length;
+        }
+
+        /**
+         * Get timestamps of samples.
+         * @return timestamps
+         */
+        public long[] getTimestamps() {
+            return mTimestamps;
+        }
+
+        /**
+         * Get values of samples.
+         * <p>
+         * Values of the i-th sample are stored from {@code i * axes}.
+         * </p>
+         * @return values
+         */
+        public float[] getValues() {
+            return mValues;
+        }
+
+        /**
+         * Get values of one axis.
+         * @param axis index of the value
+         * @return values of the axis
+         */
+        public float[] getValues(final int axis) {
+            if (axis < 0 || axis >= mAxes) {
+                throw new IndexOutOfBoundsException("axis: " + axis);
+            }
+            if (mAxes == 1) {
+                return mValues;
+            }
+            float[] values = new float[mTimestamps.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = mValues[i * mAxes + axis];
+            }
+            return values;
+        }
+    }
+}
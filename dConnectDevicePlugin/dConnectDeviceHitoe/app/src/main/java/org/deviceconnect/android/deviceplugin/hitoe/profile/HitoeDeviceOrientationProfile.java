@@ -7,6 +7,7 @@
 package org.deviceconnect.android.deviceplugin.hitoe.profile;
 
 import android.content.Intent;
+import android.os.Bundle;
 
 import org.deviceconnect.android.deviceplugin.hitoe.HitoeApplication;
 import org.deviceconnect.android.deviceplugin.hitoe.HitoeDeviceService;
@@ -14,6 +15,7 @@ import org.deviceconnect.android.deviceplugin.hitoe.data.HitoeConstants;
 import org.deviceconnect.android.deviceplugin.hitoe.data.HitoeManager;
 import org.deviceconnect.android.deviceplugin.hitoe.data.AccelerationData;
 import org.deviceconnect.android.deviceplugin.hitoe.data.HitoeDevice;
+import org.deviceconnect.android.deviceplugin.hitoe.data.SampleRingBuffer;
 import org.deviceconnect.android.event.Event;
 import org.deviceconnect.android.event.EventDispatcher;
 import org.deviceconnect.android.event.EventDispatcherFactory;
@@ -37,6 +39,17 @@ import java.util.List;
  */
 public class HitoeDeviceOrientationProfile extends DeviceOrientationProfile {
 
+    /** Attribute: {@value}. */
+    private static final String ATTRIBUTE_SAMPLES = "samples";
+    /** Parameter: {@value}. */
+    private static final String PARAM_DURATION = "duration";
+    /** Parameter: {@value}. */
+    private static final String PARAM_TIMESTAMPS = "timeStamps";
+    /** Default duration of acceleration samples (ms). */
+    private static final long DEFAULT_SAMPLES_DURATION = 1000;
+    /** Gravitational acceleration (m/s^2). */
+    private static final double GRAVITY = 9.81;
+
     /**
      * Implementation of {@link HitoeManager.OnHitoeDeviceOrientationEventListener}.
      */
@@ -63,6 +76,7 @@ public class HitoeDeviceOrientationProfile extends DeviceOrientationProfile {
         addApi(mGetOnDeviceOrientation);
         addApi(mPutOnDeviceOrientation);
         addApi(mDeleteOnDeviceOrientation);
+        addApi(mGetSamples);
     }
 
     /**
@@ -99,6 +113,54 @@ public class HitoeDeviceOrientationProfile extends DeviceOrientationProfile {
         }
     };
 
+    /**
+     * Get acceleration samples within a time window.
+     */
+    private final DConnectApi mGetSamples = new GetApi() {
+        @Override
+        public String getAttribute() {
+            return ATTRIBUTE_SAMPLES;
+        }
+
+        @Override
+        public boolean onRequest(final Intent request, final Intent response) {
+            String serviceId = getServiceID(request);
+            if (serviceId == null) {
+                MessageUtils.setEmptyServiceIdError(response);
+                return true;
+            }
+            Long duration = parseLong(request, PARAM_DURATION);
+            if (duration == null) {
+                if (request.hasExtra(PARAM_DURATION)) {
+                    MessageUtils.setInvalidRequestParameterError(response, "duration is invalid.");
+                    return true;
+                }
+                duration = DEFAULT_SAMPLES_DURATION;
+            } else if (duration <= 0) {
+                MessageUtils.setInvalidRequestParameterError(response, "duration is invalid.");
+                return true;
+            }
+
+            HitoeManager mgr = getManager();
+            if (mgr == null) {
+                MessageUtils.setNotFoundServiceError(response);
+                return true;
+            }
+            AccelerationData data = mgr.getAccelerationData(serviceId);
+            SampleRingBuffer.Window samples = mgr.getAccelerationSamples(serviceId, duration);
+            if (data == null || samples == null) {
+                MessageUtils.setNotFoundServiceError(response);
+            } else {
+                Bundle orientation = data.toBundle();
+                setAcceleration(orientation, createAccelerationSamples(samples));
+                orientation.putLongArray(PARAM_TIMESTAMPS, samples.getTimestamps());
+                setResult(response, DConnectMessage.RESULT_OK);
+                setOrientation(response, orientation);
+            }
+            return true;
+        }
+    };
+
     /**
      * Register event device orientation.
      */
@@ -200,6 +262,29 @@ public class HitoeDeviceOrientationProfile extends DeviceOrientationProfile {
         }
     }
 
+    /**
+     * Create arrays of acceleration for each axis.
+     * @param samples acceleration samples
+     * @return acceleration
+     */
+    private static Bundle createAccelerationSamples(final SampleRingBuffer.Window samples) {
+        int size = samples.size();
+        float[] values = samples.getValues();
+        double[] x = new double[size];
+        double[] y = new double[size];
+        double[] z = new double[size];
+        for (int i = 0; i < size; i++) {
+            x[i] = values[i * 3] * GRAVITY;
+            y[i] = values[i * 3 + 1] * GRAVITY;
+            z[i] = values[i * 3 + 2] * GRAVITY;
+        }
+        Bundle acceleration = new Bundle();
+        acceleration.putDoubleArray(PARAM_X, x);
+        acceleration.putDoubleArray(PARAM_Y, y);
+        acceleration.putDoubleArray(PARAM_Z, z);
+        return acceleration;
+    }
+
     /**
      * Add Event Dispatcher.
      * @param request request parameter
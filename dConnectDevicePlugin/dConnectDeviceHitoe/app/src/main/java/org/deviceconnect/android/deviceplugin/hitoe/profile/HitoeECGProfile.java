@@ -7,12 +7,14 @@
 package org.deviceconnect.android.deviceplugin.hitoe.profile;
 
 import android.content.Intent;
+import android.os.Bundle;
 
 import org.deviceconnect.android.deviceplugin.hitoe.HitoeApplication;
 import org.deviceconnect.android.deviceplugin.hitoe.HitoeDeviceService;
 import org.deviceconnect.android.deviceplugin.hitoe.data.HeartRateData;
 import org.deviceconnect.android.deviceplugin.hitoe.data.HitoeDevice;
 import org.deviceconnect.android.deviceplugin.hitoe.data.HitoeManager;
+import org.deviceconnect.android.deviceplugin.hitoe.data.SampleRingBuffer;
 import org.deviceconnect.android.event.Event;
 import org.deviceconnect.android.event.EventDispatcherFactory;
 import org.deviceconnect.android.event.EventError;
@@ -36,6 +38,9 @@ import java.util.List;
  */
 public class HitoeECGProfile extends ECGProfile {
 
+    /** Default duration of ECG samples (ms). */
+    private static final long DEFAULT_SAMPLES_DURATION = 1000;
+
     /**
      * Implementation of {@link HitoeManager.OnHitoeECGEventListener}.
      */
@@ -61,6 +66,7 @@ public class HitoeECGProfile extends ECGProfile {
         addApi(mGetOnECG);
         addApi(mPutOnECG);
         addApi(mDeleteOnECG);
+        addApi(mGetSamples);
     }
 
     /**
@@ -95,6 +101,54 @@ public class HitoeECGProfile extends ECGProfile {
         }
     };
 
+    /**
+     * Get ECG samples within a time window.
+     */
+    private final DConnectApi mGetSamples = new GetApi() {
+        @Override
+        public String getAttribute() {
+            return ATTRIBUTE_SAMPLES;
+        }
+
+        @Override
+        public boolean onRequest(final Intent request, final Intent response) {
+            String serviceId = getServiceID(request);
+            if (serviceId == null) {
+                MessageUtils.setEmptyServiceIdError(response);
+                return true;
+            }
+            Long duration = getDuration(request);
+            if (duration == null) {
+                if (request.hasExtra(PARAM_DURATION)) {
+                    MessageUtils.setInvalidRequestParameterError(response, "duration is invalid.");
+                    return true;
+                }
+                duration = DEFAULT_SAMPLES_DURATION;
+            } else if (duration <= 0) {
+                MessageUtils.setInvalidRequestParameterError(response, "duration is invalid.");
+                return true;
+            }
+
+            HitoeManager mgr = getManager();
+            if (mgr == null) {
+                MessageUtils.setNotFoundServiceError(response);
+                return true;
+            }
+            HeartRateData data = mgr.getECGData(serviceId);
+            SampleRingBuffer.Window samples = mgr.getECGSamples(serviceId, duration);
+            if (data == null || samples == null) {
+                MessageUtils.setNotFoundServiceError(response);
+            } else {
+                Bundle ecg = data.getECG().toBundle();
+                setValues(ecg, samples.getValues());
+                setTimestamps(ecg, samples.getTimestamps());
+                setResult(response, DConnectMessage.RESULT_OK);
+                setECG(response, ecg);
+            }
+            return true;
+        }
+    };
+
     /**
      * Register event ECG.
      */
@@ -0,0 +1,286 @@
+/*
+ RawDataCursor
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.hitoe.util;
+
+/**
+ * Cursor that reads numbers from Hitoe raw data without creating intermediate objects.
+ * <p>
+ * Hitoe raw data consists of lines such as {@code "timestamp,value"} or {@code "timestamp,x:y:z"}.
+ * Fields are separated by a comma or a colon, and lines are separated by LF or CRLF.
+ * Unlike {@link String#split(String)}, the cursor does not allocate arrays or substrings,
+ * so one instance can be reused for every notification.
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public final class RawDataCursor {
+
+    /** Maximum number of digits that fit in the mantissa without overflow. */
+    private static final int MAX_MANTISSA_DIGITS = 18;
+
+    /** Powers of ten that are exactly representable as double. */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** Raw data. */
+    private String mRaw;
+
+    /** Length of raw data. */
+    private int mLength;
+
+    /** Current position. */
+    private int mPos;
+
+    /** End position of the current line. */
+    private int mLineEnd;
+
+    /** Start position of the next line. */
+    private int mNextLine;
+
+    /**
+     * Start reading the raw data.
+     * @param raw raw data
+     * @return this cursor
+     */
+    public RawDataCursor reset(final String raw) {
+        mRaw = raw;
+        mLength = raw != null ? raw.length() : 0;
+        mPos = 0;
+        mLineEnd = 0;
+        mNextLine = 0;
+        return this;
+    }
+
+    /**
+     * Move to the next non-empty line.
+     * @return true if there is a line, false at the end of the raw data
+     */
+    public boolean nextLine() {
+        while (mNextLine < mLength) {
+            int start = mNextLine;
+            int end = start;
+            while (end < mLength) {
+                char c = mRaw.charAt(end);
+                if (c == '\n' || c == '\r') {
+                    break;
+                }
+                end++;
+            }
+            int next = end;
+            if (next < mLength && mRaw.charAt(next) == '\r') {
+                next++;
+            }
+            if (next < mLength && mRaw.charAt(next) == '\n') {
+                next++;
+            }
+            mNextLine = next;
+            if (end > start) {
+                mPos = start;
+                mLineEnd = end;
+                return true;
+            }
+        }
+        mPos = mLength;
+        mLineEnd = mLength;
+        return false;
+    }
+
+    /**
+     * Tests whether the current line has more fields.
+     * @return true if there is a field to read
+     */
+    public boolean hasField() {
+        return mPos < mLineEnd;
+    }
+
+    /**
+     * Skip the current field.
+     */
+    public void skipField() {
+        mPos = fieldEnd();
+        consumeSeparator();
+    }
+
+    /**
+     * Read the current field as long.
+     * <p>
+     * The cursor moves to the next field even if the field is not a number.
+     * </p>
+     * @return value
+     * @throws NumberFormatException if the field is not an integer
+     */
+    public long readLong() {
+        int start = mPos;
+        int end = fieldEnd();
+        mPos = end;
+        consumeSeparator();
+
+        int i = start;
+        boolean negative = false;
+        if (i < end && (mRaw.charAt(i) == '-' || mRaw.charAt(i) == '+')) {
+            negative = mRaw.charAt(i) == '-';
+            i++;
+        }
+        if (i == end || end - i > MAX_MANTISSA_DIGITS) {
+            // Empty or very long values are left to the standard parser
+            return Long.parseLong(mRaw.substring(start, end));
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = mRaw.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Invalid number: " + mRaw.substring(start, end));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Read the current field as float.
+     * @return value
+     * @throws NumberFormatException if the field is not a number
+     */
+    public float readFloat() {
+        return (float) readDouble();
+    }
+
+    /**
+     * Read the current field as double.
+     * @return value
+     * @throws NumberFormatException if the field is not a number
+     */
+    public double readDouble() {
+        int start = mPos;
+        int end = fieldEnd();
+        mPos = end;
+        consumeSeparator();
+        return parseDecimal(start, end);
+    }
+
+    /**
+     * Parse a decimal number such as {@code -12.345} or {@code 1.5e-3}.
+     * @param start start position
+     * @param end end position
+     * @return value
+     */
+    private double parseDecimal(final int start, final int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (mRaw.charAt(i) == '-' || mRaw.charAt(i) == '+')) {
+            negative = mRaw.charAt(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+        boolean sawDigit = false;
+        for (; i < end; i++) {
+            char c = mRaw.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (digits >= MAX_MANTISSA_DIGITS) {
+                    return parseSlow(start, end);
+                }
+                if (mantissa != 0 || c != '0') {
+                    digits++;
+                }
+                sawDigit = true;
+                mantissa = mantissa * 10 + (c - '0');
+                if (point) {
+                    scale--;
+                }
+            } else if (c == '.' && !point) {
+                point = true;
+            } else if (c == 'e' || c == 'E') {
+                break;
+            } else {
+                return parseSlow(start, end);
+            }
+        }
+
+        if (!sawDigit) {
+            return parseSlow(start, end);
+        }
+
+        if (i < end) {
+            // Exponent
+            i++;
+            boolean negativeExp = false;
+            if (i < end && (mRaw.charAt(i) == '-' || mRaw.charAt(i) == '+')) {
+                negativeExp = mRaw.charAt(i) == '-';
+                i++;
+            }
+            if (i == end) {
+                return parseSlow(start, end);
+            }
+            int exp = 0;
+            for (; i < end; i++) {
+                int digit = mRaw.charAt(i) - '0';
+                if (digit < 0 || digit > 9 || exp > POWERS_OF_TEN.length) {
+                    return parseSlow(start, end);
+                }
+                exp = exp * 10 + digit;
+            }
+            scale += negativeExp ? -exp : exp;
+        }
+
+        double value = mantissa;
+        if (scale < 0) {
+            if (-scale >= POWERS_OF_TEN.length) {
+                return parseSlow(start, end);
+            }
+            value /= POWERS_OF_TEN[-scale];
+        } else if (scale > 0) {
+            if (scale >= POWERS_OF_TEN.length) {
+                return parseSlow(start, end);
+            }
+            value *= POWERS_OF_TEN[scale];
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse a number that the fast path does not support.
+     * @param start start position
+     * @param end end position
+     * @return value
+     */
+    private double parseSlow(final int start, final int end) {
+        return Double.parseDouble(mRaw.substring(start, end));
+    }
+
+    /**
+     * Find the end of the current field.
+     * @return end position
+     */
+    private int fieldEnd() {
+        int end = mPos;
+        while (end < mLineEnd) {
+            char c = mRaw.charAt(end);
+            if (c == ',' || c == ':') {
+                break;
+            }
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Skip a separator after the field.
+     */
+    private void consumeSeparator() {
+        if (mPos < mLineEnd) {
+            mPos++;
+        }
+    }
+}
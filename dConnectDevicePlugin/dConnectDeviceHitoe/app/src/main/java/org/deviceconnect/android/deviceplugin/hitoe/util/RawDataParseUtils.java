@@ -11,6 +11,7 @@ import org.deviceconnect.android.deviceplugin.hitoe.data.HeartData;
 import org.deviceconnect.android.deviceplugin.hitoe.data.HitoeConstants;
 import org.deviceconnect.android.deviceplugin.hitoe.data.HitoeDevice;
 import org.deviceconnect.android.deviceplugin.hitoe.data.PoseEstimationData;
+import org.deviceconnect.android.deviceplugin.hitoe.data.SampleRingBuffer;
 import org.deviceconnect.android.deviceplugin.hitoe.data.StressEstimationData;
 import org.deviceconnect.android.deviceplugin.hitoe.data.TargetDeviceData;
 import org.deviceconnect.android.deviceplugin.hitoe.data.WalkStateData;
@@ -84,6 +85,9 @@ public final class RawDataParseUtils {
 
     /**
      * Parse Acceleration Data.
+     * <p>
+     * The latest line is used, and broken lines are skipped.
+     * </p>
      * @param data Accleration data
      * @param raw raw data
      * @return Acceleration object
@@ -92,42 +96,54 @@ public final class RawDataParseUtils {
         if (raw == null) {
             return data;
         }
-        String[] lineList = raw.split(HitoeConstants.BR);
-        String[] list = lineList[0].split(HitoeConstants.COMMA, -1);
-        String[] accList = list[1].split(HitoeConstants.COLON, -1);
-        double[] accelList = new double[3];
-        for (int i = 0; i < accList.length; i++) {
-            accelList[i] = Double.valueOf(accList[i]);
+        RawDataCursor cursor = new RawDataCursor().reset(raw);
+        while (cursor.nextLine()) {
+            double x;
+            double y;
+            double z;
+            try {
+                cursor.skipField();
+                x = cursor.readDouble();
+                y = cursor.readDouble();
+                z = cursor.readDouble();
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            data.setAccelX(x);
+            data.setAccelY(y);
+            data.setAccelZ(z);
         }
-        data.setAccelX(accelList[0]);
-        data.setAccelY(accelList[1]);
-        data.setAccelZ(accelList[2]);
+        return data;
+    }
+
+    /**
+     * Set the latest sample of the acceleration ring buffer.
+     * @param data Acceleration data
+     * @param samples Acceleration samples
+     * @return Acceleration object
+     */
+    public static AccelerationData parseAccelerationData(final AccelerationData data,
+                                                         final SampleRingBuffer samples) {
+        data.setAccelX(samples.getLatestValue(0));
+        data.setAccelY(samples.getLatestValue(1));
+        data.setAccelZ(samples.getLatestValue(2));
         return data;
     }
 
 
 
     /**
-     * Parse ECG Data.
-     * @param raw raw data
+     * Create ECG Data from the latest sample of the ECG ring buffer.
+     * @param samples ECG samples
      * @return ECG data object
      */
-    public static HeartData parseECG(final String raw) {
-        String[] lineList = raw.split(HitoeConstants.BR);
+    public static HeartData parseECG(final SampleRingBuffer samples) {
+        long timestamp = samples.getLatestTimestamp();
+        float value = samples.getLatestValue(0);
         HeartData heart = new HeartData();
-        for (int i = 0; i < lineList.length; i++) {
-            String val = lineList[i];
-            if (val == null) {
-                continue;
-            }
-            String[] list = val.split(HitoeConstants.COMMA, -1);
-            long timestamp = Long.parseLong(list[0]);
-            String[] ecgList = list[1].split(HitoeConstants.COLON, -1);
-            String date = nowTimeStampString(timestamp);
-            heart.setValue(Float.parseFloat(ecgList[0]));
-            heart.setTimeStamp(timestamp);
-            heart.setTimeStampString(date);
-        }
+        heart.setValue(value);
+        heart.setTimeStamp(timestamp);
+        heart.setTimeStampString(nowTimeStampString(timestamp));
         heart.setHeartRateType(HeartData.HeartRateType.ECG);
         heart.setMderFloat(MDERFloatConvreterUtils.convertMDERFloatToFloat(heart.getValue()));
         heart.setType("ecg beat");
@@ -122,9 +122,37 @@ public class ECGProfile extends DConnectProfile implements ECGProfileConstants {
     public static void setTimestampString(final Bundle response, final String timeStampString) {
         response.putString(PARAM_TIMESTAMP_STRING, timeStampString);
     }
+    /**
+     * レスポンスに測定値の配列を設定する.
+     *
+     * @param response レスポンス
+     * @param values 測定値の配列
+     */
+    public static void setValues(final Bundle response, final float[] values) {
+        response.putFloatArray(PARAM_VALUES, values);
+    }
+    /**
+     * レスポンスにTimeStampの配列を設定する.
+     *
+     * @param response レスポンス
+     * @param timeStamps TimeStampの配列
+     */
+    public static void setTimestamps(final Bundle response, final long[] timeStamps) {
+        response.putLongArray(PARAM_TIMESTAMPS, timeStamps);
+    }
 
 
     // ------------------------------------
     // ゲッターメソッド群
     // ------------------------------------
+
+    /**
+     * リクエストから取得する測定値の期間(ミリ秒)を取得する.
+     *
+     * @param request リクエスト
+     * @return 期間. 指定されていない場合はnull
+     */
+    public static Long getDuration(final Intent request) {
+        return parseLong(request, PARAM_DURATION);
+    }
 }
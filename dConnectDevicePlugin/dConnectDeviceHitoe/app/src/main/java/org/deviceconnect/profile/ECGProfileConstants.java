@@ -21,6 +21,10 @@ public interface ECGProfileConstants extends DConnectProfileConstants {
      * 属性: {@value} .
      */
     String ATTRIBUTE_ON_ECG = "onECG";
+    /**
+     * 属性: {@value} .
+     */
+    String ATTRIBUTE_SAMPLES = "samples";
 
     /**
      * パラメータ: {@value} .
@@ -58,5 +62,17 @@ public interface ECGProfileConstants extends DConnectProfileConstants {
      * パラメータ: {@value} .
      */
     String PARAM_TIMESTAMP_STRING = "timeStampString";
+    /**
+     * パラメータ: {@value} .
+     */
+    String PARAM_DURATION = "duration";
+    /**
+     * パラメータ: {@value} .
+     */
+    String PARAM_VALUES = "values";
+    /**
+     * パラメータ: {@value} .
+     */
+    String PARAM_TIMESTAMPS = "timeStamps";
 
 }
@@ -0,0 +1,160 @@
+/*
+ SampleRingBufferTest
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.hitoe.data;
+
+import org.deviceconnect.android.deviceplugin.hitoe.util.RawDataCursor;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test of {@link SampleRingBuffer} and {@link RawDataCursor}.
+ * @author NTT DOCOMO, INC.
+ */
+public class SampleRingBufferTest {
+
+    /** Allowed error of float values. */
+    private static final float DELTA = 1e-6f;
+
+    /** Number of notifications before measurement. */
+    private static final int WARM_UP_COUNT = 20000;
+
+    /** Number of measured notifications. */
+    private static final int COUNT = 100000;
+
+    /**
+     * Read numbers in various formats with the cursor.
+     */
+    @Test
+    public void testCursor() {
+        RawDataCursor cursor = new RawDataCursor().reset("1490000000000,-0.125:1.5e2:+3\r\n\n12,abc,.5\n");
+        assertTrue(cursor.nextLine());
+        assertEquals(1490000000000L, cursor.readLong());
+        assertEquals(-0.125, cursor.readDouble(), 0);
+        assertEquals(150, cursor.readDouble(), 0);
+        assertEquals(3f, cursor.readFloat(), 0);
+        assertFalse(cursor.hasField());
+        assertTrue(cursor.nextLine());
+        assertEquals(12, cursor.readLong());
+        try {
+            cursor.readDouble();
+            fail("abc must not be parsed.");
+        } catch (NumberFormatException e) {
+            // expected
+        }
+        assertEquals(0.5, cursor.readDouble(), 0);
+        assertFalse(cursor.nextLine());
+    }
+
+    /**
+     * Compare the cursor with {@link Double#parseDouble(String)}.
+     */
+    @Test
+    public void testCursorPrecision() {
+        RawDataCursor cursor = new RawDataCursor();
+        String[] values = {"0", "-0.0", "123.456", "0.000001234", "98765.4321", "1.0000001", "-2047.9990234375"};
+        for (String value : values) {
+            cursor.reset(value).nextLine();
+            assertEquals(value, Double.parseDouble(value), cursor.readDouble(), 0);
+        }
+    }
+
+    /**
+     * Append ECG samples more than the capacity.
+     */
+    @Test
+    public void testOverwrite() {
+        SampleRingBuffer buffer = new SampleRingBuffer(4, 1);
+        assertEquals(-1, buffer.getLatestTimestamp());
+        assertEquals(0, buffer.getWindow(1000).size());
+
+        assertEquals(3, buffer.append("10,1.0\n20,2.0\n30,3.0"));
+        assertEquals(3, buffer.append("40,4.0\n50,5.0\n60,6.0\n"));
+        assertEquals(4, buffer.size());
+        assertEquals(60, buffer.getLatestTimestamp());
+        assertEquals(6.0f, buffer.getLatestValue(0), DELTA);
+
+        SampleRingBuffer.Window window = buffer.getWindow(1000);
+        assertArrayEquals(new long[] {30, 40, 50, 60}, window.getTimestamps());
+        assertArrayEquals(new float[] {3, 4, 5, 6}, window.getValues(), DELTA);
+
+        window = buffer.getWindow(15);
+        assertArrayEquals(new long[] {50, 60}, window.getTimestamps());
+    }
+
+    /**
+     * Append acceleration samples that contain a broken line.
+     */
+    @Test
+    public void testAcceleration() {
+        SampleRingBuffer buffer = new SampleRingBuffer(8, 3);
+        assertEquals(2, buffer.append("100,0.1:0.2:0.3\n110,0.4:broken:0.6\n120,0.7:0.8:0.9\n"));
+
+        SampleRingBuffer.Window window = buffer.getWindow(100);
+        assertArrayEquals(new long[] {100, 120}, window.getTimestamps());
+        assertArrayEquals(new float[] {0.1f, 0.2f, 0.3f, 0.7f, 0.8f, 0.9f}, window.getValues(), DELTA);
+        assertArrayEquals(new float[] {0.2f, 0.8f}, window.getValues(1), DELTA);
+        assertEquals(0.9f, buffer.getLatestValue(2), DELTA);
+    }
+
+    /**
+     * Measure the time to parse an ECG notification.
+     * <p>
+     * The result is printed to the standard output.
+     * </p>
+     */
+    @Test
+    public void benchmarkParse() {
+        StringBuilder raw = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            raw.append(1490000000000L + i * 4).append(',').append(i * 12.345f - 50).append('\n');
+        }
+        String notification = raw.toString();
+        SampleRingBuffer buffer = new SampleRingBuffer(8192, 1);
+
+        float sum = 0;
+        for (int i = 0; i < WARM_UP_COUNT; i++) {
+            sum += parseWithSplit(notification);
+            buffer.append(notification);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < COUNT; i++) {
+            sum += parseWithSplit(notification);
+        }
+        long splitTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < COUNT; i++) {
+            buffer.append(notification);
+        }
+        long cursorTime = System.nanoTime() - start;
+        assertEquals(parseWithSplit(notification), buffer.getLatestValue(0), DELTA);
+
+        System.out.println("split: " + (splitTime / COUNT) + "ns/notification (" + sum + ")");
+        System.out.println("cursor + ring buffer: " + (cursorTime / COUNT) + "ns/notification");
+    }
+
+    /**
+     * Parse ECG raw data in the same way as the previous parser.
+     * @param raw raw data
+     * @return the last value
+     */
+    private static float parseWithSplit(final String raw) {
+        String[] lineList = raw.split("\n");
+        float value = 0;
+        for (String line : lineList) {
+            String[] list = line.split(",", -1);
+            Long.parseLong(list[0]);
+            String[] ecgList = list[1].split(":", -1);
+            value = Float.parseFloat(ecgList[0]);
+        }
+        return value;
+    }
+}
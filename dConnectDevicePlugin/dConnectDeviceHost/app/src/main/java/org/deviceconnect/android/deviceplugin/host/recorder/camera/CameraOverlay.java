@@ -13,6 +13,7 @@ import android.content.IntentFilter;
 import android.graphics.Bitmap;
 import android.graphics.Bitmap.CompressFormat;
 import android.graphics.BitmapFactory;
+import android.graphics.ImageFormat;
 import android.graphics.Matrix;
 import android.graphics.PixelFormat;
 import android.graphics.Point;
@@ -35,8 +36,9 @@ import android.view.WindowManager;
 import org.deviceconnect.android.deviceplugin.host.BuildConfig;
 import org.deviceconnect.android.deviceplugin.host.recorder.HostDeviceRecorder;
 import org.deviceconnect.android.deviceplugin.host.recorder.util.CapabilityUtil;
-import org.deviceconnect.android.deviceplugin.host.recorder.util.MixedReplaceMediaServer;
+import org.deviceconnect.android.deviceplugin.host.recorder.util.NV21Converter;
 import org.deviceconnect.android.provider.FileManager;
+import org.deviceconnect.android.streaming.MixedReplaceMediaServer;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -67,6 +69,9 @@ public class CameraOverlay implements Camera.PreviewCallback, Camera.ErrorCallba
     /** Default Maximum Frame Rate. */
     private static final double DEFAULT_MAX_FPS = 10.0d;
 
+    /** プレビューのコールバックに使用するバッファの数. */
+    private static final int PREVIEW_BUFFER_COUNT = 3;
+
     /** 日付のフォーマット. */
     private SimpleDateFormat mSimpleDateFormat = new SimpleDateFormat("yyyyMMdd_kkmmss", Locale.JAPAN);
 
@@ -154,6 +159,36 @@ public class CameraOverlay implements Camera.PreviewCallback, Camera.ErrorCallba
      */
     Camera.Parameters mParams;
 
+    /**
+     * プレビューのコールバックに使用するバッファ.
+     */
+    private byte[][] mPreviewBuffers;
+
+    /**
+     * プレビュー画像の横幅.
+     */
+    private int mFrameWidth;
+
+    /**
+     * プレビュー画像の縦幅.
+     */
+    private int mFrameHeight;
+
+    /**
+     * 回転したプレビュー画像を格納するバッファ.
+     */
+    private byte[] mRotatedBuffer;
+
+    /**
+     * プレビュー画像をJPEGに圧縮するときの出力先.
+     */
+    private final ByteArrayOutputStream mJpegStream = new ByteArrayOutputStream();
+
+    /**
+     * プレビュー画像をJPEGに圧縮する範囲.
+     */
+    private final Rect mFrameRect = new Rect();
+
     /**
      * フラッシュライト使用中フラグ.
      */
@@ -335,7 +370,7 @@ public class CameraOverlay implements Camera.PreviewCallback, Camera.ErrorCallba
                     }
                     setCameraParameter(mCamera);
                     mPreview.switchCamera(mCameraId, mCamera);
-                    mCamera.setPreviewCallback(CameraOverlay.this);
+                    startPreviewCallback(mCamera);
                     mCamera.setErrorCallback(CameraOverlay.this);
 
                     IntentFilter filter = new IntentFilter();
@@ -359,6 +394,8 @@ public class CameraOverlay implements Camera.PreviewCallback, Camera.ErrorCallba
             params.setPictureSize(mPictureSize.getWidth(), mPictureSize.getHeight());
             params.setPreviewSize(mPreviewSize.getWidth(), mPreviewSize.getHeight());
             params.setPreviewFrameRate((int) mMaxFps);
+            // NV21は全ての端末でサポートされていて、YUVのまま回転できる
+            params.setPreviewFormat(ImageFormat.NV21);
             try {
                 camera.setParameters(params);
             } catch (Exception e) {
@@ -369,6 +406,30 @@ public class CameraOverlay implements Camera.PreviewCallback, Camera.ErrorCallba
         }
     }
 
+    /**
+     * バッファを使い回してプレビュー画像を受け取るように設定する.
+     *
+     * @param camera カメラのインスタンス
+     */
+    private void startPreviewCallback(final Camera camera) {
+        Camera.Parameters params = camera.getParameters();
+        Camera.Size size = params.getPreviewSize();
+        int bufferSize = size.width * size.height * ImageFormat.getBitsPerPixel(params.getPreviewFormat()) / 8;
+        if (mPreviewBuffers == null || mPreviewBuffers[0].length != bufferSize) {
+            mPreviewBuffers = new byte[PREVIEW_BUFFER_COUNT][];
+            for (int i = 0; i < PREVIEW_BUFFER_COUNT; i++) {
+                mPreviewBuffers[i] = new byte[bufferSize];
+            }
+        }
+        mFrameWidth = size.width;
+        mFrameHeight = size.height;
+
+        camera.setPreviewCallbackWithBuffer(this);
+        for (byte[] buffer : mPreviewBuffers) {
+            camera.addCallbackBuffer(buffer);
+        }
+    }
+
     /**
      * Overlayを非表示にする.
      */
@@ -383,7 +444,7 @@ public class CameraOverlay implements Camera.PreviewCallback, Camera.ErrorCallba
                         if (mCamera != null) {
                             mPreview.setCamera(0, null);
                             mCamera.stopPreview();
-                            mCamera.setPreviewCallback(null);
+                            mCamera.setPreviewCallbackWithBuffer(null);
                             if (!mFlashLightState) {
                                 mCamera.release();
                                 mParams = null;
@@ -585,58 +646,75 @@ public class CameraOverlay implements Camera.PreviewCallback, Camera.ErrorCallba
     @Override
     public void onPreviewFrame(final byte[] data, final Camera camera) {
         synchronized (mCameraLock) {
-            final long currentTime = System.currentTimeMillis();
-            if (mLastFrameTime != 0) {
-                if ((currentTime - mLastFrameTime) < mFrameInterval) {
-                    mLastFrameTime = currentTime;
-                    return;
-                }
+            if (mCamera == null || !mCamera.equals(camera)) {
+                return;
             }
 
-            if (mCamera != null && mCamera.equals(camera)) {
-                mCamera.setPreviewCallback(null);
+            try {
+                final long currentTime = System.currentTimeMillis();
+                if (mLastFrameTime != 0) {
+                    if ((currentTime - mLastFrameTime) < mFrameInterval) {
+                        mLastFrameTime = currentTime;
+                        return;
+                    }
+                }
 
                 if (mServer != null && mPreview != null) {
-                    int format = mPreview.getPreviewFormat();
-                    int width = mPreview.getPreviewWidth();
-                    int height = mPreview.getPreviewHeight();
-
-                    YuvImage yuvimage = new YuvImage(data, format, width, height, null);
-                    Rect rect = new Rect(0, 0, width, height);
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    if (yuvimage.compressToJpeg(rect, mJpegQuality, baos)) {
-                        byte[] jdata = baos.toByteArray();
-
-                        int degree = mPreview.getCameraDisplayOrientation(mContext);
-                        if (degree == 0) {
-                            mServer.offerMedia(jdata);
-                        } else {
-                            BitmapFactory.Options bitmapFactoryOptions = new BitmapFactory.Options();
-                            bitmapFactoryOptions.inPreferredConfig = Bitmap.Config.RGB_565;
-                            Bitmap bmp = BitmapFactory.decodeByteArray(jdata, 0, jdata.length, bitmapFactoryOptions);
-                            if (bmp != null) {
-                                Matrix m = new Matrix();
-                                m.setRotate(degree * mFacingDirection);
-
-                                Bitmap rotatedBmp = Bitmap.createBitmap(bmp, 0, 0, bmp.getWidth(), bmp.getHeight(), m, true);
-                                if (rotatedBmp != null) {
-                                    baos.reset();
-                                    if (rotatedBmp.compress(CompressFormat.JPEG, mJpegQuality, baos)) {
-                                        mServer.offerMedia(baos.toByteArray());
-                                    }
-                                    rotatedBmp.recycle();
-                                }
-                                bmp.recycle();
-                            }
-                        }
+                    int degree = mPreview.getCameraDisplayOrientation(mContext);
+                    byte[] jpeg = encodePreviewFrame(data, degree * mFacingDirection);
+                    if (jpeg != null) {
+                        mServer.offerMedia(jpeg);
                     }
                 }
 
-                mCamera.setPreviewCallback(this);
+                mLastFrameTime = currentTime;
+            } finally {
+                // 使用したバッファをカメラに返却する
+                camera.addCallbackBuffer(data);
             }
+        }
+    }
+
+    /**
+     * NV21形式のプレビュー画像を回転して、JPEGに圧縮する.
+     * <p>
+     * 回転はYUVのまま行い、JPEGへの圧縮は1回のみ行う。
+     * 作業用のバッファは使い回すが、返却する配列はサーバで共有されるので毎回作成する。
+     * </p>
+     *
+     * @param data プレビュー画像
+     * @param degrees 時計回りの回転角度
+     * @return JPEGのデータ. 圧縮に失敗した場合はnull
+     */
+    private byte[] encodePreviewFrame(final byte[] data, final int degrees) {
+        int width = mFrameWidth;
+        int height = mFrameHeight;
+        if (data == null || data.length < NV21Converter.getBufferSize(width, height)) {
+            return null;
+        }
+
+        byte[] yuv = data;
+        int rotation = NV21Converter.normalizeDegrees(degrees);
+        if (rotation != 0) {
+            int size = NV21Converter.getBufferSize(width, height);
+            if (mRotatedBuffer == null || mRotatedBuffer.length < size) {
+                mRotatedBuffer = new byte[size];
+            }
+            NV21Converter.rotate(data, width, height, rotation, mRotatedBuffer);
+            yuv = mRotatedBuffer;
+            if (rotation == 90 || rotation == 270) {
+                width = mFrameHeight;
+                height = mFrameWidth;
+            }
+        }
 
-            mLastFrameTime = currentTime;
+        YuvImage image = new YuvImage(yuv, ImageFormat.NV21, width, height, null);
+        mFrameRect.set(0, 0, width, height);
+        mJpegStream.reset();
+        if (!image.compressToJpeg(mFrameRect, mJpegQuality, mJpegStream)) {
+            return null;
         }
+        return mJpegStream.toByteArray();
     }
 
     /**
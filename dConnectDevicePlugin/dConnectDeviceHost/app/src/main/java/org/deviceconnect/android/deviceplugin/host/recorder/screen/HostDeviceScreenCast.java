@@ -30,10 +30,12 @@ import android.view.WindowManager;
 
 import org.deviceconnect.android.deviceplugin.host.recorder.HostDevicePhotoRecorder;
 import org.deviceconnect.android.deviceplugin.host.recorder.HostDevicePreviewServer;
-import org.deviceconnect.android.deviceplugin.host.recorder.util.MixedReplaceMediaServer;
+import org.deviceconnect.android.deviceplugin.host.recorder.util.TileChangeDetector;
 import org.deviceconnect.android.provider.FileManager;
+import org.deviceconnect.android.streaming.MixedReplaceMediaServer;
 
 import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
@@ -41,8 +43,6 @@ import java.util.List;
 import java.util.Locale;
 import java.util.logging.Logger;
 
-import static android.R.attr.max;
-
 /**
  * Host Device Screen Cast.
  *
@@ -63,6 +63,18 @@ public class HostDeviceScreenCast extends HostDevicePreviewServer implements Hos
 
     private static final double DEFAULT_MAX_FPS = 10.0d;
 
+    /** プレビューのJPEG品質のデフォルト値. */
+    private static final int DEFAULT_JPEG_QUALITY = 80;
+
+    /** 撮影する写真のJPEG品質. */
+    private static final int PHOTO_JPEG_QUALITY = 100;
+
+    /** 視聴者がいない時に、視聴者の接続を確認する間隔(ms). */
+    private static final long IDLE_INTERVAL = 200;
+
+    /** フレームレートなどの統計をログに出力する間隔(ms). */
+    private static final long STATS_INTERVAL = 10 * 1000;
+
     /** ファイル名に付けるプレフィックス. */
     private static final String FILENAME_PREFIX = "android_screen_";
 
@@ -115,6 +127,8 @@ public class HostDeviceScreenCast extends HostDevicePreviewServer implements Hos
 
     private double mMaxFps;
 
+    private volatile int mJpegQuality = DEFAULT_JPEG_QUALITY;
+
     private RecorderState mState;
 
     private Handler mHandler = new Handler(Looper.getMainLooper());
@@ -217,7 +231,29 @@ public class HostDeviceScreenCast extends HostDevicePreviewServer implements Hos
     @Override
     public void setMaxFrameRate(double frameRate) {
         mMaxFps = frameRate;
-        mFrameInterval =  1000L / max;
+        mFrameInterval = (long) (1000 / frameRate);
+    }
+
+    /**
+     * プレビューのJPEG品質を取得する.
+     * @return JPEG品質(0から100)
+     */
+    public int getJpegQuality() {
+        return mJpegQuality;
+    }
+
+    /**
+     * プレビューのJPEG品質を設定する.
+     * <p>
+     * 配信中に設定した場合は、次のフレームから反映される。
+     * </p>
+     * @param quality JPEG品質(0から100)
+     */
+    public void setJpegQuality(final int quality) {
+        if (quality < 0 || quality > 100) {
+            throw new IllegalArgumentException("quality must be between 0 and 100: " + quality);
+        }
+        mJpegQuality = quality;
     }
 
     @Override
@@ -425,7 +461,7 @@ public class HostDeviceScreenCast extends HostDevicePreviewServer implements Hos
         }
 
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        bitmap.compress(Bitmap.CompressFormat.JPEG, 100, baos);
+        bitmap.compress(Bitmap.CompressFormat.JPEG, PHOTO_JPEG_QUALITY, baos);
         byte[] media = baos.toByteArray();
         if (media == null) {
             mState = RecorderState.INACTTIVE;
@@ -557,24 +593,9 @@ public class HostDeviceScreenCast extends HostDevicePreviewServer implements Hos
             public void run() {
                 mLogger.info("Server URL: " + mServer.getUrl());
                 try {
-                    while (mIsCasting) {
-                        long start = System.currentTimeMillis();
-
-                        Bitmap bitmap = getScreenshot();
-                        if (bitmap == null) {
-                            continue;
-                        }
-                        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                        bitmap.compress(Bitmap.CompressFormat.JPEG, 100, baos);
-                        byte[] media = baos.toByteArray();
-                        mServer.offerMedia(media);
-
-                        long end = System.currentTimeMillis();
-                        long interval = mFrameInterval - (end - start);
-                        if (interval > 0) {
-                            Thread.sleep(interval);
-                        }
-                    }
+                    runScreenCast();
+                } catch (InterruptedException e) {
+                    // NOP
                 } catch (Throwable e) {
                     mLogger.warning("MediaProjection is broken." + e.getMessage());
                     stopWebServer();
@@ -584,6 +605,79 @@ public class HostDeviceScreenCast extends HostDevicePreviewServer implements Hos
         mThread.start();
     }
 
+    /**
+     * 視聴者がいる間だけ、画面が変化したフレームをJPEGに圧縮して配信する.
+     * <p>
+     * BitmapとJPEGの出力先は、フレームごとに作成せずに使い回す。
+     * </p>
+     * @throws InterruptedException 配信が停止された場合
+     */
+    private void runScreenCast() throws InterruptedException {
+        TileChangeDetector detector = new TileChangeDetector();
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        Bitmap bitmap = null;
+        long encodedCount = 0;
+        long skippedCount = 0;
+        long statsStart = System.currentTimeMillis();
+
+        try {
+            while (mIsCasting) {
+                long start = System.currentTimeMillis();
+                MixedReplaceMediaServer server = mServer;
+                if (server == null || server.getClientCount() == 0) {
+                    // 視聴者がいない間に古くなったフレームを比較しないように破棄する
+                    detector.reset();
+                    discardLatestImage();
+                    Thread.sleep(IDLE_INTERVAL);
+                    continue;
+                }
+
+                Image image = acquireLatestImage();
+                if (image != null) {
+                    try {
+                        Image.Plane plane = image.getPlanes()[0];
+                        ByteBuffer pixels = plane.getBuffer();
+                        int width = image.getWidth();
+                        int height = image.getHeight();
+                        if (detector.update(pixels, width, height,
+                                plane.getPixelStride(), plane.getRowStride()) == 0) {
+                            skippedCount++;
+                        } else {
+                            Bitmap decoded = decodeToBitmap(image, bitmap);
+                            if (decoded != null) {
+                                bitmap = decoded;
+                                jpeg.reset();
+                                bitmap.compress(Bitmap.CompressFormat.JPEG, mJpegQuality, jpeg);
+                                server.offerMedia(jpeg.toByteArray());
+                                encodedCount++;
+                            }
+                        }
+                    } finally {
+                        image.close();
+                    }
+                }
+
+                long end = System.currentTimeMillis();
+                if (end - statsStart >= STATS_INTERVAL) {
+                    mLogger.info("ScreenCast: encoded fps=" + (encodedCount * 1000.0 / (end - statsStart))
+                            + ", skipped frames=" + skippedCount);
+                    encodedCount = 0;
+                    skippedCount = 0;
+                    statsStart = end;
+                }
+
+                long interval = mFrameInterval - (end - start);
+                if (interval > 0) {
+                    Thread.sleep(interval);
+                }
+            }
+        } finally {
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+        }
+    }
+
     private void stopScreenCast() {
         if (!mIsCasting) {
             return;
@@ -612,12 +706,49 @@ public class HostDeviceScreenCast extends HostDevicePreviewServer implements Hos
         if (image == null) {
             return null;
         }
-        return decodeToBitmap(image);
+        try {
+            return decodeToBitmap(image, null);
+        } finally {
+            image.close();
+        }
+    }
+
+    /**
+     * 配信用のスレッドから最新のImageを取得する.
+     * <p>
+     * ImageReaderは配信用のスレッドが停止してから解放されるので、ロックは取得しない。
+     * setPreviewSizeがロックを保持したまま配信用のスレッドの停止を待つため、ここでロックを取得するとデッドロックする。
+     * </p>
+     * @return 最新のImage. 無い場合はnull
+     */
+    private Image acquireLatestImage() {
+        ImageReader reader = mImageReader;
+        if (reader == null) {
+            return null;
+        }
+        return reader.acquireLatestImage();
     }
 
-    private Bitmap decodeToBitmap(final Image img) {
+    private void discardLatestImage() {
+        Image image = acquireLatestImage();
+        if (image != null) {
+            image.close();
+        }
+    }
+
+    /**
+     * ImageをBitmapに変換する.
+     * <p>
+     * 再利用するBitmapのサイズが一致する場合は、そのBitmapに画素をコピーする。
+     * </p>
+     * @param img 変換するImage
+     * @param reuse 再利用するBitmap. 再利用しない場合はnull
+     * @return 変換したBitmap
+     */
+    private Bitmap decodeToBitmap(final Image img, final Bitmap reuse) {
         Image.Plane[] planes = img.getPlanes();
-        if (planes[0].getBuffer() == null) {
+        ByteBuffer buffer = planes[0].getBuffer();
+        if (buffer == null) {
             return null;
         }
 
@@ -627,13 +758,17 @@ public class HostDeviceScreenCast extends HostDevicePreviewServer implements Hos
         int pixelStride = planes[0].getPixelStride();
         int rowStride = planes[0].getRowStride();
         int rowPadding = rowStride - pixelStride * width;
+        int bitmapWidth = width + rowPadding / pixelStride;
 
-        Bitmap bitmap = Bitmap.createBitmap(
-                width + rowPadding / pixelStride, height,
-                Bitmap.Config.ARGB_8888);
-        bitmap.copyPixelsFromBuffer(planes[0].getBuffer());
-        img.close();
-
+        Bitmap bitmap = reuse;
+        if (bitmap == null || bitmap.getWidth() != bitmapWidth || bitmap.getHeight() != height) {
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+            bitmap = Bitmap.createBitmap(bitmapWidth, height, Bitmap.Config.ARGB_8888);
+        }
+        buffer.rewind();
+        bitmap.copyPixelsFromBuffer(buffer);
         return bitmap;
     }
 
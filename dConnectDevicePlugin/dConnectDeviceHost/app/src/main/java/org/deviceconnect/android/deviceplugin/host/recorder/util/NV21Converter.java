@@ -0,0 +1,189 @@
+/*
+ NV21Converter.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.host.recorder.util;
+
+/**
+ * NV21形式の画像を回転・切り抜きするユーティリティクラス.
+ * <p>
+ * カメラのプレビュー画像をJPEGに圧縮する前に、YUVのまま変換するために使用する。
+ * 出力先のバッファは呼び出し元で確保して使い回すこと。
+ * </p>
+ * <p>
+ * NV21形式では、横幅x縦幅のYプレーンの後に、横2x縦2画素ごとのV, Uが交互に並ぶ。
+ * そのため、横幅と縦幅、切り抜く位置は偶数であること。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public final class NV21Converter {
+
+    private NV21Converter() {
+    }
+
+    /**
+     * NV21形式の画像のバイト数を取得する.
+     * @param width 横幅
+     * @param height 縦幅
+     * @return バイト数
+     */
+    public static int getBufferSize(final int width, final int height) {
+        return width * height * 3 / 2;
+    }
+
+    /**
+     * 回転角度を0, 90, 180, 270のいずれかに正規化する.
+     * @param degrees 時計回りの回転角度. 負の値の場合は反時計回り
+     * @return 正規化した回転角度
+     * @throws IllegalArgumentException 90の倍数ではない場合
+     */
+    public static int normalizeDegrees(final int degrees) {
+        if (degrees % 90 != 0) {
+            throw new IllegalArgumentException("degrees must be a multiple of 90: " + degrees);
+        }
+        return ((degrees % 360) + 360) % 360;
+    }
+
+    /**
+     * NV21形式の画像を時計回りに回転する.
+     * <p>
+     * 90度または270度回転した場合、出力先の画像の横幅と縦幅は入れ替わる。
+     * </p>
+     * @param src 入力元の画像
+     * @param width 入力元の画像の横幅
+     * @param height 入力元の画像の縦幅
+     * @param degrees 時計回りの回転角度. 負の値の場合は反時計回り
+     * @param dst 出力先のバッファ. 入力元とは別の配列であること
+     */
+    public static void rotate(final byte[] src, final int width, final int height,
+                              final int degrees, final byte[] dst) {
+        checkSize(src, width, height, "src");
+        checkSize(dst, width, height, "dst");
+        if (src == dst) {
+            throw new IllegalArgumentException("src and dst must be different arrays.");
+        }
+
+        int frameSize = width * height;
+        switch (normalizeDegrees(degrees)) {
+            case 0:
+                System.arraycopy(src, 0, dst, 0, getBufferSize(width, height));
+                break;
+            case 90:
+                rotateLuma90(src, width, height, dst);
+                rotateChroma90(src, frameSize, width / 2, height / 2, dst);
+                break;
+            case 180:
+                rotateLuma180(src, frameSize, dst);
+                rotateChroma180(src, frameSize, frameSize / 4, dst);
+                break;
+            default:
+                rotateLuma270(src, width, height, dst);
+                rotateChroma270(src, frameSize, width / 2, height / 2, dst);
+                break;
+        }
+    }
+
+    /**
+     * NV21形式の画像の一部を切り抜く.
+     * @param src 入力元の画像
+     * @param width 入力元の画像の横幅
+     * @param height 入力元の画像の縦幅
+     * @param left 切り抜く領域の左端
+     * @param top 切り抜く領域の上端
+     * @param cropWidth 切り抜く領域の横幅
+     * @param cropHeight 切り抜く領域の縦幅
+     * @param dst 出力先のバッファ
+     */
+    public static void crop(final byte[] src, final int width, final int height,
+                            final int left, final int top, final int cropWidth, final int cropHeight,
+                            final byte[] dst) {
+        checkSize(src, width, height, "src");
+        checkSize(dst, cropWidth, cropHeight, "dst");
+        if (left < 0 || top < 0 || left + cropWidth > width || top + cropHeight > height) {
+            throw new IllegalArgumentException("crop area is out of the image.");
+        }
+        if ((left | top) % 2 != 0) {
+            throw new IllegalArgumentException("left and top must be even.");
+        }
+
+        for (int y = 0; y < cropHeight; y++) {
+            System.arraycopy(src, (top + y) * width + left, dst, y * cropWidth, cropWidth);
+        }
+        int srcChroma = width * height;
+        int dstChroma = cropWidth * cropHeight;
+        for (int y = 0; y < cropHeight / 2; y++) {
+            System.arraycopy(src, srcChroma + (top / 2 + y) * width + left,
+                    dst, dstChroma + y * cropWidth, cropWidth);
+        }
+    }
+
+    private static void checkSize(final byte[] buffer, final int width, final int height, final String name) {
+        if (width <= 0 || height <= 0 || width % 2 != 0 || height % 2 != 0) {
+            throw new IllegalArgumentException("size must be positive and even: " + width + "x" + height);
+        }
+        if (buffer == null || buffer.length < getBufferSize(width, height)) {
+            throw new IllegalArgumentException(name + " is too small.");
+        }
+    }
+
+    private static void rotateLuma90(final byte[] src, final int width, final int height, final byte[] dst) {
+        // 出力先の(x, y)は、入力元の(y, height - 1 - x)
+        int i = 0;
+        for (int x = 0; x < width; x++) {
+            for (int y = height - 1; y >= 0; y--) {
+                dst[i++] = src[y * width + x];
+            }
+        }
+    }
+
+    private static void rotateLuma180(final byte[] src, final int frameSize, final byte[] dst) {
+        for (int i = 0, j = frameSize - 1; i < frameSize; i++, j--) {
+            dst[i] = src[j];
+        }
+    }
+
+    private static void rotateLuma270(final byte[] src, final int width, final int height, final byte[] dst) {
+        // 出力先の(x, y)は、入力元の(width - 1 - y, x)
+        int i = 0;
+        for (int x = width - 1; x >= 0; x--) {
+            for (int y = 0; y < height; y++) {
+                dst[i++] = src[y * width + x];
+            }
+        }
+    }
+
+    private static void rotateChroma90(final byte[] src, final int offset, final int chromaWidth,
+                                       final int chromaHeight, final byte[] dst) {
+        int i = offset;
+        for (int x = 0; x < chromaWidth; x++) {
+            for (int y = chromaHeight - 1; y >= 0; y--) {
+                int p = offset + (y * chromaWidth + x) * 2;
+                dst[i++] = src[p];
+                dst[i++] = src[p + 1];
+            }
+        }
+    }
+
+    private static void rotateChroma180(final byte[] src, final int offset, final int chromaSize,
+                                        final byte[] dst) {
+        int i = offset;
+        for (int p = offset + (chromaSize - 1) * 2; p >= offset; p -= 2) {
+            dst[i++] = src[p];
+            dst[i++] = src[p + 1];
+        }
+    }
+
+    private static void rotateChroma270(final byte[] src, final int offset, final int chromaWidth,
+                                        final int chromaHeight, final byte[] dst) {
+        int i = offset;
+        for (int x = chromaWidth - 1; x >= 0; x--) {
+            for (int y = 0; y < chromaHeight; y++) {
+                int p = offset + (y * chromaWidth + x) * 2;
+                dst[i++] = src[p];
+                dst[i++] = src[p + 1];
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ TileChangeDetector.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.host.recorder.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 画面をタイルに分割して、前のフレームから変化があったかを検出するクラス.
+ * <p>
+ * タイルごとに画素のハッシュ値を計算して、前のフレームのハッシュ値と比較する。
+ * 画面が変化していない場合にJPEGへの圧縮を省略するために使用する。
+ * </p>
+ * <p>
+ * 1画素は4バイトであること。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public final class TileChangeDetector {
+
+    /**
+     * タイルの一辺のデフォルトの画素数.
+     */
+    public static final int DEFAULT_TILE_SIZE = 32;
+
+    /**
+     * タイルの一辺の画素数.
+     */
+    private final int mTileSize;
+
+    /**
+     * 前のフレームのタイルごとのハッシュ値.
+     */
+    private int[] mHashes;
+
+    /**
+     * 計算中のフレームのタイルごとのハッシュ値.
+     */
+    private int[] mWorkHashes;
+
+    /**
+     * 前のフレームの横幅.
+     */
+    private int mWidth;
+
+    /**
+     * 前のフレームの縦幅.
+     */
+    private int mHeight;
+
+    /**
+     * 前のフレームのハッシュ値が有効であるかを示すフラグ.
+     */
+    private boolean mValid;
+
+    /**
+     * コンストラクタ.
+     */
+    public TileChangeDetector() {
+        this(DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * コンストラクタ.
+     * @param tileSize タイルの一辺の画素数
+     */
+    public TileChangeDetector(final int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("tileSize must be positive: " + tileSize);
+        }
+        mTileSize = tileSize;
+    }
+
+    /**
+     * 前のフレームの情報を破棄する.
+     * <p>
+     * 次に{@link #update(ByteBuffer, int, int, int, int)}を呼び出した時は、全てのタイルが変化したとみなす。
+     * </p>
+     */
+    public void reset() {
+        mValid = false;
+    }
+
+    /**
+     * タイルの個数を取得する.
+     * @return タイルの個数. フレームを受け取っていない場合は0
+     */
+    public int getTileCount() {
+        return mHashes != null ? mHashes.length : 0;
+    }
+
+    /**
+     * フレームを受け取り、前のフレームから変化したタイルの個数を取得する.
+     * <p>
+     * バッファのpositionは変更しない。
+     * 前のフレームが無い場合、またはサイズが変わった場合は、全てのタイルが変化したとみなす。
+     * </p>
+     * @param pixels 画素のバッファ
+     * @param width 横幅
+     * @param height 縦幅
+     * @param pixelStride 1画素のバイト数
+     * @param rowStride 1行のバイト数
+     * @return 変化したタイルの個数
+     */
+    public int update(final ByteBuffer pixels, final int width, final int height,
+                      final int pixelStride, final int rowStride) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("size must be positive: " + width + "x" + height);
+        }
+        if (pixelStride < 4 || rowStride < width * pixelStride) {
+            throw new IllegalArgumentException("invalid stride: pixelStride=" + pixelStride
+                    + ", rowStride=" + rowStride);
+        }
+
+        int columns = (width + mTileSize - 1) / mTileSize;
+        int rows = (height + mTileSize - 1) / mTileSize;
+        int tileCount = columns * rows;
+        boolean resized = width != mWidth || height != mHeight;
+        if (resized || mHashes == null) {
+            mHashes = new int[tileCount];
+            mWorkHashes = new int[tileCount];
+            mWidth = width;
+            mHeight = height;
+            mValid = false;
+        }
+
+        int[] hashes = mWorkHashes;
+        for (int i = 0; i < tileCount; i++) {
+            hashes[i] = 1;
+        }
+        int base = pixels.position();
+        for (int y = 0; y < height; y++) {
+            int rowOffset = base + y * rowStride;
+            int tileRow = (y / mTileSize) * columns;
+            for (int x = 0; x < width; x++) {
+                int index = tileRow + x / mTileSize;
+                hashes[index] = 31 * hashes[index] + pixels.getInt(rowOffset + x * pixelStride);
+            }
+        }
+
+        int changed = 0;
+        int[] previous = mHashes;
+        for (int i = 0; i < tileCount; i++) {
+            if (!mValid || previous[i] != hashes[i]) {
+                changed++;
+            }
+        }
+        mWorkHashes = previous;
+        mHashes = hashes;
+        mValid = true;
+        return changed;
+    }
+}
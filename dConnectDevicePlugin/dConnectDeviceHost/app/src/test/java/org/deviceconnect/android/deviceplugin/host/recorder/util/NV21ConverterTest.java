@@ -0,0 +1,209 @@
+/*
+ NV21ConverterTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.host.recorder.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * NV21Converterのテスト.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class NV21ConverterTest {
+
+    /**
+     * 計測前に実行する回数.
+     */
+    private static final int WARM_UP_COUNT = 20;
+
+    /**
+     * 計測する回数.
+     */
+    private static final int COUNT = 100;
+
+    /**
+     * 4x2の画像を90度回転する.
+     * <pre>
+     * 【期待する動作】
+     * ・Yプレーンが時計回りに回転すること。
+     * ・V, Uの組が入れ替わらずに回転すること。
+     * </pre>
+     */
+    @Test
+    public void testRotate90() {
+        byte[] src = {
+                0, 1, 2, 3,
+                4, 5, 6, 7,
+                10, 11, 20, 21
+        };
+        byte[] dst = new byte[src.length];
+        NV21Converter.rotate(src, 4, 2, 90, dst);
+        byte[] expected = {
+                4, 0,
+                5, 1,
+                6, 2,
+                7, 3,
+                10, 11,
+                20, 21
+        };
+        assertArrayEquals(expected, dst);
+    }
+
+    /**
+     * 4x2の画像を270度回転する.
+     * <pre>
+     * 【期待する動作】
+     * ・Yプレーンが反時計回りに回転すること。
+     * </pre>
+     */
+    @Test
+    public void testRotate270() {
+        byte[] src = {
+                0, 1, 2, 3,
+                4, 5, 6, 7,
+                10, 11, 20, 21
+        };
+        byte[] dst = new byte[src.length];
+        NV21Converter.rotate(src, 4, 2, -90, dst);
+        byte[] expected = {
+                3, 7,
+                2, 6,
+                1, 5,
+                0, 4,
+                20, 21,
+                10, 11
+        };
+        assertArrayEquals(expected, dst);
+    }
+
+    /**
+     * 回転を組み合わせた結果を確認する.
+     * <pre>
+     * 【期待する動作】
+     * ・90度を4回回転すると元の画像に戻ること。
+     * ・90度を2回回転した結果が180度回転した結果と一致すること。
+     * ・90度と270度を回転すると元の画像に戻ること。
+     * </pre>
+     */
+    @Test
+    public void testRotateComposition() {
+        int width = 64;
+        int height = 48;
+        byte[] src = createImage(width, height);
+        byte[] a = new byte[src.length];
+        byte[] b = new byte[src.length];
+
+        NV21Converter.rotate(src, width, height, 90, a);
+        NV21Converter.rotate(a, height, width, 90, b);
+        byte[] rotated180 = new byte[src.length];
+        NV21Converter.rotate(src, width, height, 180, rotated180);
+        assertArrayEquals(rotated180, b);
+
+        NV21Converter.rotate(b, width, height, 90, a);
+        NV21Converter.rotate(a, height, width, 90, b);
+        assertArrayEquals(src, b);
+
+        NV21Converter.rotate(src, width, height, 90, a);
+        NV21Converter.rotate(a, height, width, 270, b);
+        assertArrayEquals(src, b);
+    }
+
+    /**
+     * 画像の一部を切り抜く.
+     * <pre>
+     * 【期待する動作】
+     * ・指定した領域のY, V, Uが切り抜かれること。
+     * </pre>
+     */
+    @Test
+    public void testCrop() {
+        byte[] src = {
+                0, 1, 2, 3,
+                4, 5, 6, 7,
+                8, 9, 10, 11,
+                12, 13, 14, 15,
+                20, 21, 22, 23,
+                24, 25, 26, 27
+        };
+        byte[] dst = new byte[NV21Converter.getBufferSize(2, 2)];
+        NV21Converter.crop(src, 4, 4, 2, 2, 2, 2, dst);
+        byte[] expected = {
+                10, 11,
+                14, 15,
+                26, 27
+        };
+        assertArrayEquals(expected, dst);
+    }
+
+    /**
+     * 回転角度を正規化する.
+     * <pre>
+     * 【期待する動作】
+     * ・0, 90, 180, 270のいずれかに変換されること。
+     * </pre>
+     */
+    @Test
+    public void testNormalizeDegrees() {
+        assertEquals(0, NV21Converter.normalizeDegrees(360));
+        assertEquals(270, NV21Converter.normalizeDegrees(-90));
+        assertEquals(90, NV21Converter.normalizeDegrees(450));
+    }
+
+    /**
+     * 90の倍数ではない回転角度を指定する.
+     * <pre>
+     * 【期待する動作】
+     * ・IllegalArgumentExceptionが発生すること。
+     * </pre>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testRotateInvalidDegrees() {
+        byte[] src = new byte[NV21Converter.getBufferSize(4, 2)];
+        NV21Converter.rotate(src, 4, 2, 45, new byte[src.length]);
+    }
+
+    /**
+     * プレビューサイズの画像を回転する1フレームあたりの処理時間を計測する.
+     * <pre>
+     * 【期待する動作】
+     * ・処理時間が標準出力に出力されること。
+     * </pre>
+     */
+    @Test
+    public void benchmarkRotate() {
+        int[][] sizes = {{640, 480}, {1280, 720}, {1920, 1080}};
+        for (int[] size : sizes) {
+            int width = size[0];
+            int height = size[1];
+            byte[] src = createImage(width, height);
+            byte[] dst = new byte[src.length];
+            for (int degrees = 0; degrees < 360; degrees += 90) {
+                for (int i = 0; i < WARM_UP_COUNT; i++) {
+                    NV21Converter.rotate(src, width, height, degrees, dst);
+                }
+                long start = System.nanoTime();
+                for (int i = 0; i < COUNT; i++) {
+                    NV21Converter.rotate(src, width, height, degrees, dst);
+                }
+                long time = System.nanoTime() - start;
+                System.out.println("NV21Converter.rotate: " + width + "x" + height
+                        + " degrees=" + degrees + " " + (time / COUNT / 1000) + "us/frame");
+            }
+        }
+    }
+
+    private static byte[] createImage(final int width, final int height) {
+        byte[] image = new byte[NV21Converter.getBufferSize(width, height)];
+        new Random(width * 31 + height).nextBytes(image);
+        return image;
+    }
+}
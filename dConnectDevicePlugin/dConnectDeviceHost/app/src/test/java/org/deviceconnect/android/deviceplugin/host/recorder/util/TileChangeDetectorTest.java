@@ -0,0 +1,118 @@
+/*
+ TileChangeDetectorTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.host.recorder.util;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * TileChangeDetectorのテスト.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class TileChangeDetectorTest {
+
+    /**
+     * 同じフレームを続けて渡す.
+     * <pre>
+     * 【期待する動作】
+     * ・最初のフレームでは全てのタイルが変化したとみなされること。
+     * ・2回目のフレームでは変化したタイルが0であること。
+     * </pre>
+     */
+    @Test
+    public void testUnchangedFrame() {
+        TileChangeDetector detector = new TileChangeDetector(4);
+        ByteBuffer frame = createFrame(10, 6, 40);
+        assertEquals(6, detector.update(frame, 10, 6, 4, 40));
+        assertEquals(6, detector.getTileCount());
+        assertEquals(0, detector.update(frame, 10, 6, 4, 40));
+    }
+
+    /**
+     * 1画素だけ変更したフレームを渡す.
+     * <pre>
+     * 【期待する動作】
+     * ・変更した画素を含むタイルだけが変化したとみなされること。
+     * </pre>
+     */
+    @Test
+    public void testChangedPixel() {
+        TileChangeDetector detector = new TileChangeDetector(4);
+        ByteBuffer frame = createFrame(10, 6, 40);
+        detector.update(frame, 10, 6, 4, 40);
+
+        frame.putInt(5 * 40 + 9 * 4, 0x12345678);
+        assertEquals(1, detector.update(frame, 10, 6, 4, 40));
+        assertEquals(0, detector.update(frame, 10, 6, 4, 40));
+    }
+
+    /**
+     * 行の末尾に余白があるフレームの余白だけを変更する.
+     * <pre>
+     * 【期待する動作】
+     * ・余白の変更は無視されること。
+     * </pre>
+     */
+    @Test
+    public void testRowPaddingIgnored() {
+        TileChangeDetector detector = new TileChangeDetector(4);
+        ByteBuffer frame = createFrame(10, 6, 48);
+        detector.update(frame, 10, 6, 4, 48);
+
+        frame.putInt(2 * 48 + 10 * 4, 0x7fffffff);
+        assertEquals(0, detector.update(frame, 10, 6, 4, 48));
+    }
+
+    /**
+     * リセット後とサイズ変更後にフレームを渡す.
+     * <pre>
+     * 【期待する動作】
+     * ・全てのタイルが変化したとみなされること。
+     * </pre>
+     */
+    @Test
+    public void testResetAndResize() {
+        TileChangeDetector detector = new TileChangeDetector(4);
+        ByteBuffer frame = createFrame(10, 6, 40);
+        detector.update(frame, 10, 6, 4, 40);
+        detector.reset();
+        assertEquals(6, detector.update(frame, 10, 6, 4, 40));
+
+        ByteBuffer small = createFrame(4, 4, 16);
+        assertEquals(1, detector.update(small, 4, 4, 4, 16));
+        assertEquals(0, detector.update(small, 4, 4, 4, 16));
+    }
+
+    /**
+     * バッファのpositionが変更されないことを確認する.
+     * <pre>
+     * 【期待する動作】
+     * ・update後もpositionが0のままであること。
+     * </pre>
+     */
+    @Test
+    public void testPositionUnchanged() {
+        TileChangeDetector detector = new TileChangeDetector();
+        ByteBuffer frame = createFrame(10, 6, 40);
+        detector.update(frame, 10, 6, 4, 40);
+        assertEquals(0, frame.position());
+    }
+
+    private static ByteBuffer createFrame(final int width, final int height, final int rowStride) {
+        ByteBuffer buffer = ByteBuffer.allocate(rowStride * height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                buffer.putInt(y * rowStride + x * 4, y * width + x);
+            }
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ AccessTokenCache.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.localoauth;
+
+import org.deviceconnect.android.localoauth.oauthserver.db.SQLiteToken;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * アクセストークンのチェック結果をメモリ上に保持するキャッシュ.
+ * <p>
+ * アクセストークンをキーに、DBから読み込んだトークンとスコープ、
+ * トークンを発行したクライアントの有無を保持する。
+ * クライアントやトークンを追加・削除する処理では、{@link #clear()}でキャッシュを破棄すること。
+ * </p>
+ * <p>
+ * トークンのアクセス時間はメモリ上で更新し、DBへの書き込みは{@link #drainAccessTimes()}でまとめて行う。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+final class AccessTokenCache {
+
+    /** キャッシュするトークンの最大数. */
+    private final int mMaxSize;
+
+    /** アクセストークンをキーにしたキャッシュ. */
+    private final Map<String, Entry> mEntries = new ConcurrentHashMap<>();
+
+    /** DBへの書き込み待ちのアクセス時間(トークンIDをキーにする). */
+    private final Map<Long, Long> mAccessTimes = new ConcurrentHashMap<>();
+
+    /**
+     * コンストラクタ.
+     * @param maxSize キャッシュするトークンの最大数
+     */
+    AccessTokenCache(final int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * アクセストークンに対応するキャッシュを取得する.
+     * @param accessToken アクセストークン
+     * @return キャッシュ. キャッシュされていない場合はnull
+     */
+    Entry get(final String accessToken) {
+        return mEntries.get(accessToken);
+    }
+
+    /**
+     * トークンをキャッシュに追加する.
+     * <p>
+     * DBアクセス用のLockを取得した状態で呼び出すこと。
+     * DBへの書き込み待ちのアクセス時間がある場合は、それをトークンに反映する。
+     * </p>
+     * @param token トークン
+     * @param isExistClientId トークンを発行したクライアントIDが存在する場合はtrue
+     * @return 追加したキャッシュ
+     */
+    Entry put(final SQLiteToken token, final boolean isExistClientId) {
+        if (mEntries.size() >= mMaxSize) {
+            mEntries.clear();
+        }
+        Long accessDate = mAccessTimes.get(token.getId());
+        if (accessDate != null) {
+            token.setAccessDate(accessDate);
+        }
+        Entry entry = new Entry(token, isExistClientId);
+        mEntries.put(token.getAccessToken(), entry);
+        return entry;
+    }
+
+    /**
+     * キャッシュを全て破棄する.
+     * <p>
+     * 書き込み待ちのアクセス時間は破棄しない。
+     * 再度DBから読み込んだトークンには、{@link #put(SQLiteToken, boolean)}で書き込み待ちのアクセス時間が反映される。
+     * </p>
+     */
+    void clear() {
+        mEntries.clear();
+    }
+
+    /**
+     * トークンのアクセス時間を更新する.
+     * @param entry キャッシュ
+     * @param accessDate アクセス時間
+     */
+    void updateAccessTime(final Entry entry, final long accessDate) {
+        entry.getToken().setAccessDate(accessDate);
+        mAccessTimes.put(entry.getToken().getId(), accessDate);
+    }
+
+    /**
+     * 書き込み待ちのアクセス時間を取り出す.
+     * <p>
+     * 取り出したアクセス時間をDBに書き込み終わるまで、DBアクセス用のLockを保持すること。
+     * </p>
+     * @return トークンIDをキーにしたアクセス時間
+     */
+    Map<Long, Long> drainAccessTimes() {
+        Map<Long, Long> result = new HashMap<>();
+        for (Long tokenId : mAccessTimes.keySet()) {
+            Long accessDate = mAccessTimes.remove(tokenId);
+            if (accessDate != null) {
+                result.put(tokenId, accessDate);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * アクセストークンのキャッシュ.
+     */
+    static final class Entry {
+        /** トークン. */
+        private final SQLiteToken mToken;
+
+        /** トークンを発行したクライアントIDが存在するか. */
+        private final boolean mExistClientId;
+
+        /**
+         * コンストラクタ.
+         * @param token トークン
+         * @param isExistClientId トークンを発行したクライアントIDが存在する場合はtrue
+         */
+        private Entry(final SQLiteToken token, final boolean isExistClientId) {
+            mToken = token;
+            mExistClientId = isExistClientId;
+        }
+
+        /**
+         * トークンを取得する.
+         * @return トークン
+         */
+        SQLiteToken getToken() {
+            return mToken;
+        }
+
+        /**
+         * トークンを発行したクライアントIDが存在するか確認する.
+         * @return true: 存在する / false: 存在しない
+         */
+        boolean isExistClientId() {
+            return mExistClientId;
+        }
+    }
+}
@@ -90,6 +90,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
@@ -143,6 +148,20 @@ public final class LocalOAuth2Main {
     /** DBアクセス用Lockオブジェクト. */
     private static Object sLockForDbAccess = new Object();
 
+    /**
+     * アクセストークンのキャッシュ.
+     * <p>
+     * クライアントやトークンを追加・削除する場合には、DBアクセス用Lockを取得した状態で破棄する。
+     * </p>
+     */
+    private static final AccessTokenCache sTokenCache = new AccessTokenCache(LocalOAuth2Settings.ACCESS_TOKEN_CACHE_MAX);
+
+    /** トークンのアクセス時間をDBに書き込むスレッド. */
+    private static ScheduledExecutorService sAccessTimeWriter;
+
+    /** トークンのアクセス時間の書き込みが予約されているか. */
+    private static final AtomicBoolean sAccessTimeFlushScheduled = new AtomicBoolean();
+
     /**
      * Bindフラグ.
      * <p>
@@ -244,6 +263,8 @@ public final class LocalOAuth2Main {
         sUserManager = new SampleUserManager();
         sClientManager = new SQLiteClientManager();
         sTokenManager = new SQLiteTokenManager();
+        sTokenCache.clear();
+        sAccessTimeWriter = Executors.newSingleThreadScheduledExecutor();
 
         /* ユーザー追加 */
         addUserData(SampleUser.LOCALOAUTH_USER, SampleUser.LOCALOAUTH_PASS);
@@ -265,7 +286,15 @@ public final class LocalOAuth2Main {
      * (1)-2.LocalOAuth終了処理.
      */
     public static void destroy() {
-        
+
+        /* 書き込み待ちのアクセス時間をDBに書き込む */
+        if (sAccessTimeWriter != null) {
+            sAccessTimeWriter.shutdownNow();
+            sAccessTimeWriter = null;
+        }
+        flushAccessTimes();
+        sTokenCache.clear();
+
         /* DBをまとめてクローズ */
         if (sDbHelper != null) {
             sDbHelper.close();
@@ -321,6 +350,9 @@ public final class LocalOAuth2Main {
                 /* DBオープン */
                 db = sDbHelper.getWritableDatabase();
                 db.beginTransaction();
+
+                /* トークンのキャッシュを破棄 */
+                sTokenCache.clear();
                 
                 /* TokenManagerにDBオブジェクトを設定 */
                 sqliteTokenManager = (SQLiteTokenManager) sTokenManager;
@@ -391,6 +423,9 @@ public final class LocalOAuth2Main {
                 /* DBオープン */
                 db = sDbHelper.getWritableDatabase();
                 db.beginTransaction();
+
+                /* トークンのキャッシュを破棄 */
+                sTokenCache.clear();
                 
                 /* TokenManagerにDBオブジェクトを設定 */
                 sqliteTokenManager = (SQLiteTokenManager) sTokenManager;
@@ -811,90 +846,57 @@ public final class LocalOAuth2Main {
             return new CheckAccessTokenResult(false, false, false, false);
         }
 
-        SQLiteDatabase db = null;
-        SQLiteClientManager sqliteClientManager = null;
-        SQLiteTokenManager sqliteTokenManager = null;
-        
-        /* DBを同時アクセスさせない */
-        synchronized (sLockForDbAccess) {
-            try {
-                /* DBオープン */
-                db = sDbHelper.getWritableDatabase();
-                db.beginTransaction();
-                
-                /* ClientManagerにDBオブジェクトを設定 */
-                sqliteClientManager = (SQLiteClientManager) sClientManager;
-                sqliteClientManager.setDb(db);
-                
-                /* TokenManagerにDBオブジェクトを設定 */
-                sqliteTokenManager = (SQLiteTokenManager) sTokenManager;
-                sqliteTokenManager.setDb(db);
-                
-                /* アクセストークンを元にトークンを検索する */
-                SQLiteToken token = (SQLiteToken) sqliteTokenManager.findTokenByAccessToken(accessToken);
-                if (token != null) {
-                    isExistAccessToken = true; /* アクセストークンあり */
-                    Scope[] scopes = token.getScope();
-                    for (Scope s : scopes) {
-                        /* token.scopeに"*"が含まれていたら、どんなスコープにもアクセスできる */
-                        if (BuildConfig.DEBUG && s.getScope().equals("*")) {
-                            isExistScope = true; /* スコープあり */
-                            isNotExpired = true; /* 有効期限 */
-                            break;
-                        }
-                        if (s.getScope().equals(scope)) {
-                            isExistScope = true; /* スコープあり */
-                            
-                            if (s.getExpirePeriod() == 0) {
-                                /* 有効期限0の場合は、トークン発行から1分以内の初回アクセスなら有効期限内とする */
-                                long t = System.currentTimeMillis() - token.getRegistrationDate();
-                                if (0 <= t
-                                && t <= (LocalOAuth2Settings.ACCESS_TOKEN_GRACE_TIME * LocalOAuth2Settings.MSEC)
-                                && token.isFirstAccess()) {
-                                    isNotExpired = true;
-                                }
-                            } else if (s.getExpirePeriod() > 0) {
-                                /* 有効期限1以上の場合は、トークン発行からの経過時間が有効期限内かを判定して返す */
-                                isNotExpired = !s.isExpired();
-                            } else {
-                                /* 有効期限にマイナス値が設定されていたら、有効期限切れとみなす */
-                                isNotExpired = false;
+        /* キャッシュに無い場合はDBから読み込む */
+        AccessTokenCache.Entry entry = sTokenCache.get(accessToken);
+        if (entry == null) {
+            entry = loadAccessToken(accessToken);
+        }
+
+        if (entry != null) {
+            isExistAccessToken = true; /* アクセストークンあり */
+
+            /* このトークンを発行したクライアントIDが存在するかチェック */
+            isExistClientId = entry.isExistClientId();
+
+            /* 初回アクセスの判定とアクセス時間の更新を同時に行わせない */
+            synchronized (entry) {
+                SQLiteToken token = entry.getToken();
+                Scope[] scopes = token.getScope();
+                for (Scope s : scopes) {
+                    /* token.scopeに"*"が含まれていたら、どんなスコープにもアクセスできる */
+                    if (BuildConfig.DEBUG && s.getScope().equals("*")) {
+                        isExistScope = true; /* スコープあり */
+                        isNotExpired = true; /* 有効期限 */
+                        break;
+                    }
+                    if (s.getScope().equals(scope)) {
+                        isExistScope = true; /* スコープあり */
+
+                        if (s.getExpirePeriod() == 0) {
+                            /* 有効期限0の場合は、トークン発行から1分以内の初回アクセスなら有効期限内とする */
+                            long t = System.currentTimeMillis() - token.getRegistrationDate();
+                            if (0 <= t
+                            && t <= (LocalOAuth2Settings.ACCESS_TOKEN_GRACE_TIME * LocalOAuth2Settings.MSEC)
+                            && token.isFirstAccess()) {
+                                isNotExpired = true;
                             }
-                            break;
+                        } else if (s.getExpirePeriod() > 0) {
+                            /* 有効期限1以上の場合は、トークン発行からの経過時間が有効期限内かを判定して返す */
+                            isNotExpired = !s.isExpired();
+                        } else {
+                            /* 有効期限にマイナス値が設定されていたら、有効期限切れとみなす */
+                            isNotExpired = false;
                         }
+                        break;
                     }
-    
-                    /* このトークンを発行したクライアントIDが存在するかチェック */
-                    if (sqliteClientManager.findById(token.getClientId()) != null) {
-                        isExistClientId = true;
-                    }
-    
-                    /* トークンのアクセス時間更新 */
-                    SQLiteToken sqliteToken = (SQLiteToken) token;
-                    sqliteToken.dbUpdateTokenAccessTime(db);
-                }
-                
-                /* コミット */
-                db.setTransactionSuccessful();
-                
-            } catch (SQLiteException e) {
-                throw new RuntimeException(e);
-            } finally {
-                if (db != null) {
-                    db.endTransaction();
-                    db.close();
-                }
-                /* TokenManagerのDBオブジェクトをクリア設定 */
-                if (sqliteTokenManager != null) {
-                    sqliteTokenManager.setDb(null);
-                }
-                /* ClientManagerのDBオブジェクトをクリア設定 */
-                if (sqliteClientManager != null) {
-                    sqliteClientManager.setDb(null);
                 }
+
+                /* トークンのアクセス時間更新(DBへの書き込みは後でまとめて行う) */
+                sTokenCache.updateAccessTime(entry, System.currentTimeMillis());
             }
+            scheduleFlushAccessTimes();
         }
-        
+
         CheckAccessTokenResult result = new CheckAccessTokenResult(isExistClientId, isExistAccessToken, isExistScope,
                 isNotExpired);
         if (!result.checkResult()) {
@@ -1022,6 +1024,9 @@ public final class LocalOAuth2Main {
                 /* DBオープン */
                 db = sDbHelper.getWritableDatabase();
                 db.beginTransaction();
+
+                /* トークンのキャッシュを破棄 */
+                sTokenCache.clear();
                 
                 /* ClientManagerにDBオブジェクトを設定 */
                 sqliteClientManager = (SQLiteClientManager) sClientManager;
@@ -1233,6 +1238,9 @@ public final class LocalOAuth2Main {
                 /* DBオープン */
                 db = sDbHelper.getWritableDatabase();
                 db.beginTransaction();
+
+                /* トークンのキャッシュを破棄 */
+                sTokenCache.clear();
                 
                 /* TokenManagerにDBオブジェクトを設定 */
                 sqliteTokenManager = (SQLiteTokenManager) sTokenManager;
@@ -1273,6 +1281,9 @@ public final class LocalOAuth2Main {
                 /* DBオープン */
                 db = sDbHelper.getWritableDatabase();
                 db.beginTransaction();
+
+                /* トークンのキャッシュを破棄 */
+                sTokenCache.clear();
                 
                 /* TokenManagerにDBオブジェクトを設定 */
                 sqliteTokenManager = (SQLiteTokenManager) sTokenManager;
@@ -1339,6 +1350,132 @@ public final class LocalOAuth2Main {
         return client;
     }
     
+    /**
+     * アクセストークンに一致するトークンをDBから読み込み、キャッシュに追加する.
+     * @param accessToken アクセストークン
+     * @return not null: 追加したキャッシュ / null: アクセストークンに一致するトークンなし
+     */
+    private static AccessTokenCache.Entry loadAccessToken(final String accessToken) {
+        AccessTokenCache.Entry entry = null;
+
+        SQLiteDatabase db = null;
+        SQLiteClientManager sqliteClientManager = null;
+        SQLiteTokenManager sqliteTokenManager = null;
+
+        /* DBを同時アクセスさせない */
+        synchronized (sLockForDbAccess) {
+            /* Lockを待っている間に他のスレッドが読み込んでいる場合はそれを使う */
+            entry = sTokenCache.get(accessToken);
+            if (entry != null) {
+                return entry;
+            }
+
+            try {
+                /* DBオープン */
+                db = sDbHelper.getReadableDatabase();
+
+                /* ClientManagerにDBオブジェクトを設定 */
+                sqliteClientManager = (SQLiteClientManager) sClientManager;
+                sqliteClientManager.setDb(db);
+
+                /* TokenManagerにDBオブジェクトを設定 */
+                sqliteTokenManager = (SQLiteTokenManager) sTokenManager;
+                sqliteTokenManager.setDb(db);
+
+                /* アクセストークンを元にトークンを検索する */
+                SQLiteToken token = (SQLiteToken) sqliteTokenManager.findTokenByAccessToken(accessToken);
+                if (token != null) {
+                    boolean isExistClientId = sqliteClientManager.findById(token.getClientId()) != null;
+                    entry = sTokenCache.put(token, isExistClientId);
+                }
+
+            } catch (SQLiteException e) {
+                throw new RuntimeException(e);
+            } finally {
+                if (db != null) {
+                    db.close();
+                }
+                /* TokenManagerのDBオブジェクトをクリア設定 */
+                if (sqliteTokenManager != null) {
+                    sqliteTokenManager.setDb(null);
+                }
+                /* ClientManagerのDBオブジェクトをクリア設定 */
+                if (sqliteClientManager != null) {
+                    sqliteClientManager.setDb(null);
+                }
+            }
+        }
+
+        return entry;
+    }
+
+    /**
+     * トークンのアクセス時間のDBへの書き込みを予約する.
+     * <p>
+     * 書き込みが予約済みの場合は何もしない。
+     * </p>
+     */
+    private static void scheduleFlushAccessTimes() {
+        ScheduledExecutorService writer = sAccessTimeWriter;
+        if (writer == null || !sAccessTimeFlushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            writer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    sAccessTimeFlushScheduled.set(false);
+                    flushAccessTimes();
+                }
+            }, LocalOAuth2Settings.ACCESS_TIME_FLUSH_DELAY, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            sAccessTimeFlushScheduled.set(false);
+        }
+    }
+
+    /**
+     * 書き込み待ちのトークンのアクセス時間をDBに書き込む.
+     */
+    private static void flushAccessTimes() {
+        SQLiteDatabase db = null;
+        SQLiteTokenManager sqliteTokenManager = null;
+
+        /* DBを同時アクセスさせない */
+        synchronized (sLockForDbAccess) {
+            Map<Long, Long> accessTimes = sTokenCache.drainAccessTimes();
+            if (accessTimes.isEmpty() || sDbHelper == null) {
+                return;
+            }
+
+            try {
+                /* DBオープン */
+                db = sDbHelper.getWritableDatabase();
+                db.beginTransaction();
+
+                /* TokenManagerにDBオブジェクトを設定 */
+                sqliteTokenManager = (SQLiteTokenManager) sTokenManager;
+                sqliteTokenManager.setDb(db);
+
+                sqliteTokenManager.updateAccessTimes(accessTimes);
+
+                /* コミット */
+                db.setTransactionSuccessful();
+
+            } catch (SQLiteException e) {
+                sLogger.warning("flushAccessTimes() - " + e.getMessage());
+            } finally {
+                if (db != null) {
+                    db.endTransaction();
+                    db.close();
+                }
+                /* TokenManagerのDBオブジェクトをクリア設定 */
+                if (sqliteTokenManager != null) {
+                    sqliteTokenManager.setDb(null);
+                }
+            }
+        }
+    }
+
     /**
      * 長時間使用されていなかったclientIdをクリーンアップする(DBアクセスしたついでに有効クライアント数も取得する).
      * @return 有効クライアント数
@@ -1355,6 +1492,9 @@ public final class LocalOAuth2Main {
                 /* DBオープン */
                 db = sDbHelper.getWritableDatabase();
                 db.beginTransaction();
+
+                /* トークンのキャッシュを破棄 */
+                sTokenCache.clear();
                 
                 /* ClientManagerにDBオブジェクトを設定 */
                 sqliteClientManager = (SQLiteClientManager) sClientManager;
@@ -1420,6 +1560,9 @@ public final class LocalOAuth2Main {
                                 /* DBオープン */
                                 db = sDbHelper.getWritableDatabase();
                                 db.beginTransaction();
+
+                                /* トークンのキャッシュを破棄 */
+                                sTokenCache.clear();
                                 
                                 /* ClientManagerにDBオブジェクトを設定 */
                                 sqliteClientManager = (SQLiteClientManager) sClientManager;
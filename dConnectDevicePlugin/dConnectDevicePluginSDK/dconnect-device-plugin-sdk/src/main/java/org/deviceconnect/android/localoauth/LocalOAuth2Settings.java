@@ -39,6 +39,12 @@ public final class LocalOAuth2Settings {
     
     /** 有効期限0が設定されたときに、初回アクセスを「有効期限内」として返す猶予時間[秒]. */
     public static final long ACCESS_TOKEN_GRACE_TIME = 1 * MINUTE; /* 1分[秒] */
+
+    /** メモリ上にキャッシュするアクセストークンの上限. */
+    public static final int ACCESS_TOKEN_CACHE_MAX = 256;
+    
+    /** アクセストークンのアクセス時間をDBにまとめて書き込むまでの遅延時間[sec]. */
+    public static final int ACCESS_TIME_FLUSH_DELAY = 10;
     
     
     
@@ -49,6 +49,7 @@ import org.restlet.ext.oauth.internal.Client;
 import org.restlet.ext.oauth.internal.Scope;
 import org.restlet.ext.oauth.internal.Token;
 
+import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
@@ -391,6 +392,25 @@ public class SQLiteTokenManager extends AbstractTokenManager {
         }
     }
 
+    /**
+     * トークンのアクセス時間をまとめて更新する.
+     * 
+     * @param accessTimes トークンIDをキーにしたアクセス時間
+     */
+    public void updateAccessTimes(final Map<Long, Long> accessTimes) {
+        if (mDb != null) {
+            ContentValues values = new ContentValues();
+            String whereClause = SQLiteToken.ID_FIELD + "=?";
+            for (Map.Entry<Long, Long> entry : accessTimes.entrySet()) {
+                values.put(SQLiteToken.ACCESS_DATE_FIELD, entry.getValue());
+                String[] whereArgs = { String.valueOf(entry.getKey()) };
+                mDb.update(LocalOAuthOpenHelper.TOKENS_TABLE, values, whereClause, whereArgs);
+            }
+        } else {
+            throw new SQLiteException("DBがオープンされていません。");
+        }
+    }
+
     /**
      * 古い無効なトークン(クライアントIDが削除されて残っていたトークン)をクリーンアップする.
      */
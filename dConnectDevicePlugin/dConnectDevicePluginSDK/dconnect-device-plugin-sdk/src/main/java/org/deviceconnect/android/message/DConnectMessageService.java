@@ -48,10 +48,10 @@ import org.json.JSONException;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
@@ -88,7 +88,7 @@ public abstract class DConnectMessageService extends Service implements DConnect
     /**
      * プロファイルインスタンスマップ.
      */
-    private Map<String, DConnectProfile> mProfileMap = new HashMap<>();
+    private Map<String, DConnectProfile> mProfileMap = new ConcurrentHashMap<>();
 
     /**
      * Local OAuth使用フラグ.
@@ -117,6 +117,22 @@ public abstract class DConnectMessageService extends Service implements DConnect
      */
     private DConnectPluginSpec mPluginSpec;
 
+    /**
+     * リクエストをワーカースレッドで実行するクラス.
+     * <p>
+     * nullの場合はメインスレッドでリクエストを実行する。
+     * </p>
+     */
+    private RequestDispatcher mRequestDispatcher;
+
+    /**
+     * イベントをまとめて送信するクラス.
+     * <p>
+     * nullの場合はイベントを1つずつ送信する。
+     * </p>
+     */
+    private EventBatcher mEventBatcher;
+
     private final IBinder mLocalBinder = new LocalBinder();
 
     @Override
@@ -145,6 +161,14 @@ public abstract class DConnectMessageService extends Service implements DConnect
     @Override
     public void onDestroy() {
         super.onDestroy();
+        if (mRequestDispatcher != null) {
+            mRequestDispatcher.shutdown();
+            mRequestDispatcher = null;
+        }
+        if (mEventBatcher != null) {
+            mEventBatcher.shutdown();
+            mEventBatcher = null;
+        }
         // LocalOAuthの後始末
         LocalOAuth2Main.destroy();
     }
@@ -171,7 +195,7 @@ public abstract class DConnectMessageService extends Service implements DConnect
 
         if (checkRequestAction(action)) {
             convertRequest(intent);
-            onRequest(intent, MessageUtils.createResponseIntent(intent));
+            dispatchRequest(intent, MessageUtils.createResponseIntent(intent));
         }
 
         if (checkManagerUninstall(intent)) {
@@ -329,6 +353,90 @@ public abstract class DConnectMessageService extends Service implements DConnect
         return IntentDConnectMessage.ACTION_DEVICEPLUGIN_RESET.equals(action);
     }
 
+    /**
+     * リクエストをワーカースレッドで実行するクラスを設定する.
+     * <p>
+     * 設定した場合、{@link #onRequest(Intent, Intent)}はメインスレッドではなくワーカースレッドで呼び出される。
+     * プロファイルの処理がUIを操作する場合は、メインスレッドに処理を渡すこと。<br>
+     * {@link DConnectService#setRequestSerialized(boolean)}にtrueを設定したサービス宛てのリクエストは、
+     * 1つずつ順番に実行される。<br>
+     * デフォルトは、nullが設定されている。
+     * </p>
+     * @param dispatcher リクエストを実行するクラス. メインスレッドで実行する場合はnull
+     */
+    protected final void setRequestDispatcher(final RequestDispatcher dispatcher) {
+        if (mRequestDispatcher != null && mRequestDispatcher != dispatcher) {
+            mRequestDispatcher.shutdown();
+        }
+        mRequestDispatcher = dispatcher;
+    }
+
+    /**
+     * リクエストをワーカースレッドで実行するクラスを取得する.
+     * @return リクエストを実行するクラス. 設定されていない場合はnull
+     */
+    protected final RequestDispatcher getRequestDispatcher() {
+        return mRequestDispatcher;
+    }
+
+    /**
+     * 受信したリクエストを実行する.
+     * <p>
+     * {@link RequestDispatcher}が設定されていない場合は、呼び出したスレッドで実行する。
+     * 過負荷で受け付けられない場合は、サーバの状態異常エラーを返却する。
+     * </p>
+     * @param request リクエストパラメータ
+     * @param response レスポンスパラメータ
+     */
+    private void dispatchRequest(final Intent request, final Intent response) {
+        RequestDispatcher dispatcher = mRequestDispatcher;
+        if (dispatcher == null) {
+            onRequest(request, response);
+            return;
+        }
+
+        Runnable onRejected = new Runnable() {
+            @Override
+            public void run() {
+                mLogger.warning("Request queue is full: " + request.getAction());
+                MessageUtils.setIllegalServerStateError(response, "Plugin is busy.");
+                sendResponse(response);
+            }
+        };
+        boolean accepted = dispatcher.dispatch(getSerialKey(request), new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    onRequest(request, response);
+                } catch (RuntimeException e) {
+                    mLogger.log(Level.WARNING, "Failed to execute a request.", e);
+                    MessageUtils.setUnknownError(response, e.getMessage());
+                    sendResponse(response);
+                }
+            }
+        }, onRejected);
+        if (!accepted) {
+            onRejected.run();
+        }
+    }
+
+    /**
+     * リクエストを1つずつ実行するためのシリアルキーを取得する.
+     * @param request リクエスト
+     * @return シリアルキー. 並列に実行してよい場合はnull
+     */
+    private String getSerialKey(final Intent request) {
+        String serviceId = DConnectProfile.getServiceID(request);
+        if (serviceId == null || mServiceProvider == null) {
+            return null;
+        }
+        DConnectService service = mServiceProvider.getService(serviceId);
+        if (service != null && service.isRequestSerialized()) {
+            return serviceId;
+        }
+        return null;
+    }
+
     /**
      * 受信したリクエストをプロファイルに振り分ける.
      * 
@@ -489,21 +597,83 @@ public abstract class DConnectMessageService extends Service implements DConnect
             throw new IllegalArgumentException("Event is null.");
         }
 
+        EventBatcher batcher = mEventBatcher;
+        if (batcher != null) {
+            return batcher.offer(event, accessToken);
+        }
+
+        if (!checkEventAccessToken(event, accessToken)) {
+            return false;
+        }
+        broadcastEvent(event);
+        return true;
+    }
+
+    /**
+     * イベントの送り先のアクセストークンを確認する.
+     * @param event イベントパラメータ
+     * @param accessToken 送り先のアクセストークン
+     * @return 送信してよい場合はtrue、アクセストークンエラーの場合はfalse
+     */
+    private boolean checkEventAccessToken(final Intent event, final String accessToken) {
         if (isUseLocalOAuth()) {
             CheckAccessTokenResult result = LocalOAuth2Main.checkAccessToken(accessToken,
                     event.getStringExtra(DConnectMessage.EXTRA_PROFILE), IGNORE_PROFILES);
-            if (!result.checkResult()) {
-                return false;
-            }
+            return result.checkResult();
         }
+        return true;
+    }
 
+    /**
+     * Device Connect Managerにイベントをブロードキャストする.
+     * @param event イベントパラメータ
+     */
+    private void broadcastEvent(final Intent event) {
         if (BuildConfig.DEBUG) {
             mLogger.info("sendEvent: " + event);
             mLogger.info("sendEvent Extra: " + event.getExtras());
         }
 
         getContext().sendBroadcast(event);
-        return true;
+    }
+
+    /**
+     * イベントをまとめて送信するクラスを設定する.
+     * <p>
+     * 設定した場合、{@link #sendEvent(Intent, String)}で送信したイベントは、同じイベント登録宛てごとに
+     * {@link EventBatcher}の設定に従ってまとめて送信される。
+     * 加速度センサーなどの高頻度のイベントを送信する場合に、ブロードキャストとアクセストークンの確認の回数を減らすことができる。<br>
+     * アクセストークンの確認はまとめ始める時に行うので、まとめ中のイベントは送信の成否に関わらずtrueが返却される。<br>
+     * デフォルトは、nullが設定されている。
+     * </p>
+     * @param batcher イベントをまとめて送信するクラス. 1つずつ送信する場合はnull
+     */
+    protected final void setEventBatcher(final EventBatcher batcher) {
+        if (mEventBatcher != null && mEventBatcher != batcher) {
+            mEventBatcher.shutdown();
+        }
+        if (batcher != null) {
+            batcher.setCallback(new EventBatcher.Callback() {
+                @Override
+                public boolean authorize(final Intent event, final String accessToken) {
+                    return checkEventAccessToken(event, accessToken);
+                }
+
+                @Override
+                public void send(final Intent event) {
+                    broadcastEvent(event);
+                }
+            });
+        }
+        mEventBatcher = batcher;
+    }
+
+    /**
+     * イベントをまとめて送信するクラスを取得する.
+     * @return イベントをまとめて送信するクラス. 設定されていない場合はnull
+     */
+    protected final EventBatcher getEventBatcher() {
+        return mEventBatcher;
     }
 
     /**
@@ -0,0 +1,334 @@
+/*
+ EventBatcher.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.message;
+
+import android.content.ComponentName;
+import android.content.Intent;
+import android.os.Bundle;
+
+import org.deviceconnect.message.DConnectMessage;
+import org.deviceconnect.message.intent.message.IntentDConnectMessage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同じイベント登録宛てのイベントをまとめてDevice Connect Managerに送信するクラス.
+ * <p>
+ * {@link DConnectMessageService#setEventBatcher(EventBatcher)}で設定した場合に、
+ * 送信するイベントは一定時間、または一定数までまとめられ、1回のブロードキャストで送信される。
+ * アクセストークンの確認は、まとめたイベントごとに1回だけ行う。
+ * </p>
+ * <p>
+ * まとめたイベントは{@link IntentDConnectMessage#EXTRA_EVENT_BATCH}に各イベントのパラメータを格納して送信する。
+ * 1つしかイベントが無い場合は、元のイベントをそのまま送信する。
+ * そのため、この機能はイベントの一括送信に対応したDevice Connect Managerと組み合わせて使用すること。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class EventBatcher {
+
+    /** デフォルトのイベントをまとめる時間(ms). */
+    public static final long DEFAULT_WINDOW = 100;
+
+    /** デフォルトのまとめるイベントの最大数. */
+    public static final int DEFAULT_MAX_COUNT = 32;
+
+    /** イベントをまとめる時間(ms). */
+    private final long mWindow;
+
+    /** まとめるイベントの最大数. */
+    private final int mMaxCount;
+
+    /** イベント登録ごとのまとめ中のイベント. */
+    private final Map<String, Batch> mBatches = new HashMap<>();
+
+    /** まとめたイベントを送信するタイマー. */
+    private final ScheduledThreadPoolExecutor mTimer;
+
+    /** イベントの送信先. */
+    private Callback mCallback;
+
+    /**
+     * デフォルト設定でイベントをまとめるクラスを作成する.
+     */
+    public EventBatcher() {
+        this(new Builder());
+    }
+
+    /**
+     * ビルダーの設定でイベントをまとめるクラスを作成する.
+     * @param builder ビルダー
+     */
+    private EventBatcher(final Builder builder) {
+        mWindow = builder.mWindow;
+        mMaxCount = builder.mMaxCount;
+        mTimer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                Thread thread = new Thread(r, "EventBatcher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * イベントをまとめる時間を取得する.
+     * @return イベントをまとめる時間(ms)
+     */
+    public long getWindow() {
+        return mWindow;
+    }
+
+    /**
+     * まとめるイベントの最大数を取得する.
+     * @return まとめるイベントの最大数
+     */
+    public int getMaxCount() {
+        return mMaxCount;
+    }
+
+    /**
+     * イベントの送信先を設定する.
+     * @param callback 送信先
+     */
+    void setCallback(final Callback callback) {
+        mCallback = callback;
+    }
+
+    /**
+     * イベントを追加する.
+     * <p>
+     * イベント登録宛てのまとめ中のイベントが無い場合は、アクセストークンを確認してからまとめ始める。
+     * アクセストークンの確認はデータベースにアクセスするので、他のイベント登録宛てのイベントを待たせないように、
+     * ロックを取得せずに行う。
+     * まとめたイベントが最大数に達した場合は、呼び出したスレッドで送信する。
+     * </p>
+     * @param event イベント
+     * @param accessToken 送り先のアクセストークン
+     * @return 追加した場合はtrue、アクセストークンエラーの場合はfalse
+     */
+    boolean offer(final Intent event, final String accessToken) {
+        String key = createKey(event, accessToken);
+        Bundle extras = event.getExtras();
+        if (extras == null) {
+            extras = new Bundle();
+        }
+
+        Batch full = null;
+        boolean added = false;
+        synchronized (mBatches) {
+            Batch batch = mBatches.get(key);
+            if (batch != null) {
+                full = append(batch, extras);
+                added = true;
+            }
+        }
+        if (!added) {
+            if (!mCallback.authorize(event, accessToken)) {
+                return false;
+            }
+            synchronized (mBatches) {
+                // 確認している間に、別のスレッドがまとめ始めている場合はそちらに追加する
+                Batch batch = mBatches.get(key);
+                if (batch == null) {
+                    batch = new Batch(key, event);
+                    mBatches.put(key, batch);
+                    scheduleFlush(batch);
+                }
+                full = append(batch, extras);
+            }
+        }
+        if (full != null) {
+            send(full);
+        }
+        return true;
+    }
+
+    /**
+     * まとめ中のイベントに追加する.
+     * <p>
+     * mBatchesのロックを取得した状態で呼び出すこと。
+     * </p>
+     * @param batch まとめ中のイベント
+     * @param extras イベントのパラメータ
+     * @return 最大数に達した場合はまとめたイベント、それ以外はnull
+     */
+    private Batch append(final Batch batch, final Bundle extras) {
+        batch.mEvents.add(extras);
+        if (batch.mEvents.size() >= mMaxCount) {
+            mBatches.remove(batch.mKey);
+            return batch;
+        }
+        return null;
+    }
+
+    /**
+     * まとめ中の全てのイベントを送信して、タイマーを停止する.
+     */
+    void shutdown() {
+        flushAll();
+        mTimer.shutdownNow();
+    }
+
+    /**
+     * まとめ中の全てのイベントを送信する.
+     */
+    public void flushAll() {
+        ArrayList<Batch> batches;
+        synchronized (mBatches) {
+            batches = new ArrayList<>(mBatches.values());
+            mBatches.clear();
+        }
+        for (Batch batch : batches) {
+            send(batch);
+        }
+    }
+
+    /**
+     * まとめる時間が経過した時にイベントを送信するように予約する.
+     * @param batch まとめ中のイベント
+     */
+    private void scheduleFlush(final Batch batch) {
+        mTimer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (mBatches) {
+                    // 最大数に達して送信済みの場合は、新しくまとめ始めたイベントを送信しない
+                    if (mBatches.get(batch.mKey) != batch) {
+                        return;
+                    }
+                    mBatches.remove(batch.mKey);
+                }
+                send(batch);
+            }
+        }, mWindow, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * まとめたイベントを送信する.
+     * @param batch まとめたイベント
+     */
+    private void send(final Batch batch) {
+        if (batch.mEvents.size() == 1) {
+            mCallback.send(batch.mFirst);
+            return;
+        }
+        Intent message = new Intent(batch.mFirst);
+        message.putParcelableArrayListExtra(IntentDConnectMessage.EXTRA_EVENT_BATCH, batch.mEvents);
+        mCallback.send(message);
+    }
+
+    /**
+     * イベント登録を識別するキーを作成する.
+     * @param event イベント
+     * @param accessToken 送り先のアクセストークン
+     * @return キー
+     */
+    private static String createKey(final Intent event, final String accessToken) {
+        ComponentName component = event.getComponent();
+        StringBuilder key = new StringBuilder();
+        key.append(component != null ? component.flattenToShortString() : "").append('\n')
+            .append(accessToken).append('\n')
+            .append(event.getStringExtra(IntentDConnectMessage.EXTRA_SESSION_KEY)).append('\n')
+            .append(event.getStringExtra(DConnectMessage.EXTRA_SERVICE_ID)).append('\n')
+            .append(event.getStringExtra(DConnectMessage.EXTRA_PROFILE)).append('\n')
+            .append(event.getStringExtra(DConnectMessage.EXTRA_INTERFACE)).append('\n')
+            .append(event.getStringExtra(DConnectMessage.EXTRA_ATTRIBUTE));
+        return key.toString();
+    }
+
+    /**
+     * イベントの送信先.
+     */
+    interface Callback {
+        /**
+         * イベントの送り先のアクセストークンを確認する.
+         * @param event イベント
+         * @param accessToken 送り先のアクセストークン
+         * @return 送信してよい場合はtrue、それ以外はfalse
+         */
+        boolean authorize(Intent event, String accessToken);
+
+        /**
+         * イベントを送信する.
+         * @param event イベント
+         */
+        void send(Intent event);
+    }
+
+    /**
+     * 1つのイベント登録宛てにまとめ中のイベント.
+     */
+    private static class Batch {
+        /** イベント登録を識別するキー. */
+        final String mKey;
+        /** 最初のイベント. */
+        final Intent mFirst;
+        /** 各イベントのパラメータ. */
+        final ArrayList<Bundle> mEvents = new ArrayList<>();
+
+        /**
+         * コンストラクタ.
+         * @param key イベント登録を識別するキー
+         * @param first 最初のイベント
+         */
+        Batch(final String key, final Intent first) {
+            mKey = key;
+            mFirst = first;
+        }
+    }
+
+    /**
+     * {@link EventBatcher}のビルダー.
+     */
+    public static final class Builder {
+        /** イベントをまとめる時間(ms). */
+        private long mWindow = DEFAULT_WINDOW;
+        /** まとめるイベントの最大数. */
+        private int mMaxCount = DEFAULT_MAX_COUNT;
+
+        /**
+         * イベントをまとめる時間を設定する.
+         * @param window イベントをまとめる時間(ms)
+         * @return ビルダー
+         */
+        public Builder window(final long window) {
+            if (window <= 0) {
+                throw new IllegalArgumentException("window is invalid: " + window);
+            }
+            mWindow = window;
+            return this;
+        }
+
+        /**
+         * まとめるイベントの最大数を設定する.
+         * @param maxCount まとめるイベントの最大数
+         * @return ビルダー
+         */
+        public Builder maxCount(final int maxCount) {
+            if (maxCount <= 0) {
+                throw new IllegalArgumentException("maxCount is invalid: " + maxCount);
+            }
+            mMaxCount = maxCount;
+            return this;
+        }
+
+        /**
+         * {@link EventBatcher}を作成する.
+         * @return EventBatcher
+         */
+        public EventBatcher build() {
+            return new EventBatcher(this);
+        }
+    }
+}
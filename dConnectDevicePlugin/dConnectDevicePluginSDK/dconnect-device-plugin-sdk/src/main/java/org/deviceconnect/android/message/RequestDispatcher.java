@@ -0,0 +1,293 @@
+/*
+ RequestDispatcher.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.message;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * デバイスプラグインが受信したリクエストをワーカースレッドで実行するクラス.
+ * <p>
+ * {@link DConnectMessageService#setRequestDispatcher(RequestDispatcher)}で設定した場合に、
+ * リクエストはメインスレッドではなく、このクラスのスレッドプールで処理される。
+ * </p>
+ * <p>
+ * シリアルキーを指定したリクエストは、同じシリアルキーのリクエストが実行中の場合は待ち行列に格納され、
+ * 1つずつ順番に実行される。同時に1つのコマンドしか受け付けられないデバイスのサービスで使用する。
+ * </p>
+ * <p>
+ * キューのサイズに上限を持ち、上限を超えたリクエストは受け付けない。
+ * 上限はスレッドプールのキューとシリアルキーごとの待ち行列を合わせたリクエスト数に適用する。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class RequestDispatcher {
+
+    /** デフォルトのスレッド数. */
+    public static final int DEFAULT_THREAD_SIZE = 4;
+
+    /** デフォルトのキューサイズ. */
+    public static final int DEFAULT_QUEUE_SIZE = 64;
+
+    /** リクエストを実行するスレッドプール. */
+    private final ThreadPoolExecutor mExecutor;
+
+    /** キューに格納できるリクエストの最大数. */
+    private final int mMaxQueueSize;
+
+    /** シリアルキーごとの実行状態. */
+    private final Map<String, SerialSlot> mSerialSlots = new HashMap<>();
+
+    /** シリアルキーごとの待ち行列に格納されているリクエスト数. */
+    private int mPendingCount;
+
+    /**
+     * デフォルト設定でリクエストを実行するクラスを作成する.
+     */
+    public RequestDispatcher() {
+        this(new Builder());
+    }
+
+    /**
+     * ビルダーの設定でリクエストを実行するクラスを作成する.
+     * @param builder ビルダー
+     */
+    private RequestDispatcher(final Builder builder) {
+        mMaxQueueSize = builder.mQueueSize;
+        mExecutor = new ThreadPoolExecutor(builder.mThreadSize, builder.mThreadSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(builder.mQueueSize), new WorkerThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * リクエストを実行する.
+     * <p>
+     * キューが一杯の場合には、リクエストを受け付けずにfalseを返却する。
+     * シリアルキーごとの待ち行列に格納された後に受け付けられなくなった場合には、onRejectedが呼び出される。
+     * </p>
+     * @param serialKey シリアルキー. 他のリクエストと並列に実行してよい場合はnull
+     * @param task 実行するタスク
+     * @param onRejected 待ち行列から取り出した後に受け付けられなかった場合に実行するタスク
+     * @return 受け付けた場合はtrue、過負荷で受け付けられない場合はfalse
+     */
+    public boolean dispatch(final String serialKey, final Runnable task, final Runnable onRejected) {
+        if (task == null) {
+            throw new IllegalArgumentException("task is null.");
+        }
+        if (onRejected == null) {
+            throw new IllegalArgumentException("onRejected is null.");
+        }
+        Task t = new Task(serialKey, task, onRejected);
+
+        // キューへの追加は全てロックを取得して行い、実行待ちのリクエスト数が上限を超えないようにする
+        synchronized (mSerialSlots) {
+            if (getQueueSize() >= mMaxQueueSize) {
+                return false;
+            }
+            if (serialKey == null) {
+                return submit(t);
+            }
+
+            SerialSlot slot = mSerialSlots.get(serialKey);
+            if (slot != null) {
+                slot.mPending.offer(t);
+                mPendingCount++;
+                return true;
+            }
+            if (!submit(t)) {
+                return false;
+            }
+            mSerialSlots.put(serialKey, new SerialSlot());
+            return true;
+        }
+    }
+
+    /**
+     * リクエストの実行を終了する.
+     * <p>
+     * 実行中のリクエストは中断しない。
+     * </p>
+     */
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+
+    /**
+     * 実行中のリクエスト数を取得する.
+     * @return 実行中のリクエスト数
+     */
+    public int getActiveCount() {
+        return mExecutor.getActiveCount();
+    }
+
+    /**
+     * 実行待ちのリクエスト数を取得する.
+     * @return 実行待ちのリクエスト数
+     */
+    public int getQueuedCount() {
+        synchronized (mSerialSlots) {
+            return getQueueSize();
+        }
+    }
+
+    /**
+     * スレッドプールにタスクを渡す.
+     * @param task タスク
+     * @return 受け付けた場合はtrue、それ以外はfalse
+     */
+    private boolean submit(final Task task) {
+        try {
+            mExecutor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * シリアルキーの実行枠を解放し、待ち行列にリクエストがあれば実行する.
+     * @param serialKey シリアルキー
+     */
+    private void releaseSlot(final String serialKey) {
+        while (true) {
+            Task next;
+            synchronized (mSerialSlots) {
+                SerialSlot slot = mSerialSlots.get(serialKey);
+                if (slot == null) {
+                    return;
+                }
+                next = slot.mPending.poll();
+                if (next == null) {
+                    mSerialSlots.remove(serialKey);
+                    return;
+                }
+                mPendingCount--;
+                if (submit(next)) {
+                    return;
+                }
+            }
+            // 終了済みなどで実行できなかったリクエストにはエラーを通知して、次のリクエストを処理する
+            next.mOnRejected.run();
+        }
+    }
+
+    /**
+     * 実行待ちのリクエスト数を取得する.
+     * @return 実行待ちのリクエスト数
+     */
+    private int getQueueSize() {
+        return mExecutor.getQueue().size() + mPendingCount;
+    }
+
+    /**
+     * シリアルキーごとの実行状態.
+     */
+    private static class SerialSlot {
+        /** 実行待ちのリクエスト. */
+        final Queue<Task> mPending = new ArrayDeque<>();
+    }
+
+    /**
+     * スレッドプールで実行するタスク.
+     */
+    private class Task implements Runnable {
+        /** シリアルキー. */
+        final String mSerialKey;
+        /** 実行するタスク. */
+        final Runnable mTask;
+        /** 受け付けられなかった場合に実行するタスク. */
+        final Runnable mOnRejected;
+
+        /**
+         * コンストラクタ.
+         * @param serialKey シリアルキー
+         * @param task 実行するタスク
+         * @param onRejected 受け付けられなかった場合に実行するタスク
+         */
+        Task(final String serialKey, final Runnable task, final Runnable onRejected) {
+            mSerialKey = serialKey;
+            mTask = task;
+            mOnRejected = onRejected;
+        }
+
+        @Override
+        public void run() {
+            try {
+                mTask.run();
+            } finally {
+                if (mSerialKey != null) {
+                    releaseSlot(mSerialKey);
+                }
+            }
+        }
+    }
+
+    /**
+     * ワーカースレッドに名前を付けるThreadFactory.
+     */
+    private static class WorkerThreadFactory implements ThreadFactory {
+        /** スレッドの通し番号. */
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            return new Thread(r, "DConnectRequest-" + mCount.incrementAndGet());
+        }
+    }
+
+    /**
+     * {@link RequestDispatcher}のビルダー.
+     */
+    public static final class Builder {
+        /** スレッド数. */
+        private int mThreadSize = DEFAULT_THREAD_SIZE;
+        /** キューサイズ. */
+        private int mQueueSize = DEFAULT_QUEUE_SIZE;
+
+        /**
+         * スレッド数を設定する.
+         * @param size スレッド数
+         * @return ビルダー
+         */
+        public Builder threadSize(final int size) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("threadSize is invalid: " + size);
+            }
+            mThreadSize = size;
+            return this;
+        }
+
+        /**
+         * キューサイズを設定する.
+         * @param size キューサイズ
+         * @return ビルダー
+         */
+        public Builder queueSize(final int size) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("queueSize is invalid: " + size);
+            }
+            mQueueSize = size;
+            return this;
+        }
+
+        /**
+         * {@link RequestDispatcher}を作成する.
+         * @return RequestDispatcher
+         */
+        public RequestDispatcher build() {
+            return new RequestDispatcher(this);
+        }
+    }
+}
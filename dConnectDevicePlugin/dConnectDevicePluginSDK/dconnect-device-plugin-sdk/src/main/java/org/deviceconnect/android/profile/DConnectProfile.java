@@ -17,6 +17,7 @@ import org.deviceconnect.android.localoauth.ClientPackageInfo;
 import org.deviceconnect.android.localoauth.LocalOAuth2Main;
 import org.deviceconnect.android.message.DConnectMessageService;
 import org.deviceconnect.android.message.MessageUtils;
+import org.deviceconnect.android.profile.api.ApiRoutingTable;
 import org.deviceconnect.android.profile.api.DConnectApi;
 import org.deviceconnect.android.profile.spec.DConnectApiSpec;
 import org.deviceconnect.android.profile.spec.DConnectProfileSpec;
@@ -76,6 +77,14 @@ public abstract class DConnectProfile implements DConnectProfileConstants,
     protected final Map<ApiIdentifier, DConnectApi> mApis
         = new HashMap<ApiIdentifier, DConnectApi>();
 
+    /**
+     * サポートするAPIの検索テーブル.
+     * <p>
+     * APIを追加・削除した時に破棄し、次にAPIを検索する時に作成する。
+     * </p>
+     */
+    private volatile ApiRoutingTable mRoutingTable;
+
     protected boolean isEqual(final String s1, final String s2) {
         if (s1 == null && s2 == null) {
             return true;
@@ -94,7 +103,9 @@ public abstract class DConnectProfile implements DConnectProfileConstants,
      */
     public List<DConnectApi> getApiList() {
         List<DConnectApi> list = new ArrayList<DConnectApi>();
-        list.addAll(mApis.values());
+        synchronized (mApis) {
+            list.addAll(mApis.values());
+        }
         return list;
     }
 
@@ -116,8 +127,7 @@ public abstract class DConnectProfile implements DConnectProfileConstants,
                 return null;
             }
         }
-        String path = getApiPath(request);
-        return findApi(path, method);
+        return getRoutingTable().find(method, getInterface(request), getAttribute(request));
     }
 
     /**
@@ -128,7 +138,9 @@ public abstract class DConnectProfile implements DConnectProfileConstants,
      * @return 指定されたリクエストに対応するAPI実装を返す. 存在しない場合は<code>null</code>
      */
     public DConnectApi findApi(final String path, final Method method) {
-        return mApis.get(new ApiIdentifier(path, method));
+        synchronized (mApis) {
+            return mApis.get(new ApiIdentifier(path, method));
+        }
     }
 
     /**
@@ -136,7 +148,10 @@ public abstract class DConnectProfile implements DConnectProfileConstants,
      * @param api API 追加するAPI実装
      */
     public void addApi(final DConnectApi api) {
-        mApis.put(new ApiIdentifier(getApiPath(api), api.getMethod()), api);
+        synchronized (mApis) {
+            mApis.put(new ApiIdentifier(getApiPath(api), api.getMethod()), api);
+            mRoutingTable = null;
+        }
     }
 
     /**
@@ -144,7 +159,31 @@ public abstract class DConnectProfile implements DConnectProfileConstants,
      * @param api 削除するAPI実装
      */
     public void removeApi(final DConnectApi api) {
-        mApis.remove(new ApiIdentifier(getApiPath(api), api.getMethod()));
+        synchronized (mApis) {
+            mApis.remove(new ApiIdentifier(getApiPath(api), api.getMethod()));
+            mRoutingTable = null;
+        }
+    }
+
+    /**
+     * サポートするAPIの検索テーブルを取得する.
+     * <p>
+     * APIが追加・削除されていた場合は、テーブルを作成し直す。
+     * </p>
+     * @return 検索テーブル
+     */
+    private ApiRoutingTable getRoutingTable() {
+        ApiRoutingTable table = mRoutingTable;
+        if (table == null) {
+            synchronized (mApis) {
+                table = mRoutingTable;
+                if (table == null) {
+                    table = new ApiRoutingTable(mApis.values());
+                    mRoutingTable = table;
+                }
+            }
+        }
+        return table;
     }
 
     public boolean hasApi(final String path, final Method method) {
@@ -629,7 +668,7 @@ public abstract class DConnectProfile implements DConnectProfileConstants,
      * @return プロファイル名。無い場合はnullを返す。
      */
     public static String getProfile(final Intent request) {
-        String profile = request.getExtras().getString(DConnectMessage.EXTRA_PROFILE);
+        String profile = request.getStringExtra(DConnectMessage.EXTRA_PROFILE);
         return profile;
     }
 
@@ -650,7 +689,7 @@ public abstract class DConnectProfile implements DConnectProfileConstants,
      * @return インターフェース。無い場合はnullを返す。
      */
     public static String getInterface(final Intent request) {
-        String inter = request.getExtras().getString(DConnectMessage.EXTRA_INTERFACE);
+        String inter = request.getStringExtra(DConnectMessage.EXTRA_INTERFACE);
         return inter;
     }
 
@@ -671,7 +710,7 @@ public abstract class DConnectProfile implements DConnectProfileConstants,
      * @return 属性名。無い場合はnullを返す。
      */
     public static String getAttribute(final Intent request) {
-        String attribute = request.getExtras().getString(DConnectMessage.EXTRA_ATTRIBUTE);
+        String attribute = request.getStringExtra(DConnectMessage.EXTRA_ATTRIBUTE);
         return attribute;
     }
 
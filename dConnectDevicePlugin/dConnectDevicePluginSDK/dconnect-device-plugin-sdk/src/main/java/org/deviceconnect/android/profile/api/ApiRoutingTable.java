@@ -0,0 +1,113 @@
+/*
+ ApiRoutingTable.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.profile.api;
+
+import org.deviceconnect.android.profile.spec.DConnectSpecConstants;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * プロファイルに登録されたAPIを、インターフェース名、アトリビュート名、メソッドの順に検索する木構造のテーブル.
+ * <p>
+ * APIを登録・削除した時に1度だけ作成し、リクエストごとにパスの文字列を作成せずにAPIを検索する。
+ * インターフェース名とアトリビュート名は大文字小文字を区別しない。
+ * </p>
+ * <p>
+ * 作成後は変更されないため、複数のスレッドから同時に検索できる。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public final class ApiRoutingTable implements DConnectSpecConstants {
+
+    /** メソッドの種類の数. */
+    private static final int METHOD_COUNT = Method.values().length;
+
+    /** インターフェース名、アトリビュート名からメソッドごとのAPIを検索するテーブル. */
+    private final NameTable<NameTable<DConnectApi[]>> mInterfaces;
+
+    /** 登録されているAPIの個数. */
+    private final int mSize;
+
+    /**
+     * コンストラクタ.
+     * <p>
+     * インターフェース名、アトリビュート名、メソッドが同じAPIが複数ある場合は、後のAPIが使用される。
+     * </p>
+     * @param apis 登録するAPIの一覧
+     */
+    public ApiRoutingTable(final Collection<DConnectApi> apis) {
+        Map<String, Map<String, DConnectApi[]>> interfaces = new HashMap<>();
+        int size = 0;
+        for (DConnectApi api : apis) {
+            String interfaceName = lowerCase(api.getInterface());
+            String attributeName = lowerCase(api.getAttribute());
+            Map<String, DConnectApi[]> attributes = interfaces.get(interfaceName);
+            if (attributes == null) {
+                attributes = new HashMap<>();
+                interfaces.put(interfaceName, attributes);
+            }
+            DConnectApi[] methods = attributes.get(attributeName);
+            if (methods == null) {
+                methods = new DConnectApi[METHOD_COUNT];
+                attributes.put(attributeName, methods);
+            }
+            int index = api.getMethod().ordinal();
+            if (methods[index] == null) {
+                size++;
+            }
+            methods[index] = api;
+        }
+
+        Map<String, NameTable<DConnectApi[]>> tables = new HashMap<>();
+        for (Map.Entry<String, Map<String, DConnectApi[]>> entry : interfaces.entrySet()) {
+            tables.put(entry.getKey(), new NameTable<>(entry.getValue()));
+        }
+        mInterfaces = new NameTable<>(tables);
+        mSize = size;
+    }
+
+    /**
+     * 指定されたメソッド、インターフェース名、アトリビュート名に対応するAPIを取得する.
+     * @param method メソッド
+     * @param interfaceName インターフェース名. 無い場合はnull
+     * @param attributeName アトリビュート名. 無い場合はnull
+     * @return API. 存在しない場合はnull
+     */
+    public DConnectApi find(final Method method, final String interfaceName, final String attributeName) {
+        if (method == null) {
+            return null;
+        }
+        NameTable<DConnectApi[]> attributes = mInterfaces.get(interfaceName);
+        if (attributes == null) {
+            return null;
+        }
+        DConnectApi[] methods = attributes.get(attributeName);
+        if (methods == null) {
+            return null;
+        }
+        return methods[method.ordinal()];
+    }
+
+    /**
+     * 登録されているAPIの個数を取得する.
+     * @return APIの個数
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * 大文字小文字を区別せずに同じ名前をまとめるために小文字に変換する.
+     * @param name 名前
+     * @return 小文字に変換した名前
+     */
+    private static String lowerCase(final String name) {
+        return name != null ? name.toLowerCase() : null;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ NameTable.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.profile.api;
+
+import java.util.Map;
+
+/**
+ * 大文字小文字を区別せずに名前から値を検索する変更不可能なテーブル.
+ * <p>
+ * 検索する名前を小文字に変換したり、キーのオブジェクトを作成したりせずに検索できる。
+ * 名前の比較は{@link String#equalsIgnoreCase(String)}と同じ規則で行う。
+ * キーにはnullを指定できる。
+ * </p>
+ * @param <V> 値の型
+ * @author NTT DOCOMO, INC.
+ */
+public final class NameTable<V> {
+
+    /** キーの配列. 空きの場合はnull. */
+    private final String[] mKeys;
+
+    /** 値の配列. */
+    private final Object[] mValues;
+
+    /** ハッシュ値から配列のインデックスを求めるマスク. */
+    private final int mMask;
+
+    /** キーがnullの場合の値. */
+    private final V mNullValue;
+
+    /** 値の個数. */
+    private final int mSize;
+
+    /**
+     * コンストラクタ.
+     * <p>
+     * 大文字小文字を区別しないと同じになるキーが複数ある場合は、後のキーの値が使用される。
+     * </p>
+     * @param map 名前と値のマップ
+     */
+    public NameTable(final Map<String, ? extends V> map) {
+        int capacity = 2;
+        while (capacity < map.size() * 2) {
+            capacity <<= 1;
+        }
+        mKeys = new String[capacity];
+        mValues = new Object[capacity];
+        mMask = capacity - 1;
+
+        V nullValue = null;
+        int size = 0;
+        for (Map.Entry<String, ? extends V> entry : map.entrySet()) {
+            String key = entry.getKey();
+            if (key == null) {
+                if (nullValue == null) {
+                    size++;
+                }
+                nullValue = entry.getValue();
+                continue;
+            }
+            int index = hash(key) & mMask;
+            while (mKeys[index] != null && !mKeys[index].equalsIgnoreCase(key)) {
+                index = (index + 1) & mMask;
+            }
+            if (mKeys[index] == null) {
+                size++;
+            }
+            mKeys[index] = key;
+            mValues[index] = entry.getValue();
+        }
+        mNullValue = nullValue;
+        mSize = size;
+    }
+
+    /**
+     * 名前に対応する値を取得する.
+     * @param name 名前
+     * @return 値. 存在しない場合はnull
+     */
+    @SuppressWarnings("unchecked")
+    public V get(final String name) {
+        if (name == null) {
+            return mNullValue;
+        }
+        int index = hash(name) & mMask;
+        String key;
+        while ((key = mKeys[index]) != null) {
+            if (key.equalsIgnoreCase(name)) {
+                return (V) mValues[index];
+            }
+            index = (index + 1) & mMask;
+        }
+        return null;
+    }
+
+    /**
+     * 値の個数を取得する.
+     * @return 値の個数
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * 大文字小文字を区別せずにハッシュ値を計算する.
+     * @param name 名前
+     * @return ハッシュ値
+     */
+    private static int hash(final String name) {
+        int h = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < 0x80) {
+                // API名はASCII文字がほとんどなので、Characterの変換表を引かない
+                if (c >= 'A' && c <= 'Z') {
+                    c += 'a' - 'A';
+                }
+            } else {
+                c = Character.toLowerCase(Character.toUpperCase(c));
+            }
+            h = 31 * h + c;
+        }
+        // 下位ビットに偏らないように上位ビットを混ぜる
+        return h ^ (h >>> 16);
+    }
+}
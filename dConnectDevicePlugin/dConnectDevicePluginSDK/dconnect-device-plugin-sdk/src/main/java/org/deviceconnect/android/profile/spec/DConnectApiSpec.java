@@ -133,9 +133,31 @@ public class DConnectApiSpec implements DConnectSpecConstants {
      * @return 仕様に反していない場合は<code>true</code>. そうでない場合は<code>false</code>
      */
     public boolean validate(final Intent request) {
-        Bundle extras = request.getExtras();
-        for (DConnectParameterSpec paramSpec : getRequestParamList()) {
-            Object paramValue = extras.get(paramSpec.getName());
+        DConnectParameterSpec[] paramList = mRequestParamList;
+        if (paramList == null || paramList.length == 0) {
+            // パラメータの定義が無い場合はBundleをコピーしない
+            return true;
+        }
+        return validate(request.getExtras(), paramList);
+    }
+
+    /**
+     * リクエストパラメータの内容が仕様に反していないことを確認する.
+     *
+     * @param extras リクエストパラメータ. パラメータが無い場合はnull
+     * @return 仕様に反していない場合は<code>true</code>. そうでない場合は<code>false</code>
+     */
+    public boolean validate(final Bundle extras) {
+        DConnectParameterSpec[] paramList = mRequestParamList;
+        if (paramList == null) {
+            return true;
+        }
+        return validate(extras, paramList);
+    }
+
+    private static boolean validate(final Bundle extras, final DConnectParameterSpec[] paramList) {
+        for (DConnectParameterSpec paramSpec : paramList) {
+            Object paramValue = extras != null ? extras.get(paramSpec.getName()) : null;
             if (!paramSpec.validate(paramValue)) {
                 return false;
             }
@@ -14,6 +14,7 @@ import org.deviceconnect.android.message.MessageUtils;
 import org.deviceconnect.android.profile.DConnectProfile;
 import org.deviceconnect.android.profile.DConnectProfileProvider;
 import org.deviceconnect.android.profile.ServiceInformationProfile;
+import org.deviceconnect.android.profile.api.NameTable;
 import org.deviceconnect.profile.ServiceDiscoveryProfileConstants;
 
 import java.util.ArrayList;
@@ -38,6 +39,14 @@ public class DConnectService implements DConnectProfileProvider, ServiceDiscover
      */
     private final Map<String, DConnectProfile> mProfiles = new HashMap<String, DConnectProfile>();
 
+    /**
+     * プロファイル名からプロファイルを検索するテーブル.
+     * <p>
+     * プロファイルを追加・削除した時に作成し直す。
+     * </p>
+     */
+    private volatile NameTable<DConnectProfile> mProfileTable;
+
     /**
      * サービス名.
      */
@@ -58,6 +67,11 @@ public class DConnectService implements DConnectProfileProvider, ServiceDiscover
      */
     private String mConfig;
 
+    /**
+     * リクエストを1つずつ実行するかを示すフラグ.
+     */
+    private volatile boolean mRequestSerialized;
+
     /**
      * コンテキスト.
      */
@@ -180,6 +194,29 @@ public class DConnectService implements DConnectProfileProvider, ServiceDiscover
         mConfig = config;
     }
 
+    /**
+     * このサービス宛てのリクエストを1つずつ順番に実行するかを設定する.
+     * <p>
+     * {@link org.deviceconnect.android.message.RequestDispatcher RequestDispatcher}を使用して
+     * ワーカースレッドでリクエストを実行する場合に有効となる。
+     * 同時に1つのコマンドしか受け付けられないデバイスの場合にはtrueを設定すること。<br>
+     * 非同期にレスポンスを返却するリクエストは、onRequestから処理が戻った時点で完了したとみなす。<br>
+     * デフォルトは、falseが設定されている。
+     * </p>
+     * @param serialized 1つずつ実行する場合はtrue、並列に実行してよい場合はfalse
+     */
+    public void setRequestSerialized(final boolean serialized) {
+        mRequestSerialized = serialized;
+    }
+
+    /**
+     * このサービス宛てのリクエストを1つずつ順番に実行するかを取得する.
+     * @return 1つずつ実行する場合はtrue、並列に実行してよい場合はfalse
+     */
+    public boolean isRequestSerialized() {
+        return mRequestSerialized;
+    }
+
     /**
      * コンテキストを設定する.
      * <p>
@@ -202,8 +239,10 @@ public class DConnectService implements DConnectProfileProvider, ServiceDiscover
     @Override
     public List<DConnectProfile> getProfileList() {
         List<DConnectProfile> list = new ArrayList<DConnectProfile>();
-        for (DConnectProfile profile : mProfiles.values()) {
-            list.add(profile);
+        synchronized (mProfiles) {
+            for (DConnectProfile profile : mProfiles.values()) {
+                list.add(profile);
+            }
         }
         return list;
     }
@@ -213,7 +252,7 @@ public class DConnectService implements DConnectProfileProvider, ServiceDiscover
         if (name == null) {
             return null;
         }
-        return mProfiles.get(name.toLowerCase());
+        return mProfileTable.get(name);
     }
 
     @Override
@@ -222,7 +261,10 @@ public class DConnectService implements DConnectProfileProvider, ServiceDiscover
             return;
         }
         profile.setService(this);
-        mProfiles.put(profile.getProfileName().toLowerCase(), profile);
+        synchronized (mProfiles) {
+            mProfiles.put(profile.getProfileName().toLowerCase(), profile);
+            mProfileTable = new NameTable<>(mProfiles);
+        }
     }
 
     @Override
@@ -230,7 +272,10 @@ public class DConnectService implements DConnectProfileProvider, ServiceDiscover
         if (profile == null) {
             return;
         }
-        mProfiles.remove(profile.getProfileName().toLowerCase());
+        synchronized (mProfiles) {
+            mProfiles.remove(profile.getProfileName().toLowerCase());
+            mProfileTable = new NameTable<>(mProfiles);
+        }
     }
 
     /**
@@ -0,0 +1,1367 @@
+/*
+ MixedReplaceMediaServer.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.streaming;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.Channel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * multipart/x-mixed-replace形式でメディアを配信するサーバ.
+ * <p>
+ * 1つのスレッドでSelectorを使用して、全てのクライアントとの通信を処理する。
+ * 配信するフレームは全てのクライアントで1つのバッファを共有して、ギャザリング書き込みで送信する。
+ * 前のフレームを送信し終わっていないクライアントには、途中のフレームを破棄して最新のフレームのみを送信する。
+ * </p>
+ * <p>
+ * 配信するURLには、サーバの起動時に生成したパスが含まれる。
+ * {@link #getUrl()}のURLには{@link #offerMedia(byte[])}で追加したフレームを配信し、
+ * {@link #getUrl(String)}のURLには{@link #offerMedia(String, byte[])}で追加したフレームを配信する。
+ * URLに<code>snapshot</code>パラメータを付加した場合は、1枚の画像のみを返却する。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class MixedReplaceMediaServer {
+
+    /**
+     * 同時に接続できるクライアント数のデフォルト値.
+     */
+    public static final int DEFAULT_MAX_CLIENT_SIZE = 32;
+
+    /**
+     * ポート番号を検索する範囲の開始値.
+     */
+    private static final int PORT_RANGE_START = 9000;
+
+    /**
+     * ポート番号を検索する範囲の終了値.
+     */
+    private static final int PORT_RANGE_END = 10000;
+
+    /**
+     * HTTPリクエストのヘッダーを受信するバッファのサイズ.
+     */
+    private static final int REQUEST_BUFFER_SIZE = 8192;
+
+    /**
+     * HTTPリクエストのヘッダーを受信するまでのタイムアウト(ms).
+     */
+    private static final long REQUEST_TIMEOUT = 10 * 1000;
+
+    /**
+     * デフォルトのストリームのセグメント.
+     */
+    private static final String DEFAULT_SEGMENT = "";
+
+    /**
+     * スナップショットを要求するパラメータ名.
+     */
+    private static final String PARAM_SNAPSHOT = "snapshot";
+
+    /**
+     * HTTPヘッダーの文字コード.
+     */
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    /**
+     * マルチパートの各パートの末尾.
+     */
+    private static final ByteBuffer PART_TRAILER = ByteBuffer.wrap("\r\n\r\n".getBytes(ASCII));
+
+    /**
+     * ロガー.
+     */
+    private final Logger mLogger = Logger.getLogger("org.deviceconnect.dplugin");
+
+    /**
+     * サーバのポート番号.
+     */
+    private int mPort = -1;
+
+    /**
+     * マルチパートのバウンダリ.
+     */
+    private String mBoundary = UUID.randomUUID().toString();
+
+    /**
+     * コンテンツタイプ.
+     */
+    private String mContentType = "image/jpg";
+
+    /**
+     * サーバ名.
+     */
+    private String mServerName = "DevicePlugin Server";
+
+    /**
+     * 同時に接続できるクライアント数.
+     */
+    private int mMaxClientSize = DEFAULT_MAX_CLIENT_SIZE;
+
+    /**
+     * サーバのイベントを通知するリスナー.
+     */
+    private ServerEventListener mServerEventListener;
+
+    /**
+     * クライアントの接続を通知するリスナー.
+     */
+    private ClientEventListener mClientEventListener;
+
+    /**
+     * サーバの起動時に生成したパス.
+     */
+    private volatile String mPath;
+
+    /**
+     * サーバが待ち受けているポート番号.
+     */
+    private volatile int mLocalPort = -1;
+
+    /**
+     * サーバが起動中であるかを示すフラグ.
+     */
+    private volatile boolean mRunning;
+
+    /**
+     * クライアントとの通信を処理するスレッド.
+     */
+    private Thread mThread;
+
+    /**
+     * クライアントとの通信に使用するSelector.
+     */
+    private Selector mSelector;
+
+    /**
+     * セグメントをキーにしたストリーム.
+     */
+    private final ConcurrentMap<String, Stream> mStreams = new ConcurrentHashMap<>();
+
+    /**
+     * フレームが追加された、または停止されたストリーム.
+     */
+    private final Queue<Stream> mUpdatedStreams = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 接続中のクライアント.
+     */
+    private final List<Client> mClients = new CopyOnWriteArrayList<>();
+
+    /**
+     * クライアントから受信したデータを破棄するためのバッファ.
+     */
+    private final ByteBuffer mDiscardBuffer = ByteBuffer.allocate(1024);
+
+    /**
+     * サーバのイベントを通知するリスナーを設定する.
+     * @param listener リスナー
+     */
+    public void setServerEventListener(final ServerEventListener listener) {
+        mServerEventListener = listener;
+    }
+
+    /**
+     * クライアントの接続を通知するリスナーを設定する.
+     * <p>
+     * リスナーを設定した場合は、フレームが追加されていないセグメントへの接続も受け付ける。
+     * </p>
+     * @param listener リスナー
+     */
+    public void setClientEventListener(final ClientEventListener listener) {
+        mClientEventListener = listener;
+    }
+
+    /**
+     * マルチパートのバウンダリを設定する.
+     * @param boundary バウンダリ
+     */
+    public void setBoundary(final String boundary) {
+        if (boundary == null) {
+            throw new IllegalArgumentException("boundary is null.");
+        }
+        if (boundary.isEmpty()) {
+            throw new IllegalArgumentException("boundary is empty.");
+        }
+        mBoundary = boundary;
+    }
+
+    /**
+     * マルチパートのバウンダリを取得する.
+     * @return バウンダリ
+     */
+    public String getBoundary() {
+        return mBoundary;
+    }
+
+    /**
+     * コンテンツタイプを設定する.
+     * <p>
+     * デフォルトは"image/jpg"。
+     * </p>
+     * @param contentType コンテンツタイプ
+     */
+    public void setContentType(final String contentType) {
+        mContentType = contentType;
+    }
+
+    /**
+     * コンテンツタイプを取得する.
+     * @return コンテンツタイプ
+     */
+    public String getContentType() {
+        return mContentType;
+    }
+
+    /**
+     * サーバのポート番号を設定する.
+     * @param port ポート番号
+     */
+    public void setPort(final int port) {
+        if (port < 1000) {
+            throw new IllegalArgumentException("Port is smaller than 1000.");
+        }
+        mPort = port;
+    }
+
+    /**
+     * サーバのポート番号を取得する.
+     * @return ポート番号
+     */
+    public int getPort() {
+        return mPort;
+    }
+
+    /**
+     * サーバ名を設定する.
+     * @param name サーバ名
+     */
+    public void setServerName(final String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("name is null.");
+        }
+        mServerName = name;
+    }
+
+    /**
+     * サーバ名を取得する.
+     * @return サーバ名
+     */
+    public String getServerName() {
+        return mServerName;
+    }
+
+    /**
+     * 同時に接続できるクライアント数を設定する.
+     * <p>
+     * デフォルトは{@value #DEFAULT_MAX_CLIENT_SIZE}。
+     * 上限を超えたクライアントには503を返却する。
+     * </p>
+     * @param maxClientSize クライアント数
+     */
+    public void setMaxClientSize(final int maxClientSize) {
+        if (maxClientSize <= 0) {
+            throw new IllegalArgumentException("maxClientSize is invalid: " + maxClientSize);
+        }
+        mMaxClientSize = maxClientSize;
+    }
+
+    /**
+     * 同時に接続できるクライアント数を取得する.
+     * @return クライアント数
+     */
+    public int getMaxClientSize() {
+        return mMaxClientSize;
+    }
+
+    /**
+     * デフォルトのストリームのURLを取得する.
+     * @return URL. サーバが起動していない場合はnull
+     */
+    public String getUrl() {
+        String path = mPath;
+        if (path == null) {
+            return null;
+        }
+        return "http://localhost:" + mLocalPort + "/" + path;
+    }
+
+    /**
+     * 指定したセグメントのストリームのURLを取得する.
+     * <p>
+     * ストリームが存在しない場合は作成するので、最初のフレームを追加する前にURLに接続したクライアントも切断されない。
+     * </p>
+     * @param segment セグメント
+     * @return URL. サーバが起動していない場合はnull
+     */
+    public String getUrl(final String segment) {
+        String url = getUrl();
+        if (url == null || segment == null) {
+            return null;
+        }
+        obtainStream(segment);
+        return url + "/" + segment;
+    }
+
+    /**
+     * サーバが起動中であるかを確認する.
+     * @return 起動中の場合はtrue、それ以外はfalse
+     */
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * デフォルトのストリームにフレームを追加する.
+     * <p>
+     * フレームの配列は送信中のクライアントと共有するので、追加した後に変更しないこと。
+     * </p>
+     * @param media フレーム
+     */
+    public void offerMedia(final byte[] media) {
+        offerMedia(DEFAULT_SEGMENT, media);
+    }
+
+    /**
+     * 指定したセグメントのストリームにフレームを追加する.
+     * <p>
+     * ストリームが存在しない場合は作成する。
+     * フレームの配列は送信中のクライアントと共有するので、追加した後に変更しないこと。
+     * </p>
+     * @param segment セグメント
+     * @param media フレーム
+     */
+    public void offerMedia(final String segment, final byte[] media) {
+        if (segment == null || media == null || media.length == 0 || !mRunning) {
+            return;
+        }
+        Stream stream = obtainStream(segment);
+        stream.mLatest = new Frame(createPartHeader(media.length), media);
+        notifyUpdate(stream);
+    }
+
+    /**
+     * 指定したセグメントのストリームを作成する.
+     * <p>
+     * フレームを追加する前にURLをクライアントに渡す場合に使用する。
+     * </p>
+     * @param segment セグメント
+     */
+    public void startMedia(final String segment) {
+        if (segment == null || !mRunning) {
+            return;
+        }
+        obtainStream(segment);
+    }
+
+    /**
+     * 指定したセグメントのストリームを停止して、接続中のクライアントを切断する.
+     * @param segment セグメント
+     */
+    public void stopMedia(final String segment) {
+        if (segment == null) {
+            return;
+        }
+        Stream stream = mStreams.remove(segment);
+        if (stream != null) {
+            stream.mStopped = true;
+            notifyUpdate(stream);
+        }
+    }
+
+    /**
+     * ストリームに接続中のクライアント数を取得する.
+     * <p>
+     * フレームを生成する側が、視聴者がいない間は生成を止めるために使用する。
+     * </p>
+     * @return クライアント数
+     */
+    public int getClientCount() {
+        int count = 0;
+        for (Client client : mClients) {
+            if (client.mRequest != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 接続中のクライアントの状態を取得する.
+     * @return クライアントの状態の一覧
+     */
+    public List<ClientStatus> getClientStatuses() {
+        List<ClientStatus> statuses = new ArrayList<>();
+        for (Client client : mClients) {
+            if (client.mRequest != null) {
+                statuses.add(client.createStatus());
+            }
+        }
+        return statuses;
+    }
+
+    /**
+     * サーバを起動する.
+     * <p>
+     * ポート番号が設定されていない場合は、9000から10000の間で使用されていないポート番号を使用する。
+     * </p>
+     * @return デフォルトのストリームのURL. 起動に失敗した場合はnull
+     */
+    public synchronized String start() {
+        if (mRunning) {
+            return getUrl();
+        }
+
+        ServerSocketChannel serverChannel = null;
+        Selector selector = null;
+        try {
+            serverChannel = openServerSocketChannel();
+            serverChannel.configureBlocking(false);
+            selector = Selector.open();
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            mLogger.warning("Failed to open a server socket[" + mServerName + "]: " + e.getMessage());
+            close(serverChannel);
+            closeSelector(selector);
+            if (mServerEventListener != null) {
+                mServerEventListener.onError();
+            }
+            return null;
+        }
+
+        mLocalPort = serverChannel.socket().getLocalPort();
+        mPath = UUID.randomUUID().toString();
+        mStreams.put(DEFAULT_SEGMENT, new Stream(DEFAULT_SEGMENT, false));
+        mSelector = selector;
+        mRunning = true;
+
+        final ServerSocketChannel channel = serverChannel;
+        final Selector channelSelector = selector;
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runLoop(channel, channelSelector);
+            }
+        }, mServerName);
+        mThread.start();
+        return getUrl();
+    }
+
+    /**
+     * サーバを停止する.
+     * <p>
+     * 接続中のクライアントを全て切断して、サーバのスレッドが終了するまで待機する。
+     * </p>
+     */
+    public synchronized void stop() {
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+        mPath = null;
+        mSelector.wakeup();
+
+        Thread thread = mThread;
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 使用されていないポート番号でサーバソケットを開く.
+     * @return サーバソケットのチャネル
+     * @throws IOException サーバソケットを開けなかった場合
+     */
+    private ServerSocketChannel openServerSocketChannel() throws IOException {
+        if (mPort != -1) {
+            return openServerSocketChannel(mPort);
+        }
+        for (int port = PORT_RANGE_START; port < PORT_RANGE_END; port++) {
+            try {
+                return openServerSocketChannel(port);
+            } catch (IOException e) {
+                continue;
+            }
+        }
+        throw new IOException("Cannot open server socket.");
+    }
+
+    private static ServerSocketChannel openServerSocketChannel(final int port) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        try {
+            channel.socket().bind(new InetSocketAddress(port));
+            return channel;
+        } catch (IOException e) {
+            close(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * クライアントとの通信を処理する.
+     * @param serverChannel サーバソケットのチャネル
+     * @param selector Selector
+     */
+    private void runLoop(final ServerSocketChannel serverChannel, final Selector selector) {
+        if (mServerEventListener != null) {
+            mServerEventListener.onStart();
+        }
+        try {
+            while (mRunning) {
+                selector.select(closeTimedOutClients());
+                if (!mRunning) {
+                    break;
+                }
+                deliverFrames();
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept(serverChannel, selector);
+                        continue;
+                    }
+                    Client client = (Client) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            client.onReadable();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            client.flush();
+                        }
+                    } catch (IOException | CancelledKeyException e) {
+                        closeClient(client);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            mLogger.warning("Error server socket[" + mServerName + "]: " + e.getMessage());
+        } finally {
+            mRunning = false;
+            mPath = null;
+            for (Client client : mClients) {
+                closeClient(client);
+            }
+            mStreams.clear();
+            mUpdatedStreams.clear();
+            close(serverChannel);
+            closeSelector(selector);
+            if (mServerEventListener != null) {
+                mServerEventListener.onStop();
+            }
+            mLogger.fine("MixedReplaceMediaServer has been stopped.");
+        }
+    }
+
+    /**
+     * クライアントの接続を受け付ける.
+     * @param serverChannel サーバソケットのチャネル
+     * @param selector Selector
+     * @throws IOException サーバソケットでエラーが発生した場合
+     */
+    private void accept(final ServerSocketChannel serverChannel, final Selector selector) throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.configureBlocking(false);
+            if (mClients.size() >= mMaxClientSize) {
+                channel.write(ByteBuffer.wrap(generateErrorHeader("503 Service Unavailable")));
+                close(channel);
+                return;
+            }
+            Client client = new Client(channel);
+            client.mKey = channel.register(selector, SelectionKey.OP_READ, client);
+            mClients.add(client);
+            mLogger.fine("accept client.");
+        } catch (IOException e) {
+            close(channel);
+        }
+    }
+
+    /**
+     * リクエストのヘッダーをタイムアウトまでに送信しなかったクライアントを切断する.
+     * @return 次に確認するまでの時間(ms). 確認するクライアントがいない場合は0
+     */
+    private long closeTimedOutClients() {
+        long now = System.currentTimeMillis();
+        long next = 0;
+        for (Client client : mClients) {
+            if (client.mRequestBuffer == null) {
+                continue;
+            }
+            long remaining = client.mConnectedTime + REQUEST_TIMEOUT - now;
+            if (remaining <= 0) {
+                mLogger.fine("request timeout.");
+                closeClient(client);
+            } else if (next == 0 || remaining < next) {
+                next = remaining;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * フレームが追加されたストリームのクライアントに、最新のフレームを送信する.
+     */
+    private void deliverFrames() {
+        Stream stream;
+        while ((stream = mUpdatedStreams.poll()) != null) {
+            stream.mNotified.set(false);
+            List<Client> clients = stream.mClients;
+            if (stream.mStopped) {
+                for (int i = clients.size() - 1; i >= 0; i--) {
+                    closeClient(clients.get(i));
+                }
+                continue;
+            }
+            Frame frame = stream.mLatest;
+            if (frame == null) {
+                continue;
+            }
+            for (int i = clients.size() - 1; i >= 0; i--) {
+                Client client = clients.get(i);
+                try {
+                    client.offer(frame);
+                } catch (IOException | CancelledKeyException e) {
+                    closeClient(client);
+                }
+            }
+        }
+    }
+
+    /**
+     * クライアントを切断する.
+     * @param client クライアント
+     */
+    private void closeClient(final Client client) {
+        if (!mClients.remove(client)) {
+            return;
+        }
+        if (client.mKey != null) {
+            client.mKey.cancel();
+        }
+        close(client.mChannel);
+        Stream stream = client.mStream;
+        if (stream != null) {
+            stream.mClients.remove(client);
+            if (stream.mOnDemand && stream.mClients.isEmpty()) {
+                // クライアントの接続時に作成したストリームは、接続するクライアントがいなくなったら削除する
+                mStreams.remove(stream.mSegment, stream);
+            }
+        }
+        if (client.mRequest != null) {
+            mLogger.fine("socket close: " + client.createStatus());
+            if (mClientEventListener != null) {
+                mClientEventListener.onDisconnect(client.mRequest);
+            }
+        }
+    }
+
+    /**
+     * ストリームを取得する. 存在しない場合は作成する.
+     * @param segment セグメント
+     * @return ストリーム
+     */
+    private Stream obtainStream(final String segment) {
+        Stream stream = obtainStream(segment, false);
+        stream.mOnDemand = false;
+        return stream;
+    }
+
+    /**
+     * ストリームを取得する. 存在しない場合は作成する.
+     * @param segment セグメント
+     * @param onDemand クライアントの接続時に作成する場合はtrue
+     * @return ストリーム
+     */
+    private Stream obtainStream(final String segment, final boolean onDemand) {
+        Stream stream = mStreams.get(segment);
+        if (stream == null) {
+            Stream newStream = new Stream(segment, onDemand);
+            stream = mStreams.putIfAbsent(segment, newStream);
+            if (stream == null) {
+                stream = newStream;
+            }
+        }
+        return stream;
+    }
+
+    /**
+     * ストリームが更新されたことをサーバのスレッドに通知する.
+     * @param stream ストリーム
+     */
+    private void notifyUpdate(final Stream stream) {
+        if (stream.mNotified.compareAndSet(false, true)) {
+            mUpdatedStreams.offer(stream);
+            Selector selector = mSelector;
+            if (selector != null) {
+                selector.wakeup();
+            }
+        }
+    }
+
+    /**
+     * リクエストのパスからセグメントを取得する.
+     * @param path パス
+     * @return セグメント. サーバのパスと一致しない場合はnull
+     */
+    private String parseSegment(final String path) {
+        String prefix = "/" + mPath;
+        if (path.equals(prefix) || path.equals(prefix + "/")) {
+            return DEFAULT_SEGMENT;
+        }
+        if (path.startsWith(prefix + "/")) {
+            String segment = path.substring(prefix.length() + 1);
+            if (segment.endsWith("/")) {
+                segment = segment.substring(0, segment.length() - 1);
+            }
+            return segment;
+        }
+        return null;
+    }
+
+    private byte[] createPartHeader(final int length) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("--").append(mBoundary).append("\r\n");
+        sb.append("Content-Type: ").append(mContentType).append("\r\n");
+        sb.append("Content-Length: ").append(length).append("\r\n");
+        sb.append("\r\n");
+        return sb.toString().getBytes(ASCII);
+    }
+
+    private byte[] generateHttpHeader() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("HTTP/1.0 200 OK\r\n");
+        sb.append("Server: ").append(mServerName).append("\r\n");
+        sb.append("Connection: close\r\n");
+        sb.append("Max-Age: 0\r\n");
+        sb.append("Expires: 0\r\n");
+        sb.append("Cache-Control: no-store, no-cache, must-revalidate, pre-check=0, post-check=0, max-age=0\r\n");
+        sb.append("Pragma: no-cache\r\n");
+        sb.append("Content-Type: multipart/x-mixed-replace; boundary=").append(mBoundary).append("\r\n");
+        sb.append("\r\n");
+        return sb.toString().getBytes(ASCII);
+    }
+
+    private byte[] generateSnapshotHeader(final int length) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("HTTP/1.0 200 OK\r\n");
+        sb.append("Server: ").append(mServerName).append("\r\n");
+        sb.append("Connection: close\r\n");
+        sb.append("Content-Type: ").append(mContentType).append("\r\n");
+        sb.append("Content-Length: ").append(length).append("\r\n");
+        sb.append("\r\n");
+        return sb.toString().getBytes(ASCII);
+    }
+
+    private byte[] generateErrorHeader(final String status) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("HTTP/1.0 ").append(status).append("\r\n");
+        sb.append("Server: ").append(mServerName).append("\r\n");
+        sb.append("Connection: close\r\n");
+        sb.append("\r\n");
+        return sb.toString().getBytes(ASCII);
+    }
+
+    private static String decodePercent(final String str) {
+        try {
+            return URLDecoder.decode(str, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean containsParam(final String query, final String name) {
+        if (query == null) {
+            return false;
+        }
+        for (String param : query.split("&")) {
+            int sep = param.indexOf('=');
+            String key = decodePercent(sep >= 0 ? param.substring(0, sep) : param);
+            if (key != null && name.equals(key.trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void close(final Channel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // ignore.
+            }
+        }
+    }
+
+    private static void closeSelector(final Selector selector) {
+        if (selector != null) {
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // ignore.
+            }
+        }
+    }
+
+    /**
+     * サーバのイベントを通知するリスナー.
+     */
+    public interface ServerEventListener {
+        /**
+         * サーバが起動したことを通知する.
+         */
+        void onStart();
+
+        /**
+         * サーバが停止したことを通知する.
+         */
+        void onStop();
+
+        /**
+         * サーバの起動に失敗したことを通知する.
+         */
+        void onError();
+    }
+
+    /**
+     * クライアントの接続を通知するリスナー.
+     * <p>
+     * サーバのスレッドから呼び出されるので、時間のかかる処理を行わないこと。
+     * </p>
+     */
+    public interface ClientEventListener {
+        /**
+         * クライアントが接続したことを通知する.
+         * @param request リクエスト
+         * @return クライアントに最初に送信するフレーム. 最新のフレームを送信する場合はnull
+         */
+        byte[] onConnect(Request request);
+
+        /**
+         * クライアントが切断したことを通知する.
+         * @param request リクエスト
+         */
+        void onDisconnect(Request request);
+    }
+
+    /**
+     * クライアントからのリクエスト.
+     */
+    public static class Request {
+        /** リクエストされたURI. */
+        private final String mUri;
+
+        /** リクエストされたセグメント. */
+        private final String mSegment;
+
+        /** スナップショットが要求されたかを示すフラグ. */
+        private final boolean mSnapshot;
+
+        Request(final String uri, final String segment, final boolean snapshot) {
+            mUri = uri;
+            mSegment = segment;
+            mSnapshot = snapshot;
+        }
+
+        /**
+         * リクエストされたURIを取得する.
+         * <p>
+         * パラメータは含まない。
+         * </p>
+         * @return URI
+         */
+        public String getUri() {
+            return mUri;
+        }
+
+        /**
+         * リクエストされたセグメントを取得する.
+         * @return セグメント. デフォルトのストリームの場合はnull
+         */
+        public String getSegment() {
+            return DEFAULT_SEGMENT.equals(mSegment) ? null : mSegment;
+        }
+
+        /**
+         * スナップショットが要求されたかを確認する.
+         * @return スナップショットの場合はtrue、ストリームの場合はfalse
+         */
+        public boolean isSnapshot() {
+            return mSnapshot;
+        }
+    }
+
+    /**
+     * 接続中のクライアントの状態.
+     */
+    public static class ClientStatus {
+        /** クライアントのアドレス. */
+        private final String mAddress;
+
+        /** リクエストされたURI. */
+        private final String mUri;
+
+        /** 接続した時刻(ms). */
+        private final long mConnectedTime;
+
+        /** 送信したフレーム数. */
+        private final long mSentFrameCount;
+
+        /** 破棄したフレーム数. */
+        private final long mDroppedFrameCount;
+
+        /** 送信したバイト数. */
+        private final long mSentBytes;
+
+        /** 接続時間(ms). */
+        private final long mElapsedTime;
+
+        ClientStatus(final String address, final String uri, final long connectedTime,
+                     final long sentFrameCount, final long droppedFrameCount, final long sentBytes) {
+            mAddress = address;
+            mUri = uri;
+            mConnectedTime = connectedTime;
+            mSentFrameCount = sentFrameCount;
+            mDroppedFrameCount = droppedFrameCount;
+            mSentBytes = sentBytes;
+            mElapsedTime = Math.max(1, System.currentTimeMillis() - connectedTime);
+        }
+
+        /**
+         * クライアントのアドレスを取得する.
+         * @return アドレス
+         */
+        public String getAddress() {
+            return mAddress;
+        }
+
+        /**
+         * リクエストされたURIを取得する.
+         * @return URI
+         */
+        public String getUri() {
+            return mUri;
+        }
+
+        /**
+         * 接続した時刻を取得する.
+         * @return 接続した時刻(ms)
+         */
+        public long getConnectedTime() {
+            return mConnectedTime;
+        }
+
+        /**
+         * 送信したフレーム数を取得する.
+         * @return フレーム数
+         */
+        public long getSentFrameCount() {
+            return mSentFrameCount;
+        }
+
+        /**
+         * 送信が追いつかずに破棄したフレーム数を取得する.
+         * @return フレーム数
+         */
+        public long getDroppedFrameCount() {
+            return mDroppedFrameCount;
+        }
+
+        /**
+         * 送信したバイト数を取得する.
+         * @return バイト数
+         */
+        public long getSentBytes() {
+            return mSentBytes;
+        }
+
+        /**
+         * 接続してからの平均フレームレートを取得する.
+         * @return フレームレート(fps)
+         */
+        public double getFps() {
+            return mSentFrameCount * 1000.0 / mElapsedTime;
+        }
+
+        @Override
+        public String toString() {
+            return "ClientStatus{address=" + mAddress
+                    + ", uri=" + mUri
+                    + ", frames=" + mSentFrameCount
+                    + ", dropped=" + mDroppedFrameCount
+                    + ", bytes=" + mSentBytes
+                    + ", fps=" + String.format("%.1f", getFps())
+                    + "}";
+        }
+    }
+
+    /**
+     * 全てのクライアントで共有するフレーム.
+     */
+    private static class Frame {
+        /** パートのヘッダー. */
+        private final ByteBuffer mHeader;
+
+        /** フレームのデータ. */
+        private final ByteBuffer mData;
+
+        Frame(final byte[] header, final byte[] data) {
+            mHeader = ByteBuffer.wrap(header);
+            mData = ByteBuffer.wrap(data);
+        }
+
+        /**
+         * マルチパートのパートとして送信するバッファを作成する.
+         * <p>
+         * バッファの内容はコピーせずに、送信位置のみをクライアントごとに持つ。
+         * </p>
+         * @return バッファの配列
+         */
+        ByteBuffer[] createPartBuffers() {
+            return new ByteBuffer[] {mHeader.duplicate(), mData.duplicate(), PART_TRAILER.duplicate()};
+        }
+    }
+
+    /**
+     * ストリーム.
+     */
+    private static class Stream {
+        /** セグメント. */
+        private final String mSegment;
+
+        /**
+         * クライアントの接続時に作成されたかを示すフラグ.
+         * <p>
+         * フレームの追加などでストリームが使用された場合はfalseになる。
+         * </p>
+         */
+        private volatile boolean mOnDemand;
+
+        /** 最新のフレーム. */
+        private volatile Frame mLatest;
+
+        /** 停止されたかを示すフラグ. */
+        private volatile boolean mStopped;
+
+        /** サーバのスレッドに通知済みであるかを示すフラグ. */
+        private final AtomicBoolean mNotified = new AtomicBoolean();
+
+        /** ストリームに接続中のクライアント. サーバのスレッドからのみ参照する. */
+        private final List<Client> mClients = new ArrayList<>();
+
+        Stream(final String segment, final boolean onDemand) {
+            mSegment = segment;
+            mOnDemand = onDemand;
+        }
+    }
+
+    /**
+     * 接続中のクライアント.
+     * <p>
+     * 統計値以外はサーバのスレッドからのみ参照する。
+     * </p>
+     */
+    private class Client {
+        /** クライアントのチャネル. */
+        private final SocketChannel mChannel;
+
+        /** Selectorに登録したキー. */
+        private SelectionKey mKey;
+
+        /** リクエストのヘッダーを受信するバッファ. */
+        private ByteBuffer mRequestBuffer = ByteBuffer.allocate(REQUEST_BUFFER_SIZE);
+
+        /** リクエスト. */
+        private volatile Request mRequest;
+
+        /** 接続しているストリーム. */
+        private Stream mStream;
+
+        /** 送信中のバッファ. */
+        private ByteBuffer[] mWriting;
+
+        /** 送信中のバッファがフレームであるかを示すフラグ. */
+        private boolean mWritingFrame;
+
+        /** 送信中のフレームの次に送信するフレーム. */
+        private Frame mPending;
+
+        /** 最後に受け取ったフレーム. */
+        private Frame mLastFrame;
+
+        /** スナップショットのフレームを待っているかを示すフラグ. */
+        private boolean mWaitingSnapshot;
+
+        /** 送信後に切断するかを示すフラグ. */
+        private boolean mCloseAfterWrite;
+
+        /** 接続した時刻(ms). */
+        private final long mConnectedTime = System.currentTimeMillis();
+
+        /** 送信したフレーム数. */
+        private volatile long mSentFrameCount;
+
+        /** 破棄したフレーム数. */
+        private volatile long mDroppedFrameCount;
+
+        /** 送信したバイト数. */
+        private volatile long mSentBytes;
+
+        Client(final SocketChannel channel) {
+            mChannel = channel;
+        }
+
+        /**
+         * クライアントからデータを受信する.
+         * @throws IOException 通信に失敗した場合
+         */
+        void onReadable() throws IOException {
+            if (mRequestBuffer == null) {
+                // リクエストの受信後のデータは使用しないので破棄する
+                mDiscardBuffer.clear();
+                if (mChannel.read(mDiscardBuffer) < 0) {
+                    closeClient(this);
+                }
+                return;
+            }
+
+            if (mChannel.read(mRequestBuffer) < 0) {
+                closeClient(this);
+                return;
+            }
+            int end = findHeaderEnd(mRequestBuffer);
+            if (end < 0) {
+                if (!mRequestBuffer.hasRemaining()) {
+                    respondError("400 Bad Request");
+                }
+                return;
+            }
+            String header = new String(mRequestBuffer.array(), 0, end, ASCII);
+            mRequestBuffer = null;
+            handleRequest(header);
+        }
+
+        /**
+         * リクエストを処理する.
+         * @param header リクエストのヘッダー
+         * @throws IOException 通信に失敗した場合
+         */
+        private void handleRequest(final String header) throws IOException {
+            int lineEnd = header.indexOf('\n');
+            String[] tokens = (lineEnd >= 0 ? header.substring(0, lineEnd) : header).trim().split(" +");
+            if (tokens.length < 2 || !"GET".equalsIgnoreCase(tokens[0])) {
+                respondError("400 Bad Request");
+                return;
+            }
+
+            String uri = tokens[1];
+            String query = null;
+            int qmi = uri.indexOf('?');
+            if (qmi >= 0) {
+                query = uri.substring(qmi + 1);
+                uri = uri.substring(0, qmi);
+            }
+            String path = decodePercent(uri);
+            String segment = path != null ? parseSegment(path) : null;
+            if (segment == null) {
+                respondError("404 Not Found");
+                return;
+            }
+
+            Stream stream = mStreams.get(segment);
+            if (stream == null) {
+                if (mClientEventListener == null) {
+                    respondError("404 Not Found");
+                    return;
+                }
+                stream = obtainStream(segment, true);
+            }
+
+            boolean snapshot = containsParam(query, PARAM_SNAPSHOT);
+            mRequest = new Request("http://localhost:" + mLocalPort + path, segment, snapshot);
+            mStream = stream;
+            stream.mClients.add(this);
+
+            Frame first = stream.mLatest;
+            if (mClientEventListener != null) {
+                byte[] media = mClientEventListener.onConnect(mRequest);
+                if (media != null && media.length > 0) {
+                    first = new Frame(createPartHeader(media.length), media);
+                }
+            }
+
+            if (snapshot) {
+                if (first != null) {
+                    sendSnapshot(first);
+                } else {
+                    mWaitingSnapshot = true;
+                }
+            } else {
+                startWrite(new ByteBuffer[] {ByteBuffer.wrap(generateHttpHeader())}, false);
+                if (first != null) {
+                    offer(first);
+                }
+            }
+        }
+
+        /**
+         * フレームを送信する.
+         * <p>
+         * 前のフレームを送信中の場合は、送信が完了した後に最新のフレームのみを送信する。
+         * </p>
+         * @param frame フレーム
+         * @throws IOException 通信に失敗した場合
+         */
+        void offer(final Frame frame) throws IOException {
+            if (frame == mLastFrame) {
+                return;
+            }
+            mLastFrame = frame;
+
+            if (mWaitingSnapshot) {
+                mWaitingSnapshot = false;
+                sendSnapshot(frame);
+                return;
+            }
+            if (mWriting != null) {
+                if (mPending != null) {
+                    mDroppedFrameCount++;
+                }
+                mPending = frame;
+                return;
+            }
+            startWrite(frame.createPartBuffers(), true);
+        }
+
+        private void sendSnapshot(final Frame frame) throws IOException {
+            mLastFrame = frame;
+            mCloseAfterWrite = true;
+            ByteBuffer header = ByteBuffer.wrap(generateSnapshotHeader(frame.mData.remaining()));
+            startWrite(new ByteBuffer[] {header, frame.mData.duplicate()}, true);
+        }
+
+        private void respondError(final String status) throws IOException {
+            mRequestBuffer = null;
+            mCloseAfterWrite = true;
+            startWrite(new ByteBuffer[] {ByteBuffer.wrap(generateErrorHeader(status))}, false);
+        }
+
+        private void startWrite(final ByteBuffer[] buffers, final boolean frame) throws IOException {
+            mWriting = buffers;
+            mWritingFrame = frame;
+            flush();
+        }
+
+        /**
+         * 送信中のバッファを書き込む.
+         * <p>
+         * 書き込みきれなかった場合は、書き込み可能になるまで待機する。
+         * </p>
+         * @throws IOException 通信に失敗した場合
+         */
+        void flush() throws IOException {
+            while (mWriting != null) {
+                mSentBytes += mChannel.write(mWriting);
+                if (hasRemaining(mWriting)) {
+                    setInterestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                if (mWritingFrame) {
+                    mSentFrameCount++;
+                }
+                mWriting = null;
+                if (mCloseAfterWrite) {
+                    closeClient(this);
+                    return;
+                }
+                if (mPending != null) {
+                    mWriting = mPending.createPartBuffers();
+                    mWritingFrame = true;
+                    mPending = null;
+                }
+            }
+            setInterestOps(SelectionKey.OP_READ);
+        }
+
+        private void setInterestOps(final int ops) {
+            if (mKey.interestOps() != ops) {
+                mKey.interestOps(ops);
+            }
+        }
+
+        ClientStatus createStatus() {
+            Socket socket = mChannel.socket();
+            String address = socket.getInetAddress() != null ? socket.getInetAddress().getHostAddress() : null;
+            Request request = mRequest;
+            return new ClientStatus(address, request != null ? request.getUri() : null, mConnectedTime,
+                    mSentFrameCount, mDroppedFrameCount, mSentBytes);
+        }
+    }
+
+    private static boolean hasRemaining(final ByteBuffer[] buffers) {
+        for (ByteBuffer buffer : buffers) {
+            if (buffer.hasRemaining()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * リクエストのヘッダーの終端を検索する.
+     * @param buffer 受信したデータ
+     * @return ヘッダーの終端の位置. 見つからない場合は-1
+     */
+    private static int findHeaderEnd(final ByteBuffer buffer) {
+        byte[] data = buffer.array();
+        int length = buffer.position();
+        for (int i = 0; i < length - 1; i++) {
+            if (data[i] == '\n') {
+                if (data[i + 1] == '\n') {
+                    return i;
+                }
+                if (i + 2 < length && data[i + 1] == '\r' && data[i + 2] == '\n') {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+}
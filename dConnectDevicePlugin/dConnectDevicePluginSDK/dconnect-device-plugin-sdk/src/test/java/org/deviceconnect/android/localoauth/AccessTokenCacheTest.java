@@ -0,0 +1,94 @@
+/*
+ AccessTokenCacheTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.localoauth;
+
+import org.deviceconnect.android.localoauth.oauthserver.db.SQLiteToken;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * AccessTokenCacheのテスト.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class AccessTokenCacheTest {
+
+    /** テスト用のトークンID. */
+    private static final long TOKEN_ID = 1;
+
+    /** テスト用のアクセストークン. */
+    private static final String ACCESS_TOKEN = "token";
+
+    /** トークンの発行日時. */
+    private static final long REGISTRATION_DATE = 1000;
+
+    /**
+     * 初回アクセス後にキャッシュを破棄して、DBから読み込み直したトークンを確認する.
+     * <pre>
+     * 【期待する動作】
+     * ・DBへの書き込み待ちのアクセス時間が反映され、初回アクセスと判定されないこと。
+     * </pre>
+     */
+    @Test
+    public void testFirstAccessAfterClear() {
+        AccessTokenCache cache = new AccessTokenCache(10);
+        AccessTokenCache.Entry entry = cache.put(loadToken(), true);
+        assertTrue(entry.getToken().isFirstAccess());
+        cache.updateAccessTime(entry, REGISTRATION_DATE + 1);
+
+        cache.clear();
+
+        entry = cache.put(loadToken(), true);
+        assertFalse(entry.getToken().isFirstAccess());
+    }
+
+    /**
+     * 初回アクセス後にキャッシュが最大数に達して、DBから読み込み直したトークンを確認する.
+     * <pre>
+     * 【期待する動作】
+     * ・DBへの書き込み待ちのアクセス時間が反映され、初回アクセスと判定されないこと。
+     * </pre>
+     */
+    @Test
+    public void testFirstAccessAfterEviction() {
+        AccessTokenCache cache = new AccessTokenCache(1);
+        AccessTokenCache.Entry entry = cache.put(loadToken(), true);
+        cache.updateAccessTime(entry, REGISTRATION_DATE + 1);
+
+        SQLiteToken other = createToken(TOKEN_ID + 1, "other");
+        cache.put(other, true);
+
+        entry = cache.put(loadToken(), true);
+        assertFalse(entry.getToken().isFirstAccess());
+    }
+
+    /**
+     * DBから読み込んだ直後のトークンを作成する.
+     * @return トークン
+     */
+    private static SQLiteToken loadToken() {
+        return createToken(TOKEN_ID, ACCESS_TOKEN);
+    }
+
+    /**
+     * アクセス日時が発行日時と同じトークンを作成する.
+     * @param id トークンID
+     * @param accessToken アクセストークン
+     * @return トークン
+     */
+    private static SQLiteToken createToken(final long id, final String accessToken) {
+        SQLiteToken token = new SQLiteToken() {
+        };
+        token.setId(id);
+        token.setAccessToken(accessToken);
+        token.setRegistrationDate(REGISTRATION_DATE);
+        token.setAccessDate(REGISTRATION_DATE);
+        return token;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ EventBatcherTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.message;
+
+import android.content.Intent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * EventBatcherのテスト.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class EventBatcherTest {
+
+    /**
+     * 最大数までイベントをまとめて送信する.
+     * <pre>
+     * 【期待する動作】
+     * ・アクセストークンの確認がまとめたイベントごとに1回だけ行われること。
+     * ・最大数に達した時に、呼び出したスレッドで1回だけ送信されること。
+     * </pre>
+     */
+    @Test
+    public void testMaxCount() {
+        TestCallback callback = new TestCallback();
+        EventBatcher batcher = new EventBatcher.Builder().window(60000).maxCount(3).build();
+        batcher.setCallback(callback);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(batcher.offer(new Intent(), "token"));
+        }
+        assertEquals(1, callback.mAuthorizeCount.get());
+        assertEquals(1, callback.mSent.size());
+        batcher.shutdown();
+    }
+
+    /**
+     * まとめる時間が経過した時にイベントを送信する.
+     * <pre>
+     * 【期待する動作】
+     * ・イベントが1つしか無い場合は、元のイベントがそのまま送信されること。
+     * </pre>
+     */
+    @Test
+    public void testWindow() throws Exception {
+        TestCallback callback = new TestCallback();
+        EventBatcher batcher = new EventBatcher.Builder().window(50).build();
+        batcher.setCallback(callback);
+
+        Intent event = new Intent();
+        assertTrue(batcher.offer(event, "token"));
+        assertTrue(callback.mSentLatch.await(1, TimeUnit.SECONDS));
+        assertSame(event, callback.mSent.get(0));
+        batcher.shutdown();
+    }
+
+    /**
+     * アクセストークンが一致しないイベントを破棄する.
+     * <pre>
+     * 【期待する動作】
+     * ・falseが返り、イベントが送信されないこと。
+     * </pre>
+     */
+    @Test
+    public void testAuthorizeFailed() {
+        TestCallback callback = new TestCallback();
+        callback.mAuthorized = false;
+        EventBatcher batcher = new EventBatcher.Builder().window(60000).build();
+        batcher.setCallback(callback);
+
+        assertFalse(batcher.offer(new Intent(), "token"));
+        batcher.flushAll();
+        assertEquals(0, callback.mSent.size());
+        batcher.shutdown();
+    }
+
+    /**
+     * アクセストークンの確認中に、別のイベント登録宛てのイベントを追加する.
+     * <pre>
+     * 【期待する動作】
+     * ・確認が終わるのを待たずに、別のイベント登録宛てのイベントが送信されること。
+     * </pre>
+     */
+    @Test
+    public void testAuthorizeWithoutLock() throws Exception {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final TestCallback callback = new TestCallback() {
+            @Override
+            public boolean authorize(final Intent event, final String accessToken) {
+                if ("slow".equals(accessToken)) {
+                    entered.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.authorize(event, accessToken);
+            }
+        };
+        final EventBatcher batcher = new EventBatcher.Builder().window(60000).maxCount(1).build();
+        batcher.setCallback(callback);
+
+        Thread slow = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                batcher.offer(new Intent(), "slow");
+            }
+        });
+        slow.start();
+        assertTrue(entered.await(1, TimeUnit.SECONDS));
+
+        final Intent fast = new Intent();
+        final CountDownLatch done = new CountDownLatch(1);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                batcher.offer(fast, "fast");
+                done.countDown();
+            }
+        }).start();
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertSame(fast, callback.mSent.get(0));
+
+        release.countDown();
+        slow.join(1000);
+        assertEquals(2, callback.mSent.size());
+        assertNotSame(fast, callback.mSent.get(1));
+        batcher.shutdown();
+    }
+
+    /**
+     * 送信したイベントを記録する送信先.
+     */
+    private static class TestCallback implements EventBatcher.Callback {
+        final AtomicInteger mAuthorizeCount = new AtomicInteger();
+        final List<Intent> mSent = Collections.synchronizedList(new ArrayList<Intent>());
+        final CountDownLatch mSentLatch = new CountDownLatch(1);
+        volatile boolean mAuthorized = true;
+
+        @Override
+        public boolean authorize(final Intent event, final String accessToken) {
+            mAuthorizeCount.incrementAndGet();
+            return mAuthorized;
+        }
+
+        @Override
+        public void send(final Intent event) {
+            mSent.add(event);
+            mSentLatch.countDown();
+        }
+    }
+}
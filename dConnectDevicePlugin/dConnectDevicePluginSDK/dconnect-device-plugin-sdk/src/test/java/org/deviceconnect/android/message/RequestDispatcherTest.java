@@ -0,0 +1,142 @@
+/*
+ RequestDispatcherTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.message;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * RequestDispatcherのテスト.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class RequestDispatcherTest {
+
+    /** 何もしないタスク. */
+    private static final Runnable NOP = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    /**
+     * 同じシリアルキーのリクエストを実行する.
+     * <pre>
+     * 【期待する動作】
+     * ・受け付けた順番に1つずつ実行されること。
+     * </pre>
+     */
+    @Test
+    public void testSerialOrder() throws Exception {
+        final int count = 50;
+        RequestDispatcher dispatcher = new RequestDispatcher.Builder().threadSize(4).build();
+        final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(count);
+
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            assertTrue(dispatcher.dispatch("device", new Runnable() {
+                @Override
+                public void run() {
+                    int n = running.incrementAndGet();
+                    if (n > maxRunning.get()) {
+                        maxRunning.set(n);
+                    }
+                    executed.add(index);
+                    running.decrementAndGet();
+                    done.countDown();
+                }
+            }, NOP));
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, maxRunning.get());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, (int) executed.get(i));
+        }
+        dispatcher.shutdown();
+    }
+
+    /**
+     * キューが一杯の時にリクエストを実行する.
+     * <pre>
+     * 【期待する動作】
+     * ・シリアルキーの有無に関わらず、実行待ちのリクエスト数がキューサイズを超えないこと。
+     * </pre>
+     */
+    @Test
+    public void testQueueFull() throws Exception {
+        RequestDispatcher dispatcher = new RequestDispatcher.Builder().threadSize(1).queueSize(2).build();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        assertTrue(dispatcher.dispatch("device", new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, NOP));
+        try {
+            assertTrue(started.await(1, TimeUnit.SECONDS));
+
+            assertTrue(dispatcher.dispatch("device", NOP, NOP));
+            assertTrue(dispatcher.dispatch(null, NOP, NOP));
+            assertEquals(2, dispatcher.getQueuedCount());
+
+            assertFalse(dispatcher.dispatch("device", NOP, NOP));
+            assertFalse(dispatcher.dispatch(null, NOP, NOP));
+            assertFalse(dispatcher.dispatch("other", NOP, NOP));
+        } finally {
+            release.countDown();
+            dispatcher.shutdown();
+        }
+    }
+
+    /**
+     * 実行中に例外が発生したリクエストのシリアルキーでリクエストを実行する.
+     * <pre>
+     * 【期待する動作】
+     * ・シリアルキーの実行枠が解放され、後続のリクエストが実行されること。
+     * </pre>
+     */
+    @Test
+    public void testReleaseSlotAfterException() throws Exception {
+        RequestDispatcher dispatcher = new RequestDispatcher.Builder().threadSize(1).build();
+        final CountDownLatch done = new CountDownLatch(1);
+        assertTrue(dispatcher.dispatch("device", new Runnable() {
+            @Override
+            public void run() {
+                throw new RuntimeException("test");
+            }
+        }, NOP));
+        assertTrue(dispatcher.dispatch("device", new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        }, NOP));
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        dispatcher.shutdown();
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ ApiRoutingTableTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.profile.api;
+
+import android.content.Intent;
+
+import org.deviceconnect.android.profile.spec.DConnectParameterSpec;
+import org.deviceconnect.android.profile.spec.DConnectSpecConstants;
+import org.deviceconnect.android.profile.spec.IntegerParameterSpec;
+import org.deviceconnect.android.profile.spec.StringParameterSpec;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ApiRoutingTableのテスト.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class ApiRoutingTableTest implements DConnectSpecConstants {
+
+    /**
+     * 計測前に実行する回数.
+     */
+    private static final int WARM_UP_COUNT = 100000;
+
+    /**
+     * 計測する回数.
+     */
+    private static final int COUNT = 1000000;
+
+    /**
+     * インターフェース名、アトリビュート名、メソッドからAPIを検索する.
+     * <pre>
+     * 【期待する動作】
+     * ・登録したAPIが取得できること。
+     * ・大文字小文字を区別せずに検索できること。
+     * ・メソッドが異なる場合はnullが返ること。
+     * </pre>
+     */
+    @Test
+    public void testFind() {
+        TestApi onDeviceOrientation = new TestApi(Method.PUT, null, "onDeviceOrientation");
+        TestApi getOrientation = new TestApi(Method.GET, null, "onDeviceOrientation");
+        TestApi root = new TestApi(Method.GET, null, null);
+        TestApi recorder = new TestApi(Method.POST, "mediaRecorder", "takePhoto");
+        List<DConnectApi> apis = new ArrayList<>();
+        apis.add(onDeviceOrientation);
+        apis.add(getOrientation);
+        apis.add(root);
+        apis.add(recorder);
+
+        ApiRoutingTable table = new ApiRoutingTable(apis);
+        assertEquals(4, table.size());
+        assertSame(onDeviceOrientation, table.find(Method.PUT, null, "ondeviceorientation"));
+        assertSame(getOrientation, table.find(Method.GET, null, "ONDEVICEORIENTATION"));
+        assertSame(root, table.find(Method.GET, null, null));
+        assertSame(recorder, table.find(Method.POST, "MediaRecorder", "takephoto"));
+        assertNull(table.find(Method.DELETE, null, "onDeviceOrientation"));
+        assertNull(table.find(Method.POST, null, "takePhoto"));
+        assertNull(table.find(Method.POST, "mediaRecorder", null));
+        assertNull(table.find(null, null, null));
+    }
+
+    /**
+     * インターフェース名、アトリビュート名、メソッドが同じAPIを登録する.
+     * <pre>
+     * 【期待する動作】
+     * ・後に登録したAPIが使用されること。
+     * </pre>
+     */
+    @Test
+    public void testDuplicatedApi() {
+        TestApi first = new TestApi(Method.GET, null, "battery");
+        TestApi second = new TestApi(Method.GET, null, "Battery");
+        List<DConnectApi> apis = new ArrayList<>();
+        apis.add(first);
+        apis.add(second);
+
+        ApiRoutingTable table = new ApiRoutingTable(apis);
+        assertEquals(1, table.size());
+        assertSame(second, table.find(Method.GET, null, "battery"));
+    }
+
+    /**
+     * NameTableでnullのキーと多数のキーを検索する.
+     * <pre>
+     * 【期待する動作】
+     * ・nullのキーの値が取得できること。
+     * ・登録した全てのキーが大文字小文字を区別せずに検索できること。
+     * ・登録していないキーはnullが返ること。
+     * </pre>
+     */
+    @Test
+    public void testNameTable() {
+        Map<String, Integer> map = new HashMap<>();
+        map.put(null, -1);
+        for (int i = 0; i < 100; i++) {
+            map.put("name" + i, i);
+        }
+        NameTable<Integer> table = new NameTable<>(map);
+        assertEquals(101, table.size());
+        assertEquals(Integer.valueOf(-1), table.get(null));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Integer.valueOf(i), table.get("NAME" + i));
+        }
+        assertNull(table.get("name100"));
+        assertNull(new NameTable<>(new HashMap<String, Integer>()).get(null));
+    }
+
+    /**
+     * APIの検索とパラメータの検証の1回あたりの処理時間を計測する.
+     * <pre>
+     * 【期待する動作】
+     * ・処理時間が標準出力に出力されること。
+     * </pre>
+     */
+    @Test
+    public void benchmarkRouting() {
+        List<DConnectApi> apis = new ArrayList<>();
+        String[] interfaces = {null, "mediaRecorder", "light", "canvas"};
+        String[] attributes = {null, "onChange", "takePhoto", "preview", "record", "drawImage"};
+        for (String i : interfaces) {
+            for (String a : attributes) {
+                for (Method m : Method.values()) {
+                    apis.add(new TestApi(m, i, a));
+                }
+            }
+        }
+
+        // 文字列のパスを作成してHashMapから検索する方式と比較する
+        Map<String, DConnectApi> pathMap = new HashMap<>();
+        for (DConnectApi api : apis) {
+            pathMap.put(createKey(api.getMethod(), api.getInterface(), api.getAttribute()), api);
+        }
+        ApiRoutingTable table = new ApiRoutingTable(apis);
+
+        int found = 0;
+        for (int n = 0; n < WARM_UP_COUNT; n++) {
+            found += pathMap.get(createKey(Method.POST, "MediaRecorder", "takePhoto")) != null ? 1 : 0;
+            found += table.find(Method.POST, "MediaRecorder", "takePhoto") != null ? 1 : 0;
+        }
+        long start = System.nanoTime();
+        for (int n = 0; n < COUNT; n++) {
+            found += pathMap.get(createKey(Method.POST, "MediaRecorder", "takePhoto")) != null ? 1 : 0;
+        }
+        long pathTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int n = 0; n < COUNT; n++) {
+            found += table.find(Method.POST, "MediaRecorder", "takePhoto") != null ? 1 : 0;
+        }
+        long tableTime = System.nanoTime() - start;
+        assertEquals((WARM_UP_COUNT + COUNT) * 2, found);
+
+        DConnectParameterSpec[] params = {
+                new StringParameterSpec.Builder().setName("serviceId").setRequired(true).build(),
+                createSizeSpec("width"),
+                createSizeSpec("height")
+        };
+        Object[] values = {"host", "640", "480"};
+        boolean valid = true;
+        for (int n = 0; n < WARM_UP_COUNT; n++) {
+            valid &= validate(params, values);
+        }
+        start = System.nanoTime();
+        for (int n = 0; n < COUNT; n++) {
+            valid &= validate(params, values);
+        }
+        long validateTime = System.nanoTime() - start;
+        assertTrue(valid);
+        assertFalse(validate(params, new Object[] {"host", "0", "480"}));
+
+        System.out.println("path string + HashMap: " + (pathTime / COUNT) + "ns/request");
+        System.out.println("ApiRoutingTable: " + (tableTime / COUNT) + "ns/request");
+        System.out.println("validate 3 params: " + (validateTime / COUNT) + "ns/request");
+    }
+
+    private static IntegerParameterSpec createSizeSpec(final String name) {
+        return new IntegerParameterSpec.Builder()
+                .setName(name)
+                .setRequired(false)
+                .setMinimum(1L)
+                .setMaximum(4096L)
+                .setExclusiveMinimum(false)
+                .setExclusiveMaximum(false)
+                .build();
+    }
+
+    private static boolean validate(final DConnectParameterSpec[] params, final Object[] values) {
+        for (int i = 0; i < params.length; i++) {
+            if (!params[i].validate(values[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String createKey(final Method method, final String interfaceName, final String attributeName) {
+        StringBuilder path = new StringBuilder();
+        path.append("/");
+        if (interfaceName != null) {
+            path.append(interfaceName);
+            path.append("/");
+        }
+        if (attributeName != null) {
+            path.append(attributeName);
+        }
+        return path.toString().toLowerCase() + " " + method.getName();
+    }
+
+    /**
+     * テスト用のAPI.
+     */
+    private static class TestApi extends DConnectApi {
+        private final Method mMethod;
+        private final String mInterface;
+        private final String mAttribute;
+
+        TestApi(final Method method, final String interfaceName, final String attributeName) {
+            mMethod = method;
+            mInterface = interfaceName;
+            mAttribute = attributeName;
+        }
+
+        @Override
+        public String getInterface() {
+            return mInterface;
+        }
+
+        @Override
+        public String getAttribute() {
+            return mAttribute;
+        }
+
+        @Override
+        public Method getMethod() {
+            return mMethod;
+        }
+
+        @Override
+        public boolean onRequest(final Intent request, final Intent response) {
+            return true;
+        }
+    }
+}
@@ -27,8 +27,6 @@ import org.deviceconnect.android.deviceplugin.sonycamera.profile.SonyCameraSyste
 import org.deviceconnect.android.deviceplugin.sonycamera.profile.SonyCameraZoomProfile;
 import org.deviceconnect.android.deviceplugin.sonycamera.service.SonyCameraService;
 import org.deviceconnect.android.deviceplugin.sonycamera.utils.DConnectUtil;
-import org.deviceconnect.android.deviceplugin.sonycamera.utils.MixedReplaceMediaServer;
-import org.deviceconnect.android.deviceplugin.sonycamera.utils.MixedReplaceMediaServer.ServerEventListener;
 import org.deviceconnect.android.deviceplugin.sonycamera.utils.UserSettings;
 import org.deviceconnect.android.event.Event;
 import org.deviceconnect.android.event.EventManager;
@@ -41,6 +39,8 @@ import org.deviceconnect.android.profile.ServiceDiscoveryProfile;
 import org.deviceconnect.android.profile.SystemProfile;
 import org.deviceconnect.android.provider.FileManager;
 import org.deviceconnect.android.service.DConnectService;
+import org.deviceconnect.android.streaming.MixedReplaceMediaServer;
+import org.deviceconnect.android.streaming.MixedReplaceMediaServer.ServerEventListener;
 import org.deviceconnect.message.DConnectMessage;
 import org.deviceconnect.message.intent.message.IntentDConnectMessage;
 import org.deviceconnect.profile.MediaStreamRecordingProfileConstants;
@@ -18,7 +18,6 @@ import org.deviceconnect.android.deviceplugin.theta.core.ThetaDeviceClient;
 import org.deviceconnect.android.deviceplugin.theta.core.ThetaDeviceException;
 import org.deviceconnect.android.deviceplugin.theta.core.ThetaObject;
 import org.deviceconnect.android.deviceplugin.theta.utils.BitmapUtils;
-import org.deviceconnect.android.deviceplugin.theta.utils.MixedReplaceMediaServer;
 import org.deviceconnect.android.event.Event;
 import org.deviceconnect.android.event.EventError;
 import org.deviceconnect.android.event.EventManager;
@@ -30,6 +29,7 @@ import org.deviceconnect.android.profile.api.GetApi;
 import org.deviceconnect.android.profile.api.PostApi;
 import org.deviceconnect.android.profile.api.PutApi;
 import org.deviceconnect.android.provider.FileManager;
+import org.deviceconnect.android.streaming.MixedReplaceMediaServer;
 import org.deviceconnect.message.DConnectMessage;
 
 import java.io.ByteArrayOutputStream;
@@ -530,7 +530,8 @@ public abstract class ThetaMediaStreamRecordingProfile extends MediaStreamRecord
                 };
                 mExecutor.execute(mLivePreviewTask);
             }
-            return mServer.getUrl() + "/" + segment;
+            mServer.startMedia(segment);
+            return mServer.getUrl(segment);
         }
     }
 
@@ -21,13 +21,13 @@ import org.deviceconnect.android.deviceplugin.theta.ThetaDeviceService;
 import org.deviceconnect.android.deviceplugin.theta.core.SphericalViewParam;
 import org.deviceconnect.android.deviceplugin.theta.core.SphericalViewRenderer;
 import org.deviceconnect.android.deviceplugin.theta.core.sensor.HeadTracker;
-import org.deviceconnect.android.deviceplugin.theta.utils.MixedReplaceMediaServer;
 import org.deviceconnect.android.message.MessageUtils;
 import org.deviceconnect.android.profile.OmnidirectionalImageProfile;
 import org.deviceconnect.android.profile.api.DConnectApi;
 import org.deviceconnect.android.profile.api.DeleteApi;
 import org.deviceconnect.android.profile.api.GetApi;
 import org.deviceconnect.android.profile.api.PutApi;
+import org.deviceconnect.android.streaming.MixedReplaceMediaServer;
 import org.deviceconnect.message.DConnectMessage;
 
 import java.io.FileNotFoundException;
@@ -47,7 +47,7 @@ import java.util.concurrent.TimeUnit;
  * @author NTT DOCOMO, INC.
  */
 public class ThetaOmnidirectionalImageProfile extends OmnidirectionalImageProfile
-    implements MixedReplaceMediaServer.ServerEventListener {
+    implements MixedReplaceMediaServer.ClientEventListener {
 
     private final Object mLockObj = new Object();
 
@@ -144,7 +144,21 @@ public class ThetaOmnidirectionalImageProfile extends OmnidirectionalImageProfil
                 mServer = new MixedReplaceMediaServer();
                 mServer.setServerName("ThetaDevicePlugin Server");
                 mServer.setContentType("image/jpeg");
-                mServer.setServerEventListener(ThetaOmnidirectionalImageProfile.this);
+                mServer.setClientEventListener(ThetaOmnidirectionalImageProfile.this);
+                mServer.setServerEventListener(new MixedReplaceMediaServer.ServerEventListener() {
+                    @Override
+                    public void onStart() {
+                    }
+
+                    @Override
+                    public void onStop() {
+                        mViewers.clear();
+                    }
+
+                    @Override
+                    public void onError() {
+                    }
+                });
                 mServer.start();
             }
         }
@@ -304,7 +318,7 @@ public class ThetaOmnidirectionalImageProfile extends OmnidirectionalImageProfil
 
     @Override
     public void onDisconnect(final MixedReplaceMediaServer.Request request) {
-        if (!request.isGet()) {
+        if (!request.isSnapshot()) {
             Viewer viewer = mViewers.remove(request.getUri());
             if (viewer != null) {
                 viewer.stop();
@@ -312,11 +326,6 @@ public class ThetaOmnidirectionalImageProfile extends OmnidirectionalImageProfil
         }
     }
 
-    @Override
-    public void onCloseServer() {
-        mViewers.clear();
-    }
-
     private String omitParameters(final String uri) {
         if (uri == null) {
             return null;
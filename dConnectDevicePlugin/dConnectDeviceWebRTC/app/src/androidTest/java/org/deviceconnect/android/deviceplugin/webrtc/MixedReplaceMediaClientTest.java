@@ -3,7 +3,7 @@ package org.deviceconnect.android.deviceplugin.webrtc;
 import android.support.test.runner.AndroidJUnit4;
 
 import org.deviceconnect.android.deviceplugin.webrtc.util.MixedReplaceMediaClient;
-import org.deviceconnect.android.deviceplugin.webrtc.util.MixedReplaceMediaServer;
+import org.deviceconnect.android.streaming.MixedReplaceMediaServer;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
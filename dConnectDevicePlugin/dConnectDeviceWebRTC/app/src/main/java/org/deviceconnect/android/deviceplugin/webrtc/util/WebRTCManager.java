@@ -25,6 +25,7 @@ import org.deviceconnect.android.deviceplugin.webrtc.core.PeerConfig;
 import org.deviceconnect.android.deviceplugin.webrtc.core.WebRTCController;
 import org.deviceconnect.android.deviceplugin.webrtc.fragment.PercentFrameLayout;
 import org.deviceconnect.android.profile.VideoChatProfile;
+import org.deviceconnect.android.streaming.MixedReplaceMediaServer;
 import org.webrtc.EglBase;
 import org.webrtc.RendererCommon;
 import org.webrtc.voiceengine.WebRtcAudioTrack;
@@ -73,6 +74,8 @@ public class WebRTCManager {
         mServer = new MixedReplaceMediaServer();
         mServer.setPort(VIDEO_PORT);
         mServer.start();
+        mServer.startMedia(MySurfaceViewRenderer.TYPE_LOCAL);
+        mServer.startMedia(MySurfaceViewRenderer.TYPE_REMOTE);
 
         LayoutInflater inflater = (LayoutInflater) mApplication.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
         RelativeLayout root = (RelativeLayout) inflater.inflate(R.layout.activity_main, null);
@@ -0,0 +1,209 @@
+/*
+ BundleJSONWriterBenchmark.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.test;
+
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.deviceconnect.android.manager.DConnectSettings;
+import org.deviceconnect.android.manager.util.DConnectUtil;
+import org.deviceconnect.message.intent.message.IntentDConnectMessage;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * BundleからJSONへの変換処理の性能を比較するテスト.
+ * <p>
+ * JSONObjectを作成してから文字列に変換する処理と、
+ * BundleからJSONのバイト列を直接書き出す処理の結果と処理時間を比較する。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BundleJSONWriterBenchmark {
+
+    /**
+     * ログ出力用タグ.
+     */
+    private static final String TAG = "BundleJSONWriterBenchmark";
+
+    /**
+     * 計測前に実行する回数.
+     */
+    private static final int WARM_UP_COUNT = 10;
+
+    /**
+     * 計測する回数.
+     */
+    private static final int COUNT = 100;
+
+    @Before
+    public void setUp() {
+        DConnectSettings.getInstance().load(InstrumentationRegistry.getTargetContext());
+    }
+
+    /**
+     * サービス検索のレスポンスを変換した結果と処理時間を比較する.
+     * <pre>
+     * 【期待する動作】
+     * ・どちらの変換処理でも同じJSONが作成されること。
+     * </pre>
+     */
+    @Test
+    public void testServiceDiscovery() throws Exception {
+        Bundle root = createResponse();
+        ArrayList<Bundle> services = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Bundle service = new Bundle();
+            service.putString("id", "service" + i + ".a1b2c3d4e5f6.localhost.deviceconnect.org");
+            service.putString("name", "デバイス " + i);
+            service.putString("type", "Wi-Fi");
+            service.putBoolean("online", i % 2 == 0);
+            service.putString("config", "{\"key\":\"value\"}");
+            service.putStringArray("scopes", new String[] {"battery", "deviceOrientation", "file", "light", "vibration"});
+            services.add(service);
+        }
+        root.putParcelableArray("services", services.toArray(new Bundle[services.size()]));
+        benchmark("serviceDiscovery", root);
+    }
+
+    /**
+     * ファイル一覧のレスポンスを変換した結果と処理時間を比較する.
+     * <pre>
+     * 【期待する動作】
+     * ・どちらの変換処理でも同じJSONが作成されること。
+     * </pre>
+     */
+    @Test
+    public void testFileList() throws Exception {
+        Bundle root = createResponse();
+        ArrayList<Bundle> files = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Bundle file = new Bundle();
+            file.putString("path", "/storage/emulated/0/DCIM/Camera/IMG_" + i + ".jpg");
+            file.putString("fileName", "IMG_" + i + ".jpg");
+            file.putString("mimeType", "image/jpeg");
+            file.putString("fileType", "0");
+            file.putLong("fileSize", 1024L * 1024L + i);
+            file.putString("updateDate", "2017-01-01T00:00:00+0900");
+            files.add(file);
+        }
+        root.putParcelableArrayList("files", files);
+        root.putInt("count", files.size());
+        benchmark("fileList", root);
+    }
+
+    /**
+     * センサーの値を含むレスポンスを変換した結果と処理時間を比較する.
+     * <pre>
+     * 【期待する動作】
+     * ・どちらの変換処理でも同じJSONが作成されること。
+     * </pre>
+     */
+    @Test
+    public void testSensorArrays() throws Exception {
+        Bundle root = createResponse();
+        double[] ecg = new double[10000];
+        float[] acceleration = new float[10000];
+        int[] heartRate = new int[10000];
+        for (int i = 0; i < ecg.length; i++) {
+            ecg[i] = Math.sin(i / 100.0);
+            acceleration[i] = (float) Math.cos(i / 10.0) * 9.8f;
+            heartRate[i] = 60 + i % 40;
+        }
+        root.putDoubleArray("ecg", ecg);
+        root.putFloatArray("acceleration", acceleration);
+        root.putIntArray("heartRate", heartRate);
+        benchmark("sensorArrays", root);
+    }
+
+    /**
+     * content://から始まるURIを含むレスポンスを変換した結果を比較する.
+     * <pre>
+     * 【期待する動作】
+     * ・どちらの変換処理でも同じJSONが作成されること。
+     * </pre>
+     */
+    @Test
+    public void testContentUri() throws Exception {
+        Bundle root = createResponse();
+        root.putString("uri", "content://org.deviceconnect.android.manager.provider/test.jpg");
+        Bundle media = new Bundle();
+        media.putString("uri", "content://org.deviceconnect.android.manager.provider/test.mp4");
+        media.putString("mimeType", "video/mp4");
+        root.putBundle("media", media);
+        root.putParcelableArray("list", new Bundle[] {media});
+        root.putString("text", "\"escape\" / \\ \n\t\u0001 日本語 😀");
+        benchmark("contentUri", root);
+    }
+
+    /**
+     * 2つの変換処理の結果を比較して、処理時間をログに出力する.
+     * @param name 計測名
+     * @param root 変換するBundle
+     * @throws Exception 変換に失敗した場合
+     */
+    private void benchmark(final String name, final Bundle root) throws Exception {
+        byte[] expected = convertByJSONObject(root);
+        byte[] actual = convertByWriter(root);
+        assertEquals(new String(expected, "UTF-8"), new String(actual, "UTF-8"));
+
+        for (int i = 0; i < WARM_UP_COUNT; i++) {
+            convertByJSONObject(root);
+            convertByWriter(root);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < COUNT; i++) {
+            convertByJSONObject(root);
+        }
+        long jsonObjectTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < COUNT; i++) {
+            convertByWriter(root);
+        }
+        long writerTime = System.nanoTime() - start;
+
+        Log.i(TAG, name + ": size=" + actual.length
+                + " JSONObject=" + (jsonObjectTime / COUNT / 1000) + "us"
+                + " BundleJSONWriter=" + (writerTime / COUNT / 1000) + "us");
+    }
+
+    private static byte[] convertByJSONObject(final Bundle root) throws JSONException, IOException {
+        JSONObject json = new JSONObject();
+        DConnectUtil.convertBundleToJSON(json, root);
+        return json.toString().getBytes("UTF-8");
+    }
+
+    private static byte[] convertByWriter(final Bundle root) throws JSONException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DConnectUtil.convertBundleToJSON(out, root);
+        return out.toByteArray();
+    }
+
+    private static Bundle createResponse() {
+        Bundle root = new Bundle();
+        root.putInt(IntentDConnectMessage.EXTRA_REQUEST_CODE, 1);
+        root.putInt("result", 0);
+        root.putString("product", "Device Connect Manager");
+        root.putString("version", "v2.1.0");
+        return root;
+    }
+}
@@ -2,6 +2,7 @@ package org.deviceconnect.android.manager.test;
 
 import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
 
 import org.deviceconnect.android.profile.restful.test.RESTfulDConnectTestCase;
 import org.deviceconnect.message.DConnectMessage;
@@ -23,6 +24,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.core.Is.is;
@@ -36,6 +38,11 @@ import static org.junit.Assert.assertThat;
  */
 @RunWith(AndroidJUnit4.class)
 public class StressTest extends RESTfulDConnectTestCase {
+    /**
+     * ログ出力用タグ.
+     */
+    private static final String TAG = "StressTest";
+
     /**
      * ServiceDiscoveryを1000回呼び出しても問題ないことを確認する。
      * <pre>
@@ -87,6 +94,52 @@ public class StressTest extends RESTfulDConnectTestCase {
         }
     }
 
+    /**
+     * 多数の同時リクエストに対するスループットを計測する。
+     * <pre>
+     * Method: GET
+     * Path: /availability
+     * </pre>
+     * <pre>
+     * 【期待する動作】
+     * ・全てのレスポンスのresultに0が返ってくること。
+     * ・1秒あたりの処理数がログに出力されること。
+     * </pre>
+     */
+    @Test
+    public void testConcurrentRequestThroughput() throws Exception {
+        final int countOfConnections = 2000;
+        final int countOfThreads = 256;
+
+        final CountDownLatch latch = new CountDownLatch(countOfConnections);
+        final AtomicInteger successCount = new AtomicInteger();
+
+        ExecutorService executorService = Executors.newFixedThreadPool(countOfThreads);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < countOfConnections; i++) {
+            executorService.submit(new Runnable() {
+                @Override
+                public void run() {
+                    DConnectResponseMessage response = mDConnectSDK.availability();
+                    if (response != null && response.getResult() == DConnectMessage.RESULT_OK) {
+                        successCount.incrementAndGet();
+                    }
+                    latch.countDown();
+                }
+            });
+        }
+
+        latch.await(5 * 60, TimeUnit.SECONDS);
+        long elapsed = System.currentTimeMillis() - start;
+        executorService.shutdown();
+
+        Log.i(TAG, "testConcurrentRequestThroughput: requests=" + countOfConnections
+                + " threads=" + countOfThreads + " elapsed=" + elapsed + "ms"
+                + " throughput=" + (countOfConnections * 1000L / Math.max(1, elapsed)) + "req/s");
+
+        assertThat(successCount.get(), is(countOfConnections));
+    }
+
     /**
      * Canvasプロファイルに1GBのデータを送信する。
      * <pre>
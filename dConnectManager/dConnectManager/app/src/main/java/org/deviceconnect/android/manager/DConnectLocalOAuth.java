@@ -19,11 +19,20 @@ import org.deviceconnect.profile.SystemProfileConstants;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 /**
  * デバイスプラグインとのLocal OAuthの認可を行うためのクラス.
+ * <p>
+ * プラグインへのリクエストごとに参照されるため、OAuthデータとアクセストークンをメモリ上にキャッシュする。
+ * キャッシュにヒットした場合には、DBにもアクセスせず、ロックも取得しない。
+ * キャッシュはDBを更新・削除するメソッドの中で同時に更新する。
+ * </p>
  * @author NTT DOCOMO, INC.
  */
 public class DConnectLocalOAuth {
@@ -59,6 +68,18 @@ public class DConnectLocalOAuth {
     /** DBアクセスヘルパークラス. */
     private LocalOAuthSQLiteOpenHelper mDBHelper;
 
+    /** オリジンとサービスIDをキーにしたOAuthデータのキャッシュ. */
+    private final Map<String, OAuthData> mOAuthDataCache = new ConcurrentHashMap<>();
+
+    /** OAuthデータのIDをキーにしたアクセストークンのキャッシュ. */
+    private final Map<Integer, String> mAccessTokenCache = new ConcurrentHashMap<>();
+
+    /** キャッシュにヒットした回数. */
+    private final AtomicLong mCacheHitCount = new AtomicLong();
+
+    /** キャッシュにヒットしなかった回数. */
+    private final AtomicLong mCacheMissCount = new AtomicLong();
+
     /**
      * コンテキスト.
      */
@@ -100,6 +121,22 @@ public class DConnectLocalOAuth {
         return mContext;
     }
 
+    /**
+     * キャッシュにヒットした回数を取得する.
+     * @return キャッシュにヒットした回数
+     */
+    public long getCacheHitCount() {
+        return mCacheHitCount.get();
+    }
+
+    /**
+     * キャッシュにヒットせずにDBを参照した回数を取得する.
+     * @return キャッシュにヒットしなかった回数
+     */
+    public long getCacheMissCount() {
+        return mCacheMissCount.get();
+    }
+
     /**
      * Local OAuthデータを追加する.
      * @param origin リクエスト元のオリジン
@@ -120,6 +157,7 @@ public class DConnectLocalOAuth {
         } finally {
             db.close();
         }
+        mOAuthDataCache.remove(createCacheKey(origin, serviceId));
     }
 
     /**
@@ -129,7 +167,30 @@ public class DConnectLocalOAuth {
      * @param serviceId サービスID
      * @return Local OAuthデータ
      */
-    public synchronized OAuthData getOAuthData(final String origin, final String serviceId) {
+    public OAuthData getOAuthData(final String origin, final String serviceId) {
+        OAuthData client = mOAuthDataCache.get(createCacheKey(origin, serviceId));
+        if (client != null) {
+            mCacheHitCount.incrementAndGet();
+            return client;
+        }
+        return loadOAuthData(origin, serviceId);
+    }
+
+    /**
+     * 指定されたサービスIDのLocal OAuthデータをDBから読み込み、キャッシュに格納する.
+     * @param origin リクエスト元のオリジン
+     * @param serviceId サービスID
+     * @return Local OAuthデータ
+     */
+    private synchronized OAuthData loadOAuthData(final String origin, final String serviceId) {
+        String key = createCacheKey(origin, serviceId);
+        OAuthData cached = mOAuthDataCache.get(key);
+        if (cached != null) {
+            mCacheHitCount.incrementAndGet();
+            return cached;
+        }
+        mCacheMissCount.incrementAndGet();
+
         String select = OAuthDataColumns.ORIGIN + "=? and " + OAuthDataColumns.SERVICE_ID + "=?";
         String[] selectArgs = {origin, serviceId};
         OAuthData client =  null;
@@ -138,6 +199,7 @@ public class DConnectLocalOAuth {
         try {
             if (cs.moveToFirst()) {
                 client = getOAuthData(cs);
+                mOAuthDataCache.put(key, client);
             }
         } finally {
             cs.close();
@@ -180,6 +242,7 @@ public class DConnectLocalOAuth {
             result = db.delete(OAUTH_DATA_TABLE_NAME, select, null) > 0;
         } finally {
             db.close();
+            mOAuthDataCache.remove(createCacheKey(oauth.getOrigin(), oauth.getServiceId()));
         }
         return result;
     }
@@ -242,6 +305,7 @@ public class DConnectLocalOAuth {
             return db.delete(ACCESS_TOKEN_TABLE_NAME, select, null) > 0;
         } finally {
             db.close();
+            mAccessTokenCache.remove(oauthId);
         }
     }
 
@@ -259,6 +323,11 @@ public class DConnectLocalOAuth {
             return db.delete(ACCESS_TOKEN_TABLE_NAME, select, selectArgs) > 0;
         } finally {
             db.close();
+            for (Iterator<String> it = mAccessTokenCache.values().iterator(); it.hasNext(); ) {
+                if (it.next().equals(token)) {
+                    it.remove();
+                }
+            }
         }
     }
     /**
@@ -269,13 +338,36 @@ public class DConnectLocalOAuth {
      * @param oauthId サービスID
      * @return アクセストークン
      */
-    public synchronized String getAccessToken(final int oauthId) {
+    public String getAccessToken(final int oauthId) {
+        String accessToken = mAccessTokenCache.get(oauthId);
+        if (accessToken != null) {
+            mCacheHitCount.incrementAndGet();
+            return accessToken;
+        }
+        return loadAccessToken(oauthId);
+    }
+
+    /**
+     * サービスIDに対応したアクセストークンをDBから読み込み、キャッシュに格納する.
+     * @param oauthId サービスID
+     * @return アクセストークン
+     */
+    private synchronized String loadAccessToken(final int oauthId) {
+        String cached = mAccessTokenCache.get(oauthId);
+        if (cached != null) {
+            mCacheHitCount.incrementAndGet();
+            return cached;
+        }
+        mCacheMissCount.incrementAndGet();
+
         String select = AccessTokenColumns.OAUTH_ID + "=" + oauthId;
         SQLiteDatabase db = mDBHelper.getReadableDatabase();
         Cursor cs = db.query(ACCESS_TOKEN_TABLE_NAME, null, select, null, null, null, null);
         try {
             if (cs.moveToFirst()) {
-                return cs.getString(cs.getColumnIndex(AccessTokenColumns.ACCESS_TOKEN));
+                String accessToken = cs.getString(cs.getColumnIndex(AccessTokenColumns.ACCESS_TOKEN));
+                mAccessTokenCache.put(oauthId, accessToken);
+                return accessToken;
             }
         } finally {
             cs.close();
@@ -304,6 +396,7 @@ public class DConnectLocalOAuth {
             } else {
                 mDBHelper.getWritableDatabase().insertOrThrow(ACCESS_TOKEN_TABLE_NAME, null, values);
             }
+            mAccessTokenCache.put(oauthId, accessToken);
         } finally {
             cs.close();
             db.close();
@@ -331,6 +424,16 @@ public class DConnectLocalOAuth {
         return clients;
     }
 
+    /**
+     * OAuthデータのキャッシュのキーを作成する.
+     * @param origin リクエスト元のオリジン
+     * @param serviceId サービスID
+     * @return キー
+     */
+    private static String createCacheKey(final String origin, final String serviceId) {
+        return origin + '\u0000' + serviceId;
+    }
+
     /**
      * DBからOAuthDataを作成する.
      * @param cs DBのカーソル
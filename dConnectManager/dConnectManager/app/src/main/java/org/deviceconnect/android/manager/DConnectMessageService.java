@@ -85,6 +85,12 @@ public abstract class DConnectMessageService extends Service
     /** 起動用URIスキーム名. */
     private static final String SCHEME_LAUNCH = "dconnect";
 
+    /** サービスの一覧のキャッシュの有効期限(ms). */
+    private static final long SERVICE_REGISTRY_TTL = 60 * 1000;
+
+    /** サービス検索に応答しなかったデバイスプラグインのキャッシュの有効期限(ms). */
+    private static final long SERVICE_REGISTRY_FAILURE_TTL = 10 * 1000;
+
     /** ロガー. */
     protected final Logger mLogger = Logger.getLogger("dconnect.manager");
 
@@ -124,6 +130,9 @@ public abstract class DConnectMessageService extends Service
     /** イベントブローカー. */
     protected EventBroker mEventBroker;
 
+    /** サービスの一覧のキャッシュ. */
+    private final ServiceRegistry mServiceRegistry = new ServiceRegistry(SERVICE_REGISTRY_TTL, SERVICE_REGISTRY_FAILURE_TTL);
+
     @Override
     public IBinder onBind(final Intent intent) {
         return null;
@@ -363,6 +372,30 @@ public abstract class DConnectMessageService extends Service
         mRequestManager.addRequest(request);
     }
 
+    /**
+     * リクエスト管理クラスを取得する.
+     * @return リクエスト管理クラス. DeviceConnectManagerが起動していない場合はnull
+     */
+    public DConnectRequestManager getRequestManager() {
+        return mRequestManager;
+    }
+
+    /**
+     * プラグインとのLocal OAuthのデータを管理するクラスを取得する.
+     * @return Local OAuthのデータを管理するクラス
+     */
+    public DConnectLocalOAuth getLocalOAuth() {
+        return mLocalOAuth;
+    }
+
+    /**
+     * サービスの一覧のキャッシュを取得する.
+     * @return サービスの一覧のキャッシュ
+     */
+    public ServiceRegistry getServiceRegistry() {
+        return mServiceRegistry;
+    }
+
     private void loadProfileSpecs() {
         for (DConnectProfile profile : mProfileMap.values()) {
             final String profileName = profile.getProfileName();
@@ -491,6 +524,9 @@ public abstract class DConnectMessageService extends Service
 
     @Override
     public void onDeviceFound(final DevicePlugin plugin) {
+        // 更新されたプラグインの場合は、以前のサービスの一覧を使用しない
+        mServiceRegistry.removeServices(plugin.getPluginId());
+
         RegisterNetworkServiceDiscovery req = new RegisterNetworkServiceDiscovery();
         req.setContext(this);
         req.setDestination(plugin);
@@ -500,6 +536,7 @@ public abstract class DConnectMessageService extends Service
 
     @Override
     public void onDeviceLost(final DevicePlugin plugin) {
+        mServiceRegistry.removeServices(plugin.getPluginId());
         mLocalOAuth.deleteOAuthDatas(plugin.getPluginId());
     }
 
@@ -520,7 +557,14 @@ public abstract class DConnectMessageService extends Service
      */
     protected void startDConnect() {
         mHmacManager = new HmacManager(this);
-        mRequestManager = new DConnectRequestManager();
+        mRequestManager = new DConnectRequestManager(new DConnectRequestManager.Config.Builder()
+                .deliveryThreadSize(mSettings.getRequestThreadSize())
+                .deliveryQueueSize(mSettings.getRequestQueueSize())
+                .maxConcurrentRequestsPerPlugin(mSettings.getMaxConcurrentRequestsPerPlugin())
+                .controlThreadSize(mSettings.getControlThreadSize())
+                .controlQueueSize(mSettings.getControlQueueSize())
+                .build());
+        mEventBroker.setEventSendQueue(mSettings.getEventQueueSize(), mSettings.getEventOverflowPolicy());
         mOriginValidator = new OriginValidator(this,
                 mSettings.requireOrigin(), mSettings.isBlockingOrigin());
         mPluginMgr.setEventListener(this);
@@ -536,6 +580,7 @@ public abstract class DConnectMessageService extends Service
         if (mRequestManager != null) {
             mRequestManager.shutdown();
         }
+        mServiceRegistry.clear();
         hideNotification();
     }
 
@@ -30,12 +30,15 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.restlet.ext.oauth.PackageInfoOAuth;
 
-import java.io.UnsupportedEncodingException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 /**
@@ -44,9 +47,13 @@ import java.util.logging.Logger;
  */
 class DConnectServerEventListenerImpl implements DConnectServerEventListener {
     /**
-     * HTTPサーバからリクエストのマップ.
+     * HTTPサーバからのリクエストに対するレスポンス待ちのマップ.
+     * <p>
+     * リクエストコードごとに待機用のオブジェクトを持つことで、
+     * レスポンス受信時に該当するスレッドのみを再開させる。
+     * </p>
      */
-    private final Map<Integer, Intent> mRequestMap = new ConcurrentHashMap<>();
+    private final Map<Integer, ResponseWaiter> mRequestMap = new ConcurrentHashMap<>();
 
     /** ロガー. */
     private final Logger mLogger = Logger.getLogger("dconnect.manager");
@@ -54,6 +61,9 @@ class DConnectServerEventListenerImpl implements DConnectServerEventListener {
     /** JSONレスポンス用のContent-Type. */
     private static final String CONTENT_TYPE_JSON = "application/json; charset=UTF-8";
 
+    /** JSONレスポンスを書き出すバッファの初期サイズ. */
+    private static final int RESPONSE_BUFFER_SIZE = 1024;
+
     /** HTTPリクエストのセグメント数(APIのみ) {@value}.  */
     private static final int SEGMENT_API = 1;
     /** HTTPリクエストのセグメント数(Profileのみ) {@value}.  */
@@ -63,8 +73,6 @@ class DConnectServerEventListenerImpl implements DConnectServerEventListener {
     /** HTTPリクエストのセグメント数(ProfileとInterfacesとAttribute) {@value}. */
     private static final int SEGMENT_INTERFACES = 4;
 
-    /** ポーリング時間(ms). */
-    private static final int POLLING_WAIT_TIME = 10000;
     /** デフォルトのタイムアウト時間(ms). */
     private static final int DEFAULT_RESTFUL_TIMEOUT = 180000;
     /** タイムアウト時間(ms). */
@@ -76,9 +84,6 @@ class DConnectServerEventListenerImpl implements DConnectServerEventListener {
     /** ファイルを管理するためのクラス. */
     private FileManager mFileMgr;
 
-    /** ロックオブジェクト. */
-    private final Object mLockObj = new Object();
-
     /**
      * コンストラクタ.
      * @param context このクラスが属するコンテキスト
@@ -103,10 +108,12 @@ class DConnectServerEventListenerImpl implements DConnectServerEventListener {
     void onResponse(final Intent intent) {
         int requestCode = intent.getIntExtra(
                 IntentDConnectMessage.EXTRA_REQUEST_CODE, Integer.MIN_VALUE);
-        mRequestMap.put(requestCode, intent);
-        // レスポンスを受け取ったのでスレッドを再開
-        synchronized (mLockObj) {
-            mLockObj.notifyAll();
+        ResponseWaiter waiter = mRequestMap.get(requestCode);
+        if (waiter != null) {
+            // レスポンスを受け取ったので、待機しているスレッドのみを再開
+            waiter.setResponse(intent);
+        } else if (BuildConfig.DEBUG) {
+            mLogger.warning("onResponse: No waiting request: requestCode = " + requestCode);
         }
     }
 
@@ -368,11 +375,15 @@ class DConnectServerEventListenerImpl implements DConnectServerEventListener {
         intent.putExtra(IntentDConnectMessage.EXTRA_REQUEST_CODE, requestCode);
         intent.putExtra(DConnectService.EXTRA_INNER_TYPE, DConnectService.INNER_TYPE_HTTP);
 
+        // レスポンスを取りこぼさないように、サービスに渡す前に待機用のオブジェクトを登録しておく
+        ResponseWaiter waiter = new ResponseWaiter();
+        mRequestMap.put(requestCode, waiter);
+
         mContext.startService(intent);
 
         // レスポンスが返ってくるまで待つ
         // ただし、タイムアウト時間を設定しておき、永遠には待たない。
-        Intent resp = waitForResponse(requestCode);
+        Intent resp = waitForResponse(requestCode, waiter);
         try {
             if (resp == null) {
                 // ここのエラーはタイムアウトの場合のみ
@@ -382,7 +393,7 @@ class DConnectServerEventListenerImpl implements DConnectServerEventListener {
             }
         } catch (JSONException e) {
             setJSONFormatError(response);
-        } catch (UnsupportedEncodingException e) {
+        } catch (IOException e) {
             setUnknownError(response);
         }
 
@@ -399,21 +410,19 @@ class DConnectServerEventListenerImpl implements DConnectServerEventListener {
      * ただし、タイムアウトなどを起こした場合にはnullが返却される。
      * </p>
      * @param requestCode リクエストコード
+     * @param waiter レスポンス待機用のオブジェクト
      * @return レスポンス用のIntent
      */
-    private Intent waitForResponse(final int requestCode) {
-        final long now = System.currentTimeMillis();
-        while (mRequestMap.get(requestCode) == null
-                && (System.currentTimeMillis() - now) < mTimeout) {
-            synchronized (mLockObj) {
-                try {
-                    mLockObj.wait(POLLING_WAIT_TIME);
-                } catch (InterruptedException e) {
-                    mLogger.warning("Exception ouccered in wait.");
-                }
-            }
+    private Intent waitForResponse(final int requestCode, final ResponseWaiter waiter) {
+        try {
+            return waiter.await(mTimeout);
+        } catch (InterruptedException e) {
+            mLogger.warning("Exception ouccered in wait.");
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            mRequestMap.remove(requestCode);
         }
-        return mRequestMap.remove(requestCode);
     }
 
     /**
@@ -644,14 +653,14 @@ class DConnectServerEventListenerImpl implements DConnectServerEventListener {
      * @param response 返答を格納するレスポンス
      * @param resp response用のIntent
      * @throws JSONException JSONの解析に失敗した場合
-     * @throws UnsupportedEncodingException 文字列のエンコードに失敗した場合
+     * @throws IOException JSONの書き出しに失敗した場合
      */
     private void convertResponse(final HttpResponse response, final Intent resp)
-            throws JSONException, UnsupportedEncodingException {
-        JSONObject root = new JSONObject();
-        DConnectUtil.convertBundleToJSON(root, resp.getExtras());
+            throws JSONException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(RESPONSE_BUFFER_SIZE);
+        DConnectUtil.convertBundleToJSON(out, resp.getExtras());
         response.setContentType(CONTENT_TYPE_JSON);
-        response.setBody(root.toString().getBytes("UTF-8"));
+        response.setBody(out.toByteArray());
     }
 
     /**
@@ -675,4 +684,37 @@ class DConnectServerEventListenerImpl implements DConnectServerEventListener {
                 || method.equalsIgnoreCase(DConnectMessage.METHOD_PUT)
                 || method.equalsIgnoreCase(DConnectMessage.METHOD_DELETE);
     }
+
+    /**
+     * 1つのリクエストに対するレスポンスを待機するためのクラス.
+     */
+    private static class ResponseWaiter {
+        /** レスポンス受信を通知するためのラッチ. */
+        private final CountDownLatch mLatch = new CountDownLatch(1);
+
+        /** 受信したレスポンス. */
+        private volatile Intent mResponse;
+
+        /**
+         * レスポンスを設定し、待機しているスレッドを再開する.
+         * @param response レスポンス
+         */
+        void setResponse(final Intent response) {
+            mResponse = response;
+            mLatch.countDown();
+        }
+
+        /**
+         * レスポンスが設定されるまで待機する.
+         * @param timeout タイムアウト時間(ms)
+         * @return レスポンス。タイムアウトした場合はnull
+         * @throws InterruptedException 待機中に割り込みが発生した場合
+         */
+        Intent await(final long timeout) throws InterruptedException {
+            if (mLatch.await(timeout, TimeUnit.MILLISECONDS)) {
+                return mResponse;
+            }
+            return null;
+        }
+    }
 }
@@ -204,32 +204,7 @@ public class DConnectService extends DConnectMessageService {
             mEventSender.execute(new Runnable() {
                 @Override
                 public void run() {
-                    String key = event.getStringExtra(IntentDConnectMessage.EXTRA_SESSION_KEY);
-                    if (key != null && mRESTfulServer != null && mRESTfulServer.isRunning()) {
-                        WebSocketInfo info = getWebSocketInfo(key);
-                        if (info == null) {
-                            mLogger.warning("sendMessage: webSocket is not found: key = " + key);
-                            return;
-                        }
-
-                        try {
-                            if (BuildConfig.DEBUG) {
-                                mLogger.info(String.format("sendMessage: %s extra: %s", key, event.getExtras()));
-                            }
-                            JSONObject root = new JSONObject();
-                            DConnectUtil.convertBundleToJSON(root, event.getExtras());
-                            DConnectWebSocket webSocket = mRESTfulServer.getWebSocket(info.getRawId());
-                            if (webSocket != null && mRESTfulServer.isRunning()) {
-                                webSocket.sendMessage(root.toString());
-                            } else {
-                                if (mWebServerListener != null) {
-                                    mWebServerListener.onWebSocketDisconnected(webSocket);
-                                }
-                            }
-                        } catch (JSONException e) {
-                            mLogger.warning("JSONException in sendMessage: " + e.toString());
-                        }
-                    }
+                    sendEventToWebSocket(event);
                 }
             });
         } else {
@@ -237,6 +212,42 @@ public class DConnectService extends DConnectMessageService {
         }
     }
 
+    /**
+     * イベントをWebSocketに送信する.
+     * <p>
+     * 送信が完了するまで呼び出し元のスレッドをブロックする。
+     * </p>
+     * @param event イベント
+     */
+    public void sendEventToWebSocket(final Intent event) {
+        String key = event.getStringExtra(IntentDConnectMessage.EXTRA_SESSION_KEY);
+        if (key != null && mRESTfulServer != null && mRESTfulServer.isRunning()) {
+            WebSocketInfo info = getWebSocketInfo(key);
+            if (info == null) {
+                mLogger.warning("sendMessage: webSocket is not found: key = " + key);
+                return;
+            }
+
+            try {
+                if (BuildConfig.DEBUG) {
+                    mLogger.info(String.format("sendMessage: %s extra: %s", key, event.getExtras()));
+                }
+                JSONObject root = new JSONObject();
+                DConnectUtil.convertBundleToJSON(root, event.getExtras());
+                DConnectWebSocket webSocket = mRESTfulServer.getWebSocket(info.getRawId());
+                if (webSocket != null && mRESTfulServer.isRunning()) {
+                    webSocket.sendMessage(root.toString());
+                } else {
+                    if (mWebServerListener != null) {
+                        mWebServerListener.onWebSocketDisconnected(webSocket);
+                    }
+                }
+            } catch (JSONException e) {
+                mLogger.warning("JSONException in sendMessage: " + e.toString());
+            }
+        }
+    }
+
     /**
      * 指定したイベントレシーバーIDに対応するWebSocketを切断する.
      *
@@ -314,6 +325,7 @@ public class DConnectService extends DConnectMessageService {
 
                 DConnectServerConfig.Builder builder = new DConnectServerConfig.Builder();
                 builder.port(mSettings.getPort()).isSsl(mSettings.isSSL())
+                        .maxWebSocketConnectionSize(mSettings.getMaxWebSocketConnectionSize())
                         .documentRootPath(getFilesDir().getAbsolutePath())
                         .cachePath(mFileMgr.getBasePath().getAbsolutePath());
 
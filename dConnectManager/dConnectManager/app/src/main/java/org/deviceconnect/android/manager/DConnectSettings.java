@@ -10,6 +10,8 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.os.Environment;
 
+import org.deviceconnect.android.manager.event.EventSendQueue;
+import org.deviceconnect.android.manager.request.DConnectRequestManager;
 import org.deviceconnect.android.manager.util.DConnectUtil;
 
 import java.io.File;
@@ -27,6 +29,10 @@ public final class DConnectSettings {
     private static final int DEFAULT_WEB_PORT = 8080;
     /** デフォルトのインターバルを定義. */
     private static final int DEFAULT_INTERVAL = 1000 * 60 * 5;
+    /** デフォルトのイベント送信キューのサイズを定義. */
+    private static final int DEFAULT_EVENT_QUEUE_SIZE = 64;
+    /** WebSocketのデフォルトの最大接続数を定義. */
+    private static final int DEFAULT_MAX_WEBSOCKET_CONNECTION_SIZE = 256;
     /** デフォルトのキーワード. */
     public static final String DEFAULT_KEYWORD = DConnectUtil.createKeyword();
 
@@ -414,6 +420,106 @@ public final class DConnectSettings {
         editor.apply();
     }
 
+    /**
+     * リクエストを実行するスレッド数を取得する.
+     * @return スレッド数
+     */
+    public int getRequestThreadSize() {
+        return Integer.parseInt(mPreferences.getString(
+                mContext.getString(R.string.key_settings_dconn_request_thread_size),
+                String.valueOf(DConnectRequestManager.Config.DEFAULT_DELIVERY_THREAD_SIZE)));
+    }
+
+    /**
+     * リクエストを格納するキューのサイズを取得する.
+     * <p>
+     * キューのサイズを超えたリクエストには過負荷エラーを返却する。
+     * </p>
+     * @return キューのサイズ
+     */
+    public int getRequestQueueSize() {
+        return Integer.parseInt(mPreferences.getString(
+                mContext.getString(R.string.key_settings_dconn_request_queue_size),
+                String.valueOf(DConnectRequestManager.Config.DEFAULT_DELIVERY_QUEUE_SIZE)));
+    }
+
+    /**
+     * デバイスプラグインごとに同時に実行できるリクエスト数を取得する.
+     * @return 同時に実行できるリクエスト数. 0以下の場合は制限しない
+     */
+    public int getMaxConcurrentRequestsPerPlugin() {
+        return Integer.parseInt(mPreferences.getString(
+                mContext.getString(R.string.key_settings_dconn_max_concurrent_requests_per_plugin),
+                String.valueOf(DConnectRequestManager.Config.DEFAULT_MAX_CONCURRENT_REQUESTS_PER_PLUGIN)));
+    }
+
+    /**
+     * サービス検索・認可のリクエストを実行するスレッド数を取得する.
+     * @return スレッド数
+     */
+    public int getControlThreadSize() {
+        return Integer.parseInt(mPreferences.getString(
+                mContext.getString(R.string.key_settings_dconn_control_thread_size),
+                String.valueOf(DConnectRequestManager.Config.DEFAULT_CONTROL_THREAD_SIZE)));
+    }
+
+    /**
+     * サービス検索・認可のリクエストを格納するキューのサイズを取得する.
+     * <p>
+     * キューのサイズを超えたリクエストには過負荷エラーを返却する。
+     * </p>
+     * @return キューのサイズ
+     */
+    public int getControlQueueSize() {
+        return Integer.parseInt(mPreferences.getString(
+                mContext.getString(R.string.key_settings_dconn_control_queue_size),
+                String.valueOf(DConnectRequestManager.Config.DEFAULT_CONTROL_QUEUE_SIZE)));
+    }
+
+    /**
+     * デバイスプラグインへの配送を非同期モードで行うかを取得する.
+     * <p>
+     * 非同期モードでは、デバイスプラグインからのレスポンスを待つ間スレッドを占有しない。
+     * </p>
+     * @return 非同期モードの場合はtrue、それ以外はfalse
+     */
+    public boolean isAsyncDelivery() {
+        return mPreferences.getBoolean(mContext.getString(R.string.key_settings_dconn_async_delivery), false);
+    }
+
+    /**
+     * WebSocketのイベントセッションごとの送信キューのサイズを取得する.
+     * @return 送信キューのサイズ
+     */
+    public int getEventQueueSize() {
+        return Integer.parseInt(mPreferences.getString(
+                mContext.getString(R.string.key_settings_event_queue_size),
+                String.valueOf(DEFAULT_EVENT_QUEUE_SIZE)));
+    }
+
+    /**
+     * WebSocketの最大接続数を取得する.
+     * <p>
+     * 最大接続数を超えたWebSocketの接続要求には503を返却する。
+     * </p>
+     * @return WebSocketの最大接続数
+     */
+    public int getMaxWebSocketConnectionSize() {
+        return Integer.parseInt(mPreferences.getString(
+                mContext.getString(R.string.key_settings_dconn_max_websocket_connection_size),
+                String.valueOf(DEFAULT_MAX_WEBSOCKET_CONNECTION_SIZE)));
+    }
+
+    /**
+     * イベントの送信キューが一杯になった場合の動作を取得する.
+     * @return 送信キューが一杯になった場合の動作
+     */
+    public EventSendQueue.OverflowPolicy getEventOverflowPolicy() {
+        return EventSendQueue.OverflowPolicy.fromValue(mPreferences.getString(
+                mContext.getString(R.string.key_settings_event_overflow_policy),
+                EventSendQueue.OverflowPolicy.DROP_OLDEST.getValue()));
+    }
+
     @Override
     public String toString() {
         return "{\n" +
@@ -0,0 +1,226 @@
+/*
+ ServiceRegistry.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager;
+
+import android.os.Bundle;
+
+import org.deviceconnect.profile.ServiceDiscoveryProfileConstants;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * デバイスプラグインが提供するサービスの一覧をキャッシュするクラス.
+ * <p>
+ * デバイスプラグインごとに、Service Discoveryのレスポンスで取得したサービスの一覧を保持する。
+ * 保持しているサービスは、onServiceChangeイベントで追加・更新・削除する。
+ * </p>
+ * <p>
+ * 有効期限が切れたサービスの一覧も取得できるので、呼び出し元は{@link #isExpired(String)}で
+ * 有効期限を確認して、バックグラウンドで一覧を更新すること。
+ * 同じデバイスプラグインに対して更新を重複して行わないように、{@link #startRefresh(String)}と
+ * {@link #finishRefresh(String)}で更新中の状態を管理する。
+ * </p>
+ * <p>
+ * 応答しなかったデバイスプラグインは、{@link #putFailure(String)}で空の一覧として短い有効期限でキャッシュする。
+ * これにより、応答しないデバイスプラグインがあっても、毎回のサービス検索でタイムアウトまで待たされない。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class ServiceRegistry {
+
+    /** サービスの一覧の有効期限(ms). */
+    private final long mTtl;
+
+    /** 応答しなかったデバイスプラグインの空の一覧の有効期限(ms). */
+    private final long mFailureTtl;
+
+    /** デバイスプラグインIDをキーにしたサービスの一覧. */
+    private final ConcurrentHashMap<String, Entry> mEntries = new ConcurrentHashMap<>();
+
+    /** 一覧を更新中のデバイスプラグインID. */
+    private final Map<String, Boolean> mRefreshing = new ConcurrentHashMap<>();
+
+    /**
+     * コンストラクタ.
+     * @param ttl サービスの一覧の有効期限(ms)
+     * @param failureTtl 応答しなかったデバイスプラグインの空の一覧の有効期限(ms)
+     */
+    public ServiceRegistry(final long ttl, final long failureTtl) {
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("ttl is invalid: " + ttl);
+        }
+        if (failureTtl <= 0) {
+            throw new IllegalArgumentException("failureTtl is invalid: " + failureTtl);
+        }
+        mTtl = ttl;
+        mFailureTtl = failureTtl;
+    }
+
+    /**
+     * デバイスプラグインのサービスの一覧を更新する.
+     * @param pluginId デバイスプラグインID
+     * @param services サービスの一覧. サービスIDにはデバイスプラグインIDを付加しておくこと
+     */
+    public void putServices(final String pluginId, final List<Bundle> services) {
+        Entry entry = new Entry(System.currentTimeMillis(), mTtl);
+        for (Bundle service : services) {
+            entry.put(new Bundle(service));
+        }
+        mEntries.put(pluginId, entry);
+    }
+
+    /**
+     * サービス検索に応答しなかったデバイスプラグインを記録する.
+     * <p>
+     * サービスの一覧を保持していない場合には、空の一覧を短い有効期限で保持する。
+     * 既に応答のあった一覧を保持している場合には、有効期限が切れた一覧をそのまま使用する。
+     * </p>
+     * @param pluginId デバイスプラグインID
+     */
+    public void putFailure(final String pluginId) {
+        Entry entry = new Entry(System.currentTimeMillis(), mFailureTtl);
+        entry.mFailed = true;
+        Entry old = mEntries.putIfAbsent(pluginId, entry);
+        if (old != null && old.mFailed) {
+            mEntries.replace(pluginId, old, entry);
+        }
+    }
+
+    /**
+     * onServiceChangeイベントで通知されたサービスを反映する.
+     * <p>
+     * サービスの一覧を保持していないデバイスプラグインの場合は何もしない。
+     * </p>
+     * @param pluginId デバイスプラグインID
+     * @param service サービス. サービスIDにはデバイスプラグインIDを付加しておくこと
+     */
+    public void updateService(final String pluginId, final Bundle service) {
+        Entry entry = mEntries.get(pluginId);
+        if (entry == null) {
+            return;
+        }
+        if (service.getBoolean(ServiceDiscoveryProfileConstants.PARAM_STATE, true)) {
+            Bundle copy = new Bundle(service);
+            copy.remove(ServiceDiscoveryProfileConstants.PARAM_STATE);
+            entry.put(copy);
+        } else {
+            entry.remove(service.getString(ServiceDiscoveryProfileConstants.PARAM_ID));
+        }
+    }
+
+    /**
+     * デバイスプラグインのサービスの一覧を取得する.
+     * <p>
+     * 有効期限が切れている場合にも、保持しているサービスの一覧を返却する。
+     * </p>
+     * @param pluginId デバイスプラグインID
+     * @return サービスの一覧. 保持していない場合はnull
+     */
+    public List<Bundle> getServices(final String pluginId) {
+        Entry entry = mEntries.get(pluginId);
+        if (entry == null) {
+            return null;
+        }
+        return entry.getServices();
+    }
+
+    /**
+     * デバイスプラグインのサービスの一覧の有効期限が切れているか確認する.
+     * @param pluginId デバイスプラグインID
+     * @return 有効期限が切れている場合、または一覧を保持していない場合はtrue、それ以外はfalse
+     */
+    public boolean isExpired(final String pluginId) {
+        Entry entry = mEntries.get(pluginId);
+        return entry == null || System.currentTimeMillis() - entry.mUpdateTime >= entry.mTtl;
+    }
+
+    /**
+     * デバイスプラグインのサービスの一覧の更新を開始する.
+     * @param pluginId デバイスプラグインID
+     * @return 更新を開始した場合はtrue、既に更新中の場合はfalse
+     */
+    public boolean startRefresh(final String pluginId) {
+        return mRefreshing.put(pluginId, Boolean.TRUE) == null;
+    }
+
+    /**
+     * デバイスプラグインのサービスの一覧の更新を終了する.
+     * @param pluginId デバイスプラグインID
+     */
+    public void finishRefresh(final String pluginId) {
+        mRefreshing.remove(pluginId);
+    }
+
+    /**
+     * デバイスプラグインのサービスの一覧を破棄する.
+     * @param pluginId デバイスプラグインID
+     */
+    public void removeServices(final String pluginId) {
+        mEntries.remove(pluginId);
+    }
+
+    /**
+     * 全てのサービスの一覧を破棄する.
+     */
+    public void clear() {
+        mEntries.clear();
+    }
+
+    /**
+     * デバイスプラグインのサービスの一覧.
+     */
+    private static class Entry {
+        /** 一覧を取得した時刻(ms). */
+        private final long mUpdateTime;
+
+        /** 一覧の有効期限(ms). */
+        private final long mTtl;
+
+        /** 応答が無かったために空の一覧を保持している場合はtrue. */
+        private boolean mFailed;
+
+        /** サービスIDをキーにしたサービス. */
+        private final Map<String, Bundle> mServices = new LinkedHashMap<>();
+
+        /**
+         * コンストラクタ.
+         * @param updateTime 一覧を取得した時刻(ms)
+         * @param ttl 一覧の有効期限(ms)
+         */
+        Entry(final long updateTime, final long ttl) {
+            mUpdateTime = updateTime;
+            mTtl = ttl;
+        }
+
+        synchronized void put(final Bundle service) {
+            mServices.put(service.getString(ServiceDiscoveryProfileConstants.PARAM_ID), service);
+        }
+
+        synchronized void remove(final String serviceId) {
+            mServices.remove(serviceId);
+        }
+
+        /**
+         * サービスの一覧のコピーを取得する.
+         * <p>
+         * レスポンスの変換処理で書き換えられても影響がないように、Bundleもコピーする。
+         * </p>
+         * @return サービスの一覧
+         */
+        synchronized List<Bundle> getServices() {
+            List<Bundle> services = new ArrayList<>(mServices.size());
+            for (Bundle service : mServices.values()) {
+                services.add(new Bundle(service));
+            }
+            return services;
+        }
+    }
+}
@@ -8,12 +8,15 @@ package org.deviceconnect.android.manager.event;
 
 
 import android.content.Intent;
+import android.os.Build;
 import android.os.Bundle;
 
 import org.deviceconnect.android.event.Event;
 import org.deviceconnect.android.event.EventManager;
+import org.deviceconnect.android.manager.DConnectApplication;
 import org.deviceconnect.android.manager.DConnectLocalOAuth;
 import org.deviceconnect.android.manager.DConnectMessageService;
+import org.deviceconnect.android.manager.DConnectService;
 import org.deviceconnect.android.manager.DevicePlugin;
 import org.deviceconnect.android.manager.DevicePluginManager;
 import org.deviceconnect.android.manager.request.DiscoveryDeviceRequest;
@@ -24,7 +27,16 @@ import org.deviceconnect.message.intent.message.IntentDConnectMessage;
 import org.deviceconnect.profile.ServiceDiscoveryProfileConstants;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 /**
@@ -34,6 +46,15 @@ import java.util.logging.Logger;
  */
 public class EventBroker {
 
+    /** WebSocketへイベントを送信するスレッド数. */
+    private static final int SEND_THREAD_SIZE = 4;
+
+    /** 破棄したイベントの数を警告する間隔. */
+    private static final int DROPPED_WARNING_INTERVAL = 100;
+
+    /** イベントの送信キューのデフォルトのサイズ. */
+    private static final int DEFAULT_EVENT_QUEUE_SIZE = 64;
+
     private final Logger mLogger = Logger.getLogger("dconnect.manager");
 
     private final EventSessionTable mTable;
@@ -46,6 +67,24 @@ public class EventBroker {
 
     private RegistrationListener mListener;
 
+    /** WebSocketへイベントを送信するスレッドプール. */
+    private final ThreadPoolExecutor mSendExecutor;
+
+    /** 送信間隔を制限されたイベントを送信するスケジューラ. */
+    private final ScheduledThreadPoolExecutor mScheduler = new ScheduledThreadPoolExecutor(1);
+
+    /** イベントの送信キューのサイズ. */
+    private int mEventQueueSize = DEFAULT_EVENT_QUEUE_SIZE;
+
+    /** イベントの送信キューが一杯になった場合の動作. */
+    private EventSendQueue.OverflowPolicy mOverflowPolicy = EventSendQueue.OverflowPolicy.DROP_OLDEST;
+
+    /** 送信キューが一杯になったために破棄したイベントの数. */
+    private final AtomicLong mDroppedEventCount = new AtomicLong();
+
+    /** 送信間隔の制限によって新しいイベントに置き換えたイベントの数. */
+    private final AtomicLong mCoalescedEventCount = new AtomicLong();
+
     public EventBroker(final DConnectMessageService context,
                        final EventSessionTable table,
                        final DConnectLocalOAuth localOAuth,
@@ -54,6 +93,157 @@ public class EventBroker {
         mContext = context;
         mLocalOAuth = localOAuth;
         mPluginManager = pluginManager;
+        mSendExecutor = new ThreadPoolExecutor(SEND_THREAD_SIZE, SEND_THREAD_SIZE,
+            60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        mSendExecutor.allowCoreThreadTimeOut(true);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            // 閉じられたセッションの送信予約がキューに残り続けないようにする
+            mScheduler.setRemoveOnCancelPolicy(true);
+        }
+    }
+
+    /**
+     * イベントの送信キューの設定を行う.
+     * <p>
+     * 設定は、これ以降に登録されたイベントセッションに適用される。
+     * </p>
+     * @param queueSize 送信キューのサイズ
+     * @param policy 送信キューが一杯になった場合の動作
+     */
+    public void setEventSendQueue(final int queueSize, final EventSendQueue.OverflowPolicy policy) {
+        if (queueSize <= 0) {
+            throw new IllegalArgumentException("queueSize is invalid: " + queueSize);
+        }
+        mEventQueueSize = queueSize;
+        mOverflowPolicy = policy;
+    }
+
+    /**
+     * 送信キューが一杯になったために破棄したイベントの数を取得する.
+     * <p>
+     * 全てのイベントセッションで破棄したイベントの数を、マネージャの起動時から累積した値とする。
+     * </p>
+     * @return 破棄したイベントの数
+     */
+    public long getDroppedEventCount() {
+        return mDroppedEventCount.get();
+    }
+
+    /**
+     * 送信キューが一杯になったために破棄したイベントの数をレシーバーIDごとに取得する.
+     * <p>
+     * 現在登録されているWebSocket上のイベントセッションを対象とし、
+     * 同じレシーバーIDのセッションで破棄したイベントの数を合計する。
+     * セッションが削除されると、そのセッションで破棄したイベントの数は含まれなくなる。
+     * </p>
+     * @return レシーバーIDをキーにした破棄したイベントの数
+     */
+    public Map<String, Long> getDroppedEventCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        for (EventSession session : mTable.getAll()) {
+            if (session instanceof WebSocketEventSession) {
+                String receiverId = session.getReceiverId();
+                long dropped = ((WebSocketEventSession) session).getDroppedCount();
+                Long current = counts.get(receiverId);
+                counts.put(receiverId, current != null ? current + dropped : dropped);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * 送信間隔の制限によって新しいイベントに置き換えたイベントの数を取得する.
+     * <p>
+     * 全てのイベントセッションで置き換えたイベントの数を、マネージャの起動時から累積した値とする。
+     * </p>
+     * @return 置き換えたイベントの数
+     */
+    public long getCoalescedEventCount() {
+        return mCoalescedEventCount.get();
+    }
+
+    /**
+     * イベントの送信間隔を制限するクラスを作成する.
+     * @param session イベントセッション
+     * @param interval 送信間隔(ms)
+     * @return 送信間隔を制限するクラス
+     */
+    EventRateLimiter createRateLimiter(final EventSession session, final long interval) {
+        return new EventRateLimiter(interval, mScheduler, new EventSendQueue.Sender() {
+            @Override
+            public void send(final Intent event) throws IOException {
+                session.sendEvent(event);
+            }
+        }, mCoalescedEventCount);
+    }
+
+    /**
+     * WebSocket上のイベントセッションの送信キューを作成する.
+     * @param session イベントセッション
+     * @return 送信キュー
+     */
+    EventSendQueue createSendQueue(final WebSocketEventSession session) {
+        final EventSendQueue.OverflowPolicy policy = mOverflowPolicy;
+        return new EventSendQueue(mEventQueueSize, policy, mSendExecutor,
+            new EventSendQueue.Sender() {
+                @Override
+                public void send(final Intent event) {
+                    session.sendEventToWebSocket(event);
+                }
+            },
+            new EventSendQueue.OverflowListener() {
+                @Override
+                public void onDropped(final int count, final long droppedCount) {
+                    mDroppedEventCount.addAndGet(count);
+                    if (droppedCount == count
+                        || droppedCount / DROPPED_WARNING_INTERVAL != (droppedCount - count) / DROPPED_WARNING_INTERVAL) {
+                        warn("Events are dropped from send queue: receiverId = " + session.getReceiverId()
+                            + ", pluginId = " + session.getPluginId()
+                            + ", serviceId = " + session.getServiceId()
+                            + ", path = /" + session.getProfileName()
+                            + (session.getInterfaceName() != null ? "/" + session.getInterfaceName() : "")
+                            + "/" + session.getAttributeName()
+                            + ", policy = " + policy
+                            + ", dropped = " + droppedCount);
+                    }
+                }
+
+                @Override
+                public void onOverflow() {
+                    warn("Event send queue is overflowed: receiverId = " + session.getReceiverId());
+                    session.disconnect();
+                }
+            });
+    }
+
+    /**
+     * サービス検索の途中経過を送信するチャンネルを作成する.
+     * <p>
+     * HTTP経由のリクエストで、リクエスト元のWebSocketが接続されている場合にだけ作成する。
+     * </p>
+     * @param request サービス検索のリクエスト
+     * @return チャンネル. 作成できない場合はnull
+     */
+    public ServiceDiscoveryChannel openServiceDiscoveryChannel(final Intent request) {
+        String appType = request.getStringExtra(DConnectService.EXTRA_INNER_TYPE);
+        if (!DConnectService.INNER_TYPE_HTTP.equals(appType)) {
+            return null;
+        }
+        String receiverId = EventProtocol.createReceiverId(mContext, request);
+        if (receiverId == null) {
+            return null;
+        }
+        DConnectApplication app = (DConnectApplication) mContext.getApplication();
+        if (app.getWebSocketInfoManager().getWebSocketInfo(receiverId) == null) {
+            return null;
+        }
+
+        WebSocketEventSession session = new WebSocketEventSession();
+        session.setReceiverId(receiverId);
+        session.setProfileName(ServiceDiscoveryProfileConstants.PROFILE_NAME);
+        session.setContext(mContext);
+        session.setSendQueue(createSendQueue(session));
+        return new ServiceDiscoveryChannel(session);
     }
 
     public void setRegistrationListener(final RegistrationListener listener) {
@@ -85,7 +275,7 @@ public class EventBroker {
     }
 
     private void onRegistrationRequest(final Intent request, final DevicePlugin dest) {
-        EventProtocol protocol = EventProtocol.getInstance(mContext, request);
+        EventProtocol protocol = EventProtocol.getInstance(mContext, this, request);
         if (protocol == null) {
             mLogger.warning("Failed to identify a event receiver.");
             return;
@@ -98,7 +288,7 @@ public class EventBroker {
     }
 
     private void onUnregistrationRequest(final Intent request, final DevicePlugin dest) {
-        EventProtocol protocol = EventProtocol.getInstance(mContext, request);
+        EventProtocol protocol = EventProtocol.getInstance(mContext, this, request);
         if (protocol == null) {
             mLogger.warning("Failed to identify a event receiver.");
             return;
@@ -119,62 +309,101 @@ public class EventBroker {
     }
 
     public void onEvent(final Intent event) {
+        ArrayList<Bundle> batch = event.getParcelableArrayListExtra(IntentDConnectMessage.EXTRA_EVENT_BATCH);
+        if (batch != null) {
+            onEventBatch(event, batch);
+            return;
+        }
+
         if (isServiceChangeEvent(event)) {
             onServiceChangeEvent(event);
             return;
         }
 
-        String pluginAccessToken = event.getStringExtra(DConnectMessage.EXTRA_ACCESS_TOKEN);
         String serviceId = DConnectProfile.getServiceID(event);
+        List<EventSession> targetSessions = findTargetSessions(event, serviceId);
+        int count = targetSessions.size();
+        for (int i = 0; i < count; i++) {
+            EventSession targetSession = targetSessions.get(i);
+            // 送信キューに格納されたイベントは後から送信されるので、セッションごとにIntentを分ける
+            Intent target = (i == count - 1) ? event : new Intent(event);
+            sendEvent(targetSession, target, serviceId);
+        }
+    }
+
+    /**
+     * プラグインがまとめて送信したイベントを、1つずつセッションに送信する.
+     * <p>
+     * まとめられたイベントは全て同じイベント登録宛てなので、送信先のセッションは1回だけ検索する。
+     * </p>
+     * @param header まとめたイベントの先頭のイベント
+     * @param batch 各イベントのパラメータ
+     */
+    private void onEventBatch(final Intent header, final List<Bundle> batch) {
+        if (isServiceChangeEvent(header)) {
+            for (Bundle extras : batch) {
+                onServiceChangeEvent(createEvent(header, extras));
+            }
+            return;
+        }
+
+        String serviceId = DConnectProfile.getServiceID(header);
+        List<EventSession> targetSessions = findTargetSessions(header, serviceId);
+        if (targetSessions.isEmpty()) {
+            return;
+        }
+        for (Bundle extras : batch) {
+            for (EventSession targetSession : targetSessions) {
+                sendEvent(targetSession, createEvent(header, extras), serviceId);
+            }
+        }
+    }
+
+    private Intent createEvent(final Intent header, final Bundle extras) {
+        Intent event = new Intent(header.getAction());
+        event.putExtras(extras);
+        return event;
+    }
+
+    private List<EventSession> findTargetSessions(final Intent event, final String serviceId) {
+        String pluginAccessToken = event.getStringExtra(DConnectMessage.EXTRA_ACCESS_TOKEN);
         String profileName = DConnectProfile.getProfile(event);
         String interfaceName = DConnectProfile.getInterface(event);
         String attributeName = DConnectProfile.getAttribute(event);
 
-        EventSession targetSession = null;
         if (pluginAccessToken != null) {
-            for (EventSession session : mTable.getAll()) {
-                if (isSameNameCaseSensitive(pluginAccessToken, session.getAccessToken()) &&
-                    isSameNameCaseSensitive(serviceId, session.getServiceId()) &&
-                    isSameName(profileName, session.getProfileName()) &&
-                    isSameName(interfaceName, session.getInterfaceName()) &&
-                    isSameName(attributeName, session.getAttributeName())) {
-                    targetSession = session;
-                    break;
-                }
-            }
-        } else {
-            // 旧バージョンのイベントAPIとの互換性保持
-            String sessionKey = DConnectProfile.getSessionKey(event);
-            if (sessionKey != null) {
-                sessionKey = trimReceiverName(sessionKey);
-                String pluginId = EventProtocol.convertSessionKey2PluginId(sessionKey);
-                String receiverId = EventProtocol.convertSessionKey2Key(sessionKey);
-                for (EventSession session : mTable.getAll()) {
-                    if (isSameNameCaseSensitive(pluginId, session.getPluginId()) &&
-                        isSameNameCaseSensitive(receiverId, session.getReceiverId()) &&
-                        isSameNameCaseSensitive(serviceId, session.getServiceId()) &&
-                        isSameName(profileName, session.getProfileName()) &&
-                        isSameName(interfaceName, session.getInterfaceName()) &&
-                        isSameName(attributeName, session.getAttributeName())) {
-                        targetSession = session;
-                        break;
-                    }
-                }
-            }
+            return mTable.findByAccessToken(pluginAccessToken,
+                serviceId, profileName, interfaceName, attributeName);
         }
-        if (targetSession != null) {
-            try {
-                DevicePlugin plugin = mPluginManager.getDevicePlugin(targetSession.getPluginId());
-                if (plugin != null) {
-                    event.putExtra(IntentDConnectMessage.EXTRA_SESSION_KEY, targetSession.getReceiverId());
-                    event.putExtra(DConnectMessage.EXTRA_SERVICE_ID, mPluginManager.appendServiceId(plugin, serviceId));
-                    targetSession.sendEvent(event);
+        // 旧バージョンのイベントAPIとの互換性保持
+        String sessionKey = DConnectProfile.getSessionKey(event);
+        if (sessionKey != null) {
+            sessionKey = trimReceiverName(sessionKey);
+            String pluginId = EventProtocol.convertSessionKey2PluginId(sessionKey);
+            String receiverId = EventProtocol.convertSessionKey2Key(sessionKey);
+            return mTable.findBySessionKey(pluginId, receiverId,
+                serviceId, profileName, interfaceName, attributeName);
+        }
+        return Collections.emptyList();
+    }
+
+    private void sendEvent(final EventSession targetSession, final Intent event, final String serviceId) {
+        try {
+            DevicePlugin plugin = mPluginManager.getDevicePlugin(targetSession.getPluginId());
+            if (plugin != null) {
+                event.putExtra(IntentDConnectMessage.EXTRA_SESSION_KEY, targetSession.getReceiverId());
+                event.putExtra(DConnectMessage.EXTRA_SERVICE_ID, mPluginManager.appendServiceId(plugin, serviceId));
+                EventRateLimiter rateLimiter = targetSession.getRateLimiter();
+                if (rateLimiter != null) {
+                    rateLimiter.offer(event);
                 } else {
-                    mLogger.warning("onEvent: Plugin is not found: id = " + targetSession.getPluginId());
+                    targetSession.sendEvent(event);
                 }
-            } catch (IOException e) {
-                error("Failed to send event.");
+            } else {
+                mLogger.warning("onEvent: Plugin is not found: id = " + targetSession.getPluginId());
             }
+        } catch (IOException e) {
+            error("Failed to send event.");
         }
     }
 
@@ -207,6 +436,11 @@ public class EventBroker {
         Bundle service = event.getParcelableExtra(ServiceDiscoveryProfile.PARAM_NETWORK_SERVICE);
         String id = service.getString(ServiceDiscoveryProfile.PARAM_ID);
 
+        // キャッシュしているサービスの一覧に反映
+        Bundle cached = new Bundle(service);
+        cached.putString(ServiceDiscoveryProfile.PARAM_ID, mPluginManager.appendServiceId(plugin, id));
+        mContext.getServiceRegistry().updateService(plugin.getPluginId(), cached);
+
         // サービスIDを変更
         replaceServiceId(event, plugin);
 
@@ -276,28 +510,6 @@ public class EventBroker {
             mPluginManager.appendServiceId(plugin, serviceId));
     }
 
-    private boolean isSameName(final String a, final  String b) {
-        if (a == null && b == null) {
-            return true;
-        }
-        if (a != null) {
-            return a.equalsIgnoreCase(b);
-        } else {
-            return b.equalsIgnoreCase(a);
-        }
-    }
-
-    private boolean isSameNameCaseSensitive(final String a, final  String b) {
-        if (a == null && b == null) {
-            return true;
-        }
-        if (a != null) {
-            return a.equals(b);
-        } else {
-            return b.equals(a);
-        }
-    }
-
     private boolean isRegistrationRequest(final Intent request) {
         String action = request.getAction();
         return IntentDConnectMessage.ACTION_PUT.equals(action);
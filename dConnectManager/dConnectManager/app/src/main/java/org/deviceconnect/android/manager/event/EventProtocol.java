@@ -35,11 +35,18 @@ public abstract class EventProtocol {
 
     private static final VersionName V110 = VersionName.parse("1.1.0");
 
+    /** イベントの送信間隔(ms)を指定するパラメータ名. */
+    static final String PARAM_INTERVAL = "interval";
+
+    /** 1秒あたりの最大イベント送信数を指定するパラメータ名. */
+    static final String PARAM_MAX_RATE = "maxRate";
+
     static EventProtocol getInstance(final DConnectMessageService context,
+                                     final EventBroker broker,
                                      final Intent request) {
         final String appType = request.getStringExtra(DConnectService.EXTRA_INNER_TYPE);
         if (DConnectService.INNER_TYPE_HTTP.equals(appType)) {
-            return new EventProtocol(context) {
+            return new EventProtocol(context, broker) {
                 @Override
                 protected EventSession createSession(final Intent request,
                                                      final String serviceId,
@@ -63,7 +70,7 @@ public abstract class EventProtocol {
                 }
             };
         } else {
-            return new EventProtocol(context) {
+            return new EventProtocol(context, broker) {
                 @Override
                 protected EventSession createSession(final Intent request,
                                                      final String serviceId,
@@ -93,8 +100,11 @@ public abstract class EventProtocol {
 
     private DConnectMessageService mMessageService;
 
-    public EventProtocol(final DConnectMessageService messageService) {
+    private EventBroker mBroker;
+
+    public EventProtocol(final DConnectMessageService messageService, final EventBroker broker) {
         mMessageService = messageService;
+        mBroker = broker;
     }
 
     boolean removeSession(final EventSessionTable table, final Intent request, final DevicePlugin plugin) {
@@ -104,7 +114,8 @@ public abstract class EventProtocol {
             return false;
         }
         EventSession query = createSession(request, serviceId, receiverId, plugin.getPluginId());
-        for (EventSession session : table.getAll()) {
+        for (EventSession session : table.findBySessionKey(query.getPluginId(), query.getReceiverId(),
+                query.getServiceId(), query.getProfileName(), query.getInterfaceName(), query.getAttributeName())) {
             if (isSameSession(query, session)) {
                 table.remove(session);
 
@@ -129,6 +140,15 @@ public abstract class EventProtocol {
             return false;
         }
         EventSession session = createSession(request, serviceId, receiverId, plugin.getPluginId());
+        if (session instanceof WebSocketEventSession) {
+            // 送信キューは登録するセッションにだけ作成し、削除用の検索条件のセッションには作成しない
+            WebSocketEventSession webSocketSession = (WebSocketEventSession) session;
+            webSocketSession.setSendQueue(mBroker.createSendQueue(webSocketSession));
+        }
+        long interval = getEventInterval(request);
+        if (interval > 0) {
+            session.setRateLimiter(mBroker.createRateLimiter(session, interval));
+        }
         table.add(session);
 
         if (plugin.getPluginSdkVersionName().compareTo(V100) == 0) {
@@ -173,6 +193,28 @@ public abstract class EventProtocol {
         return receiverId;
     }
 
+    /**
+     * イベントの送信間隔を取得する.
+     * <p>
+     * {@link #PARAM_INTERVAL}(ms)または{@link #PARAM_MAX_RATE}(回/秒)が指定されている場合には、
+     * その間隔でイベントをまとめて送信する。両方指定された場合は長い方の間隔を使用する。
+     * </p>
+     * @param request イベント登録リクエスト
+     * @return 送信間隔(ms). 指定されていない場合は0
+     */
+    static long getEventInterval(final Intent request) {
+        long interval = 0;
+        Long value = DConnectProfile.parseLong(request, PARAM_INTERVAL);
+        if (value != null && value > 0) {
+            interval = value;
+        }
+        Double maxRate = DConnectProfile.parseDouble(request, PARAM_MAX_RATE);
+        if (maxRate != null && maxRate > 0) {
+            interval = Math.max(interval, (long) Math.ceil(1000 / maxRate));
+        }
+        return interval;
+    }
+
     private static String getOrigin(Intent intent) {
         return intent.getStringExtra(IntentDConnectMessage.EXTRA_ORIGIN);
     }
@@ -0,0 +1,166 @@
+/*
+ EventRateLimiter.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.event;
+
+
+import android.content.Intent;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * イベントセッションごとにイベントの送信間隔を制限するクラス.
+ * <p>
+ * 前回の送信から指定された間隔が経過していればイベントをすぐに送信する。
+ * 間隔内に届いたイベントは最新のものだけを保持し、間隔が経過した時点でスケジューラから送信する。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+class EventRateLimiter {
+
+    /** ロガー. */
+    private final Logger mLogger = Logger.getLogger("dconnect.manager");
+
+    /** 送信間隔(ms). */
+    private final long mInterval;
+
+    /** 保持しているイベントを送信するスケジューラ. */
+    private final ScheduledExecutorService mScheduler;
+
+    /** イベントの送信先. */
+    private final EventSendQueue.Sender mSender;
+
+    /** 送信待ちの最新のイベント. */
+    private Intent mPendingEvent;
+
+    /** 前回イベントを送信した時刻(ms). */
+    private long mLastSentTime;
+
+    /** スケジューラに登録した送信処理. */
+    private ScheduledFuture<?> mFuture;
+
+    /** 閉じられたことを示すフラグ. */
+    private boolean mClosed;
+
+    /** まとめて破棄したイベントの数. 全てのイベントセッションで共有する. */
+    private final AtomicLong mCoalescedCount;
+
+    /** 保持しているイベントを送信する処理. */
+    private final Runnable mFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * コンストラクタ.
+     * @param interval 送信間隔(ms)
+     * @param scheduler 保持しているイベントを送信するスケジューラ
+     * @param sender イベントの送信先
+     * @param coalescedCount まとめて破棄したイベントの数を加算するカウンタ
+     */
+    EventRateLimiter(final long interval, final ScheduledExecutorService scheduler,
+                     final EventSendQueue.Sender sender, final AtomicLong coalescedCount) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("interval is invalid: " + interval);
+        }
+        mInterval = interval;
+        mScheduler = scheduler;
+        mSender = sender;
+        mCoalescedCount = coalescedCount;
+    }
+
+    /**
+     * イベントを送信する.
+     * <p>
+     * 送信間隔内の場合には、イベントを保持して後から送信する。
+     * </p>
+     * @param event イベント
+     */
+    void offer(final Intent event) {
+        synchronized (this) {
+            if (mClosed) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            long elapsed = now - mLastSentTime;
+            if (mFuture != null || elapsed < mInterval) {
+                if (mPendingEvent != null) {
+                    mCoalescedCount.incrementAndGet();
+                }
+                mPendingEvent = event;
+                if (mFuture == null && !schedule(mInterval - elapsed)) {
+                    mPendingEvent = null;
+                }
+                return;
+            }
+            mLastSentTime = now;
+        }
+        send(event);
+    }
+
+    /**
+     * 保持しているイベントを破棄して、以降のイベントを受け付けないようにする.
+     */
+    synchronized void close() {
+        mClosed = true;
+        mPendingEvent = null;
+        if (mFuture != null) {
+            mFuture.cancel(false);
+            mFuture = null;
+        }
+    }
+
+    /**
+     * 保持しているイベントを送信する.
+     */
+    private void flush() {
+        Intent event;
+        synchronized (this) {
+            mFuture = null;
+            event = mPendingEvent;
+            mPendingEvent = null;
+            if (mClosed || event == null) {
+                return;
+            }
+            mLastSentTime = System.currentTimeMillis();
+        }
+        send(event);
+    }
+
+    /**
+     * 保持しているイベントの送信を予約する.
+     * <p>
+     * ロックを取得した状態で呼び出すこと。
+     * </p>
+     * @param delay 遅延時間(ms)
+     * @return 予約できた場合はtrue、それ以外はfalse
+     */
+    private boolean schedule(final long delay) {
+        try {
+            mFuture = mScheduler.schedule(mFlushTask, Math.max(delay, 0), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            mLogger.warning("EventRateLimiter: failed to schedule event.");
+            return false;
+        }
+    }
+
+    private void send(final Intent event) {
+        try {
+            mSender.send(event);
+        } catch (Throwable e) {
+            mLogger.warning("EventRateLimiter: failed to send event: " + e.toString());
+        }
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ EventSendQueue.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.event;
+
+
+import android.content.Intent;
+
+import org.deviceconnect.android.profile.DConnectProfile;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * イベントセッションごとの送信キュー.
+ * <p>
+ * イベントはキューに格納された後、共有のスレッドプール上で順番に送信される。
+ * 送信の遅いクライアントがいても、他のセッションへの配送を妨げない。
+ * キューが一杯になった場合には、{@link OverflowPolicy}に従ってイベントを破棄する。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class EventSendQueue {
+
+    /** 1回の送信処理で送信するイベントの最大数. */
+    private static final int MAX_SEND_COUNT = 16;
+
+    /** ロガー. */
+    private final Logger mLogger = Logger.getLogger("dconnect.manager");
+
+    /** 送信待ちのイベント. */
+    private final Deque<Intent> mQueue = new ArrayDeque<>();
+
+    /** キューに格納できるイベントの最大数. */
+    private final int mMaxSize;
+
+    /** キューが一杯になった場合の動作. */
+    private final OverflowPolicy mPolicy;
+
+    /** イベントを送信するスレッドプール. */
+    private final Executor mExecutor;
+
+    /** イベントの送信先. */
+    private final Sender mSender;
+
+    /** キューが一杯になったことを通知するリスナー. */
+    private final OverflowListener mListener;
+
+    /** 破棄したイベントの数. */
+    private final AtomicLong mDroppedCount = new AtomicLong();
+
+    /** 送信処理の実行中フラグ. */
+    private boolean mSending;
+
+    /** キューが閉じられたことを示すフラグ. */
+    private boolean mClosed;
+
+    /** 送信処理. */
+    private final Runnable mSendTask = new Runnable() {
+        @Override
+        public void run() {
+            sendEvents();
+        }
+    };
+
+    /**
+     * コンストラクタ.
+     * @param maxSize キューに格納できるイベントの最大数
+     * @param policy キューが一杯になった場合の動作
+     * @param executor イベントを送信するスレッドプール
+     * @param sender イベントの送信先
+     * @param listener キューが一杯になったことを通知するリスナー
+     */
+    EventSendQueue(final int maxSize, final OverflowPolicy policy, final Executor executor,
+                   final Sender sender, final OverflowListener listener) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize is invalid: " + maxSize);
+        }
+        mMaxSize = maxSize;
+        mPolicy = policy;
+        mExecutor = executor;
+        mSender = sender;
+        mListener = listener;
+    }
+
+    /**
+     * このキューで破棄したイベントの数を取得する.
+     * @return 破棄したイベントの数
+     */
+    long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    /**
+     * イベントをキューに格納する.
+     * @param event イベント
+     * @return キューに格納した場合はtrue、破棄した場合はfalse
+     */
+    boolean offer(final Intent event) {
+        boolean overflow = false;
+        boolean start = false;
+        synchronized (mQueue) {
+            if (mClosed) {
+                return false;
+            }
+            if (mQueue.size() >= mMaxSize) {
+                switch (mPolicy) {
+                    case COALESCE:
+                        if (replaceSamePath(event)) {
+                            onDropped(1);
+                            return true;
+                        }
+                        mQueue.poll();
+                        onDropped(1);
+                        break;
+                    case DISCONNECT:
+                        onDropped(mQueue.size() + 1);
+                        mQueue.clear();
+                        mClosed = true;
+                        overflow = true;
+                        break;
+                    case DROP_OLDEST:
+                    default:
+                        mQueue.poll();
+                        onDropped(1);
+                        break;
+                }
+            }
+            if (!overflow) {
+                mQueue.offer(event);
+                if (!mSending) {
+                    mSending = true;
+                    start = true;
+                }
+            }
+        }
+
+        if (overflow) {
+            if (mListener != null) {
+                mListener.onOverflow();
+            }
+            return false;
+        }
+        if (start) {
+            startSending();
+        }
+        return true;
+    }
+
+    /**
+     * キューを閉じる.
+     * <p>
+     * 送信待ちのイベントは破棄される。
+     * </p>
+     */
+    void close() {
+        synchronized (mQueue) {
+            mClosed = true;
+            mQueue.clear();
+        }
+    }
+
+    /**
+     * 送信待ちのイベントの数を取得する.
+     * @return 送信待ちのイベントの数
+     */
+    int size() {
+        synchronized (mQueue) {
+            return mQueue.size();
+        }
+    }
+
+    /**
+     * 送信処理をスレッドプールに渡す.
+     */
+    private void startSending() {
+        try {
+            mExecutor.execute(mSendTask);
+        } catch (RejectedExecutionException e) {
+            synchronized (mQueue) {
+                mSending = false;
+            }
+            mLogger.warning("EventSendQueue: failed to start sending events.");
+        }
+    }
+
+    /**
+     * キューに格納されているイベントを送信する.
+     * <p>
+     * 他のセッションにもスレッドを譲るため、一定数のイベントを送信したら処理をスレッドプールに戻す。
+     * </p>
+     */
+    private void sendEvents() {
+        for (int i = 0; i < MAX_SEND_COUNT; i++) {
+            Intent event;
+            synchronized (mQueue) {
+                event = mQueue.poll();
+                if (event == null) {
+                    mSending = false;
+                    return;
+                }
+            }
+            try {
+                mSender.send(event);
+            } catch (Throwable e) {
+                mLogger.warning("EventSendQueue: failed to send event: " + e.toString());
+            }
+        }
+        startSending();
+    }
+
+    /**
+     * キューの中から同じパスのイベントを探して、新しいイベントで置き換える.
+     * <p>
+     * mQueueのロックを取得した状態で呼び出すこと。
+     * </p>
+     * @param event 新しいイベント
+     * @return 置き換えた場合はtrue、同じパスのイベントが無い場合はfalse
+     */
+    private boolean replaceSamePath(final Intent event) {
+        Deque<Intent> tmp = new ArrayDeque<>(mQueue.size());
+        boolean replaced = false;
+        for (Iterator<Intent> it = mQueue.descendingIterator(); it.hasNext(); ) {
+            Intent queued = it.next();
+            if (!replaced && isSamePath(queued, event)) {
+                tmp.addFirst(event);
+                replaced = true;
+            } else {
+                tmp.addFirst(queued);
+            }
+        }
+        if (replaced) {
+            mQueue.clear();
+            mQueue.addAll(tmp);
+        }
+        return replaced;
+    }
+
+    private void onDropped(final int count) {
+        long dropped = mDroppedCount.addAndGet(count);
+        if (mListener != null) {
+            mListener.onDropped(count, dropped);
+        }
+    }
+
+    private static boolean isSamePath(final Intent a, final Intent b) {
+        return isSameName(DConnectProfile.getProfile(a), DConnectProfile.getProfile(b))
+            && isSameName(DConnectProfile.getInterface(a), DConnectProfile.getInterface(b))
+            && isSameName(DConnectProfile.getAttribute(a), DConnectProfile.getAttribute(b));
+    }
+
+    private static boolean isSameName(final String a, final String b) {
+        if (a == null) {
+            return b == null;
+        }
+        return a.equalsIgnoreCase(b);
+    }
+
+    /**
+     * キューが一杯になった場合の動作.
+     */
+    public enum OverflowPolicy {
+        /** 最も古いイベントを破棄する. */
+        DROP_OLDEST("drop_oldest"),
+        /** 同じパスのイベントを最新のイベントで置き換える. */
+        COALESCE("coalesce"),
+        /** セッションを切断する. */
+        DISCONNECT("disconnect");
+
+        /** 設定値. */
+        private final String mValue;
+
+        OverflowPolicy(final String value) {
+            mValue = value;
+        }
+
+        /**
+         * 設定値を取得する.
+         * @return 設定値
+         */
+        public String getValue() {
+            return mValue;
+        }
+
+        /**
+         * 設定値に対応する動作を取得する.
+         * @param value 設定値
+         * @return 動作. 対応する動作が無い場合は{@link #DROP_OLDEST}
+         */
+        public static OverflowPolicy fromValue(final String value) {
+            for (OverflowPolicy policy : values()) {
+                if (policy.mValue.equalsIgnoreCase(value)) {
+                    return policy;
+                }
+            }
+            return DROP_OLDEST;
+        }
+    }
+
+    /**
+     * イベントの送信先.
+     */
+    interface Sender {
+        /**
+         * イベントを送信する.
+         * @param event イベント
+         * @throws IOException 送信に失敗した場合
+         */
+        void send(Intent event) throws IOException;
+    }
+
+    /**
+     * キューが一杯になったことを通知するリスナー.
+     */
+    interface OverflowListener {
+        /**
+         * キューが一杯になり、イベントを破棄した場合に呼び出される.
+         * <p>
+         * キューのロックを取得した状態で呼び出されるので、時間のかかる処理は行わないこと。
+         * </p>
+         * @param count 破棄したイベントの数
+         * @param droppedCount このキューで破棄したイベントの累計
+         */
+        void onDropped(int count, long droppedCount);
+
+        /**
+         * キューが一杯になり、セッションを切断する必要がある場合に呼び出される.
+         */
+        void onOverflow();
+    }
+}
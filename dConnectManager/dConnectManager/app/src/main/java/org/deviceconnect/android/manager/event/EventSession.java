@@ -27,6 +27,7 @@ abstract class EventSession {
     private String mInterfaceName;
     private String mAttributeName;
     private String mAccessToken;
+    private EventRateLimiter mRateLimiter;
 
     public Context getContext() {
         return mContext;
@@ -92,6 +93,23 @@ abstract class EventSession {
         mAccessToken = accessToken;
     }
 
+    EventRateLimiter getRateLimiter() {
+        return mRateLimiter;
+    }
+
+    void setRateLimiter(final EventRateLimiter rateLimiter) {
+        mRateLimiter = rateLimiter;
+    }
+
     public abstract void sendEvent(final Intent event) throws IOException;
 
+    /**
+     * セッションがテーブルから削除された時に呼び出される.
+     */
+    void close() {
+        if (mRateLimiter != null) {
+            mRateLimiter.close();
+        }
+    }
+
 }
@@ -1,16 +1,53 @@
+/*
+ EventSessionTable.java
+ Copyright (c) 2016 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
 package org.deviceconnect.android.manager.event;
 
 
 import org.deviceconnect.android.manager.DevicePlugin;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * イベントセッションを管理するテーブル.
+ * <p>
+ * イベント配送時の検索を高速化するために、以下の2つのインデックスを持つ。
+ * <ul>
+ *     <li>プラグインのアクセストークン + サービスID + APIパス</li>
+ *     <li>プラグインID + レシーバーID + サービスID + APIパス (旧バージョンのイベントAPI用)</li>
+ * </ul>
+ * APIパスは大文字小文字を区別しないため、小文字に正規化してキーを作成する。
+ * インデックスの値は変更不可のリストで、更新時に差し替えるため、参照時にはコピーもロックも不要。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
 public class EventSessionTable {
 
+    /** キーの区切り文字. */
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    /** キーの値がnullであることを示す文字. */
+    private static final char KEY_NULL = '\u0001';
+
+    /** 登録されている全てのイベントセッション. */
     private final List<EventSession> mEventSessions = new ArrayList<>();
 
+    /** アクセストークンをキーにしたインデックス. */
+    private final Map<String, List<EventSession>> mAccessTokenIndex = new ConcurrentHashMap<>();
+
+    /** セッションキーをキーにしたインデックス. */
+    private final Map<String, List<EventSession>> mSessionKeyIndex = new ConcurrentHashMap<>();
+
     public List<EventSession> getAll() {
         synchronized (mEventSessions) {
             return new ArrayList<>(mEventSessions);
@@ -29,25 +66,196 @@ public class EventSessionTable {
         return result;
     }
 
+    /**
+     * プラグインのアクセストークンに一致するイベントセッションを検索する.
+     * <p>
+     * 返却されるリストは変更できない。
+     * </p>
+     * @param accessToken プラグインのアクセストークン
+     * @param serviceId サービスID
+     * @param profileName プロファイル名
+     * @param interfaceName インターフェース名
+     * @param attributeName アトリビュート名
+     * @return イベントセッションのリスト
+     */
+    List<EventSession> findByAccessToken(final String accessToken,
+                                         final String serviceId,
+                                         final String profileName,
+                                         final String interfaceName,
+                                         final String attributeName) {
+        String key = createKey(accessToken, null, serviceId, profileName, interfaceName, attributeName);
+        return find(mAccessTokenIndex, key);
+    }
+
+    /**
+     * セッションキーに一致するイベントセッションを検索する.
+     * <p>
+     * 返却されるリストは変更できない。
+     * </p>
+     * @param pluginId プラグインID
+     * @param receiverId レシーバーID
+     * @param serviceId サービスID
+     * @param profileName プロファイル名
+     * @param interfaceName インターフェース名
+     * @param attributeName アトリビュート名
+     * @return イベントセッションのリスト
+     */
+    List<EventSession> findBySessionKey(final String pluginId,
+                                        final String receiverId,
+                                        final String serviceId,
+                                        final String profileName,
+                                        final String interfaceName,
+                                        final String attributeName) {
+        String key = createKey(pluginId, receiverId, serviceId, profileName, interfaceName, attributeName);
+        return find(mSessionKeyIndex, key);
+    }
+
     void add(final EventSession session) {
-        synchronized(mEventSessions) {
+        synchronized (mEventSessions) {
             mEventSessions.add(session);
+            addIndex(mAccessTokenIndex, createAccessTokenKey(session), session);
+            addIndex(mSessionKeyIndex, createSessionKey(session), session);
         }
     }
 
     void remove(final EventSession session) {
         synchronized (mEventSessions) {
-            mEventSessions.remove(session);
+            if (mEventSessions.remove(session)) {
+                removeIndex(session);
+                session.close();
+            }
         }
     }
 
     void removeForReceiverId(final String receiverId) {
         synchronized (mEventSessions) {
             for (Iterator<EventSession> it = mEventSessions.iterator(); it.hasNext(); ) {
-                if (it.next().getReceiverId().equals(receiverId)) {
+                EventSession session = it.next();
+                if (session.getReceiverId().equals(receiverId)) {
                     it.remove();
+                    removeIndex(session);
+                    session.close();
                 }
             }
         }
     }
+
+    /**
+     * インデックスからイベントセッションを検索する.
+     * @param index インデックス
+     * @param key キー
+     * @return イベントセッションのリスト
+     */
+    private static List<EventSession> find(final Map<String, List<EventSession>> index, final String key) {
+        List<EventSession> sessions = index.get(key);
+        if (sessions == null) {
+            return Collections.emptyList();
+        }
+        return sessions;
+    }
+
+    /**
+     * 全てのインデックスからイベントセッションを削除する.
+     * <p>
+     * mEventSessionsのロックを取得した状態で呼び出すこと。
+     * </p>
+     * @param session イベントセッション
+     */
+    private void removeIndex(final EventSession session) {
+        removeIndex(mAccessTokenIndex, createAccessTokenKey(session), session);
+        removeIndex(mSessionKeyIndex, createSessionKey(session), session);
+    }
+
+    /**
+     * インデックスにイベントセッションを追加する.
+     * <p>
+     * mEventSessionsのロックを取得した状態で呼び出すこと。
+     * </p>
+     * @param index インデックス
+     * @param key キー
+     * @param session イベントセッション
+     */
+    private static void addIndex(final Map<String, List<EventSession>> index, final String key,
+                                 final EventSession session) {
+        List<EventSession> current = index.get(key);
+        List<EventSession> next = new ArrayList<>(current != null ? current.size() + 1 : 1);
+        if (current != null) {
+            next.addAll(current);
+        }
+        next.add(session);
+        index.put(key, Collections.unmodifiableList(next));
+    }
+
+    /**
+     * インデックスからイベントセッションを削除する.
+     * <p>
+     * mEventSessionsのロックを取得した状態で呼び出すこと。
+     * </p>
+     * @param index インデックス
+     * @param key キー
+     * @param session イベントセッション
+     */
+    private static void removeIndex(final Map<String, List<EventSession>> index, final String key,
+                                    final EventSession session) {
+        List<EventSession> current = index.get(key);
+        if (current == null) {
+            return;
+        }
+        List<EventSession> next = new ArrayList<>(current);
+        next.remove(session);
+        if (next.isEmpty()) {
+            index.remove(key);
+        } else {
+            index.put(key, Collections.unmodifiableList(next));
+        }
+    }
+
+    private static String createAccessTokenKey(final EventSession session) {
+        return createKey(session.getAccessToken(), null, session.getServiceId(),
+                session.getProfileName(), session.getInterfaceName(), session.getAttributeName());
+    }
+
+    private static String createSessionKey(final EventSession session) {
+        return createKey(session.getPluginId(), session.getReceiverId(), session.getServiceId(),
+                session.getProfileName(), session.getInterfaceName(), session.getAttributeName());
+    }
+
+    /**
+     * インデックスのキーを作成する.
+     * <p>
+     * APIパスは大文字小文字を区別しないので小文字に変換する。
+     * </p>
+     * @param id アクセストークンまたはプラグインID
+     * @param receiverId レシーバーID
+     * @param serviceId サービスID
+     * @param profileName プロファイル名
+     * @param interfaceName インターフェース名
+     * @param attributeName アトリビュート名
+     * @return キー
+     */
+    private static String createKey(final String id, final String receiverId, final String serviceId,
+                                    final String profileName, final String interfaceName,
+                                    final String attributeName) {
+        StringBuilder key = new StringBuilder(64);
+        append(key, id);
+        append(key, receiverId);
+        append(key, serviceId);
+        append(key, toLowerCase(profileName));
+        append(key, toLowerCase(interfaceName));
+        append(key, toLowerCase(attributeName));
+        return key.toString();
+    }
+
+    private static void append(final StringBuilder key, final String value) {
+        if (value == null) {
+            key.append(KEY_NULL);
+        } else {
+            key.append(value);
+        }
+        key.append(KEY_SEPARATOR);
+    }
+
+    private static String toLowerCase(final String value) {
+        return value != null ? value.toLowerCase(Locale.ENGLISH) : null;
+    }
 }
@@ -0,0 +1,111 @@
+/*
+ ServiceDiscoveryChannel.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.event;
+
+
+import android.content.Intent;
+import android.os.Bundle;
+
+import org.deviceconnect.message.DConnectMessage;
+import org.deviceconnect.message.intent.message.IntentDConnectMessage;
+import org.deviceconnect.profile.ServiceDiscoveryProfileConstants;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * サービス検索の途中経過をWebSocketで送信するクラス.
+ * <p>
+ * デバイスプラグインからサービスの一覧を受信するたびに、
+ * {@value #ATTRIBUTE_ON_PROGRESS}のメッセージで、そのデバイスプラグインのサービスの一覧を送信する。
+ * 全てのデバイスプラグインの応答を受信するか、タイムアウトした時点で、
+ * {@value #ATTRIBUTE_ON_COMPLETE}のメッセージを送信する。
+ * </p>
+ * <p>
+ * メッセージはイベントと同じ送信キューを経由して、受信した順番にWebSocketへ送信される。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class ServiceDiscoveryChannel {
+
+    /** 途中経過を通知するメッセージのアトリビュート名: {@value}. */
+    public static final String ATTRIBUTE_ON_PROGRESS = "onProgress";
+
+    /** サービス検索の完了を通知するメッセージのアトリビュート名: {@value}. */
+    public static final String ATTRIBUTE_ON_COMPLETE = "onComplete";
+
+    /** デバイスプラグインIDのパラメータ名: {@value}. */
+    public static final String PARAM_PLUGIN_ID = "pluginId";
+
+    /** 発見したサービスの総数のパラメータ名: {@value}. */
+    public static final String PARAM_COUNT = "count";
+
+    /** 応答がなかったデバイスプラグインIDの一覧のパラメータ名: {@value}. */
+    public static final String PARAM_TIMEOUT_PLUGINS = "timeoutPlugins";
+
+    /** ロガー. */
+    private final Logger mLogger = Logger.getLogger("dconnect.manager");
+
+    /** メッセージを送信するセッション. */
+    private final WebSocketEventSession mSession;
+
+    /**
+     * コンストラクタ.
+     * @param session メッセージを送信するセッション
+     */
+    ServiceDiscoveryChannel(final WebSocketEventSession session) {
+        mSession = session;
+    }
+
+    /**
+     * デバイスプラグインのサービスの一覧を送信する.
+     * @param pluginId デバイスプラグインID
+     * @param services サービスの一覧
+     */
+    public void sendServices(final String pluginId, final List<Bundle> services) {
+        // レスポンスの変換処理と同時に参照されないように、Bundleをコピーして送信する
+        Bundle[] copies = new Bundle[services.size()];
+        for (int i = 0; i < copies.length; i++) {
+            copies[i] = new Bundle(services.get(i));
+        }
+        Intent message = createMessage(ATTRIBUTE_ON_PROGRESS);
+        message.putExtra(PARAM_PLUGIN_ID, pluginId);
+        message.putExtra(ServiceDiscoveryProfileConstants.PARAM_SERVICES, copies);
+        send(message);
+    }
+
+    /**
+     * サービス検索の完了を送信する.
+     * @param count 発見したサービスの総数
+     * @param timeoutPluginIds 応答がなかったデバイスプラグインIDの一覧
+     */
+    public void sendComplete(final int count, final List<String> timeoutPluginIds) {
+        Intent message = createMessage(ATTRIBUTE_ON_COMPLETE);
+        message.putExtra(PARAM_COUNT, count);
+        message.putExtra(PARAM_TIMEOUT_PLUGINS,
+                timeoutPluginIds.toArray(new String[timeoutPluginIds.size()]));
+        send(message);
+    }
+
+    private Intent createMessage(final String attribute) {
+        Intent message = new Intent(IntentDConnectMessage.ACTION_EVENT);
+        message.putExtra(DConnectMessage.EXTRA_SESSION_KEY, mSession.getReceiverId());
+        message.putExtra(DConnectMessage.EXTRA_PROFILE, ServiceDiscoveryProfileConstants.PROFILE_NAME);
+        message.putExtra(DConnectMessage.EXTRA_ATTRIBUTE, attribute);
+        return message;
+    }
+
+    private void send(final Intent message) {
+        try {
+            mSession.sendEvent(message);
+        } catch (IOException e) {
+            mLogger.warning("ServiceDiscoveryChannel: failed to send message: " + e.toString());
+        }
+    }
+}
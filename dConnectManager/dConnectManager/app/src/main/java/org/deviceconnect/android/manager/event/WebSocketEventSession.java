@@ -1,5 +1,5 @@
 /*
- .java
+ WebSocketEventSession.java
  Copyright (c) 2016 NTT DOCOMO,INC.
  Released under the MIT license
  http://opensource.org/licenses/mit-license.php
@@ -15,13 +15,65 @@ import java.io.IOException;
 
 /**
  * WebSocket上のイベントセッション.
+ * <p>
+ * イベントは送信キューに格納され、別スレッドでWebSocketに送信される。
+ * </p>
  *
  * @author NTT DOCOMO, INC.
  */
 class WebSocketEventSession extends EventSession {
+
+    /** イベントの送信キュー. */
+    private EventSendQueue mSendQueue;
+
+    /**
+     * イベントの送信キューを設定する.
+     * @param sendQueue 送信キュー
+     */
+    void setSendQueue(final EventSendQueue sendQueue) {
+        mSendQueue = sendQueue;
+    }
+
+    /**
+     * 送信キューが一杯になったために破棄したイベントの数を取得する.
+     * @return 破棄したイベントの数
+     */
+    long getDroppedCount() {
+        return mSendQueue != null ? mSendQueue.getDroppedCount() : 0;
+    }
+
     @Override
     public void sendEvent(final Intent event) throws IOException {
+        if (mSendQueue != null) {
+            mSendQueue.offer(event);
+        } else {
+            DConnectService service = (DConnectService) getContext();
+            service.sendEvent(null, event);
+        }
+    }
+
+    @Override
+    void close() {
+        super.close();
+        if (mSendQueue != null) {
+            mSendQueue.close();
+        }
+    }
+
+    /**
+     * WebSocketにイベントを送信する.
+     * @param event イベント
+     */
+    void sendEventToWebSocket(final Intent event) {
+        DConnectService service = (DConnectService) getContext();
+        service.sendEventToWebSocket(event);
+    }
+
+    /**
+     * このセッションのWebSocketを切断する.
+     */
+    void disconnect() {
         DConnectService service = (DConnectService) getContext();
-        service.sendEvent(null, event);
+        service.disconnectWebSocketWithReceiverId(getReceiverId());
     }
 }
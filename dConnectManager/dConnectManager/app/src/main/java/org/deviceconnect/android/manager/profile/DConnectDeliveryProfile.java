@@ -10,6 +10,7 @@ import android.content.Intent;
 
 import org.deviceconnect.android.manager.DConnectLocalOAuth;
 import org.deviceconnect.android.manager.DConnectMessageService;
+import org.deviceconnect.android.manager.DConnectSettings;
 import org.deviceconnect.android.manager.DConnectService;
 import org.deviceconnect.android.manager.DevicePlugin;
 import org.deviceconnect.android.manager.DevicePluginManager;
@@ -90,6 +91,7 @@ public class DConnectDeliveryProfile extends DConnectProfile {
                 req.setRequest(request);
                 req.setDevicePluginManager(mDevicePluginManager);
                 req.setDestination(plugin);
+                req.setAsync(DConnectSettings.getInstance().isAsyncDelivery());
                 ((DConnectMessageService) getContext()).addRequest(req);
             } else {
                 sendNotFoundService(request, response);
@@ -58,6 +58,7 @@ public class DConnectServiceDiscoveryProfile extends ServiceDiscoveryProfile {
             req.setRequest(request);
             req.setTimeout(TIMEOUT);
             req.setDevicePluginManager(mDevicePluginManager);
+            req.setServiceRegistry(((DConnectMessageService) getContext()).getServiceRegistry());
             ((DConnectMessageService) getContext()).addRequest(req);
             return false;
         }
@@ -13,12 +13,16 @@ import android.content.SharedPreferences;
 import android.os.Bundle;
 
 import org.deviceconnect.android.event.EventManager;
+import org.deviceconnect.android.manager.DConnectLocalOAuth;
 import org.deviceconnect.android.manager.DConnectMessageService;
 import org.deviceconnect.android.manager.DConnectService;
 import org.deviceconnect.android.manager.DevicePlugin;
 import org.deviceconnect.android.manager.DevicePluginManager;
 import org.deviceconnect.android.manager.R;
+import org.deviceconnect.android.manager.event.EventBroker;
 import org.deviceconnect.android.manager.request.DConnectRequest;
+import org.deviceconnect.android.manager.request.DConnectRequestManager;
+import org.deviceconnect.android.manager.request.RequestStatistics;
 import org.deviceconnect.android.manager.request.RemoveEventsRequest;
 import org.deviceconnect.android.manager.setting.KeywordDialogActivity;
 import org.deviceconnect.android.manager.setting.SettingActivity;
@@ -36,7 +40,7 @@ import org.deviceconnect.profile.SystemProfileConstants;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
 
 /**
  * System プロファイル.
@@ -44,6 +48,54 @@ import java.util.UUID;
  * @author NTT DOCOMO, INC.
  */
 public class DConnectSystemProfile extends SystemProfile {
+    /** パラメータ: {@value}. */
+    public static final String PARAM_REQUEST_QUEUES = "requestQueues";
+
+    /** パラメータ: {@value}. */
+    public static final String PARAM_ACTIVE_COUNT = "activeCount";
+
+    /** パラメータ: {@value}. */
+    public static final String PARAM_QUEUE_SIZE = "queueSize";
+
+    /** パラメータ: {@value}. */
+    public static final String PARAM_MAX_QUEUE_SIZE = "maxQueueSize";
+
+    /** パラメータ: {@value}. */
+    public static final String PARAM_COMPLETED_COUNT = "completedCount";
+
+    /** パラメータ: {@value}. */
+    public static final String PARAM_REJECTED_COUNT = "rejectedCount";
+
+    /** パラメータ: {@value}. */
+    public static final String PARAM_AVERAGE_WAIT_TIME = "averageWaitTime";
+
+    /** パラメータ: {@value}. */
+    public static final String PARAM_MAX_WAIT_TIME = "maxWaitTime";
+
+    /** パラメータ: {@value}. */
+    public static final String PARAM_LOCAL_OAUTH_CACHE = "localOAuthCache";
+
+    /** パラメータ: {@value}. */
+    public static final String PARAM_HIT_COUNT = "hitCount";
+
+    /** パラメータ: {@value}. */
+    public static final String PARAM_MISS_COUNT = "missCount";
+
+    /** パラメータ: {@value}. */
+    public static final String PARAM_EVENT_QUEUES = "eventQueues";
+
+    /** パラメータ: {@value}. */
+    public static final String PARAM_DROPPED_COUNT = "droppedCount";
+
+    /** パラメータ: {@value}. */
+    public static final String PARAM_COALESCED_COUNT = "coalescedCount";
+
+    /** パラメータ: {@value}. */
+    public static final String PARAM_SESSIONS = "sessions";
+
+    /** パラメータ: {@value}. */
+    public static final String PARAM_RECEIVER_ID = "receiverId";
+
     /** プロファイル管理クラス. */
     private final DConnectProfileProvider mProvider;
 
@@ -101,10 +153,66 @@ public class DConnectSystemProfile extends SystemProfile {
                 plugins.add(b);
             }
             response.putExtra(PARAM_PLUGINS, plugins.toArray(new Bundle[plugins.size()]));
+
+            // リクエスト実行キューの状態を設定
+            DConnectRequestManager requestMgr = ((DConnectMessageService) getContext()).getRequestManager();
+            if (requestMgr != null) {
+                List<Bundle> queues = new ArrayList<Bundle>();
+                for (DConnectRequestManager.Lane lane : DConnectRequestManager.Lane.values()) {
+                    queues.add(createRequestQueue(requestMgr.getStatistics(lane)));
+                }
+                response.putExtra(PARAM_REQUEST_QUEUES, queues.toArray(new Bundle[queues.size()]));
+            }
+
+            // Local OAuthのキャッシュの状態を設定
+            DConnectLocalOAuth localOAuth = ((DConnectMessageService) getContext()).getLocalOAuth();
+            if (localOAuth != null) {
+                Bundle cache = new Bundle();
+                cache.putLong(PARAM_HIT_COUNT, localOAuth.getCacheHitCount());
+                cache.putLong(PARAM_MISS_COUNT, localOAuth.getCacheMissCount());
+                response.putExtra(PARAM_LOCAL_OAUTH_CACHE, cache);
+            }
+
+            // イベントの送信キューの状態を設定
+            if (getContext() instanceof DConnectService) {
+                EventBroker broker = ((DConnectService) getContext()).getEventBroker();
+                if (broker != null) {
+                    Bundle eventQueues = new Bundle();
+                    eventQueues.putLong(PARAM_DROPPED_COUNT, broker.getDroppedEventCount());
+                    eventQueues.putLong(PARAM_COALESCED_COUNT, broker.getCoalescedEventCount());
+                    List<Bundle> sessions = new ArrayList<Bundle>();
+                    for (Map.Entry<String, Long> entry : broker.getDroppedEventCounts().entrySet()) {
+                        Bundle session = new Bundle();
+                        session.putString(PARAM_RECEIVER_ID, entry.getKey());
+                        session.putLong(PARAM_DROPPED_COUNT, entry.getValue());
+                        sessions.add(session);
+                    }
+                    eventQueues.putParcelableArray(PARAM_SESSIONS, sessions.toArray(new Bundle[sessions.size()]));
+                    response.putExtra(PARAM_EVENT_QUEUES, eventQueues);
+                }
+            }
             return true;
         }
     };
 
+    /**
+     * リクエスト実行キューの統計情報をBundleに変換する.
+     * @param stats 統計情報
+     * @return Bundle
+     */
+    private static Bundle createRequestQueue(final RequestStatistics stats) {
+        Bundle b = new Bundle();
+        b.putString(PARAM_NAME, stats.getName());
+        b.putInt(PARAM_ACTIVE_COUNT, stats.getActiveCount());
+        b.putInt(PARAM_QUEUE_SIZE, stats.getQueueSize());
+        b.putInt(PARAM_MAX_QUEUE_SIZE, stats.getMaxQueueSize());
+        b.putLong(PARAM_COMPLETED_COUNT, stats.getCompletedCount());
+        b.putLong(PARAM_REJECTED_COUNT, stats.getRejectedCount());
+        b.putLong(PARAM_AVERAGE_WAIT_TIME, stats.getAverageWaitTime());
+        b.putLong(PARAM_MAX_WAIT_TIME, stats.getMaxWaitTime());
+        return b;
+    }
+
     private final DConnectApi mPutKeywordRequest = new PutApi() {
         @Override
         public String getAttribute() {
@@ -132,10 +240,15 @@ public class DConnectSystemProfile extends SystemProfile {
                     return mRequestCode == requestCode;
                 }
 
+                @Override
+                public DConnectRequestManager.Lane getLane() {
+                    return DConnectRequestManager.Lane.CONTROL;
+                }
+
                 @Override
                 public void run() {
                     // リクエストコードを作成する
-                    mRequestCode = UUID.randomUUID().hashCode();
+                    mRequestCode = createRequestCode();
 
                     // キーワード表示用のダイアログを表示
                     Intent intent = new Intent(getContext(), KeywordDialogActivity.class);
@@ -23,6 +23,11 @@ import org.restlet.ext.oauth.PackageInfoOAuth;
  */
 public class CreateClientRequest extends DConnectRequest {
 
+    @Override
+    public DConnectRequestManager.Lane getLane() {
+        return DConnectRequestManager.Lane.CONTROL;
+    }
+
     @Override
     public boolean hasRequestCode(final int requestCode) {
         return false;
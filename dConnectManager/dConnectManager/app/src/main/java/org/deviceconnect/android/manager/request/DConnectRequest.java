@@ -18,6 +18,10 @@ import org.deviceconnect.android.message.MessageUtils;
 import org.deviceconnect.message.DConnectMessage;
 import org.deviceconnect.message.intent.message.IntentDConnectMessage;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
 /**
  * DConnectリクエスト.
  * @author NTT DOCOMO, INC.
@@ -42,6 +46,12 @@ public abstract class DConnectRequest {
     /** リクエスト管理クラス. */
     protected DConnectRequestManager mRequestMgr;
 
+    /** このリクエストが発行したリクエストコード一覧. */
+    private final List<Integer> mRequestCodes = new ArrayList<>();
+
+    /** 非同期リクエストの終了を通知するリスナー. */
+    private volatile Runnable mOnFinishedListener;
+
     /**
      * コンストラクタ.
      */
@@ -129,6 +139,36 @@ public abstract class DConnectRequest {
         mResponse = response;
     }
 
+    /**
+     * リクエストコードを作成する.
+     * <p>
+     * 作成したリクエストコードはリクエスト管理クラスに登録され、
+     * 同じリクエストコードを持つレスポンスがこのリクエストに渡される。
+     * レスポンスの取りこぼしを防ぐため、リクエストを送信する前に呼び出すこと。
+     * </p>
+     * @return リクエストコード
+     */
+    protected int createRequestCode() {
+        int requestCode = UUID.randomUUID().hashCode();
+        synchronized (mRequestCodes) {
+            mRequestCodes.add(requestCode);
+        }
+        if (mRequestMgr != null) {
+            mRequestMgr.registerRequestCode(requestCode, this);
+        }
+        return requestCode;
+    }
+
+    /**
+     * このリクエストが発行したリクエストコード一覧を取得する.
+     * @return リクエストコード一覧
+     */
+    List<Integer> getRequestCodes() {
+        synchronized (mRequestCodes) {
+            return new ArrayList<>(mRequestCodes);
+        }
+    }
+
     /**
      * 各デバイスプラグインへ配送するリクエストを作成する.
      * @param request 配送元のリクエスト用Intent
@@ -176,6 +216,73 @@ public abstract class DConnectRequest {
         sendResponse(response);
     }
 
+    /**
+     * 過負荷のためにリクエストを受け付けられなかったことを通知する.
+     */
+    protected void sendOverloadError() {
+        Intent response = new Intent(IntentDConnectMessage.ACTION_RESPONSE);
+        MessageUtils.setIllegalServerStateError(response, "Too many requests.");
+        sendResponse(response);
+    }
+
+    /**
+     * このリクエストを実行するレーンを取得する.
+     * <p>
+     * デフォルトでは、デバイスプラグインへの配送レーンで実行する。
+     * サービス検索や認可などのリクエストは、オーバーライドして
+     * {@link DConnectRequestManager.Lane#CONTROL}を返却すること。
+     * </p>
+     * @return レーン
+     */
+    public DConnectRequestManager.Lane getLane() {
+        return DConnectRequestManager.Lane.DELIVERY;
+    }
+
+    /**
+     * 送信先のデバイスプラグインIDを取得する.
+     * <p>
+     * 送信先が1つのデバイスプラグインに決まらない場合はnullを返却する。
+     * デバイスプラグインごとの同時実行数の制限に使用する。
+     * </p>
+     * @return デバイスプラグインID
+     */
+    public String getDestinationPluginId() {
+        return null;
+    }
+
+    /**
+     * 非同期に処理するリクエストか確認する.
+     * <p>
+     * trueを返却する場合には、{@link #run()}から処理が戻ってもリクエストは終了せず、
+     * {@link #finish()}が呼び出された時点で終了したとみなされる。
+     * </p>
+     * @return 非同期に処理する場合はtrue、それ以外はfalse
+     */
+    public boolean isAsync() {
+        return false;
+    }
+
+    /**
+     * 非同期リクエストの終了を通知するリスナーを設定する.
+     * @param listener リスナー
+     */
+    void setOnFinishedListener(final Runnable listener) {
+        mOnFinishedListener = listener;
+    }
+
+    /**
+     * 非同期リクエストの処理を終了する.
+     * <p>
+     * レスポンスを返却した後に呼び出すこと。
+     * </p>
+     */
+    protected void finish() {
+        Runnable listener = mOnFinishedListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
     /**
      * 指定されたリクエストコードを持っているかチェックする.
      * @param requestCode リクエストコード
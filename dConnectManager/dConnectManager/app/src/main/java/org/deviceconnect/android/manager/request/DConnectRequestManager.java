@@ -7,67 +7,256 @@
 package org.deviceconnect.android.manager.request;
 
 import android.content.Intent;
+import android.os.Build;
 import android.util.Log;
 
 import org.deviceconnect.android.manager.BuildConfig;
 import org.deviceconnect.message.intent.message.IntentDConnectMessage;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * dConnect Managerで処理されるリクエストを管理するクラス.
+ * <p>
+ * リクエストは以下のレーンに振り分けて実行する。
+ * <ul>
+ * <li>{@link Lane#DELIVERY}: デバイスプラグインへの配送リクエスト
+ * <li>{@link Lane#CONTROL}: サービス検索や認可などのリクエスト
+ * </ul>
+ * 配送リクエストが滞留しても、サービス検索や認可が実行できなくならないようにしている。
+ * 各レーンのキューには上限があり、上限を超えたリクエストには即座にエラーを返却する。
+ * </p>
  * @author NTT DOCOMO, INC.
  */
 public class DConnectRequestManager {
     /** エラーコードを定義する. */
     private static final int ERROR_CODE = Integer.MIN_VALUE;
 
-    /** 最大スレッド数を定義する. */
-    private static final int MAX_THREAD_SIZE = 4;
+    /** リクエストの実行レーン. */
+    public enum Lane {
+        /** デバイスプラグインへの配送リクエストを実行するレーン. */
+        DELIVERY("delivery"),
+        /** サービス検索や認可のリクエストを実行するレーン. */
+        CONTROL("control");
 
-    /** リクエストを実行するためのスレッドを管理するExecutor. */
-    private final ExecutorService mExecutor = Executors.newFixedThreadPool(MAX_THREAD_SIZE);
+        /** レーン名. */
+        private final String mName;
+
+        /**
+         * コンストラクタ.
+         * @param name レーン名
+         */
+        Lane(final String name) {
+            mName = name;
+        }
+
+        /**
+         * レーン名を取得する.
+         * @return レーン名
+         */
+        public String getName() {
+            return mName;
+        }
+    }
+
+    /** 配送リクエストを実行するExecutor. */
+    private final RequestLaneExecutor mDeliveryExecutor;
+
+    /** サービス検索や認可のリクエストを実行するExecutor. */
+    private final RequestLaneExecutor mControlExecutor;
 
     /** シングルスレッドでリクエストを実行するためのスレッドを管理するExecutor. */
     private final ExecutorService mSingleExecutor = Executors.newSingleThreadExecutor();
 
-    /** リクエスト一覧. */
-    private final List<DConnectRequest> mRequestList = Collections.synchronizedList(new ArrayList<DConnectRequest>());
+    /**
+     * 非同期リクエストのタイムアウトを管理するタイマー.
+     * <p>
+     * 全ての非同期リクエストで1つのスレッドを共有する。
+     * </p>
+     */
+    private final ScheduledThreadPoolExecutor mTimer = new ScheduledThreadPoolExecutor(1);
+
+    /**
+     * リクエストコードとリクエストの対応表.
+     * <p>
+     * レスポンスの振り分けをリクエストコードから直接行うために、
+     * 各リクエストは送信時にリクエストコードをここに登録する。
+     * </p>
+     */
+    private final Map<Integer, DConnectRequest> mRequestCodeMap = new ConcurrentHashMap<>();
+
+    /**
+     * デフォルト設定でリクエスト管理クラスを作成する.
+     */
+    public DConnectRequestManager() {
+        this(new Config.Builder().build());
+    }
+
+    /**
+     * 指定された設定でリクエスト管理クラスを作成する.
+     * @param config 設定
+     */
+    public DConnectRequestManager(final Config config) {
+        mDeliveryExecutor = new RequestLaneExecutor(Lane.DELIVERY.getName(),
+                config.mDeliveryThreadSize, config.mDeliveryQueueSize, config.mMaxConcurrentRequestsPerPlugin);
+        mControlExecutor = new RequestLaneExecutor(Lane.CONTROL.getName(),
+                config.mControlThreadSize, config.mControlQueueSize, 0);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            // キャンセルしたタイムアウトがキューに残り続けないようにする
+            mTimer.setRemoveOnCancelPolicy(true);
+        }
+    }
 
     /**
      * リクエスト管理を終了する.
      */
     public void shutdown() {
-        mExecutor.shutdown();
+        mDeliveryExecutor.shutdown();
+        mControlExecutor.shutdown();
         mSingleExecutor.shutdown();
+        mTimer.shutdown();
     }
 
     /**
      * 実行するリクエストを追加する.
+     * <p>
+     * 実行レーンのキューが一杯の場合には、リクエストを実行せずに過負荷エラーを返却する。
+     * </p>
      * @param request 追加するリクエスト
      */
     public void addRequest(final DConnectRequest request) {
         request.setRequestMgr(this);
-        mRequestList.add(request);
-        mExecutor.execute(new Runnable() {
+        RequestLaneExecutor executor = getExecutor(request.getLane());
+        Runnable onRejected = new Runnable() {
             @Override
             public void run() {
-                try {
-                    request.run();
-                } catch (Throwable e) {
-                    request.sendRuntimeException(e.getMessage());
-                    if (BuildConfig.DEBUG) {
-                        Log.e("dConnectManager", "runtime", e);
+                request.sendOverloadError();
+            }
+        };
+        boolean accepted;
+        if (request.isAsync()) {
+            accepted = executor.executeAsync(request.getDestinationPluginId(), new RequestLaneExecutor.AsyncTask() {
+                @Override
+                public void start(final Runnable onComplete) {
+                    final AtomicBoolean finished = new AtomicBoolean();
+                    request.setOnFinishedListener(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (finished.compareAndSet(false, true)) {
+                                unregisterRequestCodes(request);
+                                onComplete.run();
+                            }
+                        }
+                    });
+                    runAsyncStep(request, new Runnable() {
+                        @Override
+                        public void run() {
+                            request.run();
+                        }
+                    });
+                }
+            }, onRejected);
+        } else {
+            accepted = executor.execute(request.getDestinationPluginId(), new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        request.run();
+                    } catch (Throwable e) {
+                        request.sendRuntimeException(e.getMessage());
+                        if (BuildConfig.DEBUG) {
+                            Log.e("dConnectManager", "runtime", e);
+                        }
+                    } finally {
+                        unregisterRequestCodes(request);
                     }
-                } finally {
-                    mRequestList.remove(request);
                 }
+            }, onRejected);
+        }
+        if (!accepted) {
+            if (BuildConfig.DEBUG) {
+                Log.w("dConnectManager", "Request queue is full: lane=" + executor.getName());
+            }
+            onRejected.run();
+        }
+    }
+
+    /**
+     * 非同期リクエストの続きの処理を実行レーンのキューに追加する.
+     * <p>
+     * レスポンス受信後の処理やリトライは、呼び出し元のスレッドでは行わずに、
+     * このメソッドで実行レーンに戻して実行する。
+     * キューが一杯の場合には、過負荷エラーを返却してリクエストを終了する。
+     * </p>
+     * @param request 非同期リクエスト
+     * @param step 実行する処理
+     */
+    void resubmit(final DConnectRequest request, final Runnable step) {
+        boolean accepted = getExecutor(request.getLane()).resubmit(new Runnable() {
+            @Override
+            public void run() {
+                runAsyncStep(request, step);
             }
         });
+        if (!accepted) {
+            request.sendOverloadError();
+            request.finish();
+        }
+    }
+
+    /**
+     * 非同期リクエストのタイムアウトを設定する.
+     * @param task タイムアウト時に実行する処理
+     * @param timeout タイムアウト時間(ミリ秒)
+     * @return タイムアウトをキャンセルするためのFuture
+     */
+    ScheduledFuture<?> schedule(final Runnable task, final long timeout) {
+        return mTimer.schedule(task, timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 非同期リクエストの処理を実行する.
+     * <p>
+     * 処理中に例外が発生した場合には、エラーを返却してリクエストを終了する。
+     * </p>
+     * @param request 非同期リクエスト
+     * @param step 実行する処理
+     */
+    private void runAsyncStep(final DConnectRequest request, final Runnable step) {
+        try {
+            step.run();
+        } catch (Throwable e) {
+            request.sendRuntimeException(e.getMessage());
+            request.finish();
+            if (BuildConfig.DEBUG) {
+                Log.e("dConnectManager", "runtime", e);
+            }
+        }
+    }
+
+    /**
+     * 指定されたレーンの統計情報を取得する.
+     * @param lane レーン
+     * @return 統計情報
+     */
+    public RequestStatistics getStatistics(final Lane lane) {
+        return getExecutor(lane).getStatistics();
+    }
+
+    /**
+     * 指定されたレーンのExecutorを取得する.
+     * @param lane レーン
+     * @return Executor
+     */
+    private RequestLaneExecutor getExecutor(final Lane lane) {
+        return lane == Lane.CONTROL ? mControlExecutor : mDeliveryExecutor;
     }
 
     /**
@@ -76,7 +265,6 @@ public class DConnectRequestManager {
      */
     public void addRequestOnSingleThread(final DConnectRequest request) {
         request.setRequestMgr(this);
-        mRequestList.add(request);
         mSingleExecutor.execute(new Runnable() {
             @Override
             public void run() {
@@ -89,12 +277,34 @@ public class DConnectRequestManager {
                         Log.e("dConnectManager", "runtime", e);
                     }
                 } finally {
-                    mRequestList.remove(request);
+                    unregisterRequestCodes(request);
                 }
             }
         });
     }
 
+    /**
+     * リクエストコードを登録する.
+     * <p>
+     * 登録したリクエストコードを持つレスポンスは、指定されたリクエストに渡される。
+     * </p>
+     * @param requestCode リクエストコード
+     * @param request リクエストコードを持つリクエスト
+     */
+    void registerRequestCode(final int requestCode, final DConnectRequest request) {
+        mRequestCodeMap.put(requestCode, request);
+    }
+
+    /**
+     * リクエストが登録したリクエストコードを全て解除する.
+     * @param request リクエスト
+     */
+    private void unregisterRequestCodes(final DConnectRequest request) {
+        for (Integer requestCode : request.getRequestCodes()) {
+            mRequestCodeMap.remove(requestCode, request);
+        }
+    }
+
     /**
      * レスポンスを受け付ける.
      * @param response レスポンス
@@ -102,12 +312,126 @@ public class DConnectRequestManager {
     public void setResponse(final Intent response) {
         int code = response.getIntExtra(
                 IntentDConnectMessage.EXTRA_REQUEST_CODE, ERROR_CODE);
-        synchronized (mRequestList) {
-            for (DConnectRequest request : mRequestList) {
-                if (request.hasRequestCode(code)) {
-                    request.setResponse(response);
-                    return;
-                }
+        DConnectRequest request = mRequestCodeMap.get(code);
+        if (request != null && request.hasRequestCode(code)) {
+            request.setResponse(response);
+        } else if (BuildConfig.DEBUG) {
+            Log.w("dConnectManager", "Not found a request for requestCode: " + code);
+        }
+    }
+
+    /**
+     * リクエスト管理の設定.
+     */
+    public static final class Config {
+        /** 配送レーンのデフォルトのスレッド数. */
+        public static final int DEFAULT_DELIVERY_THREAD_SIZE = 8;
+        /** 配送レーンのデフォルトのキューサイズ. */
+        public static final int DEFAULT_DELIVERY_QUEUE_SIZE = 256;
+        /** デバイスプラグインごとのデフォルトの同時実行数. */
+        public static final int DEFAULT_MAX_CONCURRENT_REQUESTS_PER_PLUGIN = 4;
+        /** サービス検索・認可レーンのデフォルトのスレッド数. */
+        public static final int DEFAULT_CONTROL_THREAD_SIZE = 4;
+        /** サービス検索・認可レーンのデフォルトのキューサイズ. */
+        public static final int DEFAULT_CONTROL_QUEUE_SIZE = 64;
+
+        /** 配送レーンのスレッド数. */
+        private final int mDeliveryThreadSize;
+        /** 配送レーンのキューサイズ. */
+        private final int mDeliveryQueueSize;
+        /** デバイスプラグインごとの同時実行数. */
+        private final int mMaxConcurrentRequestsPerPlugin;
+        /** サービス検索・認可レーンのスレッド数. */
+        private final int mControlThreadSize;
+        /** サービス検索・認可レーンのキューサイズ. */
+        private final int mControlQueueSize;
+
+        /**
+         * コンストラクタ.
+         * @param builder ビルダー
+         */
+        private Config(final Builder builder) {
+            mDeliveryThreadSize = builder.mDeliveryThreadSize;
+            mDeliveryQueueSize = builder.mDeliveryQueueSize;
+            mMaxConcurrentRequestsPerPlugin = builder.mMaxConcurrentRequestsPerPlugin;
+            mControlThreadSize = builder.mControlThreadSize;
+            mControlQueueSize = builder.mControlQueueSize;
+        }
+
+        /**
+         * {@link Config}のビルダー.
+         */
+        public static final class Builder {
+            /** 配送レーンのスレッド数. */
+            private int mDeliveryThreadSize = DEFAULT_DELIVERY_THREAD_SIZE;
+            /** 配送レーンのキューサイズ. */
+            private int mDeliveryQueueSize = DEFAULT_DELIVERY_QUEUE_SIZE;
+            /** デバイスプラグインごとの同時実行数. */
+            private int mMaxConcurrentRequestsPerPlugin = DEFAULT_MAX_CONCURRENT_REQUESTS_PER_PLUGIN;
+            /** サービス検索・認可レーンのスレッド数. */
+            private int mControlThreadSize = DEFAULT_CONTROL_THREAD_SIZE;
+            /** サービス検索・認可レーンのキューサイズ. */
+            private int mControlQueueSize = DEFAULT_CONTROL_QUEUE_SIZE;
+
+            /**
+             * 配送レーンのスレッド数を設定する.
+             * @param size スレッド数
+             * @return ビルダー
+             */
+            public Builder deliveryThreadSize(final int size) {
+                mDeliveryThreadSize = size;
+                return this;
+            }
+
+            /**
+             * 配送レーンのキューサイズを設定する.
+             * @param size キューサイズ
+             * @return ビルダー
+             */
+            public Builder deliveryQueueSize(final int size) {
+                mDeliveryQueueSize = size;
+                return this;
+            }
+
+            /**
+             * デバイスプラグインごとの同時実行数を設定する.
+             * <p>
+             * 0以下を指定した場合には制限しない。
+             * </p>
+             * @param max 同時実行数
+             * @return ビルダー
+             */
+            public Builder maxConcurrentRequestsPerPlugin(final int max) {
+                mMaxConcurrentRequestsPerPlugin = max;
+                return this;
+            }
+
+            /**
+             * サービス検索・認可レーンのスレッド数を設定する.
+             * @param size スレッド数
+             * @return ビルダー
+             */
+            public Builder controlThreadSize(final int size) {
+                mControlThreadSize = size;
+                return this;
+            }
+
+            /**
+             * サービス検索・認可レーンのキューサイズを設定する.
+             * @param size キューサイズ
+             * @return ビルダー
+             */
+            public Builder controlQueueSize(final int size) {
+                mControlQueueSize = size;
+                return this;
+            }
+
+            /**
+             * 設定を作成する.
+             * @return 設定
+             */
+            public Config build() {
+                return new Config(this);
             }
         }
     }
@@ -14,6 +14,8 @@ import org.deviceconnect.android.profile.DConnectProfile;
 import org.deviceconnect.message.DConnectMessage;
 import org.deviceconnect.message.intent.message.IntentDConnectMessage;
 
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
 /**
@@ -21,9 +23,165 @@ import java.util.logging.Logger;
  * @author NTT DOCOMO, INC.
  */
 public class DeliveryRequest extends LocalOAuthRequest {
+    /** 配送中のリクエストが無いことを示すリクエストコード. */
+    private static final int NO_DELIVERY = Integer.MIN_VALUE;
+
     /** ロガー. */
     private final Logger mLogger = Logger.getLogger("dconnect.manager");
 
+    /** 非同期に配送する場合はtrue. */
+    private boolean mAsync;
+
+    /** 配送の状態を排他制御するためのオブジェクト. */
+    private final Object mDeliveryLock = new Object();
+
+    /** 非同期モードで配送中のリクエストコード. */
+    private int mDeliveryRequestCode = NO_DELIVERY;
+
+    /** 非同期モードのタイムアウト. */
+    private ScheduledFuture<?> mTimeoutFuture;
+
+    /** 非同期モードで最後に送信したアクセストークン. */
+    private volatile String mDeliveredAccessToken;
+
+    /**
+     * 非同期モードを設定する.
+     * <p>
+     * 非同期モードでは、デバイスプラグインからのレスポンスを待つ間スレッドを占有しない。
+     * レスポンスの処理とリトライは実行レーンのキューに戻して実行し、
+     * タイムアウトはリクエスト管理クラスが共有するタイマーで管理する。
+     * </p>
+     * @param async 非同期モードにする場合はtrue、それ以外はfalse
+     */
+    public void setAsync(final boolean async) {
+        mAsync = async;
+    }
+
+    @Override
+    public boolean isAsync() {
+        return mAsync;
+    }
+
+    @Override
+    public boolean hasRequestCode(final int requestCode) {
+        if (mAsync) {
+            synchronized (mDeliveryLock) {
+                if (requestCode == mDeliveryRequestCode) {
+                    return true;
+                }
+            }
+        }
+        return super.hasRequestCode(requestCode);
+    }
+
+    @Override
+    public void setResponse(final Intent response) {
+        if (mAsync) {
+            int requestCode = response.getIntExtra(IntentDConnectMessage.EXTRA_REQUEST_CODE, NO_DELIVERY);
+            if (onDeliveryCompleted(requestCode)) {
+                // レスポンスの処理は、受信したスレッドでは行わずに実行レーンに戻す
+                mRequestMgr.resubmit(this, new Runnable() {
+                    @Override
+                    public void run() {
+                        handleResponse(response);
+                    }
+                });
+                return;
+            }
+        }
+        super.setResponse(response);
+    }
+
+    @Override
+    public void run() {
+        if (!mAsync) {
+            super.run();
+            return;
+        }
+
+        if (mRequest == null) {
+            throw new RuntimeException("mRequest is null.");
+        }
+
+        if (mDevicePlugin == null) {
+            throw new RuntimeException("mDevicePlugin is null.");
+        }
+
+        // リトライ回数を定義
+        mRetryCount = 0;
+
+        // Local OAuthの処理で使用するリクエストコードを作成する
+        mRequestCode = createRequestCode();
+
+        startDelivery();
+    }
+
+    /**
+     * 非同期モードで配送を開始する.
+     * <p>
+     * アクセストークンが保存されていない場合には、認可が完了した時点で配送する。
+     * 認可がタイムアウト時間内に完了しない場合には、タイムアウトのエラーを返却してリクエストを終了する。
+     * </p>
+     */
+    private void startDelivery() {
+        if (!requiresAccessToken()) {
+            executeRequest(null);
+            return;
+        }
+
+        String accessToken = findAccessToken();
+        if (accessToken != null) {
+            executeRequest(accessToken);
+            return;
+        }
+
+        // 認可の完了、失敗、タイムアウトのうち、最初に発生したものだけを処理する
+        final AtomicBoolean completed = new AtomicBoolean();
+        final ScheduledFuture<?> timeout = mRequestMgr.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (completed.compareAndSet(false, true)) {
+                    sendTimeout();
+                    finish();
+                }
+            }
+        }, mTimeout);
+
+        try {
+            authorize(new OnAuthorizationListener() {
+                @Override
+                public void onAuthorized(final String accessToken) {
+                    if (!completed.compareAndSet(false, true)) {
+                        return;
+                    }
+                    timeout.cancel(false);
+                    mRequestMgr.resubmit(DeliveryRequest.this, new Runnable() {
+                        @Override
+                        public void run() {
+                            executeRequest(accessToken);
+                        }
+                    });
+                }
+
+                @Override
+                public void onAuthorizationFailed() {
+                    if (!completed.compareAndSet(false, true)) {
+                        return;
+                    }
+                    // エラーレスポンスは返却済み
+                    timeout.cancel(false);
+                    finish();
+                }
+            });
+        } catch (RuntimeException e) {
+            // 認可を開始できなかった場合は、呼び出し元でエラーを返却して終了する
+            if (completed.compareAndSet(false, true)) {
+                timeout.cancel(false);
+                throw e;
+            }
+        }
+    }
+
     /**
      * 実際の命令を行う.
      * 
@@ -33,6 +191,11 @@ public class DeliveryRequest extends LocalOAuthRequest {
      * @param accessToken アクセストークン
      */
     protected void executeRequest(final String accessToken) {
+        if (mAsync) {
+            deliver(accessToken);
+            return;
+        }
+
         // 命令を実行する前にレスポンスを初期化しておく
         mResponse = null;
 
@@ -98,6 +261,128 @@ public class DeliveryRequest extends LocalOAuthRequest {
         }
     }
 
+    /**
+     * 非同期モードで命令をデバイスプラグインに送信する.
+     * <p>
+     * レスポンスを待たずに処理を返し、レスポンスは{@link #setResponse(Intent)}で受け取る。
+     * </p>
+     * @param accessToken アクセストークン
+     */
+    private void deliver(final String accessToken) {
+        if (BuildConfig.DEBUG) {
+            mLogger.info(String.format("Delivery Request (async): %s, intent: %s",
+                    mDevicePlugin.getPackageName(), mRequest.getExtras()));
+        }
+
+        // プラグインのサポートしない命令にエラーを返す
+        String profileName = DConnectProfile.getProfile(mRequest);
+        if (profileName != null && !mDevicePlugin.supportsProfile(profileName)) {
+            Intent response = new Intent(IntentDConnectMessage.ACTION_RESPONSE);
+            MessageUtils.setNotSupportProfileError(response);
+            sendResponse(response);
+            finish();
+            return;
+        }
+
+        // リトライ時に前回のレスポンスと区別できるように、送信ごとにリクエストコードを作成する
+        final int requestCode = createRequestCode();
+
+        Intent request = createRequestMessage(mRequest, mDevicePlugin);
+        request.setComponent(mDevicePlugin.getComponentName());
+        request.putExtra(IntentDConnectMessage.EXTRA_REQUEST_CODE, requestCode);
+        if (accessToken != null) {
+            request.putExtra(DConnectMessage.EXTRA_ACCESS_TOKEN, accessToken);
+        }
+        mDeliveredAccessToken = accessToken;
+
+        synchronized (mDeliveryLock) {
+            mDeliveryRequestCode = requestCode;
+            mTimeoutFuture = mRequestMgr.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (onDeliveryCompleted(requestCode)) {
+                        restartDevicePlugin();
+                        sendTimeout();
+                        finish();
+                    }
+                }
+            }, mTimeout);
+        }
+
+        mContext.sendBroadcast(request);
+    }
+
+    /**
+     * 配送中のリクエストを完了状態にする.
+     * <p>
+     * レスポンスとタイムアウトが同時に発生した場合には、先に呼び出された方のみがtrueとなる。
+     * </p>
+     * @param requestCode 完了したリクエストのリクエストコード
+     * @return 配送中のリクエストを完了させた場合はtrue、それ以外はfalse
+     */
+    private boolean onDeliveryCompleted(final int requestCode) {
+        synchronized (mDeliveryLock) {
+            if (requestCode == NO_DELIVERY || requestCode != mDeliveryRequestCode) {
+                return false;
+            }
+            mDeliveryRequestCode = NO_DELIVERY;
+            if (mTimeoutFuture != null) {
+                mTimeoutFuture.cancel(false);
+                mTimeoutFuture = null;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 非同期モードでデバイスプラグインからのレスポンスを処理する.
+     * <p>
+     * リトライが必要な場合には、再帰呼び出しではなく実行レーンのキューに戻して再送する。
+     * </p>
+     * @param response レスポンス
+     */
+    private void handleResponse(final Intent response) {
+        int result = getResult(response);
+        if (result == DConnectMessage.RESULT_ERROR) {
+            mRetryCount++;
+            int errorCode = getErrorCode(response);
+            if (mRetryCount < MAX_RETRY_COUNT
+                    && errorCode == DConnectMessage.ErrorCode.NOT_FOUND_CLIENT_ID.getCode()) {
+                // dConnectManagerとデバイスプラグインでクライアントIDが一致していないので、
+                // ローカルに保存しているclientIdを削除してから再度実行する.
+                String serviceId = mRequest.getStringExtra(DConnectMessage.EXTRA_SERVICE_ID);
+                String origin = mRequest.getStringExtra(IntentDConnectMessage.EXTRA_ORIGIN);
+                if (serviceId != null) {
+                    mLocalOAuth.deleteOAuthData(origin, serviceId);
+                }
+                retry();
+                return;
+            } else if (mRetryCount < MAX_RETRY_COUNT
+                    && errorCode == DConnectMessage.ErrorCode.EXPIRED_ACCESS_TOKEN.getCode()) {
+                // アクセストークンの有効期限切れ
+                if (mDeliveredAccessToken != null) {
+                    mLocalOAuth.deleteAccessToken(mDeliveredAccessToken);
+                }
+                retry();
+                return;
+            }
+        }
+        sendResponse(response);
+        finish();
+    }
+
+    /**
+     * 非同期モードで配送をやり直す.
+     */
+    private void retry() {
+        mRequestMgr.resubmit(this, new Runnable() {
+            @Override
+            public void run() {
+                startDelivery();
+            }
+        });
+    }
+
     /**
      * Restart a device plugin.
      */
@@ -34,6 +34,11 @@ public class GetAccessTokenRequest extends DConnectRequest {
     /** ロックオブジェクト. */
     private final Object mLockObj = new Object();
 
+    @Override
+    public DConnectRequestManager.Lane getLane() {
+        return DConnectRequestManager.Lane.CONTROL;
+    }
+
     @Override
     public boolean hasRequestCode(final int requestCode) {
         return false;
@@ -19,7 +19,10 @@ import org.deviceconnect.profile.AuthorizationProfileConstants;
 import org.deviceconnect.profile.DConnectProfileConstants;
 
 import java.util.List;
-import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Logger;
 
 /**
@@ -108,6 +111,11 @@ public abstract class LocalOAuthRequest extends DConnectRequest {
         }
     }
 
+    @Override
+    public String getDestinationPluginId() {
+        return mDevicePlugin != null ? mDevicePlugin.getPluginId() : null;
+    }
+
     @Override
     public boolean hasRequestCode(final int requestCode) {
         return mRequestCode == requestCode;
@@ -127,7 +135,7 @@ public abstract class LocalOAuthRequest extends DConnectRequest {
         mRetryCount = 0;
 
         // リクエストコードを作成する
-        mRequestCode = UUID.randomUUID().hashCode();
+        mRequestCode = createRequestCode();
 
         // 実行
         executeRequest();
@@ -141,6 +149,8 @@ public abstract class LocalOAuthRequest extends DConnectRequest {
      * 
      * [実装要求]
      * null(エラー)を返す場合には、リクエスト元にレスポンスを返却するので注意が必要。
+     * デバイスプラグインがAuthorizationプロファイルに対応していない場合には、
+     * {@link ClientData#mNotSupported}がtrueのクライアントデータを返却する。
      * 
      * @param serviceId サービスID
      * @return クライアントデータ
@@ -189,7 +199,9 @@ public abstract class LocalOAuthRequest extends DConnectRequest {
                 if (errorCode == DConnectMessage.ErrorCode.NOT_SUPPORT_PROFILE.getCode()) {
                     // authorizationプロファイルに対応していないのでアクセストークンはいらない。
                     mLogger.info("DevicePlugin not support Authorization Profile.");
-                    executeRequest(null);
+                    ClientData client = new ClientData();
+                    client.mNotSupported = true;
+                    return client;
                 } else {
                     sendResponse(mResponse);
                 }
@@ -337,31 +349,31 @@ public abstract class LocalOAuthRequest extends DConnectRequest {
                 executeRequest(accessToken);
             } else {
                 // 認証を行うリクエスト
-                final OAuthRequest request = new OAuthRequest() {
+                final CountDownLatch latch = new CountDownLatch(1);
+                final AtomicBoolean authorized = new AtomicBoolean();
+                final AtomicReference<String> authorizedToken = new AtomicReference<>();
+                authorize(origin, serviceId, new OnAuthorizationListener() {
                     @Override
-                    public void onFinishAuth(final String accessToken) {
-                        synchronized (this) {
-                            this.notifyAll();
-                        }
+                    public void onAuthorized(final String accessToken) {
+                        authorizedToken.set(accessToken);
+                        authorized.set(true);
+                        latch.countDown();
                     }
-                };
-                request.setContext(getContext());
-                request.setServiceId(serviceId);
-                request.setOrigin(origin);
-                // OAuthの認証だけは、シングルスレッドで動作させないとおかしな挙動が発生
-                mRequestMgr.addRequestOnSingleThread(request);
-
-                synchronized (request) {
-                    try {
-                        request.wait(mTimeout);
-                    } catch (InterruptedException e) {
-                        mLogger.warning("timeout.");
+
+                    @Override
+                    public void onAuthorizationFailed() {
+                        latch.countDown();
                     }
+                });
+
+                try {
+                    latch.await(mTimeout, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    mLogger.warning("timeout.");
                 }
 
-                accessToken = getAccessToken(origin, serviceId);
-                if (accessToken != null) {
-                    executeRequest(accessToken);
+                if (authorized.get()) {
+                    executeRequest(authorizedToken.get());
                 }
             }
         } else {
@@ -369,6 +381,55 @@ public abstract class LocalOAuthRequest extends DConnectRequest {
         }
     }
 
+    /**
+     * デバイスプラグインへのリクエストにアクセストークンが必要か確認する.
+     * @return アクセストークンが必要な場合はtrue、それ以外はfalse
+     */
+    protected boolean requiresAccessToken() {
+        String profile = mRequest.getStringExtra(DConnectMessage.EXTRA_PROFILE);
+        return mUseAccessToken && !isIgnoredPluginProfile(profile);
+    }
+
+    /**
+     * 保存されているアクセストークンを取得する.
+     * @return アクセストークン. 保存されていない場合はnull
+     */
+    protected String findAccessToken() {
+        String serviceId = mRequest.getStringExtra(DConnectMessage.EXTRA_SERVICE_ID);
+        return getAccessToken(getRequestOrigin(mRequest), serviceId);
+    }
+
+    /**
+     * Local OAuthの認可を開始する.
+     * <p>
+     * 認可に失敗した場合には、エラーレスポンスを返却した上で{@link OnAuthorizationListener#onAuthorizationFailed()}を通知する。
+     * 認可の処理で例外が発生した場合にも、必ずどちらかの通知が行われる。
+     * </p>
+     * @param listener 認可の完了を通知するリスナー
+     */
+    protected void authorize(final OnAuthorizationListener listener) {
+        String serviceId = mRequest.getStringExtra(DConnectMessage.EXTRA_SERVICE_ID);
+        authorize(getRequestOrigin(mRequest), serviceId, listener);
+    }
+
+    /**
+     * Local OAuthの認可を開始する.
+     * <p>
+     * 認可の処理は、おかしな挙動を防ぐためにシングルスレッドで実行する。
+     * </p>
+     * @param origin リクエスト元のオリジン
+     * @param serviceId サービスID
+     * @param listener 認可の完了を通知するリスナー
+     */
+    private void authorize(final String origin, final String serviceId, final OnAuthorizationListener listener) {
+        final OAuthRequest request = new OAuthRequest(listener);
+        request.setContext(getContext());
+        request.setServiceId(serviceId);
+        request.setOrigin(origin);
+        // OAuthの認証だけは、シングルスレッドで動作させないとおかしな挙動が発生
+        mRequestMgr.addRequestOnSingleThread(request);
+    }
+
     private String getRequestOrigin(final Intent request) {
         String origin = request.getStringExtra(IntentDConnectMessage.EXTRA_ORIGIN);
         if (!mRequireOrigin && origin == null) {
@@ -434,6 +495,25 @@ public abstract class LocalOAuthRequest extends DConnectRequest {
         sendResponse(response);
     }
 
+    /**
+     * Local OAuthの認可の完了を通知するリスナー.
+     */
+    protected interface OnAuthorizationListener {
+        /**
+         * 認可が完了したことを通知する.
+         * @param accessToken アクセストークン. デバイスプラグインがAuthorizationプロファイルに対応していない場合はnull
+         */
+        void onAuthorized(String accessToken);
+
+        /**
+         * 認可に失敗したことを通知する.
+         * <p>
+         * リクエスト元へのエラーレスポンスは返却済み。
+         * </p>
+         */
+        void onAuthorizationFailed();
+    }
+
     /**
      * クライアントデータ.
      */
@@ -442,18 +522,29 @@ public abstract class LocalOAuthRequest extends DConnectRequest {
         String mClientId;
         /** クライアントシークレット. */
         String mClientSecret;
+        /** Authorizationプロファイルに対応していない場合はtrue. */
+        boolean mNotSupported;
     }
 
     /**
      * Local OAuthの処理を行うリクエスト.
      */
-    private abstract class OAuthRequest extends DConnectRequest {
+    private class OAuthRequest extends DConnectRequest {
         /** ロックオブジェクト. */
         protected final Object mLockObj = new Object();
         /** 送信元のオリジン. */
         protected String mOrigin;
         /** 送信先のサービスID. */
         protected String mServiceId;
+        /** 認可の完了を通知するリスナー. */
+        private final OnAuthorizationListener mAuthorizationListener;
+        /**
+         * コンストラクタ.
+         * @param listener 認可の完了を通知するリスナー
+         */
+        OAuthRequest(final OnAuthorizationListener listener) {
+            mAuthorizationListener = listener;
+        }
         /**
          * オリジンを設定する.
          * @param origin オリジン
@@ -483,52 +574,52 @@ public abstract class LocalOAuthRequest extends DConnectRequest {
 
         @Override
         public void run() {
-            String clientId = null;
-
-            OAuthData oauth = mLocalOAuth.getOAuthData(mOrigin, mServiceId);
-            if (oauth == null) {
-                ClientData client = executeCreateClient(mServiceId);
-                if (client == null) {
-                    // MEMO executeCreateClientの中でレスポンスは返しているので
-                    // ここでは何も処理を行わない。
-                    onFinishAuth(null);
-                    return;
-                } else {
-                    clientId = client.mClientId;
+            boolean notified = false;
+            try {
+                ClientData client = null;
+                OAuthData oauth = mLocalOAuth.getOAuthData(mOrigin, mServiceId);
+                if (oauth == null) {
+                    client = executeCreateClient(mServiceId);
+                    if (client == null) {
+                        // MEMO executeCreateClientの中でレスポンスは返しているので
+                        // ここでは何も処理を行わない。
+                        return;
+                    } else if (client.mNotSupported) {
+                        notified = true;
+                        mAuthorizationListener.onAuthorized(null);
+                        return;
+                    }
                     // クライアントデータを保存
-                    mLocalOAuth.setOAuthData(mOrigin, mServiceId, clientId);
+                    mLocalOAuth.setOAuthData(mOrigin, mServiceId, client.mClientId);
                     oauth = mLocalOAuth.getOAuthData(mOrigin, mServiceId);
                 }
-            } else {
-                clientId = oauth.getClientId();
-            }
+                String clientId = client != null ? client.mClientId : oauth.getClientId();
 
-            String accessToken = mLocalOAuth.getAccessToken(oauth.getId());
-            if (accessToken == null) {
-                // 再度アクセストークンを取得してから再度実行
-                accessToken = executeAccessToken(mServiceId, clientId);
+                String accessToken = mLocalOAuth.getAccessToken(oauth.getId());
                 if (accessToken == null) {
-                    // MEMO executeAccessTokenの中でレスポンスは返しているので
-                    // ここでは何も処理を行わない。
-                    onFinishAuth(null);
-                    return;
-                } else {
+                    // 再度アクセストークンを取得してから再度実行
+                    accessToken = executeAccessToken(mServiceId, clientId);
+                    if (accessToken == null) {
+                        // MEMO executeAccessTokenの中でレスポンスは返しているので
+                        // ここでは何も処理を行わない。
+                        return;
+                    }
                     // アクセストークンを保存
                     mLocalOAuth.setAccessToken(oauth.getId(), accessToken);
                 }
-            }
 
-            onFinishAuth(accessToken);
+                notified = true;
+                mAuthorizationListener.onAuthorized(accessToken);
+            } catch (RuntimeException e) {
+                mLogger.warning("Failed to authorize: " + e.getMessage());
+                if (!notified) {
+                    LocalOAuthRequest.this.sendRuntimeException(e.getMessage());
+                }
+            } finally {
+                if (!notified) {
+                    mAuthorizationListener.onAuthorizationFailed();
+                }
+            }
         }
-        /**
-         * 認証完了通知用メソッド.
-         * <p>
-         * 認証が完了した場合に、このメソッドが呼び出される。
-         * 認証に成功した場合には、アクセストークンが渡される。
-         * 認証に失敗した場合にはnullが渡される。
-         * </p>
-         * @param accessToken アクセストークン
-         */
-        public abstract void onFinishAuth(String accessToken);
-    };
+    }
 }
@@ -13,7 +13,6 @@ import org.deviceconnect.android.manager.event.EventProtocol;
 import org.deviceconnect.message.DConnectMessage;
 import org.deviceconnect.message.intent.message.IntentDConnectMessage;
 
-import java.util.UUID;
 import java.util.logging.Logger;
 
 /**
@@ -49,6 +48,11 @@ public class RegisterNetworkServiceDiscovery extends DConnectRequest {
         }
     }
 
+    @Override
+    public String getDestinationPluginId() {
+        return mDevicePlugin != null ? mDevicePlugin.getPluginId() : null;
+    }
+
     @Override
     public boolean hasRequestCode(final int requestCode) {
         return mRequestCode == requestCode;
@@ -57,7 +61,7 @@ public class RegisterNetworkServiceDiscovery extends DConnectRequest {
     @Override
     public void run() {
         // リクエストコードを作成する
-        mRequestCode = UUID.randomUUID().hashCode();
+        mRequestCode = createRequestCode();
 
         // リクエストを作成
         Intent request = EventProtocol.createRegistrationRequestForServiceChange(mContext, mDevicePlugin);
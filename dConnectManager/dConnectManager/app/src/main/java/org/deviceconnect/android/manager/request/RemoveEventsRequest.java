@@ -14,7 +14,6 @@ import org.deviceconnect.android.profile.DConnectProfile;
 import org.deviceconnect.message.intent.message.IntentDConnectMessage;
 
 import java.util.List;
-import java.util.UUID;
 import java.util.logging.Logger;
 
 /**
@@ -26,7 +25,7 @@ public class RemoveEventsRequest extends DConnectRequest {
     private int mResponseCount;
 
     /** リクエストコードを格納する配列. */
-    private SparseArray<DevicePlugin> mRequestCodeArray = new SparseArray<DevicePlugin>();
+    private final SparseArray<DevicePlugin> mRequestCodeArray = new SparseArray<DevicePlugin>();
 
     /** ロガー. */
     private final Logger mLogger = Logger.getLogger("dconnect.manager");
@@ -51,9 +50,16 @@ public class RemoveEventsRequest extends DConnectRequest {
         }
     }
 
+    @Override
+    public DConnectRequestManager.Lane getLane() {
+        return DConnectRequestManager.Lane.CONTROL;
+    }
+
     @Override
     public boolean hasRequestCode(final int requestCode) {
-        return mRequestCodeArray.get(requestCode) != null;
+        synchronized (mRequestCodeArray) {
+            return mRequestCodeArray.get(requestCode) != null;
+        }
     }
 
     @Override
@@ -78,8 +84,10 @@ public class RemoveEventsRequest extends DConnectRequest {
             }
 
             // リクエストコード作成
-            int requestCode = UUID.randomUUID().hashCode();
-            mRequestCodeArray.put(requestCode, plugin);
+            int requestCode = createRequestCode();
+            synchronized (mRequestCodeArray) {
+                mRequestCodeArray.put(requestCode, plugin);
+            }
 
             request.setComponent(plugin.getComponentName());
             request.putExtra(IntentDConnectMessage.EXTRA_REQUEST_CODE, requestCode);
@@ -0,0 +1,359 @@
+/*
+ RequestLaneExecutor.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.request;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 1つのレーンのリクエストを実行するクラス.
+ * <p>
+ * キューのサイズに上限を持ち、上限を超えたリクエストは受け付けない。
+ * また、デバイスプラグインごとに同時に実行するリクエストの数を制限する。
+ * 制限を超えたリクエストは、デバイスプラグインごとの待ち行列に格納され、
+ * 実行中のリクエストが終了した時点でスレッドプールに渡される。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+class RequestLaneExecutor {
+    /** レーン名. */
+    private final String mName;
+
+    /** リクエストを実行するスレッドプール. */
+    private final ThreadPoolExecutor mExecutor;
+
+    /** キューに格納できるリクエストの最大数. */
+    private final int mMaxQueueSize;
+
+    /** デバイスプラグインごとの同時実行数の上限. 0以下の場合は制限しない. */
+    private final int mMaxConcurrentPerPlugin;
+
+    /** デバイスプラグインごとの実行状態. */
+    private final Map<String, PluginSlot> mPluginSlots = new HashMap<>();
+
+    /** デバイスプラグインごとの待ち行列に格納されているリクエスト数. */
+    private int mPendingCount;
+
+    /** 実行が完了したリクエスト数. */
+    private final AtomicLong mCompletedCount = new AtomicLong();
+
+    /** 完了待ちの非同期リクエスト数. */
+    private final AtomicInteger mAsyncCount = new AtomicInteger();
+
+    /** 過負荷で拒否したリクエスト数. */
+    private final AtomicLong mRejectedCount = new AtomicLong();
+
+    /** キューでの待ち時間の合計(ms). */
+    private final AtomicLong mTotalWaitTime = new AtomicLong();
+
+    /** キューでの待ち時間の最大値(ms). */
+    private final AtomicLong mMaxWaitTime = new AtomicLong();
+
+    /**
+     * コンストラクタ.
+     * @param name レーン名
+     * @param threadSize スレッド数
+     * @param maxQueueSize キューに格納できるリクエストの最大数
+     * @param maxConcurrentPerPlugin デバイスプラグインごとの同時実行数の上限
+     */
+    RequestLaneExecutor(final String name, final int threadSize, final int maxQueueSize,
+                        final int maxConcurrentPerPlugin) {
+        if (threadSize <= 0) {
+            throw new IllegalArgumentException("threadSize is invalid: " + threadSize);
+        }
+        if (maxQueueSize <= 0) {
+            throw new IllegalArgumentException("maxQueueSize is invalid: " + maxQueueSize);
+        }
+        mName = name;
+        mMaxQueueSize = maxQueueSize;
+        mMaxConcurrentPerPlugin = maxConcurrentPerPlugin;
+        mExecutor = new ThreadPoolExecutor(threadSize, threadSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(maxQueueSize), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * レーン名を取得する.
+     * @return レーン名
+     */
+    String getName() {
+        return mName;
+    }
+
+    /**
+     * リクエストを実行する.
+     * <p>
+     * キューが一杯の場合には、リクエストを受け付けずにfalseを返却する。
+     * デバイスプラグインごとの待ち行列に格納された後に受け付けられなくなった場合には、
+     * onRejectedが呼び出される。
+     * </p>
+     * @param pluginId 送信先のデバイスプラグインID. 送信先が無い場合はnull
+     * @param task 実行するタスク
+     * @param onRejected 待ち行列から取り出した後に受け付けられなかった場合に実行するタスク
+     * @return 受け付けた場合はtrue、過負荷で受け付けられない場合はfalse
+     */
+    boolean execute(final String pluginId, final Runnable task, final Runnable onRejected) {
+        return execute(new Task(pluginId, task, null, onRejected));
+    }
+
+    /**
+     * 非同期に完了するリクエストを実行する.
+     * <p>
+     * {@link AsyncTask#start(Runnable)}から処理が戻っても、完了通知が呼び出されるまでは
+     * デバイスプラグインごとの実行枠を解放しない。
+     * </p>
+     * @param pluginId 送信先のデバイスプラグインID. 送信先が無い場合はnull
+     * @param task 実行するタスク
+     * @param onRejected 待ち行列から取り出した後に受け付けられなかった場合に実行するタスク
+     * @return 受け付けた場合はtrue、過負荷で受け付けられない場合はfalse
+     */
+    boolean executeAsync(final String pluginId, final AsyncTask task, final Runnable onRejected) {
+        return execute(new Task(pluginId, null, task, onRejected));
+    }
+
+    /**
+     * 実行中のリクエストの続きの処理を実行する.
+     * <p>
+     * 既に実行枠を持っているリクエストの処理なので、デバイスプラグインごとの制限は行わない。
+     * </p>
+     * @param task 実行するタスク
+     * @return 受け付けた場合はtrue、過負荷で受け付けられない場合はfalse
+     */
+    boolean resubmit(final Runnable task) {
+        try {
+            mExecutor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            mRejectedCount.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * タスクを実行する.
+     * @param t タスク
+     * @return 受け付けた場合はtrue、過負荷で受け付けられない場合はfalse
+     */
+    private boolean execute(final Task t) {
+        String pluginId = t.mPluginId;
+        if (pluginId == null || mMaxConcurrentPerPlugin <= 0) {
+            return submit(t);
+        }
+
+        synchronized (mPluginSlots) {
+            PluginSlot slot = mPluginSlots.get(pluginId);
+            if (slot == null) {
+                slot = new PluginSlot();
+                mPluginSlots.put(pluginId, slot);
+            }
+            if (slot.mRunning < mMaxConcurrentPerPlugin) {
+                slot.mRunning++;
+            } else if (getQueueSize() < mMaxQueueSize) {
+                slot.mPending.offer(t);
+                mPendingCount++;
+                return true;
+            } else {
+                mRejectedCount.incrementAndGet();
+                return false;
+            }
+        }
+
+        if (!submit(t)) {
+            releaseSlot(pluginId);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * スレッドプールにタスクを渡す.
+     * @param task タスク
+     * @return 受け付けた場合はtrue、それ以外はfalse
+     */
+    private boolean submit(final Task task) {
+        try {
+            mExecutor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            mRejectedCount.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * デバイスプラグインの実行枠を解放し、待ち行列にリクエストがあれば実行する.
+     * @param pluginId デバイスプラグインID
+     */
+    private void releaseSlot(final String pluginId) {
+        while (true) {
+            Task next;
+            synchronized (mPluginSlots) {
+                PluginSlot slot = mPluginSlots.get(pluginId);
+                if (slot == null) {
+                    return;
+                }
+                next = slot.mPending.poll();
+                if (next == null) {
+                    slot.mRunning--;
+                    if (slot.mRunning <= 0) {
+                        mPluginSlots.remove(pluginId);
+                    }
+                    return;
+                }
+                mPendingCount--;
+            }
+
+            if (submit(next)) {
+                return;
+            }
+            // 実行できなかったリクエストにはエラーを通知して、次のリクエストを処理する
+            next.mOnRejected.run();
+        }
+    }
+
+    /**
+     * 実行待ちのリクエスト数を取得する.
+     * @return 実行待ちのリクエスト数
+     */
+    private int getQueueSize() {
+        return mExecutor.getQueue().size() + mPendingCount;
+    }
+
+    /**
+     * リクエストの実行を終了する.
+     */
+    void shutdown() {
+        mExecutor.shutdown();
+    }
+
+    /**
+     * レーンの統計情報を取得する.
+     * @return 統計情報
+     */
+    RequestStatistics getStatistics() {
+        int queueSize;
+        synchronized (mPluginSlots) {
+            queueSize = getQueueSize();
+        }
+        long completed = mCompletedCount.get();
+        long averageWaitTime = completed > 0 ? mTotalWaitTime.get() / completed : 0;
+        int activeCount = mExecutor.getActiveCount() + mAsyncCount.get();
+        return new RequestStatistics(mName, activeCount, queueSize, mMaxQueueSize,
+                completed, mRejectedCount.get(), averageWaitTime, mMaxWaitTime.get());
+    }
+
+    /**
+     * 待ち時間を記録する.
+     * @param waitTime 待ち時間(ms)
+     */
+    private void recordWaitTime(final long waitTime) {
+        mTotalWaitTime.addAndGet(waitTime);
+        long max;
+        do {
+            max = mMaxWaitTime.get();
+            if (waitTime <= max) {
+                break;
+            }
+        } while (!mMaxWaitTime.compareAndSet(max, waitTime));
+    }
+
+    /**
+     * デバイスプラグインごとの実行状態.
+     */
+    private static class PluginSlot {
+        /** 実行中のリクエスト数. */
+        int mRunning;
+        /** 実行待ちのリクエスト. */
+        final Queue<Task> mPending = new ArrayDeque<>();
+    }
+
+    /**
+     * 非同期に完了するタスク.
+     */
+    interface AsyncTask {
+        /**
+         * タスクを開始する.
+         * @param onComplete タスクが完了した時に呼び出すRunnable
+         */
+        void start(Runnable onComplete);
+    }
+
+    /**
+     * 待ち時間を計測するためのタスク.
+     */
+    private class Task implements Runnable {
+        /** 送信先のデバイスプラグインID. */
+        final String mPluginId;
+        /** 実行するタスク. */
+        final Runnable mTask;
+        /** 実行する非同期タスク. */
+        final AsyncTask mAsyncTask;
+        /** 受け付けられなかった場合に実行するタスク. */
+        final Runnable mOnRejected;
+        /** 受付時刻. */
+        final long mQueuedTime = System.currentTimeMillis();
+        /** 完了フラグ. */
+        final AtomicBoolean mCompleted = new AtomicBoolean();
+
+        /**
+         * コンストラクタ.
+         * @param pluginId 送信先のデバイスプラグインID
+         * @param task 実行するタスク
+         * @param asyncTask 実行する非同期タスク
+         * @param onRejected 受け付けられなかった場合に実行するタスク
+         */
+        Task(final String pluginId, final Runnable task, final AsyncTask asyncTask,
+             final Runnable onRejected) {
+            mPluginId = pluginId;
+            mTask = task;
+            mAsyncTask = asyncTask;
+            mOnRejected = onRejected;
+        }
+
+        @Override
+        public void run() {
+            recordWaitTime(System.currentTimeMillis() - mQueuedTime);
+            if (mAsyncTask == null) {
+                try {
+                    mTask.run();
+                } finally {
+                    complete();
+                }
+                return;
+            }
+
+            mAsyncCount.incrementAndGet();
+            mAsyncTask.start(new Runnable() {
+                @Override
+                public void run() {
+                    if (mCompleted.compareAndSet(false, true)) {
+                        mAsyncCount.decrementAndGet();
+                        complete();
+                    }
+                }
+            });
+        }
+
+        /**
+         * タスクの完了を記録し、実行枠を解放する.
+         */
+        private void complete() {
+            mCompletedCount.incrementAndGet();
+            if (mPluginId != null && mMaxConcurrentPerPlugin > 0) {
+                releaseSlot(mPluginId);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ RequestStatistics.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.request;
+
+/**
+ * リクエスト実行レーンの統計情報.
+ * @author NTT DOCOMO, INC.
+ */
+public class RequestStatistics {
+    /** レーン名. */
+    private final String mName;
+    /** 実行中のリクエスト数. */
+    private final int mActiveCount;
+    /** 実行待ちのリクエスト数. */
+    private final int mQueueSize;
+    /** 実行待ちにできるリクエストの最大数. */
+    private final int mMaxQueueSize;
+    /** 実行が完了したリクエスト数. */
+    private final long mCompletedCount;
+    /** 過負荷で拒否したリクエスト数. */
+    private final long mRejectedCount;
+    /** 平均待ち時間(ms). */
+    private final long mAverageWaitTime;
+    /** 最大待ち時間(ms). */
+    private final long mMaxWaitTime;
+
+    /**
+     * コンストラクタ.
+     * @param name レーン名
+     * @param activeCount 実行中のリクエスト数
+     * @param queueSize 実行待ちのリクエスト数
+     * @param maxQueueSize 実行待ちにできるリクエストの最大数
+     * @param completedCount 実行が完了したリクエスト数
+     * @param rejectedCount 過負荷で拒否したリクエスト数
+     * @param averageWaitTime 平均待ち時間(ms)
+     * @param maxWaitTime 最大待ち時間(ms)
+     */
+    RequestStatistics(final String name, final int activeCount, final int queueSize,
+                      final int maxQueueSize, final long completedCount, final long rejectedCount,
+                      final long averageWaitTime, final long maxWaitTime) {
+        mName = name;
+        mActiveCount = activeCount;
+        mQueueSize = queueSize;
+        mMaxQueueSize = maxQueueSize;
+        mCompletedCount = completedCount;
+        mRejectedCount = rejectedCount;
+        mAverageWaitTime = averageWaitTime;
+        mMaxWaitTime = maxWaitTime;
+    }
+
+    /**
+     * レーン名を取得する.
+     * @return レーン名
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * 実行中のリクエスト数を取得する.
+     * @return 実行中のリクエスト数
+     */
+    public int getActiveCount() {
+        return mActiveCount;
+    }
+
+    /**
+     * 実行待ちのリクエスト数を取得する.
+     * @return 実行待ちのリクエスト数
+     */
+    public int getQueueSize() {
+        return mQueueSize;
+    }
+
+    /**
+     * 実行待ちにできるリクエストの最大数を取得する.
+     * @return 実行待ちにできるリクエストの最大数
+     */
+    public int getMaxQueueSize() {
+        return mMaxQueueSize;
+    }
+
+    /**
+     * 実行が完了したリクエスト数を取得する.
+     * @return 実行が完了したリクエスト数
+     */
+    public long getCompletedCount() {
+        return mCompletedCount;
+    }
+
+    /**
+     * 過負荷で拒否したリクエスト数を取得する.
+     * @return 過負荷で拒否したリクエスト数
+     */
+    public long getRejectedCount() {
+        return mRejectedCount;
+    }
+
+    /**
+     * 平均待ち時間を取得する.
+     * @return 平均待ち時間(ms)
+     */
+    public long getAverageWaitTime() {
+        return mAverageWaitTime;
+    }
+
+    /**
+     * 最大待ち時間を取得する.
+     * @return 最大待ち時間(ms)
+     */
+    public long getMaxWaitTime() {
+        return mMaxWaitTime;
+    }
+}
@@ -11,15 +11,20 @@ import android.os.Bundle;
 import android.os.Parcelable;
 import android.util.SparseArray;
 
+import org.deviceconnect.android.manager.DConnectMessageService;
+import org.deviceconnect.android.manager.DConnectService;
 import org.deviceconnect.android.manager.DevicePlugin;
+import org.deviceconnect.android.manager.ServiceRegistry;
+import org.deviceconnect.android.manager.event.ServiceDiscoveryChannel;
 import org.deviceconnect.android.profile.ServiceDiscoveryProfile;
 import org.deviceconnect.message.DConnectMessage;
 import org.deviceconnect.message.intent.message.IntentDConnectMessage;
 import org.deviceconnect.profile.ServiceDiscoveryProfileConstants;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.UUID;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
@@ -32,6 +37,19 @@ import java.util.logging.Logger;
  * になり、他方Network Service Discovery用リクエストでは登録されているデバイスプラグイン
  * の数だけレスポンスを受け取ったかどうかになっている.
  * </p>
+ * <p>
+ * {@link ServiceRegistry}が設定されている場合には、キャッシュされているサービスの一覧を使用して、
+ * 一覧を保持していないデバイスプラグインにだけリクエストを送信する。
+ * 有効期限が切れた一覧はそのままレスポンスに使用し、バックグラウンドで更新する。
+ * タイムアウトやエラーで一覧を取得できなかったデバイスプラグインは空の一覧を短い有効期限でキャッシュし、
+ * 以降のサービス検索ではレスポンスを待たずにバックグラウンドで再検索する。
+ * リクエストに{@value #PARAM_REFRESH}=trueが指定された場合には、全てのデバイスプラグインに送信する。
+ * </p>
+ * <p>
+ * リクエストに{@value #PARAM_PROGRESSIVE}=trueが指定され、リクエスト元のWebSocketが接続されている場合には、
+ * デバイスプラグインごとのサービスの一覧と検索の完了を、{@link ServiceDiscoveryChannel}でWebSocketに送信する。
+ * HTTPのレスポンスには、これまで通り全てのサービスの一覧を返却する。
+ * </p>
  * @author NTT DOCOMO, INC.
  */
 public class ServiceDiscoveryRequest extends DConnectRequest {
@@ -41,11 +59,17 @@ public class ServiceDiscoveryRequest extends DConnectRequest {
     /** プラグイン側のService Discoveryのプロファイル名: {@value}. */
     private static final String ATTRIBUTE_GET_NETWORK_SERVICES = "getNetworkServices";
 
+    /** キャッシュを使用せずにサービスを検索することを指定するパラメータ名: {@value}. */
+    public static final String PARAM_REFRESH = "refresh";
+
+    /** サービス検索の途中経過をWebSocketで受け取ることを指定するパラメータ名: {@value}. */
+    public static final String PARAM_PROGRESSIVE = "progressive";
+
     /** レスポンスが返ってきた個数. */
     private int mResponseCount;
 
     /** リクエストコードを格納する配列. */
-    private SparseArray<DevicePlugin> mRequestCodeArray = new SparseArray<>();
+    private final SparseArray<DevicePlugin> mRequestCodeArray = new SparseArray<>();
 
     /** 発見したサービスを一時的に格納しておくリスト. */
     private final List<Bundle> mServices = new ArrayList<>();
@@ -55,6 +79,26 @@ public class ServiceDiscoveryRequest extends DConnectRequest {
 
     private CountDownLatch mCountDownLatch;
 
+    /** サービスの一覧のキャッシュ. */
+    private ServiceRegistry mServiceRegistry;
+
+    /** バックグラウンドで一覧を更新するリクエストの場合は送信先のデバイスプラグイン. */
+    private List<DevicePlugin> mRefreshTargets;
+
+    /** 応答があったデバイスプラグインのID. */
+    private final Set<String> mRespondedPluginIds = new HashSet<>();
+
+    /** サービス検索の途中経過を送信するチャンネル. */
+    private ServiceDiscoveryChannel mChannel;
+
+    /**
+     * サービスの一覧のキャッシュを設定する.
+     * @param registry サービスの一覧のキャッシュ
+     */
+    public void setServiceRegistry(final ServiceRegistry registry) {
+        mServiceRegistry = registry;
+    }
+
     @Override
     public void setResponse(final Intent response) {
         // リクエストコードを取得
@@ -65,6 +109,13 @@ public class ServiceDiscoveryRequest extends DConnectRequest {
             return;
         }
 
+        synchronized (mRequestCodeArray) {
+            DevicePlugin plugin = mRequestCodeArray.get(requestCode);
+            if (plugin != null) {
+                mRespondedPluginIds.add(plugin.getPluginId());
+            }
+        }
+
         // エラーが返ってきた場合には、サービスには登録しない。
         int result = response.getIntExtra(IntentDConnectMessage.EXTRA_RESULT, -1);
         if (result == IntentDConnectMessage.RESULT_OK) {
@@ -72,14 +123,24 @@ public class ServiceDiscoveryRequest extends DConnectRequest {
             Parcelable[] services = response.getParcelableArrayExtra(
                     ServiceDiscoveryProfileConstants.PARAM_SERVICES);
             if (services != null) {
-                DevicePlugin plugin = mRequestCodeArray.get(requestCode);
-                for (Parcelable p : services) {
-                    Bundle b = (Bundle) p;
-                    String id = b.getString(ServiceDiscoveryProfile.PARAM_ID);
-                    b.putString(ServiceDiscoveryProfile.PARAM_ID, mPluginMgr.appendServiceId(plugin, id));
-                    mServices.add(b);
+                synchronized (mRequestCodeArray) {
+                    DevicePlugin plugin = mRequestCodeArray.get(requestCode);
+                    List<Bundle> pluginServices = new ArrayList<>(services.length);
+                    for (Parcelable p : services) {
+                        Bundle b = (Bundle) p;
+                        String id = b.getString(ServiceDiscoveryProfile.PARAM_ID);
+                        b.putString(ServiceDiscoveryProfile.PARAM_ID, mPluginMgr.appendServiceId(plugin, id));
+                        pluginServices.add(b);
+                    }
+                    mServices.addAll(pluginServices);
+                    mRequestCodeArray.remove(requestCode);
+                    if (mServiceRegistry != null) {
+                        mServiceRegistry.putServices(plugin.getPluginId(), pluginServices);
+                    }
+                    if (mChannel != null) {
+                        mChannel.sendServices(plugin.getPluginId(), pluginServices);
+                    }
                 }
-                mRequestCodeArray.remove(requestCode);
             }
         }
 
@@ -88,9 +149,16 @@ public class ServiceDiscoveryRequest extends DConnectRequest {
         mCountDownLatch.countDown();
     }
 
+    @Override
+    public DConnectRequestManager.Lane getLane() {
+        return DConnectRequestManager.Lane.CONTROL;
+    }
+
     @Override
     public boolean hasRequestCode(final int requestCode) {
-        return mRequestCodeArray.get(requestCode) != null;
+        synchronized (mRequestCodeArray) {
+            return mRequestCodeArray.get(requestCode) != null;
+        }
     }
 
     @Override
@@ -103,8 +171,86 @@ public class ServiceDiscoveryRequest extends DConnectRequest {
             throw new RuntimeException("mDevicePluginManager is null.");
         }
 
-        List<DevicePlugin> plugins = mPluginMgr.getDevicePlugins();
+        try {
+            if (mRefreshTargets != null) {
+                // バックグラウンドでの更新では、レスポンスは返却しない
+                discoverServices(mRefreshTargets);
+                return;
+            }
+
+            if (isProgressRequested() && mContext instanceof DConnectService) {
+                synchronized (mRequestCodeArray) {
+                    mChannel = ((DConnectService) mContext).getEventBroker().openServiceDiscoveryChannel(mRequest);
+                }
+            }
+
+            List<DevicePlugin> plugins = mPluginMgr.getDevicePlugins();
+            List<DevicePlugin> targets = new ArrayList<>();
+            List<DevicePlugin> expired = new ArrayList<>();
+            if (mServiceRegistry == null || isRefreshRequested()) {
+                targets.addAll(plugins);
+            } else {
+                for (DevicePlugin plugin : plugins) {
+                    List<Bundle> cached = mServiceRegistry.getServices(plugin.getPluginId());
+                    if (cached == null) {
+                        targets.add(plugin);
+                    } else {
+                        synchronized (mRequestCodeArray) {
+                            mServices.addAll(cached);
+                            if (mChannel != null) {
+                                mChannel.sendServices(plugin.getPluginId(), cached);
+                            }
+                        }
+                        if (mServiceRegistry.isExpired(plugin.getPluginId())) {
+                            expired.add(plugin);
+                        }
+                    }
+                }
+            }
+
+            if (!targets.isEmpty()) {
+                discoverServices(targets);
+            }
+
+            // パラメータを設定する
+            mResponse = new Intent(IntentDConnectMessage.ACTION_RESPONSE);
+            mResponse.putExtra(IntentDConnectMessage.EXTRA_RESULT,
+                    IntentDConnectMessage.RESULT_OK);
+            synchronized (mRequestCodeArray) {
+                mResponse.putExtra(ServiceDiscoveryProfile.PARAM_SERVICES,
+                        mServices.toArray(new Bundle[mServices.size()]));
+                if (mChannel != null) {
+                    mChannel.sendComplete(mServices.size(), getNoResponsePluginIds(targets));
+                    mChannel = null;
+                }
+            }
+
+            // レスポンスを返却する
+            sendResponse(mResponse);
+
+            if (!expired.isEmpty()) {
+                refreshInBackground(expired);
+            }
+        } finally {
+            finishRefresh();
+        }
+    }
+
+    @Override
+    public void sendResponse(final Intent response) {
+        if (mRefreshTargets != null) {
+            // バックグラウンドでの更新の場合は、リクエストが拒否された時にも更新中の状態を解除する
+            finishRefresh();
+            return;
+        }
+        super.sendResponse(response);
+    }
 
+    /**
+     * 指定されたデバイスプラグインにサービス検索のリクエストを送信して、レスポンスを待つ.
+     * @param plugins 送信先のデバイスプラグイン
+     */
+    private void discoverServices(final List<DevicePlugin> plugins) {
         // 送信用のIntentを作成
         Intent request = createRequestMessage(mRequest, null);
 
@@ -118,8 +264,10 @@ public class ServiceDiscoveryRequest extends DConnectRequest {
         for (int i = 0; i < plugins.size(); i++) {
             DevicePlugin plugin = plugins.get(i);
 
-            int requestCode = UUID.randomUUID().hashCode();
-            mRequestCodeArray.put(requestCode, plugin);
+            int requestCode = createRequestCode();
+            synchronized (mRequestCodeArray) {
+                mRequestCodeArray.put(requestCode, plugin);
+            }
 
             request.setComponent(plugin.getComponentName());
             request.putExtra(IntentDConnectMessage.EXTRA_REQUEST_CODE, requestCode);
@@ -132,32 +280,112 @@ public class ServiceDiscoveryRequest extends DConnectRequest {
             mLogger.warning("Exception occurred in wait.");
         }
 
+        if (mServiceRegistry != null) {
+            cacheFailures();
+        }
+
         if (mResponseCount < plugins.size()) {
             restartDevicePlugins();
         }
+    }
+
+    /**
+     * サービスの一覧を取得できなかったデバイスプラグインをキャッシュに記録する.
+     * <p>
+     * 一覧を取得できたデバイスプラグインは、mRequestCodeArrayから削除されている。
+     * </p>
+     */
+    private void cacheFailures() {
+        synchronized (mRequestCodeArray) {
+            for (int i = 0; i < mRequestCodeArray.size(); i++) {
+                mServiceRegistry.putFailure(mRequestCodeArray.valueAt(i).getPluginId());
+            }
+        }
+    }
+
+    /**
+     * 応答がなかったデバイスプラグインのIDを取得する.
+     * <p>
+     * mRequestCodeArrayのロックを取得した状態で呼び出すこと。
+     * </p>
+     * @param plugins 送信先のデバイスプラグイン
+     * @return 応答がなかったデバイスプラグインのID
+     */
+    private List<String> getNoResponsePluginIds(final List<DevicePlugin> plugins) {
+        List<String> pluginIds = new ArrayList<>();
+        for (DevicePlugin plugin : plugins) {
+            if (!mRespondedPluginIds.contains(plugin.getPluginId())) {
+                pluginIds.add(plugin.getPluginId());
+            }
+        }
+        return pluginIds;
+    }
+
+    /**
+     * サービス検索の途中経過をWebSocketで受け取ることが指定されているか確認する.
+     * @return 指定されている場合はtrue、それ以外はfalse
+     */
+    private boolean isProgressRequested() {
+        return "true".equalsIgnoreCase(mRequest.getStringExtra(PARAM_PROGRESSIVE));
+    }
+
+    /**
+     * キャッシュを使用せずにサービスを検索することが指定されているか確認する.
+     * @return 指定されている場合はtrue、それ以外はfalse
+     */
+    private boolean isRefreshRequested() {
+        return "true".equalsIgnoreCase(mRequest.getStringExtra(PARAM_REFRESH));
+    }
+
+    /**
+     * 有効期限が切れたサービスの一覧をバックグラウンドで更新する.
+     * @param plugins 一覧を更新するデバイスプラグイン
+     */
+    private void refreshInBackground(final List<DevicePlugin> plugins) {
+        List<DevicePlugin> targets = new ArrayList<>();
+        for (DevicePlugin plugin : plugins) {
+            if (mServiceRegistry.startRefresh(plugin.getPluginId())) {
+                targets.add(plugin);
+            }
+        }
+        if (targets.isEmpty()) {
+            return;
+        }
 
-        // パラメータを設定する
-        mResponse = new Intent(IntentDConnectMessage.ACTION_RESPONSE);
-        mResponse.putExtra(IntentDConnectMessage.EXTRA_RESULT,
-                IntentDConnectMessage.RESULT_OK);
-        mResponse.putExtra(ServiceDiscoveryProfile.PARAM_SERVICES,
-                mServices.toArray(new Bundle[mServices.size()]));
+        ServiceDiscoveryRequest req = new ServiceDiscoveryRequest();
+        req.setContext(mContext);
+        req.setRequest(new Intent(mRequest));
+        req.setTimeout(mTimeout);
+        req.setDevicePluginManager(mPluginMgr);
+        req.setServiceRegistry(mServiceRegistry);
+        req.mRefreshTargets = targets;
+        ((DConnectMessageService) mContext).addRequest(req);
+    }
 
-        // レスポンスを返却する
-        sendResponse(mResponse);
+    /**
+     * バックグラウンドでの更新の場合は、送信先のデバイスプラグインの更新中の状態を解除する.
+     */
+    private void finishRefresh() {
+        if (mRefreshTargets != null) {
+            for (DevicePlugin plugin : mRefreshTargets) {
+                mServiceRegistry.finishRefresh(plugin.getPluginId());
+            }
+        }
     }
-    
+
     /**
      * Restart all device plugins that response did not come back.
      */
     private void restartDevicePlugins() {
-        for (int i = 0; i < mRequestCodeArray.size(); i++) {
-            DevicePlugin plugin = mRequestCodeArray.valueAt(i);
-            if (plugin.getStartServiceClassName() != null) {
-                Intent service = new Intent();
-                service.setClassName(plugin.getPackageName(), 
-                        plugin.getStartServiceClassName());
-                getContext().startService(service);
+        synchronized (mRequestCodeArray) {
+            for (int i = 0; i < mRequestCodeArray.size(); i++) {
+                DevicePlugin plugin = mRequestCodeArray.valueAt(i);
+                if (plugin.getStartServiceClassName() != null) {
+                    Intent service = new Intent();
+                    service.setClassName(plugin.getPackageName(),
+                            plugin.getStartServiceClassName());
+                    getContext().startService(service);
+                }
             }
         }
     }
@@ -0,0 +1,594 @@
+/*
+ BundleJSONWriter.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.util;
+
+import android.os.Bundle;
+import android.os.Parcelable;
+
+import org.deviceconnect.message.intent.message.IntentDConnectMessage;
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.List;
+
+/**
+ * BundleをJSONのUTF-8バイト列としてストリームに書き出すクラス.
+ * <p>
+ * JSONObjectを作成せずにBundleを1回の走査でJSONに変換する。
+ * 出力されるJSONは、{@link org.deviceconnect.utils.JSONUtils#convertBundleToJSON(org.json.JSONObject, Bundle)}で
+ * 変換したJSONObjectの文字列と同じになる。
+ * </p>
+ * <p>
+ * ファイルのURIを指定した場合には、Bundle(配列の要素は除く)に含まれるキーがuriで
+ * content://から始まる値を、ファイルのURIを使用したURIに変換する。
+ * </p>
+ * <pre>
+ * BundleJSONWriter writer = new BundleJSONWriter(out, "http://localhost:4035/gotapi/files");
+ * writer.write(bundle);
+ * writer.flush();
+ * </pre>
+ * @author NTT DOCOMO, INC.
+ */
+public final class BundleJSONWriter {
+
+    /** 書き込み用バッファのサイズ. */
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    /** 1文字を書き出す時に必要な最大のバイト数. */
+    private static final int MAX_CHAR_BYTES = 6;
+
+    /** 変換対象のキー. */
+    private static final String KEY_URI = "uri";
+
+    /** 変換対象のURIのスキーム. */
+    private static final String CONTENT_SCHEME = "content://";
+
+    /** 16進数の文字. */
+    private static final byte[] HEX = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+    };
+
+    /** Long.MIN_VALUEの文字列. */
+    private static final byte[] LONG_MIN_VALUE = {
+            '-', '9', '2', '2', '3', '3', '7', '2', '0', '3', '6', '8', '5', '4', '7', '7', '5', '8', '0', '8'
+    };
+
+    /** 書き出し先のストリーム. */
+    private final OutputStream mOutputStream;
+
+    /** ファイルのURI. nullの場合はURIを変換しない. */
+    private final String mFilesUri;
+
+    /** 書き込み用バッファ. */
+    private final byte[] mBuffer = new byte[BUFFER_SIZE];
+
+    /** バッファに書き込まれたサイズ. */
+    private int mCount;
+
+    /**
+     * コンストラクタ.
+     * @param out 書き出し先のストリーム
+     * @param filesUri ファイルのURI. nullの場合はURIを変換しない
+     */
+    public BundleJSONWriter(final OutputStream out, final String filesUri) {
+        if (out == null) {
+            throw new IllegalArgumentException("out is null.");
+        }
+        mOutputStream = out;
+        mFilesUri = filesUri;
+    }
+
+    /**
+     * BundleをJSONとして書き出す.
+     * <p>
+     * バッファに残っているデータを書き出すには、{@link #flush()}を呼び出すこと。
+     * </p>
+     * @param bundle 書き出すBundle
+     * @throws JSONException JSONに変換できない値(NaNなど)が含まれている場合
+     * @throws IOException ストリームへの書き出しに失敗した場合
+     */
+    public void write(final Bundle bundle) throws JSONException, IOException {
+        writeBundle(bundle, mFilesUri != null);
+    }
+
+    /**
+     * バッファに残っているデータをストリームに書き出す.
+     * @throws IOException ストリームへの書き出しに失敗した場合
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        mOutputStream.flush();
+    }
+
+    /**
+     * BundleをJSONのオブジェクトとして書き出す.
+     * @param bundle 書き出すBundle
+     * @param convertUri URIを変換する場合はtrue
+     * @throws JSONException JSONに変換できない値が含まれている場合
+     * @throws IOException ストリームへの書き出しに失敗した場合
+     */
+    private void writeBundle(final Bundle bundle, final boolean convertUri) throws JSONException, IOException {
+        writeByte('{');
+        if (bundle != null) {
+            boolean first = true;
+            for (String key : bundle.keySet()) {
+                if (key.equals(IntentDConnectMessage.EXTRA_REQUEST_CODE)) {
+                    // request_codeはRESTfulにはいらないので削除しておく
+                    continue;
+                }
+                Object value = bundle.get(key);
+                if (!isConvertible(value)) {
+                    continue;
+                }
+                if (!first) {
+                    writeByte(',');
+                }
+                first = false;
+                writeString(key);
+                writeByte(':');
+                if (convertUri && value instanceof String && KEY_URI.equals(key)
+                        && ((String) value).startsWith(CONTENT_SCHEME)) {
+                    writeString(createUri((String) value));
+                } else if (value instanceof Bundle) {
+                    writeBundle((Bundle) value, convertUri);
+                } else {
+                    writeValue(value);
+                }
+            }
+        }
+        writeByte('}');
+    }
+
+    /**
+     * JSONに変換できる値か確認する.
+     * @param value 値
+     * @return 変換できる場合はtrue、それ以外はfalse
+     */
+    private static boolean isConvertible(final Object value) {
+        if (value == null) {
+            return false;
+        } else if (isPrimitiveWrapper(value) || value instanceof String || value instanceof Bundle
+                || value instanceof Parcelable[] || value instanceof List<?>
+                || value instanceof int[] || value instanceof long[] || value instanceof short[]
+                || value instanceof byte[] || value instanceof char[] || value instanceof float[]
+                || value instanceof double[] || value instanceof boolean[]) {
+            return true;
+        } else if (value instanceof Object[]) {
+            // プリミティブ型のラッパークラスの配列がObject[]として扱われる場合への対処
+            return value instanceof String[] || isPrimitiveWrapperArray((Object[]) value);
+        }
+        return false;
+    }
+
+    /**
+     * Bundleに格納されている値を書き出す.
+     * @param value 値
+     * @throws JSONException JSONに変換できない値が含まれている場合
+     * @throws IOException ストリームへの書き出しに失敗した場合
+     */
+    private void writeValue(final Object value) throws JSONException, IOException {
+        if (value instanceof Character) {
+            // JSONObject#put(String, int)と同様に文字コードを数値として書き出す
+            writeLong(((Character) value).charValue());
+        } else if (value instanceof Float) {
+            writeDouble(((Float) value).floatValue());
+        } else if (value instanceof Parcelable[]) {
+            Parcelable[] array = (Parcelable[]) value;
+            writeByte('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeBundle(array[i] instanceof Bundle ? (Bundle) array[i] : null, false);
+            }
+            writeByte(']');
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            writeByte('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeElement(array[i]);
+            }
+            writeByte(']');
+        } else if (value instanceof List<?>) {
+            List<?> list = (List<?>) value;
+            writeByte('[');
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                Object v = list.get(i);
+                if (v instanceof Parcelable) {
+                    writeBundle(v instanceof Bundle ? (Bundle) v : null, false);
+                } else {
+                    writeElement(v);
+                }
+            }
+            writeByte(']');
+        } else if (value instanceof int[]) {
+            int[] array = (int[]) value;
+            writeByte('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeLong(array[i]);
+            }
+            writeByte(']');
+        } else if (value instanceof long[]) {
+            long[] array = (long[]) value;
+            writeByte('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeLong(array[i]);
+            }
+            writeByte(']');
+        } else if (value instanceof short[]) {
+            short[] array = (short[]) value;
+            writeByte('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeLong(array[i]);
+            }
+            writeByte(']');
+        } else if (value instanceof byte[]) {
+            byte[] array = (byte[]) value;
+            writeByte('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeLong(array[i]);
+            }
+            writeByte(']');
+        } else if (value instanceof char[]) {
+            char[] array = (char[]) value;
+            writeByte('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeLong(array[i]);
+            }
+            writeByte(']');
+        } else if (value instanceof float[]) {
+            float[] array = (float[]) value;
+            writeByte('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeDouble(array[i]);
+            }
+            writeByte(']');
+        } else if (value instanceof double[]) {
+            double[] array = (double[]) value;
+            writeByte('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeDouble(array[i]);
+            }
+            writeByte(']');
+        } else if (value instanceof boolean[]) {
+            boolean[] array = (boolean[]) value;
+            writeByte('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeBoolean(array[i]);
+            }
+            writeByte(']');
+        } else {
+            writeElement(value);
+        }
+    }
+
+    /**
+     * 配列の要素を書き出す.
+     * <p>
+     * JSONArray#put(Object)で追加した値と同じ形式で書き出す。
+     * </p>
+     * @param value 値
+     * @throws JSONException JSONに変換できない値の場合
+     * @throws IOException ストリームへの書き出しに失敗した場合
+     */
+    private void writeElement(final Object value) throws JSONException, IOException {
+        if (value == null) {
+            writeAscii("null");
+        } else if (value instanceof Boolean) {
+            writeBoolean((Boolean) value);
+        } else if (value instanceof Number) {
+            writeNumber((Number) value);
+        } else {
+            writeString(value.toString());
+        }
+    }
+
+    /**
+     * 数値を書き出す.
+     * <p>
+     * JSONObject#numberToString(Number)と同じ形式で書き出す。
+     * </p>
+     * @param number 数値
+     * @throws JSONException NaNまたは無限大の場合
+     * @throws IOException ストリームへの書き出しに失敗した場合
+     */
+    private void writeNumber(final Number number) throws JSONException, IOException {
+        if (number instanceof Integer || number instanceof Long
+                || number instanceof Short || number instanceof Byte) {
+            writeLong(number.longValue());
+            return;
+        }
+        double doubleValue = number.doubleValue();
+        checkDouble(doubleValue);
+        if (number.equals(-0d)) {
+            writeAscii("-0");
+            return;
+        }
+        long longValue = number.longValue();
+        if (doubleValue == (double) longValue) {
+            writeLong(longValue);
+        } else {
+            writeAscii(number.toString());
+        }
+    }
+
+    /**
+     * 浮動小数点数を書き出す.
+     * <p>
+     * JSONObject#put(String, double)で追加した値と同じ形式で書き出す。
+     * </p>
+     * @param value 浮動小数点数
+     * @throws JSONException NaNまたは無限大の場合
+     * @throws IOException ストリームへの書き出しに失敗した場合
+     */
+    private void writeDouble(final double value) throws JSONException, IOException {
+        checkDouble(value);
+        if (Double.doubleToRawLongBits(value) == Double.doubleToRawLongBits(-0d)) {
+            writeAscii("-0");
+            return;
+        }
+        long longValue = (long) value;
+        if (value == (double) longValue) {
+            writeLong(longValue);
+        } else {
+            writeAscii(Double.toString(value));
+        }
+    }
+
+    /**
+     * JSONで扱える浮動小数点数か確認する.
+     * @param value 浮動小数点数
+     * @throws JSONException NaNまたは無限大の場合
+     */
+    private static void checkDouble(final double value) throws JSONException {
+        if (Double.isInfinite(value) || Double.isNaN(value)) {
+            throw new JSONException("Forbidden numeric value: " + value);
+        }
+    }
+
+    /**
+     * 整数を書き出す.
+     * @param value 整数
+     * @throws IOException ストリームへの書き出しに失敗した場合
+     */
+    private void writeLong(final long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            ensure(LONG_MIN_VALUE.length);
+            System.arraycopy(LONG_MIN_VALUE, 0, mBuffer, mCount, LONG_MIN_VALUE.length);
+            mCount += LONG_MIN_VALUE.length;
+            return;
+        }
+        ensure(LONG_MIN_VALUE.length);
+        long v = value;
+        if (v < 0) {
+            mBuffer[mCount++] = '-';
+            v = -v;
+        }
+        int digits = 1;
+        for (long n = v / 10; n != 0; n /= 10) {
+            digits++;
+        }
+        int pos = mCount + digits;
+        do {
+            mBuffer[--pos] = (byte) ('0' + (v % 10));
+            v /= 10;
+        } while (v != 0);
+        mCount += digits;
+    }
+
+    /**
+     * 真偽値を書き出す.
+     * @param value 真偽値
+     * @throws IOException ストリームへの書き出しに失敗した場合
+     */
+    private void writeBoolean(final boolean value) throws IOException {
+        writeAscii(value ? "true" : "false");
+    }
+
+    /**
+     * 文字列をJSONの文字列として書き出す.
+     * <p>
+     * JSONStringerと同じ規則でエスケープし、UTF-8で書き出す。
+     * </p>
+     * @param value 文字列
+     * @throws IOException ストリームへの書き出しに失敗した場合
+     */
+    private void writeString(final String value) throws IOException {
+        writeByte('"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            ensure(MAX_CHAR_BYTES);
+            byte[] buf = mBuffer;
+            switch (c) {
+                case '"':
+                case '\\':
+                case '/':
+                    buf[mCount++] = '\\';
+                    buf[mCount++] = (byte) c;
+                    break;
+                case '\t':
+                    buf[mCount++] = '\\';
+                    buf[mCount++] = 't';
+                    break;
+                case '\b':
+                    buf[mCount++] = '\\';
+                    buf[mCount++] = 'b';
+                    break;
+                case '\n':
+                    buf[mCount++] = '\\';
+                    buf[mCount++] = 'n';
+                    break;
+                case '\r':
+                    buf[mCount++] = '\\';
+                    buf[mCount++] = 'r';
+                    break;
+                case '\f':
+                    buf[mCount++] = '\\';
+                    buf[mCount++] = 'f';
+                    break;
+                default:
+                    if (c <= 0x1F) {
+                        buf[mCount++] = '\\';
+                        buf[mCount++] = 'u';
+                        buf[mCount++] = '0';
+                        buf[mCount++] = '0';
+                        buf[mCount++] = HEX[(c >> 4) & 0xF];
+                        buf[mCount++] = HEX[c & 0xF];
+                    } else if (c < 0x80) {
+                        buf[mCount++] = (byte) c;
+                    } else if (c < 0x800) {
+                        buf[mCount++] = (byte) (0xC0 | (c >> 6));
+                        buf[mCount++] = (byte) (0x80 | (c & 0x3F));
+                    } else if (Character.isHighSurrogate(c) && i + 1 < length
+                            && Character.isLowSurrogate(value.charAt(i + 1))) {
+                        int cp = Character.toCodePoint(c, value.charAt(++i));
+                        buf[mCount++] = (byte) (0xF0 | (cp >> 18));
+                        buf[mCount++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                        buf[mCount++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                        buf[mCount++] = (byte) (0x80 | (cp & 0x3F));
+                    } else if (Character.isSurrogate(c)) {
+                        // 対になっていないサロゲートはString#getBytes(String)と同様に置き換える
+                        buf[mCount++] = '?';
+                    } else {
+                        buf[mCount++] = (byte) (0xE0 | (c >> 12));
+                        buf[mCount++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                        buf[mCount++] = (byte) (0x80 | (c & 0x3F));
+                    }
+                    break;
+            }
+        }
+        writeByte('"');
+    }
+
+    /**
+     * ASCII文字列をそのまま書き出す.
+     * @param value ASCII文字列
+     * @throws IOException ストリームへの書き出しに失敗した場合
+     */
+    private void writeAscii(final String value) throws IOException {
+        int length = value.length();
+        ensure(length);
+        for (int i = 0; i < length; i++) {
+            mBuffer[mCount++] = (byte) value.charAt(i);
+        }
+    }
+
+    /**
+     * 1バイトを書き出す.
+     * @param b 書き出すバイト
+     * @throws IOException ストリームへの書き出しに失敗した場合
+     */
+    private void writeByte(final int b) throws IOException {
+        ensure(1);
+        mBuffer[mCount++] = (byte) b;
+    }
+
+    /**
+     * バッファに指定したサイズの空きがあるようにする.
+     * @param size 必要なサイズ
+     * @throws IOException ストリームへの書き出しに失敗した場合
+     */
+    private void ensure(final int size) throws IOException {
+        if (mCount + size > mBuffer.length) {
+            flushBuffer();
+        }
+    }
+
+    /**
+     * バッファのデータをストリームに書き出す.
+     * @throws IOException ストリームへの書き出しに失敗した場合
+     */
+    private void flushBuffer() throws IOException {
+        if (mCount > 0) {
+            mOutputStream.write(mBuffer, 0, mCount);
+            mCount = 0;
+        }
+    }
+
+    /**
+     * content://から始まるURIをファイルのURIに変換する.
+     * @param uri ファイルへのContentUri
+     * @return URI
+     */
+    private String createUri(final String uri) {
+        try {
+            return mFilesUri + "?uri=" + URLEncoder.encode(uri, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException("Failed to convert a uri.");
+        }
+    }
+
+    /**
+     * 指定したObject[]がプリミティブ型のラッパークラスの配列であるかどうかをチェックする.
+     * <p>
+     * なお、配列のすべての要素の型が同一でない場合、falseを返す.
+     * </p>
+     * @param array チェックするオブジェクト配列
+     * @return プリミティブ型のラッパークラスの配列である場合はtrue、そうでない場合はfalse
+     */
+    private static boolean isPrimitiveWrapperArray(final Object[] array) {
+        Class<?> cache = null;
+        for (Object obj : array) {
+            if (obj != null) {
+                if (!isPrimitiveWrapper(obj)) {
+                    return false;
+                }
+                if (cache == null) {
+                    cache = obj.getClass();
+                } else if (cache != obj.getClass()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 指定したObjectがプリミティブ型のラッパークラスであるかどうかをチェックする.
+     * @param obj チェックするオブジェクト
+     * @return プリミティブ型のラッパークラスである場合はtrue、そうでない場合はfalse
+     */
+    private static boolean isPrimitiveWrapper(final Object obj) {
+        return obj instanceof Byte || obj instanceof Short || obj instanceof Integer
+                || obj instanceof Long || obj instanceof Float || obj instanceof Double
+                || obj instanceof Character || obj instanceof Boolean;
+    }
+}
@@ -29,6 +29,8 @@ import org.deviceconnect.utils.JSONUtils;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.security.MessageDigest;
@@ -126,11 +128,10 @@ public final class DConnectUtil {
     }
 
     /**
-     * ファイルへのURIを作成する.
-     * @param uri ファイルへのContentUri
+     * Files APIのURIを作成する.
      * @return URI
      */
-    private static String createUri(final String uri) {
+    public static String createFilesUri() {
         DConnectSettings settings = DConnectSettings.getInstance();
         StringBuilder builder = new StringBuilder();
         builder.append(settings.isSSL() ? "https://" : "http://");
@@ -138,6 +139,17 @@ public final class DConnectUtil {
         builder.append(":");
         builder.append(settings.getPort());
         builder.append("/gotapi/files");
+        return builder.toString();
+    }
+
+    /**
+     * ファイルへのURIを作成する.
+     * @param uri ファイルへのContentUri
+     * @return URI
+     */
+    private static String createUri(final String uri) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(createFilesUri());
         builder.append("?uri=");
         try {
             builder.append(URLEncoder.encode(uri, "UTF-8"));
@@ -196,6 +208,24 @@ public final class DConnectUtil {
         convertUri(root);
     }
 
+    /**
+     * BundleをJSONに変換して、UTF-8のバイト列としてストリームに書き出す.
+     * <p>
+     * {@link #convertBundleToJSON(JSONObject, Bundle)}で変換したJSONObjectの文字列と同じJSONを、
+     * JSONObjectを作成せずに書き出す。
+     * </p>
+     * @param out 書き出し先のストリーム
+     * @param b 変換するBundle
+     * @throws JSONException JSONへの変換に失敗した場合に発生
+     * @throws IOException ストリームへの書き出しに失敗した場合に発生
+     */
+    public static void convertBundleToJSON(
+            final OutputStream out, final Bundle b) throws JSONException, IOException {
+        BundleJSONWriter writer = new BundleJSONWriter(out, createFilesUri());
+        writer.write(b);
+        writer.flush();
+    }
+
     /**
      * AndroidManifest.xmlのversionNameを取得する.
      * 
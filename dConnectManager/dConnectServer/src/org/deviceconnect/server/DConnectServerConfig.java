@@ -45,6 +45,12 @@ public final class DConnectServerConfig {
     /** 文字コード. */
     private String mCharset = "UTF-8";
 
+    /** WebSocketのKeep-Aliveのインターバル(ms). */
+    private int mWebSocketKeepAliveInterval;
+
+    /** WebSocketのKeep-Aliveのタイムアウト(ms). */
+    private int mWebSocketKeepAliveTimeout;
+
     /**
      * 最大コネクション数を取得する.
      * 
@@ -124,6 +130,26 @@ public final class DConnectServerConfig {
         return mIpWhiteList;
     }
 
+    /**
+     * WebSocketのKeep-Aliveのインターバルを取得する.
+     *
+     * @return Keep-Aliveのインターバル(ms)
+     */
+    public int getWebSocketKeepAliveInterval() {
+        return mWebSocketKeepAliveInterval;
+    }
+
+    /**
+     * WebSocketのKeep-Aliveのタイムアウトを取得する.
+     * <p>
+     * pingを送信してから、この時間内にpongが返ってこない場合には切断する。
+     * </p>
+     * @return Keep-Aliveのタイムアウト(ms)
+     */
+    public int getWebSocketKeepAliveTimeout() {
+        return mWebSocketKeepAliveTimeout;
+    }
+
     /**
      * コンストラクタ.
      * 
@@ -140,6 +166,8 @@ public final class DConnectServerConfig {
         this.mCachePath = builder.mCachePath;
         this.mIpWhiteList = builder.mIpWhiteList;
         this.mCharset = builder.mCharset;
+        this.mWebSocketKeepAliveInterval = builder.mWebSocketKeepAliveInterval;
+        this.mWebSocketKeepAliveTimeout = builder.mWebSocketKeepAliveTimeout;
     }
 
     /**
@@ -154,7 +182,7 @@ public final class DConnectServerConfig {
         private int mMaxConnectionSize = 64;
 
         /** WebSocket最大コネクション数. */
-        private int mMaxWebSocketConnectionSize = 32;
+        private int mMaxWebSocketConnectionSize = 256;
 
         /** ドキュメントルートのパス. */
         private String mDocumentRootPath;
@@ -177,6 +205,12 @@ public final class DConnectServerConfig {
         /** 文字コード. */
         private String mCharset = "UTF-8";
 
+        /** WebSocketのKeep-Aliveのインターバル(ms). */
+        private int mWebSocketKeepAliveInterval = 3000;
+
+        /** WebSocketのKeep-Aliveのタイムアウト(ms). */
+        private int mWebSocketKeepAliveTimeout = 3000;
+
         /**
          * DConnectServerConfigのインスタンスを設定された設定値で生成する.
          * 
@@ -317,5 +351,37 @@ public final class DConnectServerConfig {
             mCharset = charset;
             return this;
         }
+
+        /**
+         * WebSocketのKeep-Aliveのインターバルを設定する.
+         * <p>
+         * デフォルトでは、3000msが設定してあります。
+         * </p>
+         * @param interval Keep-Aliveのインターバル(ms)。1以上を指定すること。
+         * @return ビルダー。
+         */
+        public Builder webSocketKeepAliveInterval(final int interval) {
+            if (interval <= 0) {
+                throw new IllegalArgumentException("WebSocketKeepAliveInterval must be larger than 0.");
+            }
+            mWebSocketKeepAliveInterval = interval;
+            return this;
+        }
+
+        /**
+         * WebSocketのKeep-Aliveのタイムアウトを設定する.
+         * <p>
+         * デフォルトでは、3000msが設定してあります。
+         * </p>
+         * @param timeout Keep-Aliveのタイムアウト(ms)。1以上を指定すること。
+         * @return ビルダー。
+         */
+        public Builder webSocketKeepAliveTimeout(final int timeout) {
+            if (timeout <= 0) {
+                throw new IllegalArgumentException("WebSocketKeepAliveTimeout must be larger than 0.");
+            }
+            mWebSocketKeepAliveTimeout = timeout;
+            return this;
+        }
     }
 }
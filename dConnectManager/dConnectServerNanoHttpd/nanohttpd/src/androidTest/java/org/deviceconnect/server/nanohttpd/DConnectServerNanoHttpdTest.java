@@ -45,6 +45,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 
@@ -1149,6 +1150,86 @@ public class DConnectServerNanoHttpdTest {
         }
     }
 
+    /**
+     * HTTPボディに64MBのファイルを含むマルチパートのデータを指定して、HTTP通信を行う。
+     * <pre>
+     * 【期待する動作】
+     * ・DConnectServerNanoHttpdにHTTP通信して、レスポンスのステータスコードに200が返却されること。
+     * ・マルチパートの文字列がパラメータに格納されていること。
+     * ・マルチパートのファイルが同じサイズで一時ファイルに保存されていること。
+     * </pre>
+     */
+    @Test
+    public void DConnectServerNanoHttpd_big_multipart() throws IOException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final String path = "/root/path";
+        final String key = "key";
+        final String value = "value";
+        final String fileNameKey = "fileName";
+        final File writeFile = writeBigFile("bigData", ".dat", 64 * 1024 * 1024);
+
+        final Map<String, Object> data = new HashMap<>();
+        data.put(key, value);
+        data.put(fileNameKey, writeFile);
+
+        File file = getContext().getFilesDir();
+        DConnectServerConfig config = new DConnectServerConfig.Builder().port(PORT)
+                .documentRootPath(file.getPath()).cachePath(getContext().getCacheDir().getPath()).build();
+        DConnectServer server = new DConnectServerNanoHttpd(config, getContext());
+        server.setServerEventListener(new DConnectServerEventListener() {
+            @Override
+            public boolean onReceivedHttpRequest(final HttpRequest req, final HttpResponse res) {
+                res.setCode(HttpResponse.StatusCode.OK);
+
+                String v = req.getQueryParameters().get(key);
+                if (!value.equals(v)) {
+                    res.setCode(HttpResponse.StatusCode.BAD_REQUEST);
+                }
+
+                String path = req.getFiles().get(fileNameKey);
+                if (path == null || writeFile.length() != new File(path).length()) {
+                    res.setCode(HttpResponse.StatusCode.BAD_REQUEST);
+                }
+                return true;
+            }
+
+            @Override
+            public void onError(final DConnectServerError errorCode) {
+            }
+
+            @Override
+            public void onServerLaunched() {
+                latch.countDown();
+            }
+
+            @Override
+            public void onWebSocketConnected(final DConnectWebSocket webSocket) {
+            }
+
+            @Override
+            public void onWebSocketDisconnected(final DConnectWebSocket webSocket) {
+            }
+
+            @Override
+            public void onWebSocketMessage(final DConnectWebSocket webSocket, final String message) {
+            }
+        });
+        server.start();
+
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+
+            HttpUtils.Response response = HttpUtils.post(HTTP_LOCALHOST_PORT + path, data);
+            assertThat(response, is(notNullValue()));
+            assertThat(response.getStatusCode(), is(200));
+        } catch (InterruptedException e) {
+            fail("timeout");
+        } finally {
+            writeFile.delete();
+            server.shutdown();
+        }
+    }
+
     /**
      * レスポンスに1GBのボディデータがあるHTTP通信を行う。
      * <pre>
@@ -1439,6 +1520,105 @@ public class DConnectServerNanoHttpdTest {
         }
     }
 
+    /**
+     * DConnectServerNanoHttpdを起動し、Rangeヘッダーを指定して静的コンテンツを取得する。
+     * <pre>
+     * 【期待する動作】
+     * ・レスポンスのステータスコードに206が返却されること。
+     * ・指定した範囲のデータが返却されること。
+     * ・ファイルサイズを超える範囲を指定した場合には、ステータスコードに416が返却されること。
+     * </pre>
+     */
+    @Test
+    public void DConnectServerNanoHttpd_static_file_range() throws IOException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        File root = getContext().getFilesDir();
+        File file = new File(root, "range.txt");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write("0123456789".getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        DConnectServerConfig config = new DConnectServerConfig.Builder().port(PORT).documentRootPath(root.getPath()).build();
+        DConnectServer server = new DConnectServerNanoHttpd(config, getContext());
+        server.setServerEventListener(new DConnectServerEventListener() {
+            @Override
+            public boolean onReceivedHttpRequest(final HttpRequest req, final HttpResponse res) {
+                res.setCode(HttpResponse.StatusCode.OK);
+                return true;
+            }
+
+            @Override
+            public void onError(final DConnectServerError errorCode) {
+            }
+
+            @Override
+            public void onServerLaunched() {
+                latch.countDown();
+            }
+
+            @Override
+            public void onWebSocketConnected(final DConnectWebSocket webSocket) {
+            }
+
+            @Override
+            public void onWebSocketDisconnected(final DConnectWebSocket webSocket) {
+            }
+
+            @Override
+            public void onWebSocketMessage(final DConnectWebSocket webSocket, final String message) {
+            }
+        });
+        server.start();
+
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Range", "bytes=2-5");
+            HttpUtils.Response response = HttpUtils.connect("GET", HTTP_LOCALHOST_PORT + "/range.txt", headers, null);
+            assertThat(response, is(notNullValue()));
+            assertThat(response.getStatusCode(), is(206));
+            assertThat(readText(response.getBody()), is("2345"));
+
+            headers.put("Range", "bytes=100-");
+            response = HttpUtils.connect("GET", HTTP_LOCALHOST_PORT + "/range.txt", headers, null);
+            assertThat(response, is(notNullValue()));
+            assertThat(response.getStatusCode(), is(416));
+        } catch (InterruptedException e) {
+            fail("timeout");
+        } finally {
+            server.shutdown();
+            file.delete();
+        }
+    }
+
+    /**
+     * ファイルの中身を文字列として読み込む.
+     * @param file ファイル
+     * @return 文字列
+     * @throws IOException 読み込みに失敗した場合
+     */
+    private String readText(final File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            byte[] buf = new byte[(int) file.length()];
+            int offset = 0;
+            while (offset < buf.length) {
+                int len = in.read(buf, offset, buf.length - offset);
+                if (len < 0) {
+                    break;
+                }
+                offset += len;
+            }
+            return new String(buf, 0, offset, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
     /**
      * DConnectServerNanoHttpdを起動し、WebSocket通信を行う。
      * <pre>
@@ -1527,6 +1707,116 @@ public class DConnectServerNanoHttpdTest {
         }
     }
 
+    /**
+     * WebSocketの最大コネクション数を1に設定して、2つのWebSocketを接続する。
+     * <pre>
+     * 【期待する動作】
+     * ・1つ目のWebSocketは接続できること。
+     * ・2つ目のWebSocketは接続できないこと。
+     * </pre>
+     */
+    @Test
+    public void DConnectServerNanoHttpd_websocket_max_connection() {
+        final CountDownLatch serverLaunchLatch = new CountDownLatch(1);
+        final CountDownLatch firstLatch = new CountDownLatch(1);
+        final CountDownLatch secondLatch = new CountDownLatch(1);
+        final AtomicBoolean secondOpened = new AtomicBoolean();
+        File file = getContext().getFilesDir();
+        DConnectServerConfig config = new DConnectServerConfig.Builder().port(PORT)
+                .maxWebSocketConnectionSize(1).documentRootPath(file.getPath()).build();
+        DConnectServer server = new DConnectServerNanoHttpd(config, getContext());
+        server.setServerEventListener(new DConnectServerEventListener() {
+            @Override
+            public boolean onReceivedHttpRequest(final HttpRequest req, final HttpResponse res) {
+                res.setCode(HttpResponse.StatusCode.OK);
+                return true;
+            }
+
+            @Override
+            public void onError(final DConnectServerError errorCode) {
+            }
+
+            @Override
+            public void onServerLaunched() {
+                serverLaunchLatch.countDown();
+            }
+
+            @Override
+            public void onWebSocketConnected(final DConnectWebSocket webSocket) {
+            }
+
+            @Override
+            public void onWebSocketDisconnected(final DConnectWebSocket webSocket) {
+            }
+
+            @Override
+            public void onWebSocketMessage(final DConnectWebSocket webSocket, final String message) {
+            }
+        });
+        server.start();
+
+        try {
+            serverLaunchLatch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            fail("timeout");
+        }
+
+        String uri = HTTP_LOCALHOST_PORT;
+        WebSocketClient first = new WebSocketClient(URI.create(uri), new Draft_17(), null, 10000) {
+            @Override
+            public void onOpen(final ServerHandshake handshakedata) {
+                firstLatch.countDown();
+            }
+
+            @Override
+            public void onMessage(final String message) {
+            }
+
+            @Override
+            public void onClose(final int code, final String reason, final boolean remote) {
+            }
+
+            @Override
+            public void onError(final Exception ex) {
+            }
+        };
+        WebSocketClient second = new WebSocketClient(URI.create(uri), new Draft_17(), null, 10000) {
+            @Override
+            public void onOpen(final ServerHandshake handshakedata) {
+                secondOpened.set(true);
+                secondLatch.countDown();
+            }
+
+            @Override
+            public void onMessage(final String message) {
+            }
+
+            @Override
+            public void onClose(final int code, final String reason, final boolean remote) {
+                secondLatch.countDown();
+            }
+
+            @Override
+            public void onError(final Exception ex) {
+            }
+        };
+
+        try {
+            first.connect();
+            assertThat(firstLatch.await(10, TimeUnit.SECONDS), is(true));
+
+            second.connect();
+            assertThat(secondLatch.await(10, TimeUnit.SECONDS), is(true));
+            assertThat(secondOpened.get(), is(false));
+        } catch (InterruptedException e) {
+            fail("timeout");
+        } finally {
+            first.close();
+            second.close();
+            server.shutdown();
+        }
+    }
+
     /**
      * SSLを有効にして、DConnectServerNanoHttpdを起動し、WebSocket通信を行う。
      * <pre>
@@ -19,23 +19,16 @@ import org.deviceconnect.server.nanohttpd.security.Firewall;
 import org.deviceconnect.server.nanohttpd.util.KeyStoreManager;
 import org.deviceconnect.server.websocket.DConnectWebSocket;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.DataOutput;
-import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.RandomAccessFile;
 import java.lang.reflect.Field;
 import java.net.Socket;
-import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.security.GeneralSecurityException;
@@ -50,6 +43,11 @@ import java.util.StringTokenizer;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -94,14 +92,18 @@ public class DConnectServerNanoHttpd extends DConnectServer {
     private static final int MAX_HEADER_SIZE = 1024;
 
     /**
-     * リクエストを読み込むためのバッファサイズを定義.
+     * メモリに読み込むbodyの最大サイズを定義.
+     * <p>
+     * multipartのbodyはストリームから直接解析するので対象外とする。
+     * </p>
      */
-    private static final int REQUEST_BUFFER_LEN = 1024;
+    private static final int MAX_BODY_SIZE = 16 * 1024 * 1024;
 
     /**
-     * メモリ上に格納しておく上限サイズを定義.
+     * bodyを読み込むバッファの初期サイズを定義.
      */
-    private static final int MEMORY_STORE_LIMIT = 1024;
+    private static final int BODY_BUFFER_SIZE = 8 * 1024;
+
 
     /**
      * Content-Dispositionヘッダーを見つける正規表現を定義.
@@ -139,9 +141,9 @@ public class DConnectServerNanoHttpd extends DConnectServer {
     private static final String VERSION = "2.0.0";
 
     /**
-     * WebSocketのKeepAlive処理のインターバル(ms).
+     * メタデータをキャッシュする静的コンテンツの最大数.
      */
-    private static final int WEBSOCKET_KEEP_ALIVE_INTERVAL = 3000;
+    private static final int STATIC_FILE_CACHE_SIZE = 256;
 
     /**
      * application/jsonのContent-Typeを定義.
@@ -153,11 +155,34 @@ public class DConnectServerNanoHttpd extends DConnectServer {
      */
     private NanoServer mServer;
 
+    /**
+     * 一時ファイルを管理するクラスを作成するファクトリー.
+     */
+    private NanoTempFileManagerFactory mTempFileManagerFactory;
+
     /**
      * コンテキストオブジェクト.
      */
     private Context mContext;
 
+    /**
+     * 全WebSocketで共有するKeep-Alive用のスケジューラ.
+     */
+    private ScheduledExecutorService mKeepAliveScheduler;
+
+    /**
+     * Keep-Aliveのpingやcloseを送信するスレッドプール.
+     * <p>
+     * 応答しないクライアントへの書き込みでスケジューラが止まらないように、書き込みは別スレッドで行う。
+     * </p>
+     */
+    private ExecutorService mKeepAliveSender;
+
+    /**
+     * WebSocketの個数をチェックするためのロック.
+     */
+    private final Object mWebSocketLock = new Object();
+
     /**
      * Keep-Aliveの状態定数.
      *
@@ -224,9 +249,13 @@ public class DConnectServerNanoHttpd extends DConnectServer {
         mServer = new NanoServer(mConfig.getHost(), mConfig.getPort());
 
         // キャッシュのパスが設定されていた場合には、指定したフォルダを使用する
-        if (mConfig.getCachePath() != null) {
-            mServer.setTempFileManagerFactory(new NanoTempFileManagerFactory(mConfig.getCachePath()));
+        // multipartのファイルを保存するために、設定されていない場合もNanoHTTPDのデフォルトと同じフォルダで作成しておく
+        String cachePath = mConfig.getCachePath();
+        if (cachePath == null) {
+            cachePath = System.getProperty("java.io.tmpdir");
         }
+        mTempFileManagerFactory = new NanoTempFileManagerFactory(cachePath);
+        mServer.setTempFileManagerFactory(mTempFileManagerFactory);
 
         // SSLが有効になっている場合には、SSL用の設定を行う
         if (mConfig.isSsl()) {
@@ -241,6 +270,8 @@ public class DConnectServerNanoHttpd extends DConnectServer {
             mServer.makeSecure(factory, null);
         }
 
+        startKeepAlive();
+
         new Thread(new Runnable() {
             @Override
             public void run() {
@@ -275,10 +306,54 @@ public class DConnectServerNanoHttpd extends DConnectServer {
         }
         mSockets.clear();
 
+        stopKeepAlive();
+
         mServer.stop();
         mServer = null;
     }
 
+    /**
+     * WebSocketのKeep-Alive処理を開始する.
+     * <p>
+     * WebSocketごとにスレッドを作成しないように、1つのスケジューラで全てのWebSocketを処理する。
+     * </p>
+     */
+    private void startKeepAlive() {
+        final long interval = mConfig.getWebSocketKeepAliveInterval();
+        final ExecutorService sender = Executors.newCachedThreadPool();
+        mKeepAliveSender = sender;
+        mKeepAliveScheduler = Executors.newSingleThreadScheduledExecutor();
+        mKeepAliveScheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                long now = System.currentTimeMillis();
+                for (DConnectWebSocket socket : mSockets.values()) {
+                    if (socket instanceof NanoWebSocket) {
+                        try {
+                            ((NanoWebSocket) socket).keepAlive(now, sender);
+                        } catch (Throwable e) {
+                            mLogger.warning("Exception in the KeepAlive task. " + e.toString());
+                        }
+                    }
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * WebSocketのKeep-Alive処理を停止する.
+     */
+    private void stopKeepAlive() {
+        if (mKeepAliveScheduler != null) {
+            mKeepAliveScheduler.shutdownNow();
+            mKeepAliveScheduler = null;
+        }
+        if (mKeepAliveSender != null) {
+            mKeepAliveSender.shutdownNow();
+            mKeepAliveSender = null;
+        }
+    }
+
     @Override
     public synchronized boolean isRunning() {
         return mServer != null && mServer.isAlive();
@@ -371,6 +446,45 @@ public class DConnectServerNanoHttpd extends DConnectServer {
         }
     }
 
+    /**
+     * bodyのサイズが大きすぎることを通知する例外.
+     */
+    private static class EntityTooLargeException extends Exception {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * ヘッダーサイズの確認に使用するHTTPSessionのフィールド.
+     * <p>
+     * HTTPSessionのフィールドはprivateになっているために、リフレクションを使用している。
+     * リクエストごとにフィールドを検索しないように、クラスの読み込み時に一度だけ取得する。
+     * </p>
+     * <p>
+     * MEMO: RetroGuardなどでミニファイされた場合には、動作しなくなるので注意
+     * </p>
+     */
+    private static class SessionFields {
+        /**
+         * HTTPSession#splitbyte.
+         */
+        static final Field SPLITBYTE = getField("splitbyte");
+
+        /**
+         * HTTPSession#rlen.
+         */
+        static final Field RLEN = getField("rlen");
+
+        private static Field getField(final String name) {
+            try {
+                Field fld = NanoHTTPD.HTTPSession.class.getDeclaredField(name);
+                fld.setAccessible(true);
+                return fld;
+            } catch (Exception e) {
+                return null;
+            }
+        }
+    }
+
     /**
      * NanoWSDの実継承クラス.
      *
@@ -382,6 +496,11 @@ public class DConnectServerNanoHttpd extends DConnectServer {
          */
         private Firewall mFirewall;
 
+        /**
+         * 静的コンテンツのメタデータのキャッシュ.
+         */
+        private StaticFileCache mStaticFileCache;
+
         /**
          * コンストラクタ.
          *
@@ -392,6 +511,14 @@ public class DConnectServerNanoHttpd extends DConnectServer {
             super(hostname, port);
             mFirewall = new Firewall(mConfig.getIPWhiteList());
             mimeTypes();
+            if (mConfig.getDocumentRootPath() != null) {
+                try {
+                    mStaticFileCache = new StaticFileCache(new File(mConfig.getDocumentRootPath()),
+                            STATIC_FILE_CACHE_SIZE);
+                } catch (IOException e) {
+                    mLogger.warning("Failed to create StaticFileCache. " + e.toString());
+                }
+            }
         }
 
         @Override
@@ -425,8 +552,15 @@ public class DConnectServerNanoHttpd extends DConnectServer {
                     return newFixedLengthResponse(BAD_REQUEST, NanoHTTPD.MIME_PLAINTEXT, "Missing Websocket-Key");
                 }
 
-                // TODO: WebSocketの最大個数をチェックする
-                WebSocket webSocket = openWebSocket(session);
+                WebSocket webSocket;
+                synchronized (mWebSocketLock) {
+                    if (mSockets.size() >= mConfig.getMaxWebSocketConnectionSize()) {
+                        mLogger.warning("WebSocket connections exceed the limit: " + mConfig.getMaxWebSocketConnectionSize());
+                        return newFixedLengthResponse(Status.SERVICE_UNAVAILABLE, NanoHTTPD.MIME_PLAINTEXT,
+                                "Too many WebSocket connections.");
+                    }
+                    webSocket = openWebSocket(session);
+                }
                 Response handshakeResponse = webSocket.getHandshakeResponse();
                 try {
                     handshakeResponse.addHeader(NanoWSD.HEADER_WEBSOCKET_ACCEPT, makeAcceptKey(headers.get(NanoWSD.HEADER_WEBSOCKET_KEY)));
@@ -490,6 +624,12 @@ public class DConnectServerNanoHttpd extends DConnectServer {
             } catch (OutOfMemoryError e) {
                 return newFixedLengthResponse(Status.BAD_REQUEST, MIME_APPLICATION_JSON,
                         "{\"result\" : 1, \"errorCode\" : 1, \"errorMessage\" : \"Too large request.\"}");
+            } catch (EntityTooLargeException e) {
+                // bodyを読み捨てていないので、次のリクエストを読めないように切断する
+                Response response = newFixedLengthResponse(DConnectStatus.ENTITY_TOO_LARGE, MIME_APPLICATION_JSON,
+                        "{\"result\" : 1, \"errorCode\" : 1, \"errorMessage\" : \"Request Entity Too Large.\"}");
+                response.closeConnection(true);
+                return response;
             } catch (IOException ioe) {
                 return newFixedLengthResponse(Response.Status.INTERNAL_ERROR, MIME_APPLICATION_JSON,
                         "{\"result\" : 1, \"errorCode\" : 1, \"errorMessage\" : \"INTERNAL ERROR: IOException. e=" + ioe.getMessage() + "\"}");
@@ -509,67 +649,45 @@ public class DConnectServerNanoHttpd extends DConnectServer {
 
         /**
          * ヘッダーサイズを確認する.
+         * <p>
+         * HTTPSessionのフィールドは、{@link SessionFields}でキャッシュしたものを使用する。
+         * </p>
          * @param session HTTPセッション
          * @return ヘッダーサイズがバッファよりも大きい場合にはtrue、それ以外はfalse
          */
         private boolean checkHeaderSize(final IHTTPSession session) {
+            if (SessionFields.SPLITBYTE == null || SessionFields.RLEN == null) {
+                return false;
+            }
             try {
-                int splitbyte = getSplitbyte(session);
-                int rlen = getRlen(session);
+                int splitbyte = SessionFields.SPLITBYTE.getInt(session);
+                int rlen = SessionFields.RLEN.getInt(session);
                 if (splitbyte == 0 && rlen == HTTPSession.BUFSIZE) {
                     return false;
                 }
-            } catch (NoSuchFieldException e) {
-                return false;
             } catch (IllegalAccessException e) {
                 return false;
+            } catch (IllegalArgumentException e) {
+                return false;
             }
             return true;
         }
 
         /**
-         * HTTPSession#splitbyteの値を取得する.
-         * <p>
-         * privateのフィールドにアクセスして、値を取得します。
-         * </p>
-         * @param session HTTPセッション
-         * @return splitbyteの値
-         * @throws NoSuchFieldException
-         * @throws IllegalAccessException
-         */
-        private int getSplitbyte(final IHTTPSession session) throws NoSuchFieldException, IllegalAccessException {
-            Class c = session.getClass();
-            Field fld = c.getDeclaredField("splitbyte");
-            fld.setAccessible(true);
-            return (Integer) fld.get(session);
-        }
-
-        /**
-         * HTTPSession#rlenの値を取得する.
+         * Httpリクエストのbodyを解析して、DConnectHttpRequestに値を格納します.
          * <p>
-         * privateのフィールドにアクセスして、値を取得します。
+         * multipartの場合には、bodyを一時ファイルに保存せずにストリームから直接解析し、
+         * ファイルのパートだけを一時ファイルに書き出します。
          * </p>
-         * @param session HTTPセッション
-         * @return splitbyteの値
-         * @throws NoSuchFieldException
-         * @throws IllegalAccessException
-         */
-        private int getRlen(final IHTTPSession session) throws NoSuchFieldException, IllegalAccessException {
-            Class c = session.getClass();
-            Field fld = c.getDeclaredField("rlen");
-            fld.setAccessible(true);
-            return (Integer) fld.get(session);
-        }
-
-        /**
-         * Httpリクエストのbodyを解析して、DConnectHttpRequestに値を格納します.
          *
          * @param session Httpリクエストのセッションデータ
          * @param request Httpリクエストを格納するインスタンス
          * @throws IOException セッションのアクセスに失敗した場合
          * @throws ResponseException レスポンスの作成に失敗した場合
+         * @throws EntityTooLargeException bodyのサイズが大きすぎる場合
          */
-        private void parseBody(final IHTTPSession session, final DConnectHttpRequest request) throws IOException, ResponseException {
+        private void parseBody(final IHTTPSession session, final DConnectHttpRequest request)
+                throws IOException, ResponseException, EntityTooLargeException {
             Map<String, String> headers = session.getHeaders();
             if (!session.getMethod().equals(Method.PUT)
                     && !session.getMethod().equals(Method.POST)
@@ -578,76 +696,35 @@ public class DConnectServerNanoHttpd extends DConnectServer {
             }
 
             Map<String, String> files = new HashMap<>();
-            RandomAccessFile randomAccessFile = null;
-            try {
-                long size = getBodySize(session);
-                ByteArrayOutputStream baos = null;
-                DataOutput requestDataOutput;
-                // Store the request in memory or a file, depending on size
-                if (size < MEMORY_STORE_LIMIT) {
-                    baos = new ByteArrayOutputStream();
-                    requestDataOutput = new DataOutputStream(baos);
-                } else {
-                    randomAccessFile = getTmpBucket(session);
-                    requestDataOutput = randomAccessFile;
-                }
-
-                InputStream inputStream = session.getInputStream();
-                int len = 0;
-                byte[] buf = new byte[REQUEST_BUFFER_LEN];
-                while (len >= 0 && size > 0) {
-                    len = inputStream.read(buf, 0, (int) Math.min(size, REQUEST_BUFFER_LEN));
-                    size -= len;
-                    if (len > 0) {
-                        requestDataOutput.write(buf, 0, len);
+            long size = getBodySize(session);
+            InputStream inputStream = session.getInputStream();
+
+            if (Method.POST.equals(session.getMethod()) || Method.PUT.equals(session.getMethod())) {
+                ContentType contentType = new ContentType(session.getHeaders().get("content-type"));
+                if (contentType.isMultipart()) {
+                    String boundary = contentType.getBoundary();
+                    if (boundary == null) {
+                        throw new ResponseException(BAD_REQUEST,
+                                "BAD REQUEST: Content type is multipart/form-data but boundary missing. Usage: GET /example/file.html");
                     }
-                }
-
-                TempBuffer tmpBuf;
-                if (baos != null) {
-                    tmpBuf = new TempByteBuffer(ByteBuffer.wrap(baos.toByteArray(), 0, baos.size()));
+                    decodeMultipartFormData(contentType, inputStream, size, request.getQueryParameters(), files);
                 } else {
-                    try {
-                        tmpBuf = new TempByteBuffer(randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length()));
-                    } catch (IOException e) {
-                        tmpBuf = new TempFileBuffer(randomAccessFile);
-                    }
-                    randomAccessFile.seek(0);
-                }
-
-                if (Method.POST.equals(session.getMethod()) || Method.PUT.equals(session.getMethod())) {
-                    ContentType contentType = new ContentType(session.getHeaders().get("content-type"));
-                    if (contentType.isMultipart()) {
-                        String boundary = contentType.getBoundary();
-                        if (boundary == null) {
-                            throw new ResponseException(BAD_REQUEST,
-                                    "BAD REQUEST: Content type is multipart/form-data but boundary missing. Usage: GET /example/file.html");
-                        }
-                        decodeMultipartFormData(session, contentType, tmpBuf, request.getQueryParameters(), files);
-                    } else {
-                        byte[] postBytes = new byte[tmpBuf.remaining()];
-                        tmpBuf.get(postBytes);
-                        // MEMO: contentTypeの文字コードを設定するとデフォルトでASCIIになり文字化けを起こす
-//                      String postLine = new String(postBytes, contentType.getEncoding()).trim();
-                        String postLine = new String(postBytes, mConfig.getCharset()).trim();
-                        if ("application/x-www-form-urlencoded".equalsIgnoreCase(contentType.getContentType())) {
-                            decodeParms(postLine, request.getQueryParameters());
-                        } else if (postLine.length() != 0) {
-                            files.put("postData", postLine);
-                        }
-                    }
-                }
-
-                request.setFiles(files);
-            } finally {
-                if (randomAccessFile != null) {
-                    try {
-                        randomAccessFile.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
+                    byte[] postBytes = readBody(inputStream, size);
+                    // MEMO: contentTypeの文字コードを設定するとデフォルトでASCIIになり文字化けを起こす
+//                  String postLine = new String(postBytes, contentType.getEncoding()).trim();
+                    String postLine = new String(postBytes, mConfig.getCharset()).trim();
+                    if ("application/x-www-form-urlencoded".equalsIgnoreCase(contentType.getContentType())) {
+                        decodeParms(postLine, request.getQueryParameters());
+                    } else if (postLine.length() != 0) {
+                        files.put("postData", postLine);
                     }
                 }
+            } else {
+                // bodyは使用しないが、次のリクエストのために読み捨てる
+                skipBody(inputStream, size);
             }
+
+            request.setFiles(files);
         }
 
         /**
@@ -661,111 +738,63 @@ public class DConnectServerNanoHttpd extends DConnectServer {
         private long getBodySize(final IHTTPSession session) {
             long size = 0;
             if (session.getHeaders().containsKey("content-length")) {
-                size = Integer.parseInt(session.getHeaders().get("content-length"));
+                size = Long.parseLong(session.getHeaders().get("content-length").trim());
             }
             return size;
         }
 
         /**
-         * TempFileManagerのインスタンスを取得する.
+         * bodyを全て読み込む.
          * <p>
-         * TempFileManagerのインスタンスはprivateになっているために通常はアクセスできない。
-         * その問題を回避するためにリフレクションを使用している。
+         * Content-Lengthの値でバッファを確保せずに、受信したデータに合わせてバッファを大きくする。
          * </p>
-         * <p>
-         * MEMO: RetroGuardなどでミニファイされた場合には、動作しなくなるので注意
-         * </p>
-         * @param session Httpリクエストのセッションデータ
-         * @return TempFileManagerのインスタンス
+         * @param inputStream bodyを読み込むストリーム
+         * @param size bodyのサイズ
+         * @return 読み込んだデータ
+         * @throws IOException 読み込みに失敗した場合
+         * @throws EntityTooLargeException bodyのサイズが大きすぎる場合
          */
-        private TempFileManager getTempFileManager(final IHTTPSession session) {
-            try {
-                Class c = HTTPSession.class;
-                Field fld = c.getDeclaredField("tempFileManager");
-                fld.setAccessible(true);
-                return (TempFileManager) fld.get(session);
-            } catch (NoSuchFieldException e) {
-                return null;
-            } catch (IllegalAccessException e) {
-                return null;
+        private byte[] readBody(final InputStream inputStream, final long size) throws IOException, EntityTooLargeException {
+            if (size < 0 || size > MAX_BODY_SIZE) {
+                throw new EntityTooLargeException();
             }
-        }
-
-        /**
-         * multipartで送られてきデータを一時的に格納するファイルを作成する.
-         * @param session Httpリクエストのセッションデータ
-         * @return 一時的なファイル
-         */
-        private RandomAccessFile getTmpBucket(final IHTTPSession session) {
-            try {
-                TempFileManager mgr = getTempFileManager(session);
-                if (mgr == null) {
-                    throw new RuntimeException("Cannot get a TempFileManager.");
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(size, BODY_BUFFER_SIZE));
+            byte[] buf = new byte[BODY_BUFFER_SIZE];
+            long remaining = size;
+            while (remaining > 0) {
+                int len = inputStream.read(buf, 0, (int) Math.min(remaining, buf.length));
+                if (len < 0) {
+                    break;
                 }
-                TempFile tempFile = mgr.createTempFile(null);
-                return new RandomAccessFile(tempFile.getName(), "rw");
-            } catch (Exception e) {
-                throw new Error(e); // we won't recover, so throw an error
+                out.write(buf, 0, len);
+                remaining -= len;
             }
+            return out.toByteArray();
         }
 
         /**
-         * Find the byte positions where multipart boundaries start. This reads
-         * a large block at a time and uses a temporary buffer to optimize
-         * (memory mapped) file access.
+         * bodyを読み捨てる.
+         * @param inputStream bodyを読み込むストリーム
+         * @param size bodyのサイズ
+         * @throws IOException 読み込みに失敗した場合
+         * @throws EntityTooLargeException bodyのサイズが大きすぎる場合
          */
-        private int[] getBoundaryPositions(final TempBuffer b, final byte[] boundary) throws IOException {
-            int[] res = new int[0];
-            if (b.remaining() < boundary.length) {
-                return res;
+        private void skipBody(final InputStream inputStream, final long size) throws IOException, EntityTooLargeException {
+            if (size < 0 || size > MAX_BODY_SIZE) {
+                throw new EntityTooLargeException();
             }
-
-            int search_window_pos = 0;
-            byte[] search_window = new byte[4 * 1024 + boundary.length];
-
-            int first_fill = (b.remaining() < search_window.length) ? b.remaining() : search_window.length;
-            b.get(search_window, 0, first_fill);
-            int new_bytes = first_fill - boundary.length;
-
-            do {
-                // Search the search_window
-                for (int j = 0; j < new_bytes; j++) {
-                    for (int i = 0; i < boundary.length; i++) {
-                        if (search_window[j + i] != boundary[i])
-                            break;
-                        if (i == boundary.length - 1) {
-                            // Match found, add it to results
-                            int[] new_res = new int[res.length + 1];
-                            System.arraycopy(res, 0, new_res, 0, res.length);
-                            new_res[res.length] = search_window_pos + j;
-                            res = new_res;
-                        }
+            long remaining = size;
+            while (remaining > 0) {
+                long len = inputStream.skip(remaining);
+                if (len <= 0) {
+                    // skipでは終端を判定できないので、1バイト読み込んで確認する
+                    if (inputStream.read() < 0) {
+                        break;
                     }
+                    len = 1;
                 }
-                search_window_pos += new_bytes;
-
-                // Copy the end of the buffer to the start
-                System.arraycopy(search_window, search_window.length - boundary.length, search_window, 0, boundary.length);
-
-                // Refill search_window
-                new_bytes = search_window.length - boundary.length;
-                new_bytes = (b.remaining() < new_bytes) ? b.remaining() : new_bytes;
-                b.get(search_window, boundary.length, new_bytes);
-            } while (new_bytes > 0);
-            return res;
-        }
-
-        /**
-         * 改行コードまでオフセットを移動する.
-         * @param partHeaderBuff データ
-         * @param index オフセット
-         * @return 移動したインデックス
-         */
-        private int scipOverNewLine(final byte[] partHeaderBuff, int index) {
-            while (partHeaderBuff[index] != '\n') {
-                index++;
+                remaining -= len;
             }
-            return ++index;
         }
 
         /**
@@ -793,47 +822,26 @@ public class DConnectServerNanoHttpd extends DConnectServer {
 
         /**
          * multipartをデコードする.
-         * @param session Httpリクエストのセッションデータ
+         * <p>
+         * Content-Typeが指定されていないパートは文字列としてパラメータに格納し、
+         * Content-Typeが指定されているパートは一時ファイルに書き出してパスを格納する。
+         * </p>
          * @param contentType コンテントタイプ
-         * @param fbuf bodyデータ
+         * @param inputStream bodyを読み込むストリーム
+         * @param size bodyのサイズ
          * @param parms queryデータ
          * @param files multipartのファイルパスを格納するマップ
          * @throws ResponseException レスポンスの作成に失敗した場合
          */
-        private void decodeMultipartFormData(final IHTTPSession session, final ContentType contentType, final TempBuffer fbuf,
+        private void decodeMultipartFormData(final ContentType contentType, final InputStream inputStream, final long size,
                                              final Map<String, String> parms, final Map<String, String> files) throws ResponseException {
             int pcount = 0;
             try {
-                int[] boundaryIdxs = getBoundaryPositions(fbuf, contentType.getBoundary().getBytes());
-                if (boundaryIdxs.length < 2) {
-                    throw new ResponseException(BAD_REQUEST,
-                            "BAD REQUEST: Content type is multipart/form-data but contains less than two boundary strings.");
-                }
-
-                byte[] partHeaderBuff = new byte[MAX_HEADER_SIZE];
-                for (int boundaryIdx = 0; boundaryIdx < boundaryIdxs.length - 1; boundaryIdx++) {
-                    fbuf.position(boundaryIdxs[boundaryIdx]);
-                    int len = (fbuf.remaining() < MAX_HEADER_SIZE) ? fbuf.remaining() : MAX_HEADER_SIZE;
-                    fbuf.get(partHeaderBuff, 0, len);
-                    BufferedReader in =
-                            new BufferedReader(new InputStreamReader(
-                                    new ByteArrayInputStream(partHeaderBuff, 0, len),
-                                        Charset.forName(contentType.getEncoding())), len);
-
-                    int headerLines = 0;
-                    // First line is boundary string
-                    String mpline = in.readLine();
-                    headerLines++;
-                    if (mpline == null || !mpline.contains(contentType.getBoundary())) {
-                        throw new ResponseException(BAD_REQUEST,
-                                "BAD REQUEST: Content type is multipart/form-data but chunk does not start with boundary.");
-                    }
-
+                MultipartParser parser = new MultipartParser(inputStream, size, contentType.getBoundary(),
+                        Charset.forName(contentType.getEncoding()), MAX_HEADER_SIZE);
+                while (parser.nextPart()) {
                     String partName = null, fileName = null, partContentType = null;
-                    // Parse the reset of the header lines
-                    mpline = in.readLine();
-                    headerLines++;
-                    while (mpline != null && mpline.trim().length() > 0) {
+                    for (String mpline : parser.getHeaders()) {
                         Matcher matcher = CONTENT_DISPOSITION_PATTERN.matcher(mpline);
                         if (matcher.matches()) {
                             String attributeString = matcher.group(2);
@@ -859,31 +867,16 @@ public class DConnectServerNanoHttpd extends DConnectServer {
                         if (matcher.matches()) {
                             partContentType = matcher.group(2).trim();
                         }
-                        mpline = in.readLine();
-                        headerLines++;
-                    }
-                    int partHeaderLength = 0;
-                    while (headerLines-- > 0) {
-                        partHeaderLength = scipOverNewLine(partHeaderBuff, partHeaderLength);
-                    }
-                    // Read the part data
-                    if (partHeaderLength >= len - 4) {
-                        throw new ResponseException(Response.Status.INTERNAL_ERROR, "Multipart header size exceeds MAX_HEADER_SIZE.");
                     }
-                    int partDataStart = boundaryIdxs[boundaryIdx] + partHeaderLength;
-                    int partDataEnd = boundaryIdxs[boundaryIdx + 1] - 4;
 
-                    fbuf.position(partDataStart);
                     if (partContentType == null) {
                         // Read the part into a string
-                        byte[] data_bytes = new byte[partDataEnd - partDataStart];
-                        fbuf.get(data_bytes);
                         // MEMO: デフォルトの文字コードでマルチパートの文字列は取得する
-//                        parms.put(partName, new String(data_bytes, contentType.getEncoding()));
-                        parms.put(partName, new String(data_bytes, mConfig.getCharset()));
+//                        parms.put(partName, parser.readBodyAsString(contentType.getEncoding()));
+                        parms.put(partName, parser.readBodyAsString(mConfig.getCharset()));
                     } else {
                         // Read it into a file
-                        String path = saveTmpFile(session, fbuf, partDataStart, partDataEnd - partDataStart, fileName);
+                        String path = saveTmpFile(parser, fileName);
                         if (!files.containsKey(partName)) {
                             files.put(partName, path);
                         } else {
@@ -905,35 +898,30 @@ public class DConnectServerNanoHttpd extends DConnectServer {
         }
 
         /**
-         * Retrieves the content of a sent file and saves it to a temporary
-         * file. The full path to the saved file is returned.
+         * multipartのパートのデータを一時ファイルに書き出す.
+         * <p>
+         * データが空の場合には、一時ファイルは作成せずに空文字を返却する。
+         * </p>
+         * @param parser multipartのパーサ
+         * @param filenameHint ファイル名
+         * @return 一時ファイルへのパス
+         * @throws Exception 一時ファイルへの書き込みに失敗した場合
          */
-        private String saveTmpFile(final IHTTPSession session, final TempBuffer b, final int offset, final int len, final String filename_hint) {
-            String path = "";
-            if (len > 0) {
-                FileOutputStream fileOutputStream = null;
-                try {
-                    TempFileManager mgr = getTempFileManager(session);
-                    if (mgr == null) {
-                        throw new RuntimeException("Cannot get a TempFileManager.");
-                    }
-                    TempFile tempFile = mgr.createTempFile(filename_hint);
-                    fileOutputStream = new FileOutputStream(tempFile.getName());
-                    b.write(fileOutputStream, offset, len);
-                    path = tempFile.getName();
-                } catch (Exception e) { // Catch exception if any
-                    throw new Error(e); // we won't recover, so throw an error
-                } finally {
-                    if (fileOutputStream != null) {
-                        try {
-                            fileOutputStream.close();
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        }
-                    }
+        private String saveTmpFile(final MultipartParser parser, final String filenameHint) throws Exception {
+            TempFileManager mgr = mTempFileManagerFactory != null ? mTempFileManagerFactory.getCurrent() : null;
+            if (mgr == null) {
+                throw new IOException("Cannot get a TempFileManager.");
+            }
+            TempFile tempFile = mgr.createTempFile(filenameHint);
+            OutputStream out = tempFile.open();
+            try {
+                if (parser.readBody(out) == 0) {
+                    return "";
                 }
+                return tempFile.getName();
+            } finally {
+                out.close();
             }
-            return path;
         }
 
         /**
@@ -999,66 +987,221 @@ public class DConnectServerNanoHttpd extends DConnectServer {
          * <p>
          *     静的コンテンツ以外のアクセスの場合には、nullを返却します。
          * </p>
+         * <p>
+         *     If-None-Match、If-Modified-Since、Range、If-Rangeヘッダーに対応します。
+         *     クライアントがgzipに対応している場合、ファイル名に.gzを付けた圧縮済みのファイルがあれば、そちらを返却します。
+         * </p>
          * @param session HTTPリクエストデータ
          * @return 静的コンテンツの場合はResponseのインスタンス、それ以外の場合はnull
          */
         private Response checkStaticFile(final IHTTPSession session) {
-            Response retValue = null;
-
-            do {
-                String mime = session.getHeaders().get("content-type");
-                // httpの仕様より、content-typeでMIME Typeが特定できない場合はURIから
-                // MIME Typeを推測する。
-                if (mime == null || !MIME_TYPES.containsValue(mime)) {
-                    mime = getMimeTypeFromURI(session.getUri());
-                }
+            Map<String, String> headers = session.getHeaders();
+            String mime = headers.get("content-type");
+            // httpの仕様より、content-typeでMIME Typeが特定できない場合はURIから
+            // MIME Typeを推測する。
+            if (mime == null || !MIME_TYPES.containsValue(mime)) {
+                mime = getMimeTypeFromURI(session.getUri());
+            }
 
-                // MIMEタイプがファイルで無い場合はdConnectへのリクエストかどうかの
-                // チェックに回す。
-                if (mime == null) {
-                    break;
+            // MIMEタイプがファイルで無い場合はdConnectへのリクエストかどうかの
+            // チェックに回す。
+            if (mime == null) {
+                return null;
+            }
+
+            // ドキュメントルートが設定されていない場合には、静的コンテンツへのアクセスはない。
+            if (mConfig.getDocumentRootPath() == null || mStaticFileCache == null) {
+                return null;
+            }
+
+            // 静的コンテンツへのアクセスの場合はdocument rootからファイルを検索する。
+            File file = new File(mConfig.getDocumentRootPath(), session.getUri());
+            StaticFileCache.FileInfo info = mStaticFileCache.get(file);
+            if (info == null) {
+                return newFixedLengthResponse(Status.NOT_FOUND, MIME_PLAINTEXT, Status.NOT_FOUND.getDescription());
+            } else if (info.isDirectory()) {
+                return null;
+            } else if (!info.isReadable()) {
+                return newFixedLengthResponse(Status.FORBIDDEN, MIME_PLAINTEXT, Status.FORBIDDEN.getDescription());
+            }
+
+            String range = headers.get("range");
+            if (range != null && !isSameRange(headers.get("if-range"), info)) {
+                range = null;
+            }
+
+            // Rangeが指定されていない場合のみ、圧縮済みのファイルを使用する
+            StaticFileCache.FileInfo content = info;
+            boolean gzip = false;
+            if (range == null && isAcceptGzip(headers)) {
+                StaticFileCache.FileInfo gzipInfo = mStaticFileCache.getGzip(info);
+                if (gzipInfo != null) {
+                    content = gzipInfo;
+                    gzip = true;
                 }
+            }
+            String etag = gzip ? info.getETag().replaceFirst("\"$", "-gz\"") : info.getETag();
 
-                // ドキュメントルートが設定されていない場合には、静的コンテンツへのアクセスはない。
-                if (mConfig.getDocumentRootPath() == null) {
-                    break;
+            Response retValue;
+            if (isNotModified(headers, etag, info)) {
+                retValue = new StaticFileResponse(Status.NOT_MODIFIED, mime, null, 0);
+            } else {
+                try {
+                    long[] byteRange = range != null ? parseRange(range, info.getLength()) : null;
+                    if (byteRange != null && byteRange.length == 0) {
+                        retValue = new StaticFileResponse(Status.RANGE_NOT_SATISFIABLE, MIME_PLAINTEXT, null, 0);
+                        retValue.addHeader("Content-Range", "bytes */" + info.getLength());
+                    } else if (byteRange != null) {
+                        long length = byteRange[1] - byteRange[0] + 1;
+                        retValue = new StaticFileResponse(Status.PARTIAL_CONTENT, mime,
+                                openFileStream(info.getFile(), byteRange[0]), length);
+                        retValue.addHeader("Content-Length", String.valueOf(length));
+                        retValue.addHeader("Content-Range", "bytes " + byteRange[0] + "-" + byteRange[1]
+                                + "/" + info.getLength());
+                    } else {
+                        retValue = new StaticFileResponse(Status.OK, mime,
+                                openFileStream(content.getFile(), 0), content.getLength());
+                        retValue.addHeader("Content-Length", String.valueOf(content.getLength()));
+                        if (gzip) {
+                            retValue.addHeader("Content-Encoding", "gzip");
+                        }
+                    }
+                } catch (IOException e) {
+                    return newFixedLengthResponse(Status.NOT_FOUND, MIME_PLAINTEXT, Status.NOT_FOUND.getDescription());
                 }
+            }
+            retValue.addHeader("ETag", etag);
+            retValue.addHeader("Last-Modified", info.getLastModifiedText());
+            retValue.addHeader("Accept-Ranges", "bytes");
+            retValue.addHeader("Vary", "Accept-Encoding");
+            return retValue;
+        }
 
-                // 静的コンテンツへのアクセスの場合はdocument rootからファイルを検索する。
-                File file = new File(mConfig.getDocumentRootPath(), session.getUri());
+        /**
+         * ファイルの指定した位置から読み込むストリームを開く.
+         * <p>
+         * FileChannelの位置を移動させるので、Rangeの開始位置までデータを読み飛ばす必要はない。
+         * 読み込むサイズはNanoHTTPDがレスポンスのサイズで制限する。
+         * </p>
+         * @param file ファイル
+         * @param offset 開始位置
+         * @return ストリーム
+         * @throws IOException ファイルが開けない場合
+         */
+        private InputStream openFileStream(final File file, final long offset) throws IOException {
+            FileChannel channel = new FileInputStream(file).getChannel();
+            try {
+                channel.position(offset);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            return Channels.newInputStream(channel);
+        }
 
-                if (!file.exists()) {
-                    retValue = newFixedLengthResponse(Status.NOT_FOUND, MIME_PLAINTEXT, Status.NOT_FOUND.getDescription());
-                    break;
-                } else if (file.isDirectory()) {
-                    break;
-                } else if (!isReadableFile(file)) {
-                    retValue = newFixedLengthResponse(Status.FORBIDDEN, MIME_PLAINTEXT, Status.FORBIDDEN.getDescription());
-                    break;
-                }
+        /**
+         * クライアントがgzipに対応しているか確認する.
+         *
+         * @param headers リクエストヘッダー
+         * @return gzipに対応している場合はtrue、それ以外はfalse
+         */
+        private boolean isAcceptGzip(final Map<String, String> headers) {
+            String acceptEncoding = headers.get("accept-encoding");
+            return acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ENGLISH).contains("gzip");
+        }
 
-                // If-None-Match対応
-                String etag = Integer.toHexString((file.getAbsolutePath() + file.lastModified() + "" + file.length())
-                        .hashCode());
-                if (etag.equals(session.getHeaders().get("if-none-match"))) {
-                    retValue = newFixedLengthResponse(Status.NOT_MODIFIED, mime, "");
-                } else {
-                    try {
-                        retValue = newFixedLengthResponse(Status.OK, mime, new FileInputStream(file), file.length());
-                        retValue.addHeader("Content-Length", "" + file.length());
-                        retValue.addHeader("ETag", etag);
-                    } catch (FileNotFoundException e) {
-                        retValue = newFixedLengthResponse(Status.NOT_FOUND, MIME_PLAINTEXT, Status.NOT_FOUND.getDescription());
-                        break;
+        /**
+         * If-None-MatchとIf-Modified-Sinceヘッダーから、ファイルが更新されていないか確認する.
+         *
+         * @param headers リクエストヘッダー
+         * @param etag レスポンスのETag
+         * @param info ファイルのメタデータ
+         * @return 更新されていない場合はtrue、それ以外はfalse
+         */
+        private boolean isNotModified(final Map<String, String> headers, final String etag,
+                                      final StaticFileCache.FileInfo info) {
+            String ifNoneMatch = headers.get("if-none-match");
+            if (ifNoneMatch != null) {
+                for (String tag : ifNoneMatch.split(",")) {
+                    tag = tag.trim();
+                    if (tag.startsWith("W/")) {
+                        tag = tag.substring(2);
+                    }
+                    if (tag.equals("*") || tag.equals(etag)) {
+                        return true;
                     }
                 }
+                return false;
+            }
+            long since = StaticFileCache.parseHttpDate(headers.get("if-modified-since"));
+            return since >= 0 && info.getLastModified() / 1000 <= since / 1000;
+        }
 
-                // ByteRangeへの対応は必須ではないため、noneを指定して対応しないことを伝える。
-                // 対応が必要な場合はbyteを設定して実装すること。
-                retValue.addHeader("Accept-Ranges", "none");
+        /**
+         * If-Rangeヘッダーから、Rangeヘッダーを適用するか確認する.
+         *
+         * @param ifRange If-Rangeヘッダーの値
+         * @param info ファイルのメタデータ
+         * @return Rangeを適用する場合はtrue、それ以外はfalse
+         */
+        private boolean isSameRange(final String ifRange, final StaticFileCache.FileInfo info) {
+            if (ifRange == null) {
+                return true;
+            }
+            String value = ifRange.trim();
+            if (value.startsWith("\"") || value.startsWith("W/")) {
+                return value.equals(info.getETag());
+            }
+            long date = StaticFileCache.parseHttpDate(value);
+            return date >= 0 && info.getLastModified() / 1000 == date / 1000;
+        }
 
-            } while (false);
-            return retValue;
+        /**
+         * Rangeヘッダーを解析する.
+         * <p>
+         * 単一の範囲のみに対応する。解析できない場合や複数の範囲が指定された場合は、
+         * Rangeヘッダーを無視するためにnullを返却する。
+         * </p>
+         * @param range Rangeヘッダーの値
+         * @param length ファイルサイズ
+         * @return 開始位置と終了位置の配列。範囲がファイルサイズを超える場合には空の配列
+         */
+        private long[] parseRange(final String range, final long length) {
+            String value = range.trim();
+            if (!value.startsWith("bytes=")) {
+                return null;
+            }
+            String spec = value.substring("bytes=".length()).trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0 || spec.indexOf(',') >= 0) {
+                return null;
+            }
+            try {
+                String first = spec.substring(0, dash).trim();
+                String last = spec.substring(dash + 1).trim();
+                long start;
+                long end;
+                if (first.isEmpty()) {
+                    if (last.isEmpty()) {
+                        return null;
+                    }
+                    long suffix = Long.parseLong(last);
+                    if (suffix <= 0) {
+                        return new long[0];
+                    }
+                    start = Math.max(0, length - suffix);
+                    end = length - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+                }
+                if (start < 0 || start >= length || start > end) {
+                    return new long[0];
+                }
+                return new long[] {start, end};
+            } catch (NumberFormatException e) {
+                return null;
+            }
         }
 
         /**
@@ -1075,26 +1218,29 @@ public class DConnectServerNanoHttpd extends DConnectServer {
             return null;
         }
 
+        @Override
+        protected boolean useGzipWhenAccepted(final Response r) {
+            // 静的コンテンツはContent-LengthやRangeを保つため、その場で圧縮しない
+            return !(r instanceof StaticFileResponse) && super.useGzipWhenAccepted(r);
+        }
+    }
+
+    /**
+     * 静的コンテンツのレスポンス.
+     *
+     * @author NTT DOCOMO, INC.
+     */
+    private static class StaticFileResponse extends NanoHTTPD.Response {
         /**
-         * ファイルが読み込み可能なファイルかチェックする.
+         * コンストラクタ.
          *
-         * @param file チェック対象のファイル。
-         * @return 読み込めるファイルの場合trueを、その他はfalseを返す。
+         * @param status ステータス
+         * @param mimeType MIMEタイプ
+         * @param data データ
+         * @param totalBytes データサイズ
          */
-        private boolean isReadableFile(final File file) {
-            boolean retVal;
-            try {
-                // ../ などのDocument Rootより上の階層にいくファイルパスをチェックし
-                // 不正なリクエストを拒否する。
-                File root = new File(mConfig.getDocumentRootPath());
-                String rootAbPath = root.getCanonicalPath() + "/";
-                String fileAbPath = file.getCanonicalPath();
-                retVal = fileAbPath.contains(rootAbPath) && file.canRead();
-            } catch (IOException e) {
-                mLogger.warning("Exception in the NanoServer#isDeployedInDocumentRoot() method. " + e.toString());
-                retVal = false;
-            }
-            return retVal;
+        StaticFileResponse(final IStatus status, final String mimeType, final InputStream data, final long totalBytes) {
+            super(status, mimeType, data, totalBytes);
         }
     }
 
@@ -1106,14 +1252,19 @@ public class DConnectServerNanoHttpd extends DConnectServer {
     private class NanoWebSocket extends NanoWSD.WebSocket implements DConnectWebSocket {
 
         /**
-         * KeepAlive実行用のタイマー.
+         * Keep-Aliveの状態.
          */
-        private Timer mKeepAliveTimer;
+        private KeepAliveState mKeepAliveState = KeepAliveState.GOT_PONG;
 
         /**
-         * Keep-Aliveのタスク.
+         * 最後にpingを送信した時刻(ms).
          */
-        private final KeepAliveTask mKeepAliveTask;
+        private long mLastPingTime;
+
+        /**
+         * Keep-Aliveのpingまたはcloseを送信中であるかを示すフラグ.
+         */
+        private boolean mSending;
 
         /**
          * WebSocketを識別するID.
@@ -1127,10 +1278,6 @@ public class DConnectServerNanoHttpd extends DConnectServer {
          */
         NanoWebSocket(final IHTTPSession handshakeRequest) {
             super(handshakeRequest);
-            mKeepAliveTask = new KeepAliveTask();
-            mKeepAliveTimer = new Timer();
-            mKeepAliveTimer.scheduleAtFixedRate(mKeepAliveTask,
-                    WEBSOCKET_KEEP_ALIVE_INTERVAL, WEBSOCKET_KEEP_ALIVE_INTERVAL);
 
             mSockets.put(getId(), this);
             if (mListener != null) {
@@ -1207,9 +1354,9 @@ public class DConnectServerNanoHttpd extends DConnectServer {
 
         @Override
         protected void onPong(final NanoWSD.WebSocketFrame pongFrame) {
-            synchronized (mKeepAliveTask) {
-                if (mKeepAliveTask.getState() == KeepAliveState.WAITING_PONG) {
-                    mKeepAliveTask.setState(KeepAliveState.GOT_PONG);
+            synchronized (this) {
+                if (mKeepAliveState == KeepAliveState.WAITING_PONG) {
+                    mKeepAliveState = KeepAliveState.GOT_PONG;
                 }
             }
         }
@@ -1235,7 +1382,6 @@ public class DConnectServerNanoHttpd extends DConnectServer {
             if (mListener != null) {
                 mListener.onWebSocketDisconnected(this);
             }
-            mKeepAliveTimer.cancel();
         }
 
         @Override
@@ -1249,59 +1395,97 @@ public class DConnectServerNanoHttpd extends DConnectServer {
         }
 
         /**
-         * Keep-Alive用タイマータスク.
+         * Keep-Aliveの処理を行う.
+         * <p>
+         * pongを受信済みの場合にはpingを送信する。
+         * pongを待っている状態でタイムアウト時間が経過した場合には、WebSocketを切断する。
+         * </p>
+         * <p>
+         * pingとcloseはsenderのスレッドで送信する。
+         * タイムアウトした時に前の送信が終わっていない場合は、クライアントが受信していないので、
+         * closeを送信せずにソケットを閉じて、書き込み中のスレッドを解放する。
+         * </p>
          *
-         * @author NTT DOCOMO, INC.
+         * @param now 現在時刻(ms)
+         * @param sender pingやcloseを送信するスレッドプール
          */
-        private class KeepAliveTask extends TimerTask {
-
-            /**
-             * 処理状態.
-             */
-            private KeepAliveState mState;
-
-            /**
-             * コンストラクタ.
-             */
-            KeepAliveTask() {
-                setState(KeepAliveState.GOT_PONG);
-            }
-
-            /**
-             * 状態を変更する.
-             *
-             * @param state 状態
-             */
-            void setState(final KeepAliveState state) {
-                mState = state;
-            }
-
-            /**
-             * 状態を取得する.
-             *
-             * @return 状態
-             */
-            KeepAliveState getState() {
-                return mState;
-            }
-
-            @Override
-            public void run() {
-                try {
-                    synchronized (this) {
-                        if (mState == KeepAliveState.GOT_PONG) {
-                            setState(KeepAliveState.WAITING_PONG);
+        void keepAlive(final long now, final ExecutorService sender) {
+            synchronized (this) {
+                if (mKeepAliveState == KeepAliveState.GOT_PONG) {
+                    if (mSending) {
+                        return;
+                    }
+                    mKeepAliveState = KeepAliveState.WAITING_PONG;
+                    mLastPingTime = now;
+                    sendKeepAlive(sender, new SendTask() {
+                        @Override
+                        public void run() throws IOException {
                             ping("DConnectServer".getBytes());
-                        } else {
-                            close(NanoWSD.WebSocketFrame.CloseCode.GoingAway, "Client is dead.", false);
                         }
+                    });
+                } else if (now - mLastPingTime >= mConfig.getWebSocketKeepAliveTimeout()) {
+                    if (mSending) {
+                        mLogger.fine("WebSocket is not writable. id = " + getId());
+                        try {
+                            // ソケットを閉じると、受信中のスレッドが切断を検知してonCloseが呼ばれる
+                            getHandshakeRequest().getInputStream().close();
+                        } catch (IOException e) {
+                            mLogger.fine("Exception in the NanoWebSocket#keepAlive() method. " + e.toString());
+                        }
+                        return;
                     }
-                } catch (IOException e) {
-                    // 例外が発生したらタスクを終了し、タイムアウトに任せる
-                    cancel();
+                    sendKeepAlive(sender, new SendTask() {
+                        @Override
+                        public void run() throws IOException {
+                            close(NanoWSD.WebSocketFrame.CloseCode.GoingAway, "Client is dead.", false);
+                        }
+                    });
                 }
             }
         }
+
+        /**
+         * Keep-Aliveのpingやcloseを送信する.
+         * <p>
+         * thisのロックを取得した状態で呼び出すこと。
+         * </p>
+         * @param sender 送信するスレッドプール
+         * @param task 送信処理
+         */
+        private void sendKeepAlive(final ExecutorService sender, final SendTask task) {
+            mSending = true;
+            try {
+                sender.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            task.run();
+                        } catch (IOException e) {
+                            // 例外が発生した場合は何もせず、タイムアウトに任せる
+                            mLogger.fine("Exception in the NanoWebSocket#keepAlive() method. " + e.toString());
+                        } finally {
+                            synchronized (NanoWebSocket.this) {
+                                mSending = false;
+                            }
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Keep-Aliveの停止後は送信しない
+                mSending = false;
+            }
+        }
+    }
+
+    /**
+     * Keep-Aliveで送信する処理.
+     */
+    private interface SendTask {
+        /**
+         * 送信する.
+         * @throws IOException 送信に失敗した場合
+         */
+        void run() throws IOException;
     }
 
     /**
@@ -1315,6 +1499,11 @@ public class DConnectServerNanoHttpd extends DConnectServer {
          */
         private final File mCacheDir;
 
+        /**
+         * スレッドごとに作成したTempFileManager.
+         */
+        private final ThreadLocal<NanoTempFileManager> mCurrent = new ThreadLocal<>();
+
         /**
          * コンストラクタ.
          * @param dir 一時的にファイルを保持するフォルダへのパス.
@@ -1325,7 +1514,21 @@ public class DConnectServerNanoHttpd extends DConnectServer {
 
         @Override
         public NanoHTTPD.TempFileManager create() {
-            return new NanoTempFileManager(mCacheDir);
+            NanoTempFileManager manager = new NanoTempFileManager(mCacheDir);
+            mCurrent.set(manager);
+            return manager;
+        }
+
+        /**
+         * 実行中のスレッドで作成したTempFileManagerを取得する.
+         * <p>
+         * NanoHTTPDは、クライアントごとのスレッドでTempFileManagerを作成してから
+         * 同じスレッドでリクエストを処理するので、serveの中から呼び出すとセッションのTempFileManagerが取得できる。
+         * </p>
+         * @return TempFileManagerのインスタンス。作成されていない場合はnull
+         */
+        NanoHTTPD.TempFileManager getCurrent() {
+            return mCurrent.get();
         }
     }
 
@@ -1433,107 +1636,4 @@ public class DConnectServerNanoHttpd extends DConnectServer {
             }
         }
     }
-
-    private interface TempBuffer {
-        TempBuffer position(int position) throws IOException;
-        int remaining() throws IOException;
-        TempBuffer get(byte[] dst, int dstOffset, int byteCount) throws IOException;
-        TempBuffer get(byte[] dst) throws IOException;
-
-        void write(FileOutputStream out, int offset, int length) throws IOException;
-    }
-
-    private class TempFileBuffer implements TempBuffer {
-
-        private RandomAccessFile mRandomAccessFile;
-        private long mLimit;
-        private long mPosition;
-
-        TempFileBuffer(final RandomAccessFile file) throws IOException {
-            mRandomAccessFile = file;
-            mPosition = 0;
-            mLimit = file.length();
-        }
-
-        @Override
-        public TempBuffer position(final int position) throws IOException {
-            mPosition = position;
-            mRandomAccessFile.seek(position);
-            return this;
-        }
-
-        @Override
-        public int remaining() {
-            return (int) (mLimit - mPosition);
-        }
-
-        @Override
-        public TempBuffer get(final byte[] dst, final int dstOffset, final int byteCount) throws IOException {
-            mRandomAccessFile.seek(mPosition);
-            mRandomAccessFile.readFully(dst, dstOffset, byteCount);
-            mPosition += byteCount;
-            return this;
-        }
-
-        @Override
-        public TempBuffer get(final byte[] dst) throws IOException {
-            return get(dst, 0, dst.length);
-        }
-
-        @Override
-        public void write(final FileOutputStream out, final int offset, final int length) throws IOException {
-            mRandomAccessFile.seek(offset);
-            byte[] buf = new byte[4096];
-            int len = 4096;
-            int size = length;
-            while (size > 0) {
-                mRandomAccessFile.readFully(buf, 0, len);
-                out.write(buf, 0, len);
-                size -= len;
-                if (size < 4096) {
-                    len = size;
-                }
-            }
-        }
-    }
-
-    private class TempByteBuffer implements TempBuffer {
-
-        private ByteBuffer mByteBuffer;
-
-        TempByteBuffer(ByteBuffer buffer) {
-            mByteBuffer = buffer;
-        }
-
-        @Override
-        public TempBuffer position(final int position) {
-            mByteBuffer.position(position);
-            return this;
-        }
-
-        @Override
-        public int remaining() {
-            return mByteBuffer.remaining();
-        }
-
-        @Override
-        public TempBuffer get(final byte[] dst, final int dstOffset, final int byteCount) {
-            mByteBuffer.get(dst, dstOffset, byteCount);
-            return this;
-        }
-
-        @Override
-        public TempBuffer get(final byte[] dst) {
-            mByteBuffer.get(dst);
-            return this;
-        }
-
-        @Override
-        public void write(final FileOutputStream out, final int offset, final int len) throws IOException {
-            ByteBuffer src = mByteBuffer.duplicate();
-            FileChannel dest = out.getChannel();
-            src.position(offset).limit(offset + len);
-            dest.write(src.slice());
-        }
-    }
 }
@@ -0,0 +1,361 @@
+/*
+ MultipartParser.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.server.nanohttpd;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * multipart/form-dataをストリームから1回の走査で解析するクラス.
+ * <p>
+ * ボディ全体を一時的なバッファに保存せずに、パートごとにヘッダーを読み込み、
+ * パートのデータを指定されたストリームへ書き出す。
+ * </p>
+ * <pre>
+ * MultipartParser parser = new MultipartParser(in, contentLength, boundary, charset, maxHeaderSize);
+ * while (parser.nextPart()) {
+ *     List&lt;String&gt; headers = parser.getHeaders();
+ *     parser.readBody(out);
+ * }
+ * </pre>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+class MultipartParser {
+
+    /**
+     * 読み込み用バッファのサイズ.
+     */
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * 改行コード.
+     */
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    /**
+     * 読み込み元のストリーム.
+     */
+    private final InputStream mInputStream;
+
+    /**
+     * 残りの読み込み可能なサイズ.
+     */
+    private long mRemaining;
+
+    /**
+     * パートの区切り文字列(CRLF + "--" + boundary).
+     */
+    private final byte[] mDelimiter;
+
+    /**
+     * ヘッダーの文字コード.
+     */
+    private final Charset mCharset;
+
+    /**
+     * パートのヘッダーの最大サイズ.
+     */
+    private final int mMaxHeaderSize;
+
+    /**
+     * 読み込み用バッファ.
+     */
+    private final byte[] mBuffer;
+
+    /**
+     * バッファの読み込み位置.
+     */
+    private int mHead;
+
+    /**
+     * バッファの有効なデータの終端.
+     */
+    private int mTail;
+
+    /**
+     * 現在のパートのヘッダー.
+     */
+    private final List<String> mHeaders = new ArrayList<>();
+
+    /**
+     * 現在のパートのデータを読み込み済みかどうか.
+     */
+    private boolean mBodyConsumed = true;
+
+    /**
+     * 最後のパートまで読み込んだかどうか.
+     */
+    private boolean mFinished;
+
+    /**
+     * 最初のパートかどうか.
+     */
+    private boolean mFirst = true;
+
+    /**
+     * コンストラクタ.
+     *
+     * @param in 読み込み元のストリーム
+     * @param contentLength ボディのサイズ
+     * @param boundary 境界文字列
+     * @param charset ヘッダーの文字コード
+     * @param maxHeaderSize パートのヘッダーの最大サイズ
+     */
+    MultipartParser(final InputStream in, final long contentLength, final String boundary,
+                    final Charset charset, final int maxHeaderSize) {
+        mInputStream = in;
+        mRemaining = contentLength;
+        mDelimiter = ("\r\n--" + boundary).getBytes(Charset.forName("ISO-8859-1"));
+        mCharset = charset;
+        mMaxHeaderSize = maxHeaderSize;
+        mBuffer = new byte[Math.max(BUFFER_SIZE, mDelimiter.length * 2)];
+
+        // 最初の境界文字列の前には改行が無いので、改行を補って区切り文字列と同じ形にする
+        mBuffer[0] = CRLF[0];
+        mBuffer[1] = CRLF[1];
+        mTail = 2;
+    }
+
+    /**
+     * 次のパートに移動して、パートのヘッダーを読み込む.
+     * <p>
+     * 現在のパートのデータを読み込んでいない場合には、読み飛ばす。
+     * </p>
+     *
+     * @return 次のパートがある場合はtrue、それ以外はfalse
+     * @throws IOException 読み込みに失敗した場合、またはデータが不正な場合
+     */
+    boolean nextPart() throws IOException {
+        if (mFinished) {
+            return false;
+        }
+
+        if (mFirst) {
+            // プリアンブルを読み飛ばす
+            if (!skipToDelimiter()) {
+                throw new IOException("Content type is multipart/form-data but boundary is not found.");
+            }
+            mFirst = false;
+        } else if (!mBodyConsumed) {
+            readBody(null);
+        }
+
+        // 区切り文字列の後ろが"--"の場合は終端
+        if (!fill(2)) {
+            throw new IOException("Unexpected end of multipart data.");
+        }
+        if (mBuffer[mHead] == '-' && mBuffer[mHead + 1] == '-') {
+            mFinished = true;
+            return false;
+        }
+
+        // 区切り文字列の行の残りを読み飛ばす
+        readLine(mMaxHeaderSize);
+
+        mHeaders.clear();
+        int headerSize = 0;
+        while (true) {
+            String line = readLine(mMaxHeaderSize - headerSize);
+            if (line.length() == 0) {
+                break;
+            }
+            headerSize += line.length() + CRLF.length;
+            mHeaders.add(line);
+        }
+        mBodyConsumed = false;
+        return true;
+    }
+
+    /**
+     * 現在のパートのヘッダーを取得する.
+     *
+     * @return ヘッダーの行のリスト
+     */
+    List<String> getHeaders() {
+        return mHeaders;
+    }
+
+    /**
+     * 現在のパートのデータを読み込み、ストリームに書き出す.
+     *
+     * @param out 書き出し先のストリーム。nullの場合は読み捨てる
+     * @return 読み込んだデータのサイズ
+     * @throws IOException 読み込みに失敗した場合、またはデータが不正な場合
+     */
+    long readBody(final OutputStream out) throws IOException {
+        if (mBodyConsumed) {
+            return 0;
+        }
+        long size = 0;
+        while (true) {
+            fill(mDelimiter.length);
+            int index = indexOfDelimiter();
+            if (index >= 0) {
+                write(out, index - mHead);
+                size += index - mHead;
+                mHead = index + mDelimiter.length;
+                mBodyConsumed = true;
+                return size;
+            }
+
+            // 区切り文字列の一部かもしれない末尾を残して書き出す
+            int safe = (mTail - mHead) - (mDelimiter.length - 1);
+            if (safe <= 0) {
+                if (!fill(mTail - mHead + 1)) {
+                    throw new IOException("Unexpected end of multipart data.");
+                }
+                continue;
+            }
+            write(out, safe);
+            size += safe;
+            mHead += safe;
+            if (!fill(mDelimiter.length) && indexOfDelimiter() < 0) {
+                throw new IOException("Unexpected end of multipart data.");
+            }
+        }
+    }
+
+    /**
+     * 現在のパートのデータを文字列として読み込む.
+     *
+     * @param charset 文字コード
+     * @return 文字列
+     * @throws IOException 読み込みに失敗した場合、またはデータが不正な場合
+     */
+    String readBodyAsString(final String charset) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        readBody(out);
+        return out.toString(charset);
+    }
+
+    /**
+     * 最初の区切り文字列まで読み飛ばす.
+     *
+     * @return 区切り文字列が見つかった場合はtrue、それ以外はfalse
+     * @throws IOException 読み込みに失敗した場合
+     */
+    private boolean skipToDelimiter() throws IOException {
+        mBodyConsumed = false;
+        try {
+            readBody(null);
+            return true;
+        } catch (IOException e) {
+            if (mRemaining <= 0) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 改行コードまでの1行を読み込む.
+     *
+     * @param limit 読み込む最大サイズ
+     * @return 改行コードを除いた1行の文字列
+     * @throws IOException 読み込みに失敗した場合、または行が最大サイズを超えた場合
+     */
+    private String readLine(final int limit) throws IOException {
+        int start = mHead;
+        int pos = mHead;
+        while (true) {
+            if (pos >= mTail) {
+                int offset = pos - mHead;
+                if (!fill(offset + 1)) {
+                    throw new IOException("Unexpected end of multipart header.");
+                }
+                start = mHead;
+                pos = mHead + offset;
+            }
+            if (mBuffer[pos] == '\n') {
+                int end = pos;
+                if (end > start && mBuffer[end - 1] == '\r') {
+                    end--;
+                }
+                String line = new String(mBuffer, start, end - start, mCharset);
+                mHead = pos + 1;
+                return line;
+            }
+            pos++;
+            if (pos - start > limit) {
+                throw new IOException("Multipart header size exceeds MAX_HEADER_SIZE.");
+            }
+        }
+    }
+
+    /**
+     * バッファの中から区切り文字列を探す.
+     *
+     * @return 区切り文字列の開始位置。見つからない場合は-1
+     */
+    private int indexOfDelimiter() {
+        int last = mTail - mDelimiter.length;
+        byte first = mDelimiter[0];
+        for (int i = mHead; i <= last; i++) {
+            if (mBuffer[i] != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < mDelimiter.length && mBuffer[i + j] == mDelimiter[j]) {
+                j++;
+            }
+            if (j == mDelimiter.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * バッファに指定したサイズ以上のデータがあるようにストリームから読み込む.
+     *
+     * @param size 必要なサイズ
+     * @return 指定したサイズのデータがある場合はtrue、ストリームの終端に達した場合はfalse
+     * @throws IOException 読み込みに失敗した場合
+     */
+    private boolean fill(final int size) throws IOException {
+        if (mTail - mHead >= size) {
+            return true;
+        }
+        if (mHead > 0) {
+            System.arraycopy(mBuffer, mHead, mBuffer, 0, mTail - mHead);
+            mTail -= mHead;
+            mHead = 0;
+        }
+        if (size > mBuffer.length) {
+            throw new IOException("Multipart header size exceeds MAX_HEADER_SIZE.");
+        }
+        while (mTail < size && mRemaining > 0) {
+            int len = mInputStream.read(mBuffer, mTail, (int) Math.min(mBuffer.length - mTail, mRemaining));
+            if (len < 0) {
+                mRemaining = 0;
+                break;
+            }
+            mTail += len;
+            mRemaining -= len;
+        }
+        return mTail >= size;
+    }
+
+    /**
+     * バッファのデータをストリームに書き出す.
+     *
+     * @param out 書き出し先のストリーム
+     * @param length 書き出すサイズ
+     * @throws IOException 書き出しに失敗した場合
+     */
+    private void write(final OutputStream out, final int length) throws IOException {
+        if (out != null && length > 0) {
+            out.write(mBuffer, mHead, length);
+        }
+    }
+}
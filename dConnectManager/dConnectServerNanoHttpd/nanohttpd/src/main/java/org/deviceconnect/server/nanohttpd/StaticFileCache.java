@@ -0,0 +1,267 @@
+/*
+ StaticFileCache.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.server.nanohttpd;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.logging.Logger;
+
+/**
+ * 静的コンテンツのメタデータをキャッシュするクラス.
+ * <p>
+ * ファイルのパスごとに、ETag、Last-Modified、ドキュメントルート内のファイルかどうかの判定結果、
+ * gzipで圧縮されたファイルの有無を保持する。
+ * ファイルの更新日時またはサイズが変わった場合には、キャッシュを作り直す。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+class StaticFileCache {
+
+    /**
+     * gzipで圧縮されたファイルの拡張子.
+     */
+    private static final String GZIP_SUFFIX = ".gz";
+
+    /**
+     * HTTPの日付フォーマット.
+     */
+    private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    /**
+     * キャッシュするファイルの最大数.
+     */
+    private final int mMaxSize;
+
+    /**
+     * ドキュメントルートの正規化されたパス.
+     */
+    private final String mRootPath;
+
+    /**
+     * ロガー.
+     */
+    private final Logger mLogger = Logger.getLogger("dconnect.server");
+
+    /**
+     * ファイルのメタデータのキャッシュ.
+     */
+    private final Map<String, FileInfo> mCache;
+
+    /**
+     * コンストラクタ.
+     *
+     * @param documentRoot ドキュメントルート
+     * @param maxSize キャッシュするファイルの最大数
+     * @throws IOException ドキュメントルートのパスが取得できない場合
+     */
+    StaticFileCache(final File documentRoot, final int maxSize) throws IOException {
+        mRootPath = documentRoot.getCanonicalPath() + "/";
+        mMaxSize = maxSize;
+        mCache = new LinkedHashMap<String, FileInfo>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, FileInfo> eldest) {
+                return size() > mMaxSize;
+            }
+        };
+    }
+
+    /**
+     * ファイルのメタデータを取得する.
+     * <p>
+     * ファイルが存在しない場合にはnullを返却する。
+     * </p>
+     *
+     * @param file ファイル
+     * @return ファイルのメタデータ
+     */
+    FileInfo get(final File file) {
+        String path = file.getAbsolutePath();
+        long lastModified = file.lastModified();
+        if (lastModified == 0 && !file.exists()) {
+            synchronized (mCache) {
+                mCache.remove(path);
+            }
+            return null;
+        }
+        long length = file.length();
+
+        FileInfo info;
+        synchronized (mCache) {
+            info = mCache.get(path);
+        }
+        if (info != null && info.mLastModified == lastModified && info.mLength == length) {
+            return info;
+        }
+
+        info = new FileInfo(file, lastModified, length, file.isDirectory(), isReadableFile(file));
+        synchronized (mCache) {
+            mCache.put(path, info);
+        }
+        return info;
+    }
+
+    /**
+     * gzipで圧縮されたファイルのメタデータを取得する.
+     * <p>
+     * 元のファイルよりも古い圧縮ファイルは使用しない。
+     * </p>
+     *
+     * @param info 元のファイルのメタデータ
+     * @return 圧縮されたファイルのメタデータ。存在しない場合はnull
+     */
+    FileInfo getGzip(final FileInfo info) {
+        FileInfo gzip = get(new File(info.mFile.getPath() + GZIP_SUFFIX));
+        if (gzip == null || gzip.isDirectory() || !gzip.isReadable()
+                || gzip.getLastModified() < info.getLastModified()) {
+            return null;
+        }
+        return gzip;
+    }
+
+    /**
+     * ファイルが読み込み可能なファイルかチェックする.
+     *
+     * @param file チェック対象のファイル。
+     * @return 読み込めるファイルの場合trueを、その他はfalseを返す。
+     */
+    private boolean isReadableFile(final File file) {
+        try {
+            // ../ などのDocument Rootより上の階層にいくファイルパスをチェックし
+            // 不正なリクエストを拒否する。
+            return file.getCanonicalPath().startsWith(mRootPath) && file.canRead();
+        } catch (IOException e) {
+            mLogger.warning("Exception in the StaticFileCache#isReadableFile() method. " + e.toString());
+            return false;
+        }
+    }
+
+    /**
+     * HTTPの日付文字列に変換する.
+     *
+     * @param time 時刻(ms)
+     * @return 日付文字列
+     */
+    static String formatHttpDate(final long time) {
+        SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.format(new Date(time));
+    }
+
+    /**
+     * HTTPの日付文字列を解析する.
+     *
+     * @param date 日付文字列
+     * @return 時刻(ms)。解析できない場合は-1
+     */
+    static long parseHttpDate(final String date) {
+        if (date == null) {
+            return -1;
+        }
+        try {
+            SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            return format.parse(date.trim()).getTime();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * ファイルのメタデータ.
+     */
+    static class FileInfo {
+        /**
+         * ファイル.
+         */
+        private final File mFile;
+
+        /**
+         * 更新日時(ms).
+         */
+        private final long mLastModified;
+
+        /**
+         * ファイルサイズ.
+         */
+        private final long mLength;
+
+        /**
+         * ディレクトリフラグ.
+         */
+        private final boolean mDirectory;
+
+        /**
+         * ドキュメントルート内の読み込み可能なファイルかどうか.
+         */
+        private final boolean mReadable;
+
+        /**
+         * ETag.
+         */
+        private final String mETag;
+
+        /**
+         * Last-Modifiedヘッダーの値.
+         */
+        private final String mLastModifiedText;
+
+        /**
+         * コンストラクタ.
+         *
+         * @param file ファイル
+         * @param lastModified 更新日時(ms)
+         * @param length ファイルサイズ
+         * @param directory ディレクトリフラグ
+         * @param readable 読み込み可能なファイルかどうか
+         */
+        FileInfo(final File file, final long lastModified, final long length,
+                 final boolean directory, final boolean readable) {
+            mFile = file;
+            mLastModified = lastModified;
+            mLength = length;
+            mDirectory = directory;
+            mReadable = readable;
+            mETag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+            mLastModifiedText = formatHttpDate(lastModified);
+        }
+
+        File getFile() {
+            return mFile;
+        }
+
+        long getLastModified() {
+            return mLastModified;
+        }
+
+        long getLength() {
+            return mLength;
+        }
+
+        boolean isDirectory() {
+            return mDirectory;
+        }
+
+        boolean isReadable() {
+            return mReadable;
+        }
+
+        String getETag() {
+            return mETag;
+        }
+
+        String getLastModifiedText() {
+            return mLastModifiedText;
+        }
+    }
+}
@@ -94,6 +94,14 @@ public interface IntentDConnectMessage extends DConnectMessage {
      */
     String EXTRA_KEEPALIVE_STATUS = "keepalive_status";
 
+    /**
+     * パラメータ: {@value} .
+     * <p>
+     * 同じイベント登録宛ての複数のイベントをまとめて送信する場合に、各イベントのパラメータを格納するBundleの配列。
+     * </p>
+     */
+    String EXTRA_EVENT_BATCH = "event_batch";
+
     /**
      * アクションを取得する.
      * @return アクション